@@ -0,0 +1,75 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmark;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.routing.util.AllEdgesIterator;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the raw edge iteration of the {@link BaseGraph}, which is the innermost loop of all routing algorithms and
+ * preparations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BaseGraphBenchmark {
+    private GraphHopper hopper;
+    private BaseGraph graph;
+    private EdgeExplorer explorer;
+
+    @Setup
+    public void setup() {
+        hopper = BenchmarkGraph.importOrLoad();
+        graph = hopper.getBaseGraph();
+        explorer = graph.createEdgeExplorer();
+    }
+
+    @TearDown
+    public void tearDown() {
+        hopper.close();
+    }
+
+    @Benchmark
+    public double allEdges() {
+        double sum = 0;
+        AllEdgesIterator iter = graph.getAllEdges();
+        while (iter.next())
+            sum += iter.getDistance() + iter.getAdjNode();
+        return sum;
+    }
+
+    @Benchmark
+    public long exploreAllNodes() {
+        long sum = 0;
+        for (int node = 0; node < graph.getNodes(); node++) {
+            EdgeIterator iter = explorer.setBaseNode(node);
+            while (iter.next())
+                sum += iter.getAdjNode();
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmark;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.config.CHProfile;
+import com.graphhopper.config.LMProfile;
+import com.graphhopper.routing.TestProfiles;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.util.shapes.GHPoint;
+
+import java.io.File;
+import java.util.Random;
+
+/**
+ * Creates the GraphHopper instance used by the benchmarks from one of the OSM extracts in core/files, so the
+ * benchmarks run offline. The OSM file can be changed with -Dgraphhopper.benchmark.osm_file=... . The graph is
+ * stored in target/benchmark-gh and loaded from there if it exists, so only the first fork has to do the import.
+ */
+public class BenchmarkGraph {
+    public static final String PROFILE = "car";
+    private static final String DEFAULT_OSM_FILE = "core/files/andorra.osm.pbf";
+
+    public static File getOSMFile() {
+        String path = System.getProperty("graphhopper.benchmark.osm_file", DEFAULT_OSM_FILE);
+        File file = new File(path);
+        // allow running the benchmarks from the root folder and from the benchmark module folder
+        if (!file.exists() && !file.isAbsolute())
+            file = new File("..", path);
+        if (!file.exists())
+            throw new IllegalArgumentException("OSM file does not exist: " + path + ", use -Dgraphhopper.benchmark.osm_file to set it");
+        return file;
+    }
+
+    /**
+     * @return a GraphHopper instance with a 'car' profile, for which both CH and LM are prepared
+     */
+    public static GraphHopper importOrLoad() {
+        File osmFile = getOSMFile();
+        GraphHopper hopper = new GraphHopper();
+        hopper.setOSMFile(osmFile.getPath());
+        hopper.setGraphHopperLocation("target/benchmark-gh/" + osmFile.getName().replace('.', '_'));
+        hopper.setEncodedValuesString("car_access, car_average_speed, road_class, road_environment");
+        hopper.setProfiles(TestProfiles.accessAndSpeed(PROFILE));
+        hopper.getCHPreparationHandler().setCHProfiles(new CHProfile(PROFILE));
+        hopper.getLMPreparationHandler().setLMProfiles(new LMProfile(PROFILE));
+        hopper.setMinNetworkSize(0);
+        hopper.importOrLoad();
+        return hopper;
+    }
+
+    /**
+     * @return the coordinates of randomly picked nodes of the graph, so they can always be snapped
+     */
+    public static GHPoint[] randomNodeCoordinates(GraphHopper hopper, int count, long seed) {
+        Random rnd = new Random(seed);
+        NodeAccess na = hopper.getBaseGraph().getNodeAccess();
+        int nodes = hopper.getBaseGraph().getNodes();
+        GHPoint[] points = new GHPoint[count];
+        for (int i = 0; i < count; i++) {
+            int node = rnd.nextInt(nodes);
+            points[i] = new GHPoint(na.getLat(node), na.getLon(node));
+        }
+        return points;
+    }
+}
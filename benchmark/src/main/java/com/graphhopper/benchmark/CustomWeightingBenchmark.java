@@ -0,0 +1,70 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmark;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.routing.util.AllEdgesIterator;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.util.PMap;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the weight calculation of the custom weighting for all edges of the graph, in both directions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CustomWeightingBenchmark {
+    private GraphHopper hopper;
+    private BaseGraph graph;
+    private Weighting weighting;
+
+    @Setup
+    public void setup() {
+        hopper = BenchmarkGraph.importOrLoad();
+        graph = hopper.getBaseGraph();
+        weighting = hopper.createWeighting(hopper.getProfile(BenchmarkGraph.PROFILE), new PMap());
+    }
+
+    @TearDown
+    public void tearDown() {
+        hopper.close();
+    }
+
+    @Benchmark
+    public double calcEdgeWeight() {
+        double sum = 0;
+        AllEdgesIterator iter = graph.getAllEdges();
+        while (iter.next()) {
+            double fwd = weighting.calcEdgeWeight(iter, false);
+            double bwd = weighting.calcEdgeWeight(iter, true);
+            // inaccessible edges have an infinite weight and would make the sum useless
+            if (Double.isFinite(fwd))
+                sum += fwd;
+            if (Double.isFinite(bwd))
+                sum += bwd;
+        }
+        return sum;
+    }
+}
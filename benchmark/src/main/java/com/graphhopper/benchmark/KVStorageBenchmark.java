@@ -0,0 +1,82 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmark;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.routing.util.AllEdgesIterator;
+import com.graphhopper.search.KVStorage;
+import com.graphhopper.search.KVStorage.KValue;
+import com.graphhopper.storage.RAMDirectory;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.graphhopper.util.Parameters.Details.STREET_NAME;
+
+/**
+ * Measures the lookup of single values and of all values of an entry in the {@link KVStorage}. The storage is filled
+ * with the key-value pairs of all edges of the imported graph, so the data is realistic, but the lookups do not go
+ * through the edge iterator.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KVStorageBenchmark {
+    private KVStorage storage;
+    private long[] pointers;
+    private int index;
+
+    @Setup
+    public void setup() {
+        GraphHopper hopper = BenchmarkGraph.importOrLoad();
+        storage = new KVStorage(new RAMDirectory(), true).create(1000);
+        pointers = new long[hopper.getBaseGraph().getEdges()];
+        int count = 0;
+        AllEdgesIterator iter = hopper.getBaseGraph().getAllEdges();
+        while (iter.next()) {
+            Map<String, KValue> keyValues = iter.getKeyValues();
+            if (!keyValues.isEmpty())
+                pointers[count++] = storage.add(keyValues);
+        }
+        hopper.close();
+        if (count == 0)
+            throw new IllegalStateException("the graph has no key-values");
+        // round down to a power of two such that we can use a bit mask instead of the modulo operation
+        pointers = Arrays.copyOf(pointers, Integer.highestOneBit(count));
+    }
+
+    @TearDown
+    public void tearDown() {
+        storage.close();
+    }
+
+    @Benchmark
+    public Object get() {
+        return storage.get(pointers[index++ & (pointers.length - 1)], STREET_NAME, false);
+    }
+
+    @Benchmark
+    public Map<String, KValue> getAll() {
+        return storage.getAll(pointers[index++ & (pointers.length - 1)]);
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmark;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.storage.index.LocationIndex;
+import com.graphhopper.storage.index.Snap;
+import com.graphhopper.util.shapes.BBox;
+import com.graphhopper.util.shapes.GHPoint;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link LocationIndex#findClosest} for random points within the bounds of the graph.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LocationIndexBenchmark {
+    private static final int POINTS = 1024;
+    private GraphHopper hopper;
+    private LocationIndex locationIndex;
+    private GHPoint[] points;
+    private int index;
+
+    @Setup
+    public void setup() {
+        hopper = BenchmarkGraph.importOrLoad();
+        locationIndex = hopper.getLocationIndex();
+        BBox bounds = hopper.getBaseGraph().getBounds();
+        Random rnd = new Random(123);
+        points = new GHPoint[POINTS];
+        for (int i = 0; i < POINTS; i++)
+            points[i] = new GHPoint(bounds.minLat + rnd.nextDouble() * (bounds.maxLat - bounds.minLat),
+                    bounds.minLon + rnd.nextDouble() * (bounds.maxLon - bounds.minLon));
+    }
+
+    @TearDown
+    public void tearDown() {
+        hopper.close();
+    }
+
+    @Benchmark
+    public Snap findClosest() {
+        GHPoint point = points[index++ & (POINTS - 1)];
+        return locationIndex.findClosest(point.lat, point.lon, EdgeFilter.ALL_EDGES);
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmark;
+
+import com.graphhopper.jackson.ResponsePathDeserializerHelper;
+import com.graphhopper.jackson.ResponsePathSerializer;
+import com.graphhopper.util.PointList;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the encoding of a {@link PointList} into the polyline format of the route response, and the decoding
+ * that is done by the client.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PointListEncodingBenchmark {
+    @Param({"100", "10000"})
+    public int size;
+    @Param({"false", "true"})
+    public boolean elevation;
+    private PointList pointList;
+    private String encoded;
+
+    @Setup
+    public void setup() {
+        Random rnd = new Random(123);
+        pointList = new PointList(size, elevation);
+        double lat = 42.5, lon = 1.5;
+        for (int i = 0; i < size; i++) {
+            // a realistic geometry moves in small steps, which is what the polyline format is optimized for
+            lat += (rnd.nextDouble() - 0.5) * 1e-3;
+            lon += (rnd.nextDouble() - 0.5) * 1e-3;
+            if (elevation)
+                pointList.add(lat, lon, 1000 + rnd.nextDouble() * 100);
+            else
+                pointList.add(lat, lon);
+        }
+        encoded = ResponsePathSerializer.encodePolyline(pointList, elevation, 1e5);
+    }
+
+    @Benchmark
+    public String encode() {
+        return ResponsePathSerializer.encodePolyline(pointList, elevation, 1e5);
+    }
+
+    @Benchmark
+    public PointList decode() {
+        return ResponsePathDeserializerHelper.decodePolyline(encoded, size, elevation, 1e5);
+    }
+}
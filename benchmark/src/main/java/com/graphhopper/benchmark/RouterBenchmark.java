@@ -0,0 +1,74 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmark;
+
+import com.graphhopper.GHRequest;
+import com.graphhopper.GHResponse;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.util.Parameters;
+import com.graphhopper.util.shapes.GHPoint;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a full route request including snapping, the routing algorithm and the path extraction, once for every
+ * mode: speed mode (CH), hybrid mode (LM) and flexible mode (no preparation).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RouterBenchmark {
+    private static final int POINTS = 1024;
+
+    @Param({"ch", "lm", "flex"})
+    public String mode;
+    @Param({"false", "true"})
+    public boolean instructions;
+    private GraphHopper hopper;
+    private GHPoint[] points;
+    private int index;
+
+    @Setup
+    public void setup() {
+        hopper = BenchmarkGraph.importOrLoad();
+        points = BenchmarkGraph.randomNodeCoordinates(hopper, POINTS, 123);
+    }
+
+    @TearDown
+    public void tearDown() {
+        hopper.close();
+    }
+
+    @Benchmark
+    public GHResponse route() {
+        GHPoint from = points[index++ & (POINTS - 1)];
+        GHPoint to = points[index++ & (POINTS - 1)];
+        GHRequest req = new GHRequest(from, to).setProfile(BenchmarkGraph.PROFILE);
+        req.putHint(Parameters.CH.DISABLE, !mode.equals("ch"));
+        req.putHint(Parameters.Landmark.DISABLE, !mode.equals("lm"));
+        req.putHint(Parameters.Routing.INSTRUCTIONS, instructions);
+        GHResponse rsp = hopper.route(req);
+        if (rsp.hasErrors())
+            throw new IllegalStateException("route request failed: " + rsp.getErrors());
+        return rsp;
+    }
+}
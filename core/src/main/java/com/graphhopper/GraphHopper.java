@@ -31,6 +31,8 @@ import com.graphhopper.reader.dem.*;
 import com.graphhopper.reader.osm.OSMReader;
 import com.graphhopper.reader.osm.RestrictionTagParser;
 import com.graphhopper.routing.*;
+import com.graphhopper.routing.ch.CHCustomizer;
+import com.graphhopper.routing.ch.CHParameters;
 import com.graphhopper.routing.ch.CHPreparationHandler;
 import com.graphhopper.routing.ch.PrepareContractionHierarchies;
 import com.graphhopper.routing.ev.*;
@@ -46,6 +48,8 @@ import com.graphhopper.routing.util.parsers.OSMBikeNetworkTagParser;
 import com.graphhopper.routing.util.parsers.OSMFootNetworkTagParser;
 import com.graphhopper.routing.util.parsers.OSMMtbNetworkTagParser;
 import com.graphhopper.routing.util.parsers.TagParser;
+import com.graphhopper.routing.weighting.EdgeWeightCache;
+import com.graphhopper.routing.weighting.SpeedProfileStorage;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.routing.weighting.custom.CustomModelParser;
 import com.graphhopper.routing.weighting.custom.CustomWeighting;
@@ -67,7 +71,10 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.text.DateFormat;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -109,6 +116,10 @@ public class GraphHopper {
     private LockFactory lockFactory = new NativeFSLockFactory();
     private boolean allowWrites = true;
     private boolean fullyLoaded = false;
+    private int preloadThreads = 1;
+    private boolean preloadInBackground = false;
+    private volatile boolean warmedUp = true;
+    private Thread preloadThread;
     private final OSMReaderConfig osmReaderConfig = new OSMReaderConfig();
     // for routing
     private final RouterConfig routerConfig = new RouterConfig();
@@ -129,8 +140,17 @@ public class GraphHopper {
     // preparation handlers
     private final LMPreparationHandler lmPreparationHandler = new LMPreparationHandler();
     private final CHPreparationHandler chPreparationHandler = new CHPreparationHandler();
-    private Map<String, RoutingCHGraph> chGraphs = Collections.emptyMap();
+    // replaced atomically when the CH graph of a profile is customized, see customizeCH
+    private volatile Map<String, RoutingCHGraph> chGraphs = Collections.emptyMap();
+    // the CH graphs that were loaded or prepared for the profiles that were customized afterwards
+    private final Map<String, RoutingCHGraph> originalCHGraphs = new HashMap<>();
+    private final Map<String, CHCustomizer> chCustomizers = new HashMap<>();
     private Map<String, LandmarkStorage> landmarks = Collections.emptyMap();
+    private List<String> weightCacheProfiles = Collections.emptyList();
+    private Map<String, EdgeWeightCache> weightCaches = Collections.emptyMap();
+    private String speedProfilesFile = "";
+    private ZoneId speedProfilesTimeZone = ZoneOffset.UTC;
+    private SpeedProfileStorage speedProfiles;
 
     // for data reader
     private String osmFile;
@@ -195,6 +215,63 @@ public class GraphHopper {
         return this;
     }
 
+    /**
+     * The edge weights of the given profiles are calculated once and stored, so the custom models of these profiles
+     * do not have to be evaluated for every edge at query time. Requests that change the custom model still evaluate
+     * it. This takes 24 bytes per edge and profile.
+     */
+    public GraphHopper setWeightCacheProfiles(List<String> weightCacheProfiles) {
+        ensureNotLoaded();
+        this.weightCacheProfiles = weightCacheProfiles;
+        return this;
+    }
+
+    /**
+     * Imports historic speed profiles from the given CSV file, which are used for time-dependent routing when a
+     * request specifies a departure time, see {@link SpeedProfileStorage#importCSV}. The edge ids of the file refer
+     * to the imported graph. The profiles are stored with the graph, so the file is only read if they do not exist yet.
+     *
+     * @param timeZone the time zone of the local times of the profiles
+     */
+    public GraphHopper setSpeedProfiles(String speedProfilesFile, ZoneId timeZone) {
+        ensureNotLoaded();
+        this.speedProfilesFile = speedProfilesFile;
+        this.speedProfilesTimeZone = timeZone;
+        return this;
+    }
+
+    /**
+     * Configures how the memory mapped files that have a preload percentage, see graph.dataaccess.mmap.preload.*,
+     * are loaded into physical memory on {@link #load()}.
+     *
+     * @param threads      the number of threads loading the segments of the files in parallel
+     * @param inBackground if true {@link #load()} returns before the files are loaded and {@link #isWarmedUp()}
+     *                     returns false until they are
+     */
+    public GraphHopper setPreload(int threads, boolean inBackground) {
+        ensureNotLoaded();
+        if (threads < 1)
+            throw new IllegalArgumentException("The number of preload threads must be at least 1 but was " + threads);
+        this.preloadThreads = threads;
+        this.preloadInBackground = inBackground;
+        return this;
+    }
+
+    /**
+     * @return false while the memory mapped files are loaded into physical memory in the background, see
+     * {@link #setPreload(int, boolean)}
+     */
+    public boolean isWarmedUp() {
+        return warmedUp;
+    }
+
+    /**
+     * @return the speed profiles for time-dependent routing or null if they are not configured
+     */
+    public SpeedProfileStorage getSpeedProfiles() {
+        return speedProfiles;
+    }
+
     public GraphHopper setMinNetworkSize(int minNetworkSize) {
         ensureNotLoaded();
         this.minNetworkSize = minNetworkSize;
@@ -513,6 +590,8 @@ public class GraphHopper {
             if (entry.getKey().startsWith("graph.dataaccess.mmap.preload."))
                 dataAccessConfig.put(entry.getKey().substring("graph.dataaccess.mmap.".length()), entry.getValue().toString());
         }
+        setPreload(ghConfig.getInt("graph.dataaccess.mmap.preload_threads", preloadThreads),
+                ghConfig.getBool("graph.dataaccess.mmap.preload_in_background", preloadInBackground));
 
         sortGraph = ghConfig.getBool("graph.sort", sortGraph);
         if (ghConfig.getBool("max_speed_calculator.enabled", false))
@@ -586,6 +665,7 @@ public class GraphHopper {
         osmReaderConfig.setPreferredLanguage(ghConfig.getString("datareader.preferred_language", osmReaderConfig.getPreferredLanguage()));
         osmReaderConfig.setMaxWayPointDistance(ghConfig.getDouble(Routing.INIT_WAY_POINT_MAX_DISTANCE, osmReaderConfig.getMaxWayPointDistance()));
         osmReaderConfig.setWorkerThreads(ghConfig.getInt("datareader.worker_threads", osmReaderConfig.getWorkerThreads()));
+        osmReaderConfig.setNodeIdMap(ghConfig.getString("datareader.node_id_map", osmReaderConfig.getNodeIdMap()));
 
         // index
         preciseIndexResolution = ghConfig.getInt("index.high_resolution", preciseIndexResolution);
@@ -611,6 +691,10 @@ public class GraphHopper {
         routerConfig.setActiveLandmarkCount(activeLandmarkCount);
 
         calcChecksums = ghConfig.getBool("graph.calc_checksums", false);
+        weightCacheProfiles = Arrays.stream(ghConfig.getString("graph.weight_cache.profiles", "").split(","))
+                .map(String::trim).filter(profile -> !profile.isEmpty()).collect(Collectors.toList());
+        speedProfilesFile = ghConfig.getString("graph.speed_profiles.file", speedProfilesFile);
+        speedProfilesTimeZone = ZoneId.of(ghConfig.getString("graph.speed_profiles.time_zone", speedProfilesTimeZone.getId()));
 
         return this;
     }
@@ -757,6 +841,9 @@ public class GraphHopper {
                     .setDAType(elevationDAType);
             if (!baseURL.isEmpty())
                 provider.setBaseURL(baseURL);
+            long cacheSizeMB = ghConfig.getLong("graph.elevation.cache_size_mb", -1);
+            if (cacheSizeMB > 0)
+                provider.setCacheSize(cacheSizeMB * Helper.MB);
         }
         return elevationProvider;
     }
@@ -1162,7 +1249,7 @@ public class GraphHopper {
                         + "\nChange configuration to match the graph or delete " + baseGraph.getDirectory().getLocation());
 
             postProcessing(false);
-            directory.loadMMap();
+            loadMMap(directory);
             setFullyLoaded();
             return true;
         } finally {
@@ -1171,6 +1258,27 @@ public class GraphHopper {
         }
     }
 
+    private void loadMMap(GHDirectory directory) {
+        if (!preloadInBackground) {
+            directory.loadMMap(preloadThreads);
+            return;
+        }
+        warmedUp = false;
+        preloadThread = new Thread(() -> {
+            StopWatch sw = new StopWatch().start();
+            try {
+                directory.loadMMap(preloadThreads);
+            } catch (Exception ex) {
+                logger.error("Couldn't preload the graph into memory", ex);
+            }
+            // on failure the files are loaded on demand as usual, so we are not less ready than without preloading
+            warmedUp = true;
+            logger.info("finished preloading the graph after " + sw.stop().getSeconds() + "s, memory:" + getMemInfo());
+        }, "preload");
+        preloadThread.setDaemon(true);
+        preloadThread.start();
+    }
+
     protected int getProfileHash(Profile profile) {
         return profile.getVersion();
     }
@@ -1287,6 +1395,10 @@ public class GraphHopper {
                 baseGraph.flushAndCloseGeometryAndNameStorage();
         }
 
+        // the weight caches are also used for the LM and CH preparations
+        loadOrPrepareWeightCaches();
+        loadOrImportSpeedProfiles();
+
         if (lmPreparationHandler.isEnabled())
             loadOrPrepareLM(closeEarly);
 
@@ -1327,7 +1439,7 @@ public class GraphHopper {
     }
 
     protected WeightingFactory createWeightingFactory() {
-        return new DefaultWeightingFactory(baseGraph.getBaseGraph(), getEncodingManager());
+        return new DefaultWeightingFactory(baseGraph.getBaseGraph(), getEncodingManager(), weightCaches, speedProfiles);
     }
 
     public GHResponse route(GHRequest request) {
@@ -1451,6 +1563,47 @@ public class GraphHopper {
         }
     }
 
+    /**
+     * Re-calculates the shortcut weights of the CH graph of the given profile using the current weighting of the
+     * profile, e.g. after the speeds of some edges were changed because of road closures or traffic updates.
+     *
+     * @see #customizeCH(String, Weighting)
+     */
+    public void customizeCH(String profileName) {
+        Profile profile = profilesByName.get(profileName);
+        if (profile == null)
+            throw new IllegalArgumentException("Unknown profile: " + profileName);
+        // we do not use the weight cache here, because its weights would be outdated
+        customizeCH(profileName, new DefaultWeightingFactory(baseGraph.getBaseGraph(), encodingManager).createWeighting(profile, new PMap(), false));
+    }
+
+    /**
+     * Re-calculates the shortcut weights of the CH graph of the given profile for the given weighting and replaces
+     * the CH graph used for routing. This is much faster than a new CH preparation, but it requires the preparation
+     * to be customizable, see {@link CHParameters#CUSTOMIZABLE}. The customized shortcut weights are only kept in
+     * memory, so they are lost when GraphHopper is loaded again. The replaced CH graph is not closed, because it might
+     * still be used by running requests.
+     */
+    public synchronized void customizeCH(String profileName, Weighting weighting) {
+        if (!fullyLoaded)
+            throw new IllegalStateException("Do a successful call to load or importOrLoad before customizing the CH graphs");
+        RoutingCHGraph chGraph = chGraphs.get(profileName);
+        if (chGraph == null)
+            throw new IllegalArgumentException("There is no CH graph for profile '" + profileName + "', available: " + chGraphs.keySet());
+        RoutingCHGraph original = originalCHGraphs.getOrDefault(profileName, chGraph);
+        if (!(original instanceof RoutingCHGraphImpl))
+            throw new IllegalArgumentException("Cannot customize CH graph of type " + original.getClass().getSimpleName());
+        // the shortcuts of the original CH graph stay the same, so we can re-use its customizer
+        CHCustomizer customizer = chCustomizers.computeIfAbsent(profileName,
+                p -> new CHCustomizer(baseGraph.getBaseGraph(), ((RoutingCHGraphImpl) original).getCHStorage()));
+        CHStorage chStorage = new CHStorage(new RAMDirectory(), profileName, -1, false);
+        customizer.customize(weighting, chStorage, ForkJoinPool.commonPool());
+        originalCHGraphs.putIfAbsent(profileName, original);
+        Map<String, RoutingCHGraph> customizedCHGraphs = new LinkedHashMap<>(chGraphs);
+        customizedCHGraphs.put(profileName, new RoutingCHGraphImpl(baseGraph.getBaseGraph(), chStorage, weighting));
+        chGraphs = customizedCHGraphs;
+    }
+
     protected Map<String, PrepareContractionHierarchies.Result> prepareCH(boolean closeEarly, List<CHConfig> configsToPrepare) {
         if (!configsToPrepare.isEmpty())
             ensureWriteAccess();
@@ -1459,6 +1612,53 @@ public class GraphHopper {
         return chPreparationHandler.prepare(baseGraph, properties, configsToPrepare, closeEarly);
     }
 
+    protected void loadOrPrepareWeightCaches() {
+        Map<String, EdgeWeightCache> caches = new LinkedHashMap<>();
+        for (String profileName : weightCacheProfiles) {
+            Profile profile = profilesByName.get(profileName);
+            if (profile == null)
+                throw new IllegalArgumentException("Cannot find profile '" + profileName + "' for the weight cache, available profiles: " + profilesByName.keySet());
+            if (!CustomWeighting.NAME.equals(profile.getWeighting()))
+                throw new IllegalArgumentException("The weight cache can only be used for profiles with weighting=custom, but profile '" + profileName + "' uses " + profile.getWeighting());
+            EdgeWeightCache cache = new EdgeWeightCache(baseGraph.getDirectory(), profileName);
+            if (cache.loadExisting()) {
+                if (cache.getProfileHash() != getProfileHash(profile))
+                    throw new IllegalArgumentException("Weight cache of " + profileName + " already exists in storage and doesn't match configuration");
+                if (cache.getEdges() != baseGraph.getEdges())
+                    throw new IllegalStateException("Weight cache of " + profileName + " was created for " + cache.getEdges() + " edges, but the graph has " + baseGraph.getEdges());
+            } else {
+                ensureWriteAccess();
+                StopWatch sw = new StopWatch().start();
+                // this must not use the weight caches we are just creating
+                Weighting weighting = new DefaultWeightingFactory(baseGraph.getBaseGraph(), encodingManager).createWeighting(profile, new PMap(), false);
+                cache.build(baseGraph.getBaseGraph(), weighting, getProfileHash(profile)).flush();
+                logger.info("Created weight cache for profile '" + profileName + "' in " + sw.stop().getSeconds() + "s, " + getMemInfo());
+            }
+            caches.put(profileName, cache);
+        }
+        weightCaches = caches;
+    }
+
+    protected void loadOrImportSpeedProfiles() {
+        if (speedProfilesFile.isEmpty())
+            return;
+        SpeedProfileStorage storage = new SpeedProfileStorage(baseGraph.getDirectory(), speedProfilesTimeZone);
+        if (storage.loadExisting()) {
+            if (storage.getEdges() != baseGraph.getEdges())
+                throw new IllegalStateException("Speed profiles were imported for " + storage.getEdges() + " edges, but the graph has " + baseGraph.getEdges());
+        } else {
+            ensureWriteAccess();
+            StopWatch sw = new StopWatch().start();
+            try (BufferedReader reader = Files.newBufferedReader(Paths.get(speedProfilesFile), StandardCharsets.UTF_8)) {
+                storage.importCSV(reader, baseGraph.getEdges()).flush();
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Cannot read speed profiles from " + speedProfilesFile, ex);
+            }
+            logger.info("Imported " + storage + " in " + sw.stop().getSeconds() + "s, " + getMemInfo());
+        }
+        speedProfiles = storage;
+    }
+
     /**
      * For landmarks it is required to always call this method: either it creates the landmark data or it loads it.
      */
@@ -1535,13 +1735,32 @@ public class GraphHopper {
      * remove the files created in graphhopperLocation you have to call clean().
      */
     public void close() {
+        if (preloadThread != null) {
+            // the memory mapped files must not be unmapped while they are loaded
+            preloadThread.interrupt();
+            boolean interrupted = false;
+            while (preloadThread.isAlive()) {
+                try {
+                    preloadThread.join();
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted)
+                Thread.currentThread().interrupt();
+            preloadThread = null;
+        }
         if (baseGraph != null)
             baseGraph.close();
         if (properties != null)
             properties.close();
 
         chGraphs.values().forEach(RoutingCHGraph::close);
+        originalCHGraphs.values().forEach(RoutingCHGraph::close);
         landmarks.values().forEach(LandmarkStorage::close);
+        weightCaches.values().forEach(EdgeWeightCache::close);
+        if (speedProfiles != null)
+            speedProfiles.close();
 
         if (locationIndex != null)
             locationIndex.close();
@@ -0,0 +1,182 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.coll;
+
+import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.util.Helper;
+
+import java.util.Arrays;
+
+/**
+ * A {@link LongLongMap} for keys that are clustered in dense ranges, like the node ids of an OSM file. The key space
+ * is split into blocks of 2^16 keys and a block is only allocated once a key of its range is added. The values of the
+ * allocated blocks are stored in a {@link DataAccess}, so e.g. with {@link DAType#MMAP} the map lives off-heap and can
+ * spill to disk. Only a small index with one int per block is kept on the heap.
+ * <p>
+ * An allocated block takes five bytes per key, no matter how many of its keys are actually used. Therefore, this map
+ * only saves memory compared to {@link GHLongLongBTree} if most keys of the touched ranges are used, which is the case
+ * for the nodes of bigger OSM files. Negative keys and very large keys are stored in a {@link GHLongLongBTree}.
+ *
+ * @see GHLongLongBTree
+ */
+public class GHLongLongBlockMap implements LongLongMap {
+    private static final int BLOCK_BITS = 16;
+    private static final int BLOCK_KEYS = 1 << BLOCK_BITS;
+    private static final long KEY_MASK = BLOCK_KEYS - 1;
+    // a block contains the lower four bytes of all values followed by the highest byte of all values, so the ints
+    // are aligned and never cross the segment boundaries of the DataAccess
+    private static final long HIGH_BYTES_OFFSET = 4L * BLOCK_KEYS;
+    private static final long BLOCK_BYTES = 5L * BLOCK_KEYS;
+    // keys up to 2^40, which should be enough for OSM node ids for quite a while
+    private static final long MAX_BLOCKS = 1 << 24;
+    private static final int SEGMENT_SIZE = 1 << 24;
+    private static final byte[] ZEROS = new byte[4096];
+
+    private final Directory dir;
+    private final String name;
+    private final DAType type;
+    private final long emptyValue;
+    private final long minValue;
+    private final long maxValue;
+    private final GHLongLongBTree fallback;
+    private DataAccess da;
+    // the allocated block for every range of keys, plus one, so 0 means there is no block yet
+    private int[] blockIndex = new int[0];
+    private int blocks;
+    private long size;
+
+    /**
+     * @param name the name of the {@link DataAccess} that is created in the given directory
+     */
+    public GHLongLongBlockMap(Directory dir, String name, DAType type, long emptyValue) {
+        this.dir = dir;
+        this.name = name;
+        this.type = type;
+        this.emptyValue = emptyValue;
+        // we store the difference to the empty value, so an unused entry (zero) means the value is empty
+        this.minValue = emptyValue - (1L << 39);
+        this.maxValue = emptyValue + (1L << 39) - 1;
+        fallback = new GHLongLongBTree(200, 5, emptyValue);
+    }
+
+    @Override
+    public long put(long key, long value) {
+        if (value > maxValue || value < minValue)
+            throw new IllegalArgumentException("Value " + value + " is out of range: [" + minValue + ", " + maxValue + "]");
+        if (value == emptyValue)
+            throw new IllegalArgumentException("Value cannot be the 'empty value' " + emptyValue);
+        if (key < 0 || (key >>> BLOCK_BITS) >= MAX_BLOCKS)
+            return fallback.put(key, value);
+
+        long pointer = getOrAllocateBlock((int) (key >>> BLOCK_BITS));
+        int index = (int) (key & KEY_MASK);
+        long prev = getStored(pointer, index);
+        setStored(pointer, index, value - emptyValue);
+        if (prev == 0) {
+            size++;
+            return emptyValue;
+        }
+        return prev + emptyValue;
+    }
+
+    @Override
+    public long get(long key) {
+        if (key < 0 || (key >>> BLOCK_BITS) >= MAX_BLOCKS)
+            return fallback.get(key);
+        int block = (int) (key >>> BLOCK_BITS);
+        if (block >= blockIndex.length || blockIndex[block] == 0)
+            return emptyValue;
+        return getStored(toPointer(blockIndex[block] - 1), (int) (key & KEY_MASK)) + emptyValue;
+    }
+
+    private long getOrAllocateBlock(int block) {
+        if (block >= blockIndex.length)
+            blockIndex = Arrays.copyOf(blockIndex, Math.max(block + 1, Math.min((int) MAX_BLOCKS, blockIndex.length * 2)));
+        if (blockIndex[block] == 0) {
+            if (da == null)
+                da = dir.create(name, type, SEGMENT_SIZE).create(BLOCK_BYTES);
+            long pointer = toPointer(blocks);
+            da.ensureCapacity(pointer + BLOCK_BYTES);
+            // the storage might not be initialized with zeros, e.g. when a file from a previous import is re-used
+            for (long i = 0; i < BLOCK_BYTES; i += ZEROS.length)
+                da.setBytes(pointer + i, ZEROS, ZEROS.length);
+            blocks++;
+            blockIndex[block] = blocks;
+        }
+        return toPointer(blockIndex[block] - 1);
+    }
+
+    private static long toPointer(int block) {
+        return block * BLOCK_BYTES;
+    }
+
+    private long getStored(long pointer, int index) {
+        int low = da.getInt(pointer + 4L * index);
+        byte high = da.getByte(pointer + HIGH_BYTES_OFFSET + index);
+        return ((long) high << 32) | (low & 0xFFFF_FFFFL);
+    }
+
+    private void setStored(long pointer, int index, long stored) {
+        da.setInt(pointer + 4L * index, (int) stored);
+        da.setByte(pointer + HIGH_BYTES_OFFSET + index, (byte) (stored >> 32));
+    }
+
+    @Override
+    public long getSize() {
+        return size + fallback.getSize();
+    }
+
+    @Override
+    public long getMaxValue() {
+        return maxValue;
+    }
+
+    @Override
+    public void optimize() {
+        fallback.optimize();
+    }
+
+    /**
+     * @return the heap memory usage in MB, the blocks stored in the {@link DataAccess} are not included
+     */
+    @Override
+    public int getMemoryUsage() {
+        return (int) Math.round(4d * blockIndex.length / Helper.MB) + fallback.getMemoryUsage();
+    }
+
+    /**
+     * Removes all entries and the underlying {@link DataAccess} including its files.
+     */
+    @Override
+    public void clear() {
+        if (da != null)
+            dir.remove(name);
+        da = null;
+        blockIndex = new int[0];
+        blocks = 0;
+        size = 0;
+        fallback.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "blocks: " + blocks + ", size: " + getSize() + ", block storage: " + (blocks * BLOCK_BYTES / Helper.MB) + "MB";
+    }
+}
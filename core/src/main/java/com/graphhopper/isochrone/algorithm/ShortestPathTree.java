@@ -17,11 +17,10 @@
  */
 package com.graphhopper.isochrone.algorithm;
 
-import com.carrotsearch.hppc.IntObjectHashMap;
-import com.carrotsearch.hppc.cursors.ObjectCursor;
-import com.graphhopper.coll.GHIntObjectHashMap;
+import com.carrotsearch.hppc.IntArrayList;
 import com.graphhopper.routing.AbstractRoutingAlgorithm;
 import com.graphhopper.routing.Path;
+import com.graphhopper.routing.SearchState;
 import com.graphhopper.routing.util.TraversalMode;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.Graph;
@@ -29,23 +28,23 @@ import com.graphhopper.util.EdgeIterator;
 import com.graphhopper.util.GHUtility;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.PriorityQueue;
 import java.util.function.Consumer;
 
 import static com.graphhopper.isochrone.algorithm.ShortestPathTree.ExploreType.*;
-import static java.util.Comparator.comparingDouble;
-import static java.util.Comparator.comparingLong;
+import static com.graphhopper.routing.SearchState.NO_SLOT;
+import static com.graphhopper.routing.SearchState.NO_TRAVERSAL_ID;
 
 /**
  * Computes a shortest path tree by a given weighting. Terminates when all shortest paths up to
  * a given travel time, distance, or weight have been explored.
  * <p>
  * IMPLEMENTATION NOTE:
- * util.PriorityQueue doesn't support efficient removes. We work around this by giving the labels
- * a deleted flag, not remove()ing them, and popping deleted elements off both queues.
- * Note to self/others: If you think this optimization is not needed, please test it with a scenario
- * where updates actually occur a lot, such as using finite, non-zero u-turn costs.
+ * The tree and the queue are stored in a {@link SearchState}, which updates the entries of the queue in place, and the
+ * time and distance of every slot are kept in two additional arrays. To know when we are finished we count the
+ * entries of the queue that are still below the limit. The {@link IsoLabel}s are only created for the entries that
+ * are passed to the consumer or returned by {@link #getIsochroneEdges(double)}.
  *
  * @author Peter Karich
  * @author Michael Zilske
@@ -65,7 +64,6 @@ public class ShortestPathTree extends AbstractRoutingAlgorithm {
             this.parent = parent;
         }
 
-        public boolean deleted = false;
         public int node;
         public int edge;
         public double weight;
@@ -85,9 +83,13 @@ public class ShortestPathTree extends AbstractRoutingAlgorithm {
         }
     }
 
-    private final IntObjectHashMap<IsoLabel> fromMap;
-    private final PriorityQueue<IsoLabel> queueByWeighting; // a.k.a. the Dijkstra queue
-    private PriorityQueue<IsoLabel> queueByZ; // so we know when we are finished
+    private final SearchState state;
+    // per slot of the search state
+    private long[] times = new long[1000];
+    private double[] distances = new double[1000];
+    private IsoLabel[] labels = new IsoLabel[1000];
+    // the number of entries in the queue whose explore value is below the limit
+    private int openBelowLimit;
     private int visitedNodes;
     private double limit = -1;
     private ExploreType exploreType = TIME;
@@ -95,9 +97,7 @@ public class ShortestPathTree extends AbstractRoutingAlgorithm {
 
     public ShortestPathTree(Graph g, Weighting weighting, boolean reverseFlow, TraversalMode traversalMode) {
         super(g, weighting, traversalMode);
-        queueByWeighting = new PriorityQueue<>(1000, comparingDouble(l -> l.weight));
-        queueByZ = new PriorityQueue<>(1000);
-        fromMap = new GHIntObjectHashMap<>(1000);
+        state = new SearchState(1000);
         this.reverseFlow = reverseFlow;
     }
 
@@ -112,7 +112,6 @@ public class ShortestPathTree extends AbstractRoutingAlgorithm {
     public void setTimeLimit(double limit) {
         exploreType = TIME;
         this.limit = limit;
-        this.queueByZ = new PriorityQueue<>(1000, comparingLong(l -> l.time));
     }
 
     /**
@@ -121,59 +120,53 @@ public class ShortestPathTree extends AbstractRoutingAlgorithm {
     public void setDistanceLimit(double limit) {
         exploreType = DISTANCE;
         this.limit = limit;
-        this.queueByZ = new PriorityQueue<>(1000, comparingDouble(l -> l.distance));
     }
 
     public void setWeightLimit(double limit) {
         exploreType = WEIGHT;
         this.limit = limit;
-        this.queueByZ = new PriorityQueue<>(1000, comparingDouble(l -> l.weight));
     }
 
     public void search(int from, final Consumer<IsoLabel> consumer) {
         checkAlreadyRun();
-        IsoLabel currentLabel = new IsoLabel(from, -1, 0, 0, 0, null);
-        queueByWeighting.add(currentLabel);
-        queueByZ.add(currentLabel);
-        if (traversalMode == TraversalMode.NODE_BASED) {
-            fromMap.put(from, currentLabel);
-        }
+        int rootSlot = state.add(traversalMode == TraversalMode.NODE_BASED ? from : NO_TRAVERSAL_ID, EdgeIterator.NO_EDGE, from, NO_SLOT, 0, 0);
+        setTimeAndDistance(rootSlot, 0, 0);
+        countOpen(rootSlot, 1);
         while (!finished()) {
-            currentLabel = queueByWeighting.poll();
-            if (currentLabel.deleted)
-                continue;
-            if (getExploreValue(currentLabel) <= limit) {
-                consumer.accept(currentLabel);
+            int currentSlot = state.poll();
+            countOpen(currentSlot, -1);
+            if (getExploreValue(currentSlot) <= limit) {
+                consumer.accept(getLabel(currentSlot));
             }
-            currentLabel.deleted = true;
             visitedNodes++;
 
-            EdgeIterator iter = edgeExplorer.setBaseNode(currentLabel.node);
+            final int currentEdge = state.getEdge(currentSlot);
+            final double currentWeight = state.getWeight(currentSlot);
+            EdgeIterator iter = edgeExplorer.setBaseNode(state.getAdjNode(currentSlot));
             while (iter.next()) {
-                if (!accept(iter, currentLabel.edge)) {
+                if (!accept(iter, currentEdge)) {
                     continue;
                 }
 
-                double nextWeight = GHUtility.calcWeightWithTurnWeight(weighting, iter, reverseFlow, currentLabel.edge) + currentLabel.weight;
+                double nextWeight = GHUtility.calcWeightWithTurnWeight(weighting, iter, reverseFlow, currentEdge) + currentWeight;
                 if (Double.isInfinite(nextWeight))
                     continue;
 
-                double nextDistance = iter.getDistance() + currentLabel.distance;
-                long nextTime = GHUtility.calcMillisWithTurnMillis(weighting, iter, reverseFlow, currentLabel.edge) + currentLabel.time;
+                double nextDistance = iter.getDistance() + distances[currentSlot];
+                long nextTime = GHUtility.calcMillisWithTurnMillis(weighting, iter, reverseFlow, currentEdge) + times[currentSlot];
                 int nextTraversalId = traversalMode.createTraversalId(iter, reverseFlow);
-                IsoLabel nextLabel = fromMap.get(nextTraversalId);
-                if (nextLabel == null) {
-                    nextLabel = new IsoLabel(iter.getAdjNode(), iter.getEdge(), nextWeight, nextTime, nextDistance, currentLabel);
-                    fromMap.put(nextTraversalId, nextLabel);
-                    queueByWeighting.add(nextLabel);
-                    queueByZ.add(nextLabel);
-                } else if (nextLabel.weight > nextWeight) {
-                    nextLabel.deleted = true;
-                    nextLabel = new IsoLabel(iter.getAdjNode(), iter.getEdge(), nextWeight, nextTime, nextDistance, currentLabel);
-                    fromMap.put(nextTraversalId, nextLabel);
-                    queueByWeighting.add(nextLabel);
-                    queueByZ.add(nextLabel);
+                int nextSlot = state.getSlot(nextTraversalId);
+                if (nextSlot == NO_SLOT) {
+                    nextSlot = state.add(nextTraversalId, iter.getEdge(), iter.getAdjNode(), currentSlot, nextWeight, nextWeight);
+                } else if (state.getWeight(nextSlot) > nextWeight) {
+                    if (!state.isSettled(nextSlot))
+                        countOpen(nextSlot, -1);
+                    nextSlot = state.update(nextTraversalId, nextSlot, iter.getEdge(), currentSlot, nextWeight, nextWeight);
+                } else {
+                    continue;
                 }
+                setTimeAndDistance(nextSlot, nextTime, nextDistance);
+                countOpen(nextSlot, 1);
             }
         }
     }
@@ -185,29 +178,61 @@ public class ShortestPathTree extends AbstractRoutingAlgorithm {
 
     public ArrayList<IsoLabel> getIsochroneEdges(double z) {
         ArrayList<IsoLabel> result = new ArrayList<>();
-        for (ObjectCursor<IsoLabel> cursor : fromMap.values()) {
-            if (cursor.value.parent != null &&
-                    (getExploreValue(cursor.value) > z ^ getExploreValue(cursor.value.parent) > z)) {
-                result.add(cursor.value);
+        state.forEach((traversalId, slot) -> {
+            int parent = state.getParent(slot);
+            if (parent != NO_SLOT && (getExploreValue(slot) > z ^ getExploreValue(parent) > z)) {
+                result.add(getLabel(slot));
             }
-        }
+            return true;
+        });
         return result;
     }
 
-    private double getExploreValue(IsoLabel label) {
+    private void setTimeAndDistance(int slot, long time, double distance) {
+        if (slot >= times.length) {
+            int capacity = Math.max(slot + 1, times.length * 2);
+            times = Arrays.copyOf(times, capacity);
+            distances = Arrays.copyOf(distances, capacity);
+            labels = Arrays.copyOf(labels, capacity);
+        }
+        times[slot] = time;
+        distances[slot] = distance;
+    }
+
+    private void countOpen(int slot, int delta) {
+        if (getExploreValue(slot) < limit)
+            openBelowLimit += delta;
+    }
+
+    /**
+     * The labels are created once a slot is settled or the search is done, so they do not change afterwards
+     */
+    private IsoLabel getLabel(int slot) {
+        if (labels[slot] != null)
+            return labels[slot];
+        // the labels of the parents are created first, we do not use recursion here because the tree can be deep
+        IntArrayList missing = new IntArrayList();
+        for (int s = slot; s != NO_SLOT && labels[s] == null; s = state.getParent(s))
+            missing.add(s);
+        for (int i = missing.size() - 1; i >= 0; i--) {
+            int s = missing.get(i);
+            int parent = state.getParent(s);
+            labels[s] = new IsoLabel(state.getAdjNode(s), state.getEdge(s), state.getWeight(s), times[s], distances[s],
+                    parent == NO_SLOT ? null : labels[parent]);
+        }
+        return labels[slot];
+    }
+
+    private double getExploreValue(int slot) {
         if (exploreType == TIME)
-            return label.time;
+            return times[slot];
         if (exploreType == WEIGHT)
-            return label.weight;
-        return label.distance;
+            return state.getWeight(slot);
+        return distances[slot];
     }
 
     protected boolean finished() {
-        while (queueByZ.peek() != null && queueByZ.peek().deleted)
-            queueByZ.poll();
-        if (queueByZ.peek() == null)
-            return true;
-        return getExploreValue(queueByZ.peek()) >= limit;
+        return openBelowLimit == 0;
     }
 
     @Override
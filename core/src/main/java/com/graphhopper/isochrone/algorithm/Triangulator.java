@@ -21,7 +21,9 @@ package com.graphhopper.isochrone.algorithm;
 import com.graphhopper.routing.querygraph.QueryGraph;
 import com.graphhopper.storage.index.Snap;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.function.ToDoubleFunction;
 
 public interface Triangulator {
@@ -38,6 +40,16 @@ public interface Triangulator {
 
     }
 
-    Result triangulate(Snap snap, QueryGraph queryGraph, ShortestPathTree shortestPathTree, ToDoubleFunction<ShortestPathTree.IsoLabel> fz, double tolerance);
+    default Result triangulate(Snap snap, QueryGraph queryGraph, ShortestPathTree shortestPathTree, ToDoubleFunction<ShortestPathTree.IsoLabel> fz, double tolerance) {
+        List<ShortestPathTree.IsoLabel> labels = new ArrayList<>();
+        shortestPathTree.search(snap.getClosestNode(), labels::add);
+        return triangulate(queryGraph, labels, fz, tolerance);
+    }
+
+    /**
+     * Like {@link #triangulate(Snap, QueryGraph, ShortestPathTree, ToDoubleFunction, double)}, but for the labels of a
+     * shortest path tree that was searched already
+     */
+    Result triangulate(QueryGraph queryGraph, Collection<ShortestPathTree.IsoLabel> labels, ToDoubleFunction<ShortestPathTree.IsoLabel> fz, double tolerance);
 
 }
@@ -17,7 +17,6 @@
  */
 package com.graphhopper.reader.dem;
 
-import com.graphhopper.coll.GHIntObjectHashMap;
 import com.graphhopper.storage.DataAccess;
 import com.graphhopper.util.Downloader;
 import com.graphhopper.util.Helper;
@@ -39,7 +38,7 @@ public abstract class AbstractSRTMElevationProvider extends TileBasedElevationPr
     private final int WIDTH_BYTE_INDEX = 0;
     private final int DEGREE = 1;
     // use a map as an array is not quite useful if we want to hold only parts of the world
-    private final GHIntObjectHashMap<HeightTile> cacheData = new GHIntObjectHashMap<>();
+    private final TileCache<Integer> cacheData = new TileCache<>();
     private final double precision = 1e7;
     private final double invPrecision = 1 / precision;
 
@@ -61,13 +60,7 @@ public abstract class AbstractSRTMElevationProvider extends TileBasedElevationPr
     @Override
     public void release() {
         cacheData.clear();
-        if (dir != null) {
-            // for memory mapped type we remove temporary files
-            if (autoRemoveTemporary)
-                dir.clear();
-            else
-                dir.close();
-        }
+        releaseDirectory();
     }
 
     int down(double val) {
@@ -112,14 +105,21 @@ public abstract class AbstractSRTMElevationProvider extends TileBasedElevationPr
                     updateHeightsFromFile(lat, lon, heights);
                 } catch (FileNotFoundException ex) {
                     demProvider = new HeightTile(minLat, minLon, DEFAULT_WIDTH, DEFAULT_WIDTH, precision, DEGREE, DEGREE);
-                    cacheData.put(intKey, demProvider);
                     demProvider.setHeights(heights);
-                    demProvider.setSeaLevel(true);
                     // use small size on disc and in-memory
-                    heights.create(10)
-                            .flush();
+                    heights.create(10);
+                    demProvider.setSeaLevel(true);
+                    heights.flush();
+                    cacheData.put(intKey, demProvider);
                     return 0;
                 }
+            } else if (HeightTile.isSeaLevel(heights)) {
+                // a sea level tile that was closed to limit the cache size. Its header does not contain the width,
+                // the same header index holds the sea level flag instead.
+                demProvider = new HeightTile(minLat, minLon, DEFAULT_WIDTH, DEFAULT_WIDTH, precision, DEGREE, DEGREE);
+                demProvider.setHeights(heights);
+                cacheData.put(intKey, demProvider);
+                return 0;
             }
 
             int width = (int) (Math.sqrt(heights.getHeader(WIDTH_BYTE_INDEX)) + 0.5);
@@ -127,9 +127,9 @@ public abstract class AbstractSRTMElevationProvider extends TileBasedElevationPr
                 width = DEFAULT_WIDTH;
 
             demProvider = new HeightTile(minLat, minLon, width, width, precision, DEGREE, DEGREE);
-            cacheData.put(intKey, demProvider);
             demProvider.setInterpolate(interpolate);
             demProvider.setHeights(heights);
+            cacheData.put(intKey, demProvider);
         }
 
         if (demProvider.isSeaLevel())
@@ -25,8 +25,6 @@ import java.awt.image.Raster;
 import java.io.File;
 import java.io.IOException;
 import java.net.SocketTimeoutException;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * Provides basic methods that are usually used in an ElevationProvider that reads tiff files.
@@ -34,7 +32,7 @@ import java.util.Map;
  * @author Robin Boldt
  */
 public abstract class AbstractTiffElevationProvider extends TileBasedElevationProvider {
-    private final Map<String, HeightTile> cacheData = new HashMap<>();
+    private final TileCache<String> cacheData = new TileCache<>();
     final double precision = 1e7;
 
     private final int WIDTH;
@@ -58,13 +56,7 @@ public abstract class AbstractTiffElevationProvider extends TileBasedElevationPr
     @Override
     public void release() {
         cacheData.clear();
-        if (dir != null) {
-            // for memory mapped type we remove temporary files
-            if (autoRemoveTemporary)
-                dir.clear();
-            else
-                dir.close();
-        }
+        releaseDirectory();
     }
 
     /**
@@ -117,7 +109,6 @@ public abstract class AbstractTiffElevationProvider extends TileBasedElevationPr
             demProvider = new HeightTile(minLat, minLon, WIDTH, HEIGHT, LON_DEGREE * precision, LON_DEGREE, LAT_DEGREE);
             demProvider.setInterpolate(interpolate);
 
-            cacheData.put(name, demProvider);
             DataAccess heights = getDirectory().create(name + ".gh");
             demProvider.setHeights(heights);
             boolean loadExisting = false;
@@ -136,9 +127,11 @@ public abstract class AbstractTiffElevationProvider extends TileBasedElevationPr
                     } catch (SSLException ex) {
                         throw new IllegalStateException("SSL problem with elevation provider " + getClass().getSimpleName(), ex);
                     } catch (IOException ex) {
-                        demProvider.setSeaLevel(true);
                         // use small size on disc and in-memory
-                        heights.create(10).flush();
+                        heights.create(10);
+                        demProvider.setSeaLevel(true);
+                        heights.flush();
+                        cacheData.put(name, demProvider);
                         return 0;
                     }
 
@@ -149,6 +142,7 @@ public abstract class AbstractTiffElevationProvider extends TileBasedElevationPr
                 fillDataAccessWithElevationData(raster, heights, WIDTH);
 
             } // loadExisting
+            cacheData.put(name, demProvider);
         }
 
         if (demProvider.isSeaLevel())
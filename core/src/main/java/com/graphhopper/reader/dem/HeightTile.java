@@ -32,6 +32,8 @@ import java.io.IOException;
  * @author Peter Karich
  */
 public class HeightTile {
+    // tiles without elevation data are marked in the header of their heights
+    private static final int SEA_LEVEL_HEADER_INDEX = 0;
     private final int minLat;
     private final int minLon;
     private final int width;
@@ -66,18 +68,31 @@ public class HeightTile {
     }
 
     public boolean isSeaLevel() {
-        return heights.getHeader(0) == 1;
+        return isSeaLevel(heights);
     }
 
+    /**
+     * Marks this tile as a tile without elevation data. The flag is stored in the header of the heights, so it is
+     * restored when the tile is loaded again, e.g. after it was closed to limit the cache size. The heights must be
+     * flushed afterwards.
+     */
     public HeightTile setSeaLevel(boolean b) {
-        heights.setHeader(0, b ? 1 : 0);
+        heights.setHeader(SEA_LEVEL_HEADER_INDEX, b ? 1 : 0);
         return this;
     }
 
+    static boolean isSeaLevel(DataAccess heights) {
+        return heights.getHeader(SEA_LEVEL_HEADER_INDEX) == 1;
+    }
+
     void setHeights(DataAccess da) {
         this.heights = da;
     }
 
+    DataAccess getHeights() {
+        return heights;
+    }
+
     private short getHeightSample(int x, int y) {
         // always keep in mind factor 2 because of short value
         return heights.getShort(2L * ((long) y * width + x));
@@ -84,6 +84,16 @@ public class MultiSourceElevationProvider extends TileBasedElevationProvider {
         return this;
     }
 
+    /**
+     * The cache size is used for each of the two providers
+     */
+    @Override
+    public MultiSourceElevationProvider setCacheSize(long cacheSize) {
+        srtmProvider.setCacheSize(cacheSize);
+        globalProvider.setCacheSize(cacheSize);
+        return this;
+    }
+
     @Override
     public boolean canInterpolate() {
         return srtmProvider.canInterpolate() && globalProvider.canInterpolate();
@@ -18,6 +18,7 @@
 package com.graphhopper.reader.dem;
 
 import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.DataAccess;
 import com.graphhopper.storage.Directory;
 import com.graphhopper.storage.GHDirectory;
 import com.graphhopper.util.Downloader;
@@ -26,6 +27,10 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Set;
 
 /**
  * Provides basic methods that are usually used in an ElevationProvider using tiles from files.
@@ -42,6 +47,9 @@ public abstract class TileBasedElevationProvider implements ElevationProvider {
     boolean interpolate = false;
     boolean autoRemoveTemporary = true;
     long sleep = 2000;
+    long cacheSize = Long.MAX_VALUE;
+    // the names of the tiles that were closed to limit the cache size, their files are still in the cache directory
+    private final Set<String> evictedTiles = new HashSet<>();
 
     protected TileBasedElevationProvider(String cacheDirString) {
         File cacheDir = new File(cacheDirString);
@@ -103,6 +111,19 @@ public abstract class TileBasedElevationProvider implements ElevationProvider {
         return this;
     }
 
+    /**
+     * Limits the size of the tiles [bytes] that are kept open at the same time. If a new tile would exceed this size
+     * the least recently used tiles are closed. Their files stay in the cache directory, so they are loaded again
+     * quickly when they are needed again. For the default DAType.MMAP this limits the number of mapped files, for the
+     * RAM types it limits the memory usage. Default is unlimited.
+     */
+    public TileBasedElevationProvider setCacheSize(long cacheSize) {
+        if (cacheSize <= 0)
+            throw new IllegalArgumentException("cache size must be positive but was " + cacheSize);
+        this.cacheSize = cacheSize;
+        return this;
+    }
+
     public TileBasedElevationProvider setDownloader(Downloader downloader) {
         this.downloader = downloader;
         return this;
@@ -121,4 +142,59 @@ public abstract class TileBasedElevationProvider implements ElevationProvider {
         return dir = new GHDirectory(cacheDir.getAbsolutePath(), daType);
     }
 
+    /**
+     * Closes the directory of the tiles, and removes their files unless disabled via
+     * {@link #setAutoRemoveTemporaryFiles}.
+     */
+    void releaseDirectory() {
+        if (dir != null) {
+            // for memory mapped type we remove temporary files
+            if (autoRemoveTemporary) {
+                // the files of the evicted tiles are no longer part of the directory, so we add them again
+                for (String name : evictedTiles)
+                    dir.create(name);
+                dir.clear();
+            } else {
+                dir.close();
+            }
+        }
+        evictedTiles.clear();
+    }
+
+    /**
+     * The loaded tiles of a provider in least recently used order. See {@link #setCacheSize}.
+     */
+    class TileCache<K> {
+        private final LinkedHashMap<K, HeightTile> tiles = new LinkedHashMap<>(16, 0.75f, true);
+        private long bytes;
+
+        HeightTile get(K key) {
+            return tiles.get(key);
+        }
+
+        /**
+         * Adds the given tile, whose heights must be filled already, and closes the least recently used tiles if
+         * the cache size is exceeded. The new tile itself is never closed.
+         */
+        void put(K key, HeightTile tile) {
+            if (tiles.put(key, tile) != null)
+                throw new IllegalStateException("Tile " + key + " was loaded twice");
+            evictedTiles.remove(tile.getHeights().getName());
+            bytes += tile.getHeights().getCapacity();
+            Iterator<HeightTile> iter = tiles.values().iterator();
+            while (bytes > cacheSize && tiles.size() > 1) {
+                DataAccess heights = iter.next().getHeights();
+                iter.remove();
+                bytes -= heights.getCapacity();
+                dir.close(heights.getName());
+                evictedTiles.add(heights.getName());
+            }
+        }
+
+        void clear() {
+            tiles.clear();
+            bytes = 0;
+        }
+    }
+
 }
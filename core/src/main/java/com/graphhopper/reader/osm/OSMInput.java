@@ -20,9 +20,20 @@ package com.graphhopper.reader.osm;
 import com.graphhopper.reader.ReaderElement;
 
 import javax.xml.stream.XMLStreamException;
+import java.util.Collections;
+import java.util.List;
 
 public interface OSMInput extends AutoCloseable {
     ReaderElement getNext() throws XMLStreamException;
 
+    /**
+     * @return the next elements in the order they appear in the file, or null if there are no more elements. The
+     * returned list is never empty.
+     */
+    default List<ReaderElement> getNextBatch() throws XMLStreamException {
+        ReaderElement item = getNext();
+        return item == null ? null : Collections.singletonList(item);
+    }
+
     int getUnprocessedElements();
 }
@@ -27,11 +27,13 @@ import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 import java.io.*;
 import java.lang.reflect.Constructor;
-import java.util.ArrayDeque;
-import java.util.Queue;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.ZipInputStream;
 
@@ -43,25 +45,30 @@ import java.util.zip.ZipInputStream;
  */
 public class OSMInputFile implements Sink, OSMInput {
     private static final int MAX_BATCH_SIZE = 1_000;
+    // a pbf blob contains up to 8000 elements, so this limits the queue to roughly the same amount of elements as before
+    private static final int MAX_QUEUED_BATCHES = 8;
     private final InputStream bis;
-    private final BlockingQueue<ReaderElement> itemQueue;
-    private final Queue<ReaderElement> itemBatch;
+    // the pbf reader puts the elements of each decoded blob into this queue
+    private final BlockingQueue<List<ReaderElement>> itemQueue;
+    private final AtomicInteger queuedItems = new AtomicInteger();
+    private List<ReaderElement> itemBatch = Collections.emptyList();
+    private int itemBatchIndex;
     private boolean eof;
+    private boolean xmlEnd;
     // for xml parsing
     private XMLStreamReader xmlParser;
     // for pbf parsing
     private boolean binary = false;
     private PbfReader pbfReader;
     private Thread pbfReaderThread;
-    private boolean hasIncomingData;
+    private volatile boolean hasIncomingData;
     private int workerThreads = -1;
     private SkipOptions skipOptions = SkipOptions.none();
     private OSMFileHeader fileheader;
 
     public OSMInputFile(File file) throws IOException {
         bis = decode(file);
-        itemQueue = new LinkedBlockingQueue<>(50_000);
-        itemBatch = new ArrayDeque<>(MAX_BATCH_SIZE);
+        itemQueue = new LinkedBlockingQueue<>(MAX_QUEUED_BATCHES);
     }
 
     public OSMInputFile open() throws XMLStreamException {
@@ -190,6 +197,32 @@ public class OSMInputFile implements Sink, OSMInput {
         return null;
     }
 
+    @Override
+    public List<ReaderElement> getNextBatch() throws XMLStreamException {
+        if (eof)
+            throw new IllegalStateException("EOF reached");
+
+        List<ReaderElement> batch;
+        if (binary) {
+            batch = getNextPBFBatch();
+        } else {
+            batch = new ArrayList<>(MAX_BATCH_SIZE);
+            ReaderElement item;
+            while (!xmlEnd && batch.size() < MAX_BATCH_SIZE) {
+                if ((item = getNextXML()) == null)
+                    xmlEnd = true;
+                else
+                    batch.add(item);
+            }
+        }
+
+        if (batch != null && !batch.isEmpty())
+            return batch;
+
+        eof = true;
+        return null;
+    }
+
     private ReaderElement getNextXML() throws XMLStreamException {
 
         int event = xmlParser.next();
@@ -264,16 +297,24 @@ public class OSMInputFile implements Sink, OSMInput {
 
     @Override
     public void process(ReaderElement item) {
+        process(Collections.singletonList(item));
+    }
+
+    @Override
+    public void process(List<ReaderElement> items) {
+        if (items.isEmpty())
+            return;
         try {
+            queuedItems.addAndGet(items.size());
             // blocks if full
-            itemQueue.put(item);
+            itemQueue.put(items);
         } catch (InterruptedException ex) {
             throw new RuntimeException(ex);
         }
     }
 
     public int getUnprocessedElements() {
-        return itemQueue.size() + itemBatch.size();
+        return queuedItems.get() + itemBatch.size() - itemBatchIndex;
     }
 
     @Override
@@ -282,24 +323,40 @@ public class OSMInputFile implements Sink, OSMInput {
     }
 
     private ReaderElement getNextPBF() {
-        while (itemBatch.isEmpty()) {
+        if (itemBatchIndex == itemBatch.size()) {
+            List<ReaderElement> batch = getNextPBFBatch();
+            if (batch == null)
+                return null; // signal EOF
+            itemBatch = batch;
+            itemBatchIndex = 0;
+        }
+        return itemBatch.get(itemBatchIndex++);
+    }
+
+    private List<ReaderElement> getNextPBFBatch() {
+        if (itemBatchIndex < itemBatch.size()) {
+            // return what is left from the batch that was started using getNext
+            List<ReaderElement> rest = itemBatch.subList(itemBatchIndex, itemBatch.size());
+            itemBatch = Collections.emptyList();
+            itemBatchIndex = 0;
+            return rest;
+        }
+
+        while (true) {
             if (!hasIncomingData && itemQueue.isEmpty()) {
                 return null; // signal EOF
             }
 
-            if (itemQueue.drainTo(itemBatch, MAX_BATCH_SIZE) == 0) {
-                try {
-                    ReaderElement element = itemQueue.poll(100, TimeUnit.MILLISECONDS);
-                    if (element != null) {
-                        return element; // short circuit
-                    }
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    return null; // signal EOF
+            try {
+                List<ReaderElement> batch = itemQueue.poll(100, TimeUnit.MILLISECONDS);
+                if (batch != null) {
+                    queuedItems.addAndGet(-batch.size());
+                    return batch;
                 }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null; // signal EOF
             }
         }
-
-        return itemBatch.poll();
     }
 }
@@ -21,9 +21,11 @@ package com.graphhopper.reader.osm;
 import com.carrotsearch.hppc.LongScatterSet;
 import com.carrotsearch.hppc.LongSet;
 import com.graphhopper.coll.GHLongLongBTree;
+import com.graphhopper.coll.GHLongLongBlockMap;
 import com.graphhopper.coll.LongLongMap;
 import com.graphhopper.reader.ReaderNode;
 import com.graphhopper.search.KVStorage;
+import com.graphhopper.storage.DAType;
 import com.graphhopper.storage.Directory;
 import com.graphhopper.util.PointAccess;
 import com.graphhopper.util.PointList;
@@ -80,13 +82,27 @@ class OSMNodeData {
     private long nextArtificialOSMNodeId = -Long.MAX_VALUE;
 
     public OSMNodeData(PointAccess nodeAccess, Directory directory) {
-        // We use a b-tree that can store as many entries as there are longs. A tree is also more
-        // memory efficient, because there is no waste for empty entries, and it also avoids
-        // allocating big arrays when growing the size.
-        idsByOsmNodeIds = new GHLongLongBTree(200, 5, EMPTY_NODE);
+        this(nodeAccess, directory, null);
+    }
+
+    /**
+     * @param nodeIdMapType the type of the {@link GHLongLongBlockMap} used to store the ids of the OSM nodes, or null
+     *                      to store them in an on-heap b-tree
+     */
+    public OSMNodeData(PointAccess nodeAccess, Directory directory, DAType nodeIdMapType) {
+        if (nodeIdMapType == null)
+            // We use a b-tree that can store as many entries as there are longs. A tree is also more
+            // memory efficient, because there is no waste for empty entries, and it also avoids
+            // allocating big arrays when growing the size.
+            idsByOsmNodeIds = new GHLongLongBTree(200, 5, EMPTY_NODE);
+        else
+            // The node ids of bigger OSM files are dense enough to store them in blocks of consecutive ids. Using
+            // MMAP the mapping does not need any heap memory.
+            idsByOsmNodeIds = new GHLongLongBlockMap(directory, "tmp_osm_node_ids", nodeIdMapType, EMPTY_NODE);
         towerNodes = nodeAccess;
         pillarNodes = new PillarInfo(towerNodes.is3D(), directory);
 
+        // only few nodes have tags, so we always use a b-tree here
         nodeTagIndicesByOsmNodeIds = new GHLongLongBTree(200, 4, -1);
         nodesToBeSplit = new LongScatterSet();
         nodeKVStorage = new KVStorage(directory, false).create(100);
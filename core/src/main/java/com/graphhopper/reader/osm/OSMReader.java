@@ -41,6 +41,7 @@ import com.graphhopper.routing.util.countryrules.CountryRuleFactory;
 import com.graphhopper.routing.util.parsers.RestrictionSetter;
 import com.graphhopper.search.KVStorage;
 import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.DAType;
 import com.graphhopper.storage.IntsRef;
 import com.graphhopper.storage.NodeAccess;
 import com.graphhopper.storage.TurnCostStorage;
@@ -162,7 +163,8 @@ public class OSMReader {
         if (!baseGraph.isInitialized())
             throw new IllegalStateException("BaseGraph must be initialize before we can read OSM");
 
-        WaySegmentParser waySegmentParser = new WaySegmentParser.Builder(baseGraph.getNodeAccess(), baseGraph.getDirectory())
+        DAType nodeIdMapType = "btree".equalsIgnoreCase(config.getNodeIdMap()) ? null : DAType.fromString(config.getNodeIdMap());
+        WaySegmentParser waySegmentParser = new WaySegmentParser.Builder(baseGraph.getNodeAccess(), baseGraph.getDirectory(), nodeIdMapType)
                 .setElevationProvider(this::getElevation)
                 .setWayFilter(this::acceptWay)
                 .setSplitNodeFilter(this::isBarrierNode)
@@ -198,6 +200,11 @@ public class OSMReader {
     /**
      * This method is called for each way during the first and second pass of the {@link WaySegmentParser}. All OSM
      * ways that are not accepted here and all nodes that are not referenced by any such way will be ignored.
+     * <p>
+     * With more than one worker thread (see {@link OSMReaderConfig#setWorkerThreads}) this is called concurrently for the
+     * ways of a PBF blob, before any of these ways is processed and from threads other than the one that adds the
+     * edges. Overriding methods must therefore be thread-safe, must not modify the way and must not rely on state that
+     * is updated while the ways are processed, e.g. in {@link #preprocessWay} or {@link #addEdge}.
      */
     protected boolean acceptWay(ReaderWay way) {
         // ignore broken geometry
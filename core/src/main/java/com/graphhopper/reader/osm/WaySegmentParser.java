@@ -18,11 +18,13 @@
 
 package com.graphhopper.reader.osm;
 
+import com.carrotsearch.hppc.LongDoubleHashMap;
 import com.carrotsearch.hppc.cursors.LongCursor;
 import com.graphhopper.reader.ReaderElement;
 import com.graphhopper.reader.ReaderNode;
 import com.graphhopper.reader.ReaderRelation;
 import com.graphhopper.reader.ReaderWay;
+import com.graphhopper.storage.DAType;
 import com.graphhopper.storage.Directory;
 import com.graphhopper.util.Helper;
 import com.graphhopper.util.PointAccess;
@@ -37,7 +39,9 @@ import java.io.File;
 import java.io.IOException;
 import java.text.ParseException;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.*;
+import java.util.stream.IntStream;
 
 import static com.graphhopper.reader.osm.OSMNodeData.*;
 import static com.graphhopper.util.Helper.nf;
@@ -61,6 +65,7 @@ import static com.graphhopper.util.Helper.nf;
 public class WaySegmentParser {
     private static final Logger LOGGER = LoggerFactory.getLogger(WaySegmentParser.class);
     private static final Set<String> INCLUDE_IF_NODE_TAGS = new HashSet<>(Arrays.asList("barrier", "highway", "railway", "crossing", "ford"));
+    private static final int MIN_PARALLEL_WAYS = 1_000;
 
     private ToDoubleFunction<ReaderNode> elevationProvider = node -> 0d;
     private Predicate<ReaderWay> wayFilter = way -> true;
@@ -90,19 +95,27 @@ public class WaySegmentParser {
             throw new IllegalStateException("You can only run way segment parser once");
 
         LOGGER.info("Start reading OSM file: '" + osmFile + "'");
-        LOGGER.info("pass1 - start");
-        StopWatch sw1 = StopWatch.started();
-        readOSM(osmFile, new Pass1Handler(), new SkipOptions(true, false, false));
-        LOGGER.info("pass1 - finished, took: {}", sw1.stop().getTimeString());
-
-        long nodes = nodeData.getNodeCount();
-
-        LOGGER.info("Creating graph. Node count (pillar+tower): " + nodes + ", " + Helper.getMemInfo());
-
-        LOGGER.info("pass2 - start");
-        StopWatch sw2 = new StopWatch().start();
-        readOSM(osmFile, new Pass2Handler(), SkipOptions.none());
-        LOGGER.info("pass2 - finished, took: {}", sw2.stop().getTimeString());
+        ForkJoinPool wayFilterPool = workerThreads > 1 ? new ForkJoinPool(workerThreads) : null;
+        StopWatch sw1 = new StopWatch();
+        StopWatch sw2 = new StopWatch();
+        try {
+            LOGGER.info("pass1 - start");
+            sw1.start();
+            readOSM(osmFile, new Pass1Handler(), new SkipOptions(true, false, false), wayFilterPool);
+            LOGGER.info("pass1 - finished, took: {}", sw1.stop().getTimeString());
+
+            long nodes = nodeData.getNodeCount();
+
+            LOGGER.info("Creating graph. Node count (pillar+tower): " + nodes + ", " + Helper.getMemInfo());
+
+            LOGGER.info("pass2 - start");
+            sw2.start();
+            readOSM(osmFile, new Pass2Handler(), SkipOptions.none(), wayFilterPool);
+            LOGGER.info("pass2 - finished, took: {}", sw2.stop().getTimeString());
+        } finally {
+            if (wayFilterPool != null)
+                wayFilterPool.shutdown();
+        }
 
         nodeData.release();
 
@@ -127,7 +140,7 @@ public class WaySegmentParser {
         private long relationsCounter = 0;
 
         @Override
-        public void handleWay(ReaderWay way) {
+        public void handleWay(ReaderWay way, boolean accepted) {
             if (!handledWays) {
                 LOGGER.info("pass1 - start reading OSM ways");
                 handledWays = true;
@@ -139,7 +152,7 @@ public class WaySegmentParser {
                 LOGGER.info("pass1 - processed ways: " + nf(wayCounter) + ", accepted ways: " + nf(acceptedWays) +
                         ", way nodes: " + nf(nodeData.getNodeCount()) + ", " + Helper.getMemInfo());
 
-            if (!wayFilter.test(way))
+            if (!accepted)
                 return;
             acceptedWays++;
 
@@ -187,6 +200,33 @@ public class WaySegmentParser {
         private long acceptedNodes = 0;
         private long ignoredSplitNodes = 0;
         private long wayCounter = 0;
+        // the elevations of the mapped nodes of the current batch
+        private final LongDoubleHashMap batchElevations = new LongDoubleHashMap();
+
+        /**
+         * Determines the elevations of the mapped nodes of the given batch ordered by their location. Elevation
+         * providers load their data in tiles of one or more degrees, so this way each tile is usually accessed only
+         * once per batch instead of switching between tiles for nodes that are close to each other in the file.
+         */
+        @Override
+        public void startBatch(List<ReaderElement> batch) {
+            batchElevations.clear();
+            if (!nodeData.is3D() || batch.size() < 2 || batch.get(0).getType() != ReaderElement.Type.NODE)
+                return;
+            List<ReaderNode> nodes = new ArrayList<>();
+            for (ReaderElement elem : batch)
+                if (elem.getType() == ReaderElement.Type.NODE && nodeData.getId(elem.getId()) != EMPTY_NODE)
+                    nodes.add((ReaderNode) elem);
+            nodes.sort(Comparator.comparingInt((ReaderNode node) -> (int) Math.floor(node.getLat()))
+                    .thenComparingInt(node -> (int) Math.floor(node.getLon())));
+            for (ReaderNode node : nodes)
+                batchElevations.put(node.getId(), elevationProvider.applyAsDouble(node));
+        }
+
+        private double getElevation(ReaderNode node) {
+            int index = batchElevations.indexOf(node.getId());
+            return batchElevations.indexExists(index) ? batchElevations.indexGet(index) : elevationProvider.applyAsDouble(node);
+        }
 
         @Override
         public void handleNode(ReaderNode node) {
@@ -203,7 +243,7 @@ public class WaySegmentParser {
                 LOGGER.info("pass2 - processed nodes: " + nf(nodeCounter) + ", accepted nodes: " + nf(acceptedNodes) +
                         ", " + Helper.getMemInfo());
 
-            long nodeType = nodeData.addCoordinatesIfMapped(node.getId(), node.getLat(), node.getLon(), () -> elevationProvider.applyAsDouble(node));
+            long nodeType = nodeData.addCoordinatesIfMapped(node.getId(), node.getLat(), node.getLon(), () -> getElevation(node));
             if (nodeType == EMPTY_NODE)
                 return;
 
@@ -233,7 +273,7 @@ public class WaySegmentParser {
         }
 
         @Override
-        public void handleWay(ReaderWay way) {
+        public void handleWay(ReaderWay way, boolean accepted) {
             if (!handledWays) {
                 LOGGER.info("pass2 - start reading OSM ways");
                 handledWays = true;
@@ -244,7 +284,7 @@ public class WaySegmentParser {
             if (++wayCounter % 10_000_000 == 0)
                 LOGGER.info("pass2 - processed ways: " + nf(wayCounter) + ", " + Helper.getMemInfo());
 
-            if (!wayFilter.test(way))
+            if (!accepted)
                 return;
             List<SegmentNode> segment = new ArrayList<>(way.getNodes().size());
             for (LongCursor node : way.getNodes())
@@ -391,11 +431,15 @@ public class WaySegmentParser {
         }
     }
 
-    private void readOSM(File file, ReaderElementHandler handler, SkipOptions skipOptions) {
+    private void readOSM(File file, ReaderElementHandler handler, SkipOptions skipOptions, ForkJoinPool wayFilterPool) {
         try (OSMInput osmInput = openOsmInputFile(file, skipOptions)) {
-            ReaderElement elem;
-            while ((elem = osmInput.getNext()) != null)
-                handler.handleElement(elem);
+            List<ReaderElement> batch;
+            while ((batch = osmInput.getNextBatch()) != null) {
+                boolean[] acceptedWays = filterWays(batch, wayFilterPool);
+                handler.startBatch(batch);
+                for (int i = 0; i < batch.size(); i++)
+                    handler.handleElement(batch.get(i), acceptedWays[i]);
+            }
             handler.onFinish();
             if (osmInput.getUnprocessedElements() > 0)
                 throw new IllegalStateException("There were some remaining elements in the reader queue " + osmInput.getUnprocessedElements());
@@ -404,6 +448,27 @@ public class WaySegmentParser {
         }
     }
 
+    /**
+     * Applies the way filter to all ways of the given batch. Unlike the remaining processing of the ways this does not
+     * depend on the state of the parser, so for batches of ways (pbf blobs) we do this in parallel.
+     *
+     * @return an array that is true at the positions of the accepted ways
+     */
+    private boolean[] filterWays(List<ReaderElement> batch, ForkJoinPool pool) {
+        boolean[] accepted = new boolean[batch.size()];
+        IntStream indices = IntStream.range(0, batch.size());
+        if (pool != null && batch.size() >= MIN_PARALLEL_WAYS && batch.get(0).getType() == ReaderElement.Type.WAY) {
+            pool.submit(() -> indices.parallel().forEach(i -> accepted[i] = isAcceptedWay(batch.get(i)))).join();
+        } else {
+            indices.forEach(i -> accepted[i] = isAcceptedWay(batch.get(i)));
+        }
+        return accepted;
+    }
+
+    private boolean isAcceptedWay(ReaderElement elem) {
+        return elem.getType() == ReaderElement.Type.WAY && wayFilter.test((ReaderWay) elem);
+    }
+
     protected OSMInput openOsmInputFile(File osmFile, SkipOptions skipOptions) throws XMLStreamException, IOException {
         return new OSMInputFile(osmFile).setWorkerThreads(workerThreads).setSkipOptions(skipOptions).open();
     }
@@ -416,7 +481,17 @@ public class WaySegmentParser {
          * @param directory   the directory to be used to store temporary data
          */
         public Builder(PointAccess pointAccess, Directory directory) {
-            waySegmentParser = new WaySegmentParser(new OSMNodeData(pointAccess, directory));
+            this(pointAccess, directory, null);
+        }
+
+        /**
+         * @param pointAccess   used to store tower node coordinates while parsing the ways
+         * @param directory     the directory to be used to store temporary data
+         * @param nodeIdMapType the data access type used to map the OSM node ids, or null to use an on-heap b-tree,
+         *                      see {@link com.graphhopper.coll.GHLongLongBlockMap}
+         */
+        public Builder(PointAccess pointAccess, Directory directory, DAType nodeIdMapType) {
+            waySegmentParser = new WaySegmentParser(new OSMNodeData(pointAccess, directory, nodeIdMapType));
         }
 
         /**
@@ -428,7 +503,8 @@ public class WaySegmentParser {
         }
 
         /**
-         * @param wayFilter return true for OSM ways that should be considered and false otherwise
+         * @param wayFilter return true for OSM ways that should be considered and false otherwise. When using more
+         *                  than one worker thread this is called concurrently, so it must be thread-safe.
          */
         public Builder setWayFilter(Predicate<ReaderWay> wayFilter) {
             waySegmentParser.wayFilter = wayFilter;
@@ -476,7 +552,8 @@ public class WaySegmentParser {
         }
 
         /**
-         * @param workerThreads the number of threads used for the low level reading of the OSM file
+         * @param workerThreads the number of threads used for the low level reading of the OSM file and for
+         *                      applying the way filter
          */
         public Builder setWorkerThreads(int workerThreads) {
             waySegmentParser.workerThreads = workerThreads;
@@ -489,13 +566,22 @@ public class WaySegmentParser {
     }
 
     private interface ReaderElementHandler {
-        default void handleElement(ReaderElement elem) throws ParseException {
+        /**
+         * Called before the elements of each batch are handled
+         */
+        default void startBatch(List<ReaderElement> batch) {
+        }
+
+        /**
+         * @param acceptedWay the result of the way filter if the given element is a way
+         */
+        default void handleElement(ReaderElement elem, boolean acceptedWay) throws ParseException {
             switch (elem.getType()) {
                 case NODE:
                     handleNode((ReaderNode) elem);
                     break;
                 case WAY:
-                    handleWay((ReaderWay) elem);
+                    handleWay((ReaderWay) elem, acceptedWay);
                     break;
                 case RELATION:
                     handleRelation((ReaderRelation) elem);
@@ -511,7 +597,7 @@ public class WaySegmentParser {
         default void handleNode(ReaderNode node) {
         }
 
-        default void handleWay(ReaderWay way) {
+        default void handleWay(ReaderWay way, boolean accepted) {
         }
 
         default void handleRelation(ReaderRelation relation) {
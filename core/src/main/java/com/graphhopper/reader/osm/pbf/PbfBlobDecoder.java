@@ -240,8 +240,10 @@ public class PbfBlobDecoder implements Runnable {
                 tags.put(fieldDecoder.decodeString(keyIndex), fieldDecoder.decodeString(valueIndex));
             }
 
-            ReaderNode node = new ReaderNode(nodeId, fieldDecoder.decodeLatitude(latitude), fieldDecoder.decodeLongitude(longitude));
-            node.setTags(tags);
+            // most nodes have no tags, and for the others we can use the map we just created instead of copying it
+            ReaderNode node = tags == null
+                    ? new ReaderNode(nodeId, fieldDecoder.decodeLatitude(latitude), fieldDecoder.decodeLongitude(longitude))
+                    : new ReaderNode(nodeId, fieldDecoder.decodeLatitude(latitude), fieldDecoder.decodeLongitude(longitude), tags);
 
             // Add the bound object to the results.
             decodedEntities.add(node);
@@ -93,9 +93,7 @@ public class PbfDecoder {
             // their results.
             lock.unlock();
             try {
-                for (ReaderElement entity : blobResult.getEntities()) {
-                    sink.process(entity);
-                }
+                sink.process(blobResult.getEntities());
             } finally {
                 lock.lock();
             }
@@ -19,11 +19,23 @@ package com.graphhopper.reader.osm.pbf;
 
 import com.graphhopper.reader.ReaderElement;
 
+import java.util.List;
+
 /**
  * @author Nop
  */
 public interface Sink {
     void process(ReaderElement item);
 
+    /**
+     * Receives all elements of one decoded blob at once, in the order they appear in the file. Handing over entire
+     * blobs avoids the synchronization overhead of passing every single element between threads.
+     */
+    default void process(List<ReaderElement> items) {
+        for (ReaderElement item : items) {
+            process(item);
+        }
+    }
+
     void complete();
 }
@@ -17,7 +17,6 @@
  */
 package com.graphhopper.routing;
 
-import com.graphhopper.coll.GHIntObjectHashMap;
 import com.graphhopper.routing.util.TraversalMode;
 import com.graphhopper.routing.weighting.BeelineWeightApproximator;
 import com.graphhopper.routing.weighting.WeightApproximator;
@@ -25,8 +24,8 @@ import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.Graph;
 import com.graphhopper.util.*;
 
-import java.util.PriorityQueue;
-
+import static com.graphhopper.routing.SearchState.NO_SLOT;
+import static com.graphhopper.routing.SearchState.NO_TRAVERSAL_ID;
 import static com.graphhopper.util.EdgeIterator.ANY_EDGE;
 import static com.graphhopper.util.EdgeIterator.NO_EDGE;
 
@@ -34,15 +33,16 @@ import static com.graphhopper.util.EdgeIterator.NO_EDGE;
  * This class implements the A* algorithm according to
  * http://en.wikipedia.org/wiki/A*_search_algorithm
  * <p>
- * Different distance calculations can be used via setApproximation.
+ * Different distance calculations can be used via setApproximation. Like {@link Dijkstra} the search is done on a
+ * pooled {@link SearchState}, where the heap key is the weight of the visited path plus the approximated weight to the
+ * goal.
  * <p>
  *
  * @author Peter Karich
  */
 public class AStar extends AbstractRoutingAlgorithm implements EdgeToEdgeRoutingAlgorithm {
-    private GHIntObjectHashMap<AStarEntry> fromMap;
-    private PriorityQueue<AStarEntry> fromHeap;
-    private AStarEntry currEdge;
+    private SearchState state;
+    private int currSlot = NO_SLOT;
     private int visitedNodes;
     private int to = -1;
     private WeightApproximator weightApprox;
@@ -51,8 +51,6 @@ public class AStar extends AbstractRoutingAlgorithm implements EdgeToEdgeRouting
 
     public AStar(Graph graph, Weighting weighting, TraversalMode tMode) {
         super(graph, weighting, tMode);
-        int size = Math.min(Math.max(200, graph.getNodes() / 10), 2000);
-        initCollections(size);
         BeelineWeightApproximator defaultApprox = new BeelineWeightApproximator(nodeAccess, weighting);
         defaultApprox.setDistanceCalc(DistancePlaneProjection.DIST_PLANE);
         setApproximation(defaultApprox);
@@ -66,11 +64,6 @@ public class AStar extends AbstractRoutingAlgorithm implements EdgeToEdgeRouting
         return this;
     }
 
-    protected void initCollections(int size) {
-        fromMap = new GHIntObjectHashMap<>();
-        fromHeap = new PriorityQueue<>(size);
-    }
-
     @Override
     public Path calcPath(int from, int to) {
         return calcPath(from, to, EdgeIterator.ANY_EDGE, EdgeIterator.ANY_EDGE);
@@ -92,74 +85,66 @@ public class AStar extends AbstractRoutingAlgorithm implements EdgeToEdgeRouting
         double weightToGoal = weightApprox.approximate(from);
         if (Double.isInfinite(weightToGoal))
             return extractPath();
-        AStarEntry startEntry = new AStarEntry(EdgeIterator.NO_EDGE, from, 0 + weightToGoal, 0);
-        fromHeap.add(startEntry);
-        if (!traversalMode.isEdgeBased())
-            fromMap.put(from, currEdge);
-        runAlgo();
-        return extractPath();
+        state = SearchState.acquire();
+        try {
+            state.add(traversalMode.isEdgeBased() ? NO_TRAVERSAL_ID : from, EdgeIterator.NO_EDGE, from, NO_SLOT, 0, weightToGoal);
+            runAlgo();
+            return extractPath();
+        } finally {
+            state.release();
+        }
     }
 
     private void runAlgo() {
         double currWeightToGoal, estimationFullWeight;
-        while (!fromHeap.isEmpty()) {
-            currEdge = fromHeap.poll();
-            if (currEdge.isDeleted())
-                continue;
+        while (!state.isHeapEmpty()) {
+            currSlot = state.poll();
             visitedNodes++;
             if (isMaxVisitedNodesExceeded() || finished() || isTimeoutExceeded())
                 break;
 
-            int currNode = currEdge.adjNode;
+            int currNode = state.getAdjNode(currSlot);
+            int currEdge = state.getEdge(currSlot);
+            double currWeight = state.getWeight(currSlot);
             EdgeIterator iter = edgeExplorer.setBaseNode(currNode);
             while (iter.next()) {
-                if (!accept(iter, currEdge.edge) || (currEdge.edge == NO_EDGE && fromOutEdge != ANY_EDGE && iter.getEdge() != fromOutEdge))
+                if (!accept(iter, currEdge) || (currEdge == NO_EDGE && fromOutEdge != ANY_EDGE && iter.getEdge() != fromOutEdge))
                     continue;
 
-                double tmpWeight = GHUtility.calcWeightWithTurnWeight(weighting, iter, false, currEdge.edge) + currEdge.weightOfVisitedPath;
+                double tmpWeight = GHUtility.calcWeightWithTurnWeight(weighting, iter, false, currEdge) + currWeight;
                 if (Double.isInfinite(tmpWeight)) {
                     continue;
                 }
                 int traversalId = traversalMode.createTraversalId(iter, false);
 
-                AStarEntry ase = fromMap.get(traversalId);
-                if (ase == null || ase.weightOfVisitedPath > tmpWeight) {
+                int slot = state.getSlot(traversalId);
+                if (slot == NO_SLOT || state.getWeight(slot) > tmpWeight) {
                     int neighborNode = iter.getAdjNode();
                     currWeightToGoal = weightApprox.approximate(neighborNode);
                     if (Double.isInfinite(currWeightToGoal))
                         continue;
                     estimationFullWeight = tmpWeight + currWeightToGoal;
-                    if (ase == null) {
-                        ase = new AStarEntry(iter.getEdge(), neighborNode, estimationFullWeight, tmpWeight, currEdge);
-                        fromMap.put(traversalId, ase);
-                    } else {
-//                        assert (ase.weight > 0.9999999 * estimationFullWeight) : "Inconsistent distance estimate. It is expected weight >= estimationFullWeight but was "
-//                                + ase.weight + " < " + estimationFullWeight + " (" + ase.weight / estimationFullWeight + "), and weightOfVisitedPath:"
-//                                + ase.weightOfVisitedPath + " vs. alreadyVisitedWeight:" + alreadyVisitedWeight + " (" + ase.weightOfVisitedPath / alreadyVisitedWeight + ")";
-                        ase.setDeleted();
-                        ase = new AStarEntry(iter.getEdge(), neighborNode, estimationFullWeight, tmpWeight, currEdge);
-                        fromMap.put(traversalId, ase);
-                    }
-                    fromHeap.add(ase);
-                    updateBestPath(iter, ase, traversalId);
+                    if (slot == NO_SLOT)
+                        slot = state.add(traversalId, iter.getEdge(), neighborNode, currSlot, tmpWeight, estimationFullWeight);
+                    else
+                        slot = state.update(traversalId, slot, iter.getEdge(), currSlot, tmpWeight, estimationFullWeight);
+                    updateBestPath(iter, slot, traversalId);
                 }
             }
         }
     }
 
     private boolean finished() {
-        return currEdge.adjNode == to && (toInEdge == ANY_EDGE || currEdge.edge == toInEdge) && (fromOutEdge == ANY_EDGE || currEdge.edge != NO_EDGE);
+        int currEdge = state.getEdge(currSlot);
+        return state.getAdjNode(currSlot) == to && (toInEdge == ANY_EDGE || currEdge == toInEdge) && (fromOutEdge == ANY_EDGE || currEdge != NO_EDGE);
     }
 
     protected Path extractPath() {
-        if (currEdge == null || !finished())
+        if (currSlot == NO_SLOT || !finished())
             return createEmptyPath();
 
-        return PathExtractor.extractPath(graph, weighting, currEdge)
-                // the path extractor uses currEdge.weight to set the weight, but this is the one that includes the
-                // A* approximation, not the weight of the visited path! this is still correct, because the approximation
-                // at the to-node (the end of the route) must be zero. Still it seems clearer to set the weight explicitly.
-                .setWeight(currEdge.getWeightOfVisitedPath());
+        // the state stores the weight of the visited path, not the heap key that includes the A* approximation
+        return PathExtractor.extractPath(graph, weighting, state, currSlot);
     }
 
     @Override
@@ -167,7 +152,12 @@ public class AStar extends AbstractRoutingAlgorithm implements EdgeToEdgeRouting
         return visitedNodes;
     }
 
-    protected void updateBestPath(EdgeIteratorState edgeState, SPTEntry bestSPTEntry, int traversalId) {
+    /**
+     * Called whenever a better entry of the shortest path tree was found
+     *
+     * @param slot the slot of the new entry in the search state
+     */
+    protected void updateBestPath(EdgeIteratorState edgeState, int slot, int traversalId) {
     }
 
     public static class AStarEntry extends SPTEntry {
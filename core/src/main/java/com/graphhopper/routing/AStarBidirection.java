@@ -17,7 +17,6 @@
  */
 package com.graphhopper.routing;
 
-import com.graphhopper.routing.AStar.AStarEntry;
 import com.graphhopper.routing.util.TraversalMode;
 import com.graphhopper.routing.weighting.BalancedWeightApproximator;
 import com.graphhopper.routing.weighting.BeelineWeightApproximator;
@@ -25,8 +24,6 @@ import com.graphhopper.routing.weighting.WeightApproximator;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.Graph;
 import com.graphhopper.util.DistancePlaneProjection;
-import com.graphhopper.util.EdgeIterator;
-import com.graphhopper.util.EdgeIteratorState;
 import com.graphhopper.util.Parameters;
 
 /**
@@ -78,27 +75,14 @@ public class AStarBidirection extends AbstractNonCHBidirAlgo {
         if (finishedFrom || finishedTo)
             return true;
 
-        return currFrom.weight + currTo.weight >= bestWeight + stoppingCriterionOffset;
+        return currFromKey + currToKey >= bestWeight + stoppingCriterionOffset;
     }
 
     @Override
-    protected SPTEntry createStartEntry(int node, double weight, boolean reverse) {
-        double heapWeight = weight + weightApprox.approximate(node, reverse);
-        return new AStarEntry(EdgeIterator.NO_EDGE, node, heapWeight, weight);
-    }
-
-    @Override
-    protected SPTEntry createEntry(EdgeIteratorState edge, double weight, SPTEntry parent, boolean reverse) {
-        int neighborNode = edge.getAdjNode();
-        double heapWeight = weight + weightApprox.approximate(neighborNode, reverse);
-        return new AStarEntry(edge.getEdge(), neighborNode, heapWeight, weight, parent);
-    }
-
-    @Override
-    protected double calcWeight(EdgeIteratorState iter, SPTEntry currEdge, boolean reverse) {
+    protected double calcHeapKey(int node, double weight, boolean reverse) {
         // TODO performance: check if the node is already existent in the opposite direction
         // then we could avoid the approximation as we already know the exact complete path!
-        return super.calcWeight(iter, currEdge, reverse);
+        return weight + weightApprox.approximate(node, reverse);
     }
 
     public WeightApproximator getApproximation() {
@@ -110,11 +94,6 @@ public class AStarBidirection extends AbstractNonCHBidirAlgo {
         return this;
     }
 
-    @Override
-    void setToDataStructures(AbstractBidirAlgo other) {
-        throw new UnsupportedOperationException();
-    }
-
     @Override
     public String getName() {
         return Parameters.Algorithms.ASTAR_BI + "|" + weightApprox;
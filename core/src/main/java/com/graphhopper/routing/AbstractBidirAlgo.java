@@ -17,36 +17,30 @@
  */
 package com.graphhopper.routing;
 
-import com.carrotsearch.hppc.IntObjectMap;
-import com.graphhopper.coll.GHIntObjectHashMap;
 import com.graphhopper.routing.util.TraversalMode;
-import com.graphhopper.util.EdgeIterator;
 
 import java.util.Collections;
 import java.util.List;
-import java.util.PriorityQueue;
 
 import static com.graphhopper.util.EdgeIterator.ANY_EDGE;
 
+/**
+ * Common subclass for bidirectional algorithms. It drives the forward and backward searches, but how the shortest path
+ * trees are stored is up to the subclasses.
+ *
+ * @see AbstractBidirCHAlgo for bidirectional CH algorithms
+ * @see AbstractNonCHBidirAlgo for non-CH bidirectional algorithms
+ */
 public abstract class AbstractBidirAlgo implements EdgeToEdgeRoutingAlgorithm {
     protected final TraversalMode traversalMode;
     protected int from;
     protected int to;
     protected int fromOutEdge;
     protected int toInEdge;
-    protected IntObjectMap<SPTEntry> bestWeightMapFrom;
-    protected IntObjectMap<SPTEntry> bestWeightMapTo;
-    protected IntObjectMap<SPTEntry> bestWeightMapOther;
-    protected SPTEntry currFrom;
-    protected SPTEntry currTo;
-    protected SPTEntry bestFwdEntry;
-    protected SPTEntry bestBwdEntry;
     protected double bestWeight = Double.MAX_VALUE;
     protected int maxVisitedNodes = Integer.MAX_VALUE;
     protected long timeoutMillis = Long.MAX_VALUE;
     private long finishTimeMillis = Long.MAX_VALUE;
-    PriorityQueue<SPTEntry> pqOpenSetFrom;
-    PriorityQueue<SPTEntry> pqOpenSetTo;
     protected boolean updateBestPath = true;
     protected boolean finishedFrom;
     protected boolean finishedTo;
@@ -60,19 +54,6 @@ public abstract class AbstractBidirAlgo implements EdgeToEdgeRoutingAlgorithm {
         toInEdge = ANY_EDGE;
     }
 
-    protected void initCollections(int size) {
-        pqOpenSetFrom = new PriorityQueue<>(size);
-        bestWeightMapFrom = new GHIntObjectHashMap<>(size);
-
-        pqOpenSetTo = new PriorityQueue<>(size);
-        bestWeightMapTo = new GHIntObjectHashMap<>(size);
-    }
-
-    /**
-     * Creates the root shortest path tree entry for the forward or backward search.
-     */
-    protected abstract SPTEntry createStartEntry(int node, double weight, boolean reverse);
-
     @Override
     public List<Path> calcPaths(int from, int to) {
         return Collections.singletonList(calcPath(from, to));
@@ -103,46 +84,11 @@ public abstract class AbstractBidirAlgo implements EdgeToEdgeRoutingAlgorithm {
         postInit(from, to);
     }
 
-    protected void initFrom(int from, double weight) {
-        this.from = from;
-        currFrom = createStartEntry(from, weight, false);
-        pqOpenSetFrom.add(currFrom);
-        if (!traversalMode.isEdgeBased()) {
-            bestWeightMapFrom.put(from, currFrom);
-        }
-    }
+    protected abstract void initFrom(int from, double weight);
 
-    protected void initTo(int to, double weight) {
-        this.to = to;
-        currTo = createStartEntry(to, weight, true);
-        pqOpenSetTo.add(currTo);
-        if (!traversalMode.isEdgeBased()) {
-            bestWeightMapTo.put(to, currTo);
-        }
-    }
+    protected abstract void initTo(int to, double weight);
 
-    protected void postInit(int from, int to) {
-        if (!traversalMode.isEdgeBased()) {
-            if (updateBestPath) {
-                bestWeightMapOther = bestWeightMapFrom;
-                updateBestPath(Double.POSITIVE_INFINITY, currFrom, EdgeIterator.NO_EDGE, to, true);
-            }
-        } else if (from == to && fromOutEdge == ANY_EDGE && toInEdge == ANY_EDGE) {
-            // special handling if start and end are the same and no directions are restricted
-            // the resulting weight should be zero
-            if (currFrom.weight != 0 || currTo.weight != 0) {
-                throw new IllegalStateException("If from=to, the starting weight must be zero for from and to");
-            }
-            bestFwdEntry = currFrom;
-            bestBwdEntry = currTo;
-            bestWeight = 0;
-            finishedFrom = true;
-            finishedTo = true;
-            return;
-        }
-        postInitFrom();
-        postInitTo();
-    }
+    protected abstract void postInit(int from, int to);
 
     protected abstract void postInitFrom();
 
@@ -166,43 +112,13 @@ public abstract class AbstractBidirAlgo implements EdgeToEdgeRoutingAlgorithm {
         if (finishedFrom || finishedTo)
             return true;
 
-        return currFrom.weight + currTo.weight >= bestWeight;
+        return getCurrentFromWeight() + getCurrentToWeight() >= bestWeight;
     }
 
     abstract boolean fillEdgesFrom();
 
     abstract boolean fillEdgesTo();
 
-    protected void updateBestPath(double edgeWeight, SPTEntry entry, int origEdgeIdForCH, int traversalId, boolean reverse) {
-        assert traversalMode.isEdgeBased() != Double.isInfinite(edgeWeight);
-        SPTEntry entryOther = bestWeightMapOther.get(traversalId);
-        if (entryOther == null)
-            return;
-
-        // update μ
-        double weight = entry.getWeightOfVisitedPath() + entryOther.getWeightOfVisitedPath();
-        if (traversalMode.isEdgeBased()) {
-            if (getIncomingEdge(entryOther) != getIncomingEdge(entry))
-                throw new IllegalStateException("cannot happen for edge based execution of " + getName());
-
-            // prevents the path to contain the edge at the meeting point twice and subtracts the weight (excluding turn weight => no previous edge)
-            entry = entry.getParent();
-            weight -= edgeWeight;
-        }
-
-        if (weight < bestWeight) {
-            bestFwdEntry = reverse ? entryOther : entry;
-            bestBwdEntry = reverse ? entry : entryOther;
-            bestWeight = weight;
-        }
-    }
-
-    protected abstract double getInEdgeWeight(SPTEntry entry);
-
-    protected int getIncomingEdge(SPTEntry entry) {
-        return entry.edge;
-    }
-
     abstract protected Path extractPath();
 
     protected boolean fromEntryCanBeSkipped() {
@@ -221,25 +137,16 @@ public abstract class AbstractBidirAlgo implements EdgeToEdgeRoutingAlgorithm {
         return false;
     }
 
-    protected double getCurrentFromWeight() {
-        return currFrom.weight;
-    }
-
-    protected double getCurrentToWeight() {
-        return currTo.weight;
-    }
-
-    IntObjectMap<SPTEntry> getBestFromMap() {
-        return bestWeightMapFrom;
-    }
-
-    IntObjectMap<SPTEntry> getBestToMap() {
-        return bestWeightMapTo;
-    }
+    /**
+     * @return the weight (for A* including the approximation) of the entry that was polled by the forward search most
+     * recently
+     */
+    protected abstract double getCurrentFromWeight();
 
-    void setBestOtherMap(IntObjectMap<SPTEntry> other) {
-        bestWeightMapOther = other;
-    }
+    /**
+     * @see #getCurrentFromWeight()
+     */
+    protected abstract double getCurrentToWeight();
 
     protected void setUpdateBestPath(boolean b) {
         updateBestPath = b;
@@ -250,17 +157,6 @@ public abstract class AbstractBidirAlgo implements EdgeToEdgeRoutingAlgorithm {
         return visitedCountFrom + visitedCountTo;
     }
 
-    void setToDataStructures(AbstractBidirAlgo other) {
-        to = other.to;
-        toInEdge = other.toInEdge;
-        pqOpenSetTo = other.pqOpenSetTo;
-        bestWeightMapTo = other.bestWeightMapTo;
-        finishedTo = other.finishedTo;
-        currTo = other.currTo;
-        visitedCountTo = other.visitedCountTo;
-        // inEdgeExplorer
-    }
-
     @Override
     public void setMaxVisitedNodes(int numberOfNodes) {
         this.maxVisitedNodes = numberOfNodes;
@@ -18,9 +18,11 @@
 package com.graphhopper.routing;
 
 import com.carrotsearch.hppc.IntObjectMap;
+import com.graphhopper.coll.GHIntObjectHashMap;
 import com.graphhopper.routing.ch.NodeBasedCHBidirPathExtractor;
 import com.graphhopper.routing.util.TraversalMode;
 import com.graphhopper.storage.*;
+import com.graphhopper.util.EdgeIterator;
 import com.graphhopper.util.GHUtility;
 
 import java.util.PriorityQueue;
@@ -43,6 +45,15 @@ public abstract class AbstractBidirCHAlgo extends AbstractBidirAlgo implements E
     protected RoutingCHEdgeExplorer outEdgeExplorer;
     protected CHEdgeFilter levelEdgeFilter;
     private Supplier<BidirPathExtractor> pathExtractorSupplier;
+    protected IntObjectMap<SPTEntry> bestWeightMapFrom;
+    protected IntObjectMap<SPTEntry> bestWeightMapTo;
+    protected IntObjectMap<SPTEntry> bestWeightMapOther;
+    protected SPTEntry currFrom;
+    protected SPTEntry currTo;
+    protected SPTEntry bestFwdEntry;
+    protected SPTEntry bestBwdEntry;
+    PriorityQueue<SPTEntry> pqOpenSetFrom;
+    PriorityQueue<SPTEntry> pqOpenSetTo;
 
     public AbstractBidirCHAlgo(RoutingCHGraph graph, TraversalMode tMode) {
         super(tMode);
@@ -58,11 +69,20 @@ public abstract class AbstractBidirCHAlgo extends AbstractBidirAlgo implements E
         initCollections(size);
     }
 
-    @Override
     protected void initCollections(int size) {
-        super.initCollections(Math.min(size, 2000));
+        size = Math.min(size, 2000);
+        pqOpenSetFrom = new PriorityQueue<>(size);
+        bestWeightMapFrom = new GHIntObjectHashMap<>(size);
+
+        pqOpenSetTo = new PriorityQueue<>(size);
+        bestWeightMapTo = new GHIntObjectHashMap<>(size);
     }
 
+    /**
+     * Creates the root shortest path tree entry for the forward or backward search.
+     */
+    protected abstract SPTEntry createStartEntry(int node, double weight, boolean reverse);
+
     /**
      * Creates a new entry of the shortest path tree (a {@link SPTEntry} or one of its subclasses) during a dijkstra
      * expansion.
@@ -78,6 +98,50 @@ public abstract class AbstractBidirCHAlgo extends AbstractBidirAlgo implements E
      */
     protected abstract SPTEntry createEntry(int edge, int adjNode, int incEdge, double weight, SPTEntry parent, boolean reverse);
 
+    @Override
+    protected void initFrom(int from, double weight) {
+        this.from = from;
+        currFrom = createStartEntry(from, weight, false);
+        pqOpenSetFrom.add(currFrom);
+        if (!traversalMode.isEdgeBased()) {
+            bestWeightMapFrom.put(from, currFrom);
+        }
+    }
+
+    @Override
+    protected void initTo(int to, double weight) {
+        this.to = to;
+        currTo = createStartEntry(to, weight, true);
+        pqOpenSetTo.add(currTo);
+        if (!traversalMode.isEdgeBased()) {
+            bestWeightMapTo.put(to, currTo);
+        }
+    }
+
+    @Override
+    protected void postInit(int from, int to) {
+        if (!traversalMode.isEdgeBased()) {
+            if (updateBestPath) {
+                bestWeightMapOther = bestWeightMapFrom;
+                updateBestPath(Double.POSITIVE_INFINITY, currFrom, EdgeIterator.NO_EDGE, to, true);
+            }
+        } else if (from == to && fromOutEdge == ANY_EDGE && toInEdge == ANY_EDGE) {
+            // special handling if start and end are the same and no directions are restricted
+            // the resulting weight should be zero
+            if (currFrom.weight != 0 || currTo.weight != 0) {
+                throw new IllegalStateException("If from=to, the starting weight must be zero for from and to");
+            }
+            bestFwdEntry = currFrom;
+            bestBwdEntry = currTo;
+            bestWeight = 0;
+            finishedFrom = true;
+            finishedTo = true;
+            return;
+        }
+        postInitFrom();
+        postInitTo();
+    }
+
     @Override
     protected void postInitFrom() {
         if (fromOutEdge == ANY_EDGE) {
@@ -217,6 +281,67 @@ public abstract class AbstractBidirCHAlgo extends AbstractBidirAlgo implements E
         }
     }
 
+    protected void updateBestPath(double edgeWeight, SPTEntry entry, int origEdgeIdForCH, int traversalId, boolean reverse) {
+        assert traversalMode.isEdgeBased() != Double.isInfinite(edgeWeight);
+        SPTEntry entryOther = bestWeightMapOther.get(traversalId);
+        if (entryOther == null)
+            return;
+
+        // update μ
+        double weight = entry.getWeightOfVisitedPath() + entryOther.getWeightOfVisitedPath();
+        if (traversalMode.isEdgeBased()) {
+            if (getIncomingEdge(entryOther) != getIncomingEdge(entry))
+                throw new IllegalStateException("cannot happen for edge based execution of " + getName());
+
+            // prevents the path to contain the edge at the meeting point twice and subtracts the weight (excluding turn weight => no previous edge)
+            entry = entry.getParent();
+            weight -= edgeWeight;
+        }
+
+        if (weight < bestWeight) {
+            bestFwdEntry = reverse ? entryOther : entry;
+            bestBwdEntry = reverse ? entry : entryOther;
+            bestWeight = weight;
+        }
+    }
+
+    protected int getIncomingEdge(SPTEntry entry) {
+        return entry.edge;
+    }
+
+    @Override
+    protected double getCurrentFromWeight() {
+        return currFrom.weight;
+    }
+
+    @Override
+    protected double getCurrentToWeight() {
+        return currTo.weight;
+    }
+
+    IntObjectMap<SPTEntry> getBestFromMap() {
+        return bestWeightMapFrom;
+    }
+
+    IntObjectMap<SPTEntry> getBestToMap() {
+        return bestWeightMapTo;
+    }
+
+    void setBestOtherMap(IntObjectMap<SPTEntry> other) {
+        bestWeightMapOther = other;
+    }
+
+    void setToDataStructures(AbstractBidirCHAlgo other) {
+        to = other.to;
+        toInEdge = other.toInEdge;
+        pqOpenSetTo = other.pqOpenSetTo;
+        bestWeightMapTo = other.bestWeightMapTo;
+        finishedTo = other.finishedTo;
+        currTo = other.currTo;
+        visitedCountTo = other.visitedCountTo;
+        // inEdgeExplorer
+    }
+
     protected double calcWeight(RoutingCHEdgeIteratorState edgeState, boolean reverse, int prevOrNextEdgeId) {
         double edgeWeight = edgeState.getWeight(reverse);
         final int origEdgeId = GHUtility.getEdgeFromEdgeKey(reverse ? edgeState.getOrigEdgeKeyLast() : edgeState.getOrigEdgeKeyFirst());
@@ -245,11 +370,6 @@ public abstract class AbstractBidirCHAlgo extends AbstractBidirAlgo implements E
         return calcWeight(iter, reverse, getIncomingEdge(currEdge)) + currEdge.getWeightOfVisitedPath();
     }
 
-    @Override
-    protected double getInEdgeWeight(SPTEntry entry) {
-        throw new UnsupportedOperationException();
-    }
-
     @Override
     protected Path extractPath() {
         if (finished())
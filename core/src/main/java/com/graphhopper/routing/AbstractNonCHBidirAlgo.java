@@ -17,7 +17,6 @@
  */
 package com.graphhopper.routing;
 
-import com.carrotsearch.hppc.IntObjectMap;
 import com.graphhopper.routing.util.EdgeFilter;
 import com.graphhopper.routing.util.TraversalMode;
 import com.graphhopper.routing.weighting.Weighting;
@@ -28,12 +27,14 @@ import com.graphhopper.util.EdgeIterator;
 import com.graphhopper.util.EdgeIteratorState;
 import com.graphhopper.util.GHUtility;
 
-import java.util.PriorityQueue;
-
+import static com.graphhopper.routing.SearchState.NO_SLOT;
+import static com.graphhopper.routing.SearchState.NO_TRAVERSAL_ID;
 import static com.graphhopper.util.EdgeIterator.ANY_EDGE;
 
 /**
- * Common subclass for bidirectional algorithms.
+ * Common subclass for bidirectional algorithms. The shortest path trees of the forward and backward searches are
+ * stored in two {@link SearchState}s, which are taken from the pool of the current thread and handed back once the
+ * path was extracted.
  *
  * @author Peter Karich
  * @author easbar
@@ -45,6 +46,15 @@ public abstract class AbstractNonCHBidirAlgo extends AbstractBidirAlgo implement
     protected final Weighting weighting;
     protected EdgeExplorer edgeExplorer;
     protected EdgeFilter additionalEdgeFilter;
+    protected SearchState fromState;
+    protected SearchState toState;
+    // the slots and heap keys of the entries that were polled most recently
+    protected int currFromSlot = NO_SLOT;
+    protected int currToSlot = NO_SLOT;
+    protected double currFromKey;
+    protected double currToKey;
+    protected int bestFwdSlot = NO_SLOT;
+    protected int bestBwdSlot = NO_SLOT;
 
     public AbstractNonCHBidirAlgo(Graph graph, Weighting weighting, TraversalMode tMode) {
         super(tMode);
@@ -54,25 +64,82 @@ public abstract class AbstractNonCHBidirAlgo extends AbstractBidirAlgo implement
         this.graph = graph;
         this.nodeAccess = graph.getNodeAccess();
         edgeExplorer = graph.createEdgeExplorer();
-        int size = Math.min(Math.max(200, graph.getNodes() / 10), 150_000);
-        initCollections(size);
     }
 
     /**
-     * Creates a new entry of the shortest path tree (a {@link SPTEntry} or one of its subclasses) during a dijkstra
-     * expansion.
-     *
-     * @param edge    the edge that is currently processed for the expansion
-     * @param weight  the weight the shortest path three entry should carry
-     * @param parent  the parent entry of in the shortest path tree
+     * @param node    the node of a shortest path tree entry
+     * @param weight  the weight of the path to this entry
      * @param reverse true if we are currently looking at the backward search, false otherwise
+     * @return the key that determines the order in which the entries are polled, e.g. the weight plus an
+     * approximation of the remaining weight for A*
      */
-    protected abstract SPTEntry createEntry(EdgeIteratorState edge, double weight, SPTEntry parent, boolean reverse);
+    protected abstract double calcHeapKey(int node, double weight, boolean reverse);
 
     protected DefaultBidirPathExtractor createPathExtractor(Graph graph, Weighting weighting) {
         return new DefaultBidirPathExtractor(graph, weighting);
     }
 
+    @Override
+    public Path calcPath(int from, int to, int fromOutEdge, int toInEdge) {
+        try {
+            return super.calcPath(from, to, fromOutEdge, toInEdge);
+        } finally {
+            releaseStates();
+        }
+    }
+
+    /**
+     * Hands the search states back to the pool. The shortest path trees must not be used afterwards.
+     */
+    protected void releaseStates() {
+        if (fromState != null)
+            fromState.release();
+        if (toState != null)
+            toState.release();
+        fromState = null;
+        toState = null;
+    }
+
+    @Override
+    protected void initFrom(int from, double weight) {
+        this.from = from;
+        if (fromState == null)
+            fromState = SearchState.acquire();
+        currFromKey = calcHeapKey(from, weight, false);
+        currFromSlot = fromState.add(traversalMode.isEdgeBased() ? NO_TRAVERSAL_ID : from, EdgeIterator.NO_EDGE, from, NO_SLOT, weight, currFromKey);
+    }
+
+    @Override
+    protected void initTo(int to, double weight) {
+        this.to = to;
+        if (toState == null)
+            toState = SearchState.acquire();
+        currToKey = calcHeapKey(to, weight, true);
+        currToSlot = toState.add(traversalMode.isEdgeBased() ? NO_TRAVERSAL_ID : to, EdgeIterator.NO_EDGE, to, NO_SLOT, weight, currToKey);
+    }
+
+    @Override
+    protected void postInit(int from, int to) {
+        if (!traversalMode.isEdgeBased()) {
+            if (updateBestPath)
+                updateBestPath(Double.POSITIVE_INFINITY, currToSlot, to, true);
+        } else if (from == to && fromOutEdge == ANY_EDGE && toInEdge == ANY_EDGE) {
+            // special handling if start and end are the same and no directions are restricted
+            // the resulting weight should be zero
+            if (fromState.getWeight(currFromSlot) != 0 || toState.getWeight(currToSlot) != 0) {
+                throw new IllegalStateException("If from=to, the starting weight must be zero for from and to");
+            }
+            bestFwdSlot = currFromSlot;
+            bestBwdSlot = currToSlot;
+            bestWeight = 0;
+            finishedFrom = true;
+            finishedTo = true;
+            return;
+        }
+        postInitFrom();
+        postInitTo();
+    }
+
     protected void postInitFrom() {
         if (fromOutEdge == ANY_EDGE) {
             fillEdgesFrom();
@@ -109,13 +176,10 @@ public abstract class AbstractNonCHBidirAlgo extends AbstractBidirAlgo implement
 
     @Override
     boolean fillEdgesFrom() {
-        while (true) {
-            if (pqOpenSetFrom.isEmpty())
-                return false;
-            currFrom = pqOpenSetFrom.poll();
-            if (!currFrom.isDeleted())
-                break;
-        }
+        if (fromState.isHeapEmpty())
+            return false;
+        currFromKey = fromState.peekKey();
+        currFromSlot = fromState.poll();
         visitedCountFrom++;
         if (fromEntryCanBeSkipped()) {
             return true;
@@ -123,20 +187,16 @@ public abstract class AbstractNonCHBidirAlgo extends AbstractBidirAlgo implement
         if (fwdSearchCanBeStopped()) {
             return false;
         }
-        bestWeightMapOther = bestWeightMapTo;
-        fillEdges(currFrom, pqOpenSetFrom, bestWeightMapFrom, false);
+        fillEdges(fromState, currFromSlot, false);
         return true;
     }
 
     @Override
     boolean fillEdgesTo() {
-        while (true) {
-            if (pqOpenSetTo.isEmpty())
-                return false;
-            currTo = pqOpenSetTo.poll();
-            if (!currTo.isDeleted())
-                break;
-        }
+        if (toState.isHeapEmpty())
+            return false;
+        currToKey = toState.peekKey();
+        currToSlot = toState.poll();
         visitedCountTo++;
         if (toEntryCanBeSkipped()) {
             return true;
@@ -144,68 +204,98 @@ public abstract class AbstractNonCHBidirAlgo extends AbstractBidirAlgo implement
         if (bwdSearchCanBeStopped()) {
             return false;
         }
-        bestWeightMapOther = bestWeightMapFrom;
-        fillEdges(currTo, pqOpenSetTo, bestWeightMapTo, true);
+        fillEdges(toState, currToSlot, true);
         return true;
     }
 
-    private void fillEdges(SPTEntry currEdge, PriorityQueue<SPTEntry> prioQueue, IntObjectMap<SPTEntry> bestWeightMap, boolean reverse) {
-        EdgeIterator iter = edgeExplorer.setBaseNode(currEdge.adjNode);
+    private void fillEdges(SearchState state, int currSlot, boolean reverse) {
+        final int currEdge = state.getEdge(currSlot);
+        final double currWeight = state.getWeight(currSlot);
+        EdgeIterator iter = edgeExplorer.setBaseNode(state.getAdjNode(currSlot));
         while (iter.next()) {
-            if (!accept(iter, currEdge.edge))
+            if (!accept(iter, currEdge))
                 continue;
 
-            final double weight = calcWeight(iter, currEdge, reverse);
+            final double weight = calcWeight(iter, currEdge, currWeight, reverse);
             if (Double.isInfinite(weight)) {
                 continue;
             }
             final int traversalId = traversalMode.createTraversalId(iter, reverse);
-            SPTEntry entry = bestWeightMap.get(traversalId);
-            if (entry == null) {
-                entry = createEntry(iter, weight, currEdge, reverse);
-                bestWeightMap.put(traversalId, entry);
-                prioQueue.add(entry);
-            } else if (entry.getWeightOfVisitedPath() > weight) {
-                // flagging this entry, so it will be ignored when it is polled the next time
-                entry.setDeleted();
-                boolean isBestEntry = reverse ? (entry == bestBwdEntry) : (entry == bestFwdEntry);
-                entry = createEntry(iter, weight, currEdge, reverse);
-                bestWeightMap.put(traversalId, entry);
-                prioQueue.add(entry);
-                // if this is the best entry we need to update the best reference as well
-                if (isBestEntry)
-                    if (reverse)
-                        bestBwdEntry = entry;
-                    else
-                        bestFwdEntry = entry;
+            final double heapKey = calcHeapKey(iter.getAdjNode(), weight, reverse);
+            int slot = state.getSlot(traversalId);
+            if (slot == NO_SLOT) {
+                slot = state.add(traversalId, iter.getEdge(), iter.getAdjNode(), currSlot, weight, heapKey);
+            } else if (state.getWeight(slot) > weight) {
+                // entries that are still in the heap are changed in place and updateBestPath below takes the
+                // smaller weight into account, settled entries are kept as they are and a new slot is added instead
+                slot = state.update(traversalId, slot, iter.getEdge(), currSlot, weight, heapKey);
             } else
                 continue;
 
             if (updateBestPath) {
                 // only needed for edge-based -> skip the calculation and use dummy value otherwise
                 double edgeWeight = traversalMode.isEdgeBased() ? weighting.calcEdgeWeight(iter, reverse) : Double.POSITIVE_INFINITY;
-                // todo: performance - if bestWeightMapOther.get(traversalId) == null, updateBestPath will exit early and we might
-                // have calculated the edgeWeight unnecessarily
-                updateBestPath(edgeWeight, entry, EdgeIterator.NO_EDGE, traversalId, reverse);
+                // todo: performance - if the other search did not reach traversalId yet, updateBestPath will exit
+                // early and we might have calculated the edgeWeight unnecessarily
+                updateBestPath(edgeWeight, slot, traversalId, reverse);
             }
         }
     }
 
-    protected double calcWeight(EdgeIteratorState iter, SPTEntry currEdge, boolean reverse) {
+    /**
+     * @param slot the slot of the entry in the search state of the direction given by reverse
+     */
+    protected void updateBestPath(double edgeWeight, int slot, int traversalId, boolean reverse) {
+        assert traversalMode.isEdgeBased() != Double.isInfinite(edgeWeight);
+        SearchState state = reverse ? toState : fromState;
+        SearchState otherState = reverse ? fromState : toState;
+        int otherSlot = otherState.getSlot(traversalId);
+        if (otherSlot == NO_SLOT)
+            return;
+
+        // update μ
+        double weight = state.getWeight(slot) + otherState.getWeight(otherSlot);
+        if (traversalMode.isEdgeBased()) {
+            if (otherState.getEdge(otherSlot) != state.getEdge(slot))
+                throw new IllegalStateException("cannot happen for edge based execution of " + getName());
+
+            // prevents the path to contain the edge at the meeting point twice and subtracts the weight (excluding turn weight => no previous edge)
+            slot = state.getParent(slot);
+            weight -= edgeWeight;
+        }
+
+        if (weight < bestWeight) {
+            bestFwdSlot = reverse ? otherSlot : slot;
+            bestBwdSlot = reverse ? slot : otherSlot;
+            bestWeight = weight;
+        }
+    }
+
+    /**
+     * @param prevOrNextEdge the edge of the entry the search is currently expanding
+     * @param currWeight     the weight of the entry the search is currently expanding
+     * @return the weight of the path to the adjacent node (or edge) of the given edge
+     */
+    protected double calcWeight(EdgeIteratorState iter, int prevOrNextEdge, double currWeight, boolean reverse) {
         // note that for node-based routing the weights will be wrong in case the weighting is returning non-zero
         // turn weights, see discussion in #1960
-        return GHUtility.calcWeightWithTurnWeight(weighting, iter, reverse, currEdge.edge) + currEdge.getWeightOfVisitedPath();
+        return GHUtility.calcWeightWithTurnWeight(weighting, iter, reverse, prevOrNextEdge) + currWeight;
+    }
+
+    @Override
+    protected double getCurrentFromWeight() {
+        return currFromKey;
     }
 
     @Override
-    protected double getInEdgeWeight(SPTEntry entry) {
-        return weighting.calcEdgeWeight(graph.getEdgeIteratorState(entry.edge, entry.adjNode), false);
+    protected double getCurrentToWeight() {
+        return currToKey;
     }
 
     @Override
     protected Path extractPath() {
         if (finished())
-            return createPathExtractor(graph, weighting).extract(bestFwdEntry, bestBwdEntry, bestWeight);
+            return createPathExtractor(graph, weighting).extract(fromState, bestFwdSlot, toState, bestBwdSlot, bestWeight);
 
         return createEmptyPath();
     }
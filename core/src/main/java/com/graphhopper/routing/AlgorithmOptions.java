@@ -38,6 +38,7 @@ public class AlgorithmOptions {
         setAlgorithm(b.getAlgorithm());
         setTraversalMode(b.getTraversalMode());
         setMaxVisitedNodes(b.getMaxVisitedNodes());
+        setTimeoutMillis(b.getTimeoutMillis());
         setHints(b.getHints());
     }
 
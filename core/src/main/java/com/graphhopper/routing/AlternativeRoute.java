@@ -18,6 +18,7 @@
 package com.graphhopper.routing;
 
 import com.carrotsearch.hppc.IntSet;
+import com.carrotsearch.hppc.predicates.IntIntPredicate;
 import com.carrotsearch.hppc.predicates.IntObjectPredicate;
 import com.graphhopper.coll.GHIntHashSet;
 import com.graphhopper.coll.GHIntObjectHashMap;
@@ -32,8 +33,8 @@ import java.util.Comparator;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicReference;
 
+import static com.graphhopper.routing.SearchState.NO_SLOT;
 import static com.graphhopper.util.Parameters.Algorithms.AltRoute.*;
 
 /**
@@ -101,11 +102,11 @@ public class AlternativeRoute extends AStarBidirection implements RoutingAlgorit
         this.minPlateauFactor = hints.getDouble("alternative_route.min_plateau_factor", 0.1);
     }
 
-    static List<String> getAltNames(Graph graph, SPTEntry ee) {
-        if (ee == null || !EdgeIterator.Edge.isValid(ee.edge))
+    static List<String> getAltNames(Graph graph, int edge) {
+        if (!EdgeIterator.Edge.isValid(edge))
             return Collections.emptyList();
 
-        EdgeIteratorState iter = graph.getEdgeIteratorState(ee.edge, Integer.MIN_VALUE);
+        EdgeIteratorState iter = graph.getEdgeIteratorState(edge, Integer.MIN_VALUE);
         if (iter == null)
             return Collections.emptyList();
 
@@ -123,11 +124,15 @@ public class AlternativeRoute extends AStarBidirection implements RoutingAlgorit
     }
 
     public List<AlternativeInfo> calcAlternatives(int from, int to) {
-        Path bestPath = searchBest(from, to);
-        return calcAlternatives(bestPath, maxPaths,
-                maxWeightFactor, 7,
-                maxShareFactor, 0.8,
-                minPlateauFactor, -0.2);
+        try {
+            Path bestPath = searchBest(from, to);
+            return calcAlternatives(bestPath, maxPaths,
+                    maxWeightFactor, 7,
+                    maxShareFactor, 0.8,
+                    minPlateauFactor, -0.2);
+        } finally {
+            releaseStates();
+        }
     }
 
     @Override
@@ -150,19 +155,14 @@ public class AlternativeRoute extends AStarBidirection implements RoutingAlgorit
     public static class AlternativeInfo {
         private final double sortBy;
         private final Path path;
-        private final SPTEntry shareStart;
-        private final SPTEntry shareEnd;
         private final double shareWeight;
         private final List<String> names;
 
-        public AlternativeInfo(double sortBy, Path path, SPTEntry shareStart, SPTEntry shareEnd,
-                               double shareWeight, List<String> altNames) {
+        public AlternativeInfo(double sortBy, Path path, double shareWeight, List<String> altNames) {
             this.names = altNames;
             this.sortBy = sortBy;
             this.path = path;
             this.path.setDescription(names);
-            this.shareStart = shareStart;
-            this.shareEnd = shareEnd;
             this.shareWeight = shareWeight;
         }
 
@@ -170,14 +170,6 @@ public class AlternativeRoute extends AStarBidirection implements RoutingAlgorit
             return path;
         }
 
-        public SPTEntry getShareStart() {
-            return shareStart;
-        }
-
-        public SPTEntry getShareEnd() {
-            return shareEnd;
-        }
-
         public double getShareWeight() {
             return shareWeight;
         }
@@ -207,8 +199,8 @@ public class AlternativeRoute extends AStarBidirection implements RoutingAlgorit
             return true;
 
         // increase overlap of both searches:
-        return currFrom.weight + currTo.weight > explorationFactor * (bestWeight + stoppingCriterionOffset);
-        // This is more precise but takes roughly 20% longer: return currFrom.weight > bestWeight && currTo.weight > bestWeight;
+        return currFromKey + currToKey > explorationFactor * (bestWeight + stoppingCriterionOffset);
+        // This is more precise but takes roughly 20% longer: return currFromKey > bestWeight && currToKey > bestWeight;
         // For bidir A* and AStarEdge.getWeightOfVisitedPath see comment in AStarBidirection.finished
     }
 
@@ -242,49 +234,52 @@ public class AlternativeRoute extends AStarBidirection implements RoutingAlgorit
                 shareInfluence, bestShare,
                 plateauInfluence, bestPlateau);
 
-        final AlternativeInfo bestAlt = new AlternativeInfo(sortBy, bestPath,
-                bestFwdEntry, bestBwdEntry, bestShare, getAltNames(graph, bestFwdEntry));
+        final AlternativeInfo bestAlt = new AlternativeInfo(sortBy, bestPath, bestShare,
+                getAltNames(graph, bestFwdSlot == NO_SLOT ? EdgeIterator.NO_EDGE : fromState.getEdge(bestFwdSlot)));
         alternatives.add(bestAlt);
-        AtomicReference<SPTEntry> bestEntry = new AtomicReference<>();
+        AtomicInteger bestSlot = new AtomicInteger(NO_SLOT);
 
-        bestWeightMapFrom.forEach(new IntObjectPredicate<SPTEntry>() {
+        fromState.forEach(new IntIntPredicate() {
             @Override
-            public boolean apply(final int traversalId, final SPTEntry fromSPTEntry) {
-                SPTEntry toSPTEntry = bestWeightMapTo.get(traversalId);
-                if (toSPTEntry == null)
+            public boolean apply(final int traversalId, final int fromSlot) {
+                int toSlot = toState.getSlot(traversalId);
+                if (toSlot == NO_SLOT)
                     return true;
 
                 // Using the parent is required to avoid duplicate edge in Path.
                 // TODO we miss the turn cost weight (but at least we not duplicate the current edge weight)
-                if (traversalMode.isEdgeBased() && toSPTEntry.parent != null)
-                    toSPTEntry = toSPTEntry.parent;
+                if (traversalMode.isEdgeBased() && toState.getParent(toSlot) != NO_SLOT)
+                    toSlot = toState.getParent(toSlot);
 
-                // The alternative path is suboptimal if U-turn (after fromSPTEntry)
-                if (fromSPTEntry.edge == toSPTEntry.edge)
+                final int fromEdge = fromState.getEdge(fromSlot);
+                final int toEdge = toState.getEdge(toSlot);
+                // The alternative path is suboptimal if U-turn (after fromSlot)
+                if (fromEdge == toEdge)
                     return true;
 
                 // (1) skip too long paths
-                final double weight = fromSPTEntry.getWeightOfVisitedPath() + toSPTEntry.getWeightOfVisitedPath()
-                        + weighting.calcTurnWeight(fromSPTEntry.edge, fromSPTEntry.adjNode, toSPTEntry.edge);
+                final double weight = fromState.getWeight(fromSlot) + toState.getWeight(toSlot)
+                        + weighting.calcTurnWeight(fromEdge, fromState.getAdjNode(fromSlot), toEdge);
                 if (weight > maxWeight)
                     return true;
 
-                if (isBestPath(fromSPTEntry))
+                if (isBestPath(fromSlot))
                     return true;
 
                 // For edge based traversal we need the next entry to find out the plateau start
-                SPTEntry tmpFromEntry = traversalMode.isEdgeBased() ? fromSPTEntry.parent : fromSPTEntry;
-                if (tmpFromEntry == null || tmpFromEntry.parent == null) {
+                int tmpFromSlot = traversalMode.isEdgeBased() ? fromState.getParent(fromSlot) : fromSlot;
+                if (tmpFromSlot == NO_SLOT || fromState.getParent(tmpFromSlot) == NO_SLOT) {
                     // we can be here only if edge based and only if entry is not part of the best path
                     // e.g. when starting point has two edges and one is part of the best path the other edge is path of an alternative
                     assert traversalMode.isEdgeBased();
                 } else {
-                    int nextToTraversalId = traversalMode.createTraversalId(graph.getEdgeIteratorState(tmpFromEntry.edge, tmpFromEntry.parent.adjNode), true);
-                    SPTEntry correspondingToEntry = bestWeightMapTo.get(nextToTraversalId);
-                    if (correspondingToEntry != null) {
+                    int nextToTraversalId = traversalMode.createTraversalId(graph.getEdgeIteratorState(fromState.getEdge(tmpFromSlot),
+                            fromState.getAdjNode(fromState.getParent(tmpFromSlot))), true);
+                    int correspondingToSlot = toState.getSlot(nextToTraversalId);
+                    if (correspondingToSlot != NO_SLOT) {
                         if (traversalMode.isEdgeBased())
-                            correspondingToEntry = correspondingToEntry.parent;
-                        if (correspondingToEntry.edge == fromSPTEntry.edge)
+                            correspondingToSlot = toState.getParent(correspondingToSlot);
+                        if (toState.getEdge(correspondingToSlot) == fromEdge)
                             return true;
                     }
                 }
@@ -298,49 +293,50 @@ public class AlternativeRoute extends AStarBidirection implements RoutingAlgorit
                 //    start    end
                 //
                 // extend plateau in only one direction necessary (A to B to ...) as we know
-                // that the from-SPTEntry is the start of the plateau or there is no plateau at all
+                // that the from-slot is the start of the plateau or there is no plateau at all
                 //
                 double plateauWeight = 0;
-                SPTEntry prevToSPTEntry = toSPTEntry, prevFrom = fromSPTEntry;
-                while (prevToSPTEntry.parent != null) {
-                    int nextFromTraversalId = traversalMode.createTraversalId(graph.getEdgeIteratorState(prevToSPTEntry.edge, prevToSPTEntry.parent.adjNode), false);
-                    SPTEntry otherFromEntry = bestWeightMapFrom.get(nextFromTraversalId);
+                int prevToSlot = toSlot, prevFromSlot = fromSlot;
+                while (toState.getParent(prevToSlot) != NO_SLOT) {
+                    int prevToParent = toState.getParent(prevToSlot);
+                    int nextFromTraversalId = traversalMode.createTraversalId(graph.getEdgeIteratorState(toState.getEdge(prevToSlot),
+                            toState.getAdjNode(prevToParent)), false);
+                    int otherFromSlot = fromState.getSlot(nextFromTraversalId);
                     // end of a plateau
-                    if (otherFromEntry == null ||
-                            otherFromEntry.parent != prevFrom ||
-                            otherFromEntry.edge != prevToSPTEntry.edge)
+                    if (otherFromSlot == NO_SLOT ||
+                            fromState.getParent(otherFromSlot) != prevFromSlot ||
+                            fromState.getEdge(otherFromSlot) != toState.getEdge(prevToSlot))
                         break;
 
-                    prevFrom = otherFromEntry;
-                    plateauWeight += (prevToSPTEntry.getWeightOfVisitedPath() - prevToSPTEntry.parent.getWeightOfVisitedPath());
-                    prevToSPTEntry = prevToSPTEntry.parent;
+                    prevFromSlot = otherFromSlot;
+                    plateauWeight += (toState.getWeight(prevToSlot) - toState.getWeight(prevToParent));
+                    prevToSlot = prevToParent;
                 }
 
                 if (plateauWeight <= 0 || plateauWeight / weight < minPlateauFactor)
                     return true;
 
-                if (fromSPTEntry.parent == null)
-                    throw new IllegalStateException("not implemented yet. in case of an edge based traversal the parent of fromSPTEntry could be null");
+                if (fromState.getParent(fromSlot) == NO_SLOT)
+                    throw new IllegalStateException("not implemented yet. in case of an edge based traversal the parent of fromSlot could be empty");
 
                 // (3b) calculate share
-                SPTEntry fromEE = getFirstShareEE(fromSPTEntry.parent, true);
-                SPTEntry toEE = getFirstShareEE(toSPTEntry.parent, false);
-                double shareWeight = fromEE.getWeightOfVisitedPath() + toEE.getWeightOfVisitedPath();
+                double shareWeight = fromState.getWeight(getFirstShareSlot(fromState, fromState.getParent(fromSlot), true))
+                        + toState.getWeight(getFirstShareSlot(toState, toState.getParent(toSlot), false));
                 boolean smallShare = shareWeight / bestWeight < maxShareFactor;
                 if (smallShare) {
-                    List<String> altNames = getAltNames(graph, fromSPTEntry);
+                    List<String> altNames = getAltNames(graph, fromEdge);
 
                     double sortBy = calcSortBy(weightInfluence, weight, shareInfluence, shareWeight, plateauInfluence, plateauWeight);
                     double worstSortBy = getWorstSortBy();
 
                     // plateaus.add(new PlateauInfo(altName, plateauEdges));
                     if (sortBy < worstSortBy || alternatives.size() < maxPaths) {
-                        Path path = DefaultBidirPathExtractor.extractPath(graph, weighting, fromSPTEntry, toSPTEntry, weight);
+                        Path path = DefaultBidirPathExtractor.extractPath(graph, weighting, fromState, fromSlot, toState, toSlot, weight);
 
                         // for now do not add alternatives to set, if we do we need to remove then on alternatives.clear too (see below)
                         // AtomicInteger tid = addToMap(traversalIDMap, path);
                         // int tid = traversalMode.createTraversalId(path.calcEdges().get(0), false);
-                        alternatives.add(new AlternativeInfo(sortBy, path, fromEE, toEE, shareWeight, altNames));
+                        alternatives.add(new AlternativeInfo(sortBy, path, shareWeight, altNames));
 
                         Collections.sort(alternatives, ALT_COMPARATOR);
                         if (alternatives.get(0) != bestAlt)
@@ -357,17 +353,17 @@ public class AlternativeRoute extends AStarBidirection implements RoutingAlgorit
             /**
              * Extract path until we stumble over an existing traversal id
              */
-            SPTEntry getFirstShareEE(SPTEntry startEE, boolean reverse) {
-                while (startEE.parent != null) {
-                    // TODO we could make use of traversal ID directly if stored in SPTEntry
-                    int tid = traversalMode.createTraversalId(graph.getEdgeIteratorState(startEE.edge, startEE.parent.adjNode), reverse);
+            int getFirstShareSlot(SearchState state, int startSlot, boolean reverse) {
+                while (state.getParent(startSlot) != NO_SLOT) {
+                    int tid = traversalMode.createTraversalId(graph.getEdgeIteratorState(state.getEdge(startSlot),
+                            state.getAdjNode(state.getParent(startSlot))), reverse);
                     if (isAlreadyExisting(tid))
-                        return startEE;
+                        return startSlot;
 
-                    startEE = startEE.parent;
+                    startSlot = state.getParent(startSlot);
                 }
 
-                return startEE;
+                return startSlot;
             }
 
             /**
@@ -399,27 +395,27 @@ public class AlternativeRoute extends AStarBidirection implements RoutingAlgorit
                 return alternatives.get(alternatives.size() - 1).sortBy;
             }
 
-            // returns true if fromSPTEntry is identical to the specified best path
-            boolean isBestPath(SPTEntry fromSPTEntry) {
+            // returns true if fromSlot is identical to the specified best path
+            boolean isBestPath(int fromSlot) {
                 if (traversalMode.isEdgeBased()) {
-                    if (GHUtility.getEdgeFromEdgeKey(startTID.get()) == fromSPTEntry.edge) {
-                        if (fromSPTEntry.parent == null)
-                            throw new IllegalStateException("best path must have no parent but was non-null: " + fromSPTEntry);
-                        if (bestEntry.get() != null && bestEntry.get().edge != fromSPTEntry.edge)
-                            throw new IllegalStateException("there can be only one best entry but was " + fromSPTEntry + " vs old: " + bestEntry.get()
-                                    + " " + graph.getEdgeIteratorState(fromSPTEntry.edge, fromSPTEntry.adjNode).fetchWayGeometry(FetchMode.ALL));
-                        bestEntry.set(fromSPTEntry);
+                    if (GHUtility.getEdgeFromEdgeKey(startTID.get()) == fromState.getEdge(fromSlot)) {
+                        if (fromState.getParent(fromSlot) == NO_SLOT)
+                            throw new IllegalStateException("best path must have no parent but was non-null: " + fromSlot);
+                        if (bestSlot.get() != NO_SLOT && fromState.getEdge(bestSlot.get()) != fromState.getEdge(fromSlot))
+                            throw new IllegalStateException("there can be only one best entry but was " + fromSlot + " vs old: " + bestSlot.get()
+                                    + " " + graph.getEdgeIteratorState(fromState.getEdge(fromSlot), fromState.getAdjNode(fromSlot)).fetchWayGeometry(FetchMode.ALL));
+                        bestSlot.set(fromSlot);
                         return true;
                     }
 
-                } else if (fromSPTEntry.parent == null) {
-                    if (startTID.get() != fromSPTEntry.adjNode)
+                } else if (fromState.getParent(fromSlot) == NO_SLOT) {
+                    if (startTID.get() != fromState.getAdjNode(fromSlot))
                         throw new IllegalStateException("Start traversal ID has to be identical to root edge entry "
-                                + "which is the plateau start of the best path but was: " + startTID + " vs. adjNode: " + fromSPTEntry.adjNode);
-                    if (bestEntry.get() != null)
-                        throw new IllegalStateException("there can be only one best entry but was " + fromSPTEntry + " vs old: " + bestEntry.get()
-                                + " " + graph.getEdgeIteratorState(fromSPTEntry.edge, fromSPTEntry.adjNode).fetchWayGeometry(FetchMode.ALL));
-                    bestEntry.set(fromSPTEntry);
+                                + "which is the plateau start of the best path but was: " + startTID + " vs. adjNode: " + fromState.getAdjNode(fromSlot));
+                    if (bestSlot.get() != NO_SLOT)
+                        throw new IllegalStateException("there can be only one best entry but was " + fromSlot + " vs old: " + bestSlot.get()
+                                + " " + graph.getEdgeIteratorState(fromState.getEdge(fromSlot), fromState.getAdjNode(fromSlot)).fetchWayGeometry(FetchMode.ALL));
+                    bestSlot.set(fromSlot);
                     return true;
                 }
 
@@ -37,6 +37,10 @@ public class DefaultBidirPathExtractor implements BidirPathExtractor {
         return new DefaultBidirPathExtractor(graph, weighting).extract(fwdEntry, bwdEntry, weight);
     }
 
+    public static Path extractPath(Graph graph, Weighting weighting, SearchState fwdState, int fwdSlot, SearchState bwdState, int bwdSlot, double weight) {
+        return new DefaultBidirPathExtractor(graph, weighting).extract(fwdState, fwdSlot, bwdState, bwdSlot, weight);
+    }
+
     protected DefaultBidirPathExtractor(Graph graph, Weighting weighting) {
         this.graph = graph;
         this.weighting = weighting;
@@ -62,6 +66,41 @@ public class DefaultBidirPathExtractor implements BidirPathExtractor {
         return path;
     }
 
+    /**
+     * Same as {@link #extract(SPTEntry, SPTEntry, double)}, but for shortest path trees stored in {@link SearchState}s
+     */
+    public Path extract(SearchState fwdState, int fwdSlot, SearchState bwdState, int bwdSlot, double weight) {
+        if (fwdSlot == SearchState.NO_SLOT || bwdSlot == SearchState.NO_SLOT) {
+            // path not found
+            return path;
+        }
+        if (fwdState.getAdjNode(fwdSlot) != bwdState.getAdjNode(bwdSlot))
+            throw new IllegalStateException("forward and backward entries must have same adjacent nodes, fwdSlot:" + fwdSlot
+                    + " (node " + fwdState.getAdjNode(fwdSlot) + "), bwdSlot:" + bwdSlot + " (node " + bwdState.getAdjNode(bwdSlot) + ")");
+
+        StopWatch sw = new StopWatch().start();
+        int fwdRoot = followParentsUntilRoot(fwdState, fwdSlot, false);
+        onFwdTreeRoot(fwdState.getAdjNode(fwdRoot));
+        // since we followed the fwd path in backward direction we need to reverse the edge ids
+        ArrayUtil.reverse(path.getEdges());
+        onMeetingPoint(fwdState.getEdge(fwdSlot), fwdState.getAdjNode(fwdSlot), bwdState.getEdge(bwdSlot));
+        int bwdRoot = followParentsUntilRoot(bwdState, bwdSlot, true);
+        onBwdTreeRoot(bwdState.getAdjNode(bwdRoot));
+        setExtractionTime(sw.stop().getNanos());
+        path.setFound(true);
+        path.setWeight(weight);
+        return path;
+    }
+
+    private int followParentsUntilRoot(SearchState state, int slot, boolean reverse) {
+        while (EdgeIterator.Edge.isValid(state.getEdge(slot))) {
+            int parent = state.getParent(slot);
+            onEdge(state.getEdge(slot), state.getAdjNode(slot), reverse, state.getEdge(parent));
+            slot = parent;
+        }
+        return slot;
+    }
+
     protected void extractFwdPath(SPTEntry sptEntry) {
         SPTEntry fwdRoot = followParentsUntilRoot(sptEntry, false);
         onFwdTreeRoot(fwdRoot.adjNode);
@@ -24,7 +24,11 @@ import com.graphhopper.routing.ev.DecimalEncodedValue;
 import com.graphhopper.routing.ev.Orientation;
 import com.graphhopper.routing.ev.TurnRestriction;
 import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.weighting.CachedWeighting;
 import com.graphhopper.routing.weighting.DefaultTurnCostProvider;
+import com.graphhopper.routing.weighting.EdgeWeightCache;
+import com.graphhopper.routing.weighting.SpeedProfileStorage;
+import com.graphhopper.routing.weighting.TimeDependentWeighting;
 import com.graphhopper.routing.weighting.TurnCostProvider;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.routing.weighting.custom.CustomModelParser;
@@ -35,6 +39,9 @@ import com.graphhopper.util.PMap;
 import com.graphhopper.util.Parameters;
 import com.graphhopper.util.TurnCostsConfig;
 
+import java.util.Collections;
+import java.util.Map;
+
 import static com.graphhopper.routing.weighting.TurnCostProvider.NO_TURN_COST_PROVIDER;
 import static com.graphhopper.util.Helper.toLowerCase;
 
@@ -42,10 +49,30 @@ public class DefaultWeightingFactory implements WeightingFactory {
 
     private final BaseGraph graph;
     private final EncodingManager encodingManager;
+    private final Map<String, EdgeWeightCache> weightCaches;
+    private final SpeedProfileStorage speedProfiles;
 
     public DefaultWeightingFactory(BaseGraph graph, EncodingManager encodingManager) {
+        this(graph, encodingManager, Collections.emptyMap());
+    }
+
+    /**
+     * @param weightCaches the edge weights of the profiles, which are used when a request does not change the
+     *                     custom model of the profile
+     */
+    public DefaultWeightingFactory(BaseGraph graph, EncodingManager encodingManager, Map<String, EdgeWeightCache> weightCaches) {
+        this(graph, encodingManager, weightCaches, null);
+    }
+
+    /**
+     * @param speedProfiles the historic speeds that are used for requests with a departure time, can be null
+     */
+    public DefaultWeightingFactory(BaseGraph graph, EncodingManager encodingManager, Map<String, EdgeWeightCache> weightCaches,
+                                   SpeedProfileStorage speedProfiles) {
         this.graph = graph;
         this.encodingManager = encodingManager;
+        this.weightCaches = weightCaches;
+        this.speedProfiles = speedProfiles;
     }
 
     @Override
@@ -89,6 +116,10 @@ public class DefaultWeightingFactory implements WeightingFactory {
             } else
                 weighting = CustomModelParser.createWeighting(encodingManager, turnCostProvider, mergedCustomModel);
 
+            EdgeWeightCache weightCache = weightCaches.get(profile.getName());
+            if (weightCache != null && queryCustomModel == null && !requestHints.has("cm_version"))
+                weighting = new CachedWeighting(weighting, weightCache);
+
         } else if ("shortest".equalsIgnoreCase(weightingStr)) {
             throw new IllegalArgumentException("Instead of weighting=shortest use weighting=custom with a high distance_influence");
         } else if ("fastest".equalsIgnoreCase(weightingStr)) {
@@ -103,6 +134,11 @@ public class DefaultWeightingFactory implements WeightingFactory {
         if (weighting == null)
             throw new IllegalArgumentException("Weighting '" + weightingStr + "' not supported");
 
+        if (requestHints.has(Parameters.Routing.DEPARTURE_TIME)) {
+            if (speedProfiles == null)
+                throw new IllegalArgumentException("The parameter " + Parameters.Routing.DEPARTURE_TIME + " requires speed profiles, see graph.speed_profiles.file");
+            weighting = new TimeDependentWeighting(weighting, speedProfiles);
+        }
         return weighting;
     }
 
@@ -17,8 +17,6 @@
  */
 package com.graphhopper.routing;
 
-import com.carrotsearch.hppc.IntObjectMap;
-import com.graphhopper.coll.GHIntObjectHashMap;
 import com.graphhopper.routing.util.TraversalMode;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.Graph;
@@ -27,31 +25,30 @@ import com.graphhopper.util.EdgeIteratorState;
 import com.graphhopper.util.GHUtility;
 import com.graphhopper.util.Parameters;
 
-import java.util.PriorityQueue;
+import static com.graphhopper.routing.SearchState.NO_SLOT;
+import static com.graphhopper.routing.SearchState.NO_TRAVERSAL_ID;
 
 /**
  * Implements a single source shortest path algorithm
  * http://en.wikipedia.org/wiki/Dijkstra's_algorithm
  * <p>
+ * The shortest path tree is kept in a {@link SearchState} which is taken from a per-thread pool, so the search does
+ * not allocate an object per visited node or edge.
+ * <p>
  *
  * @author Peter Karich
  */
 public class Dijkstra extends AbstractRoutingAlgorithm {
-    protected IntObjectMap<SPTEntry> fromMap;
-    protected PriorityQueue<SPTEntry> fromHeap;
-    protected SPTEntry currEdge;
+    protected SearchState state;
+    /**
+     * the slot of the entry that was polled from the heap most recently
+     */
+    protected int currSlot = NO_SLOT;
     private int visitedNodes;
     private int to = -1;
 
     public Dijkstra(Graph graph, Weighting weighting, TraversalMode tMode) {
         super(graph, weighting, tMode);
-        int size = Math.min(Math.max(200, graph.getNodes() / 10), 2000);
-        initCollections(size);
-    }
-
-    protected void initCollections(int size) {
-        fromHeap = new PriorityQueue<>(size);
-        fromMap = new GHIntObjectHashMap<>(size);
     }
 
     @Override
@@ -59,62 +56,60 @@ public class Dijkstra extends AbstractRoutingAlgorithm {
         checkAlreadyRun();
         setupFinishTime();
         this.to = to;
-        SPTEntry startEntry = new SPTEntry(from, 0);
-        fromHeap.add(startEntry);
-        if (!traversalMode.isEdgeBased())
-            fromMap.put(from, currEdge);
-        runAlgo();
-        return extractPath();
+        state = SearchState.acquire();
+        try {
+            // for edge-based traversal the start does not belong to an edge and has no traversal id
+            state.add(traversalMode.isEdgeBased() ? NO_TRAVERSAL_ID : from, EdgeIterator.NO_EDGE, from, NO_SLOT, 0, 0);
+            runAlgo();
+            return extractPath();
+        } finally {
+            state.release();
+        }
     }
 
     protected void runAlgo() {
-        while (!fromHeap.isEmpty()) {
-            currEdge = fromHeap.poll();
-            if (currEdge.isDeleted())
-                continue;
+        while (!state.isHeapEmpty()) {
+            currSlot = state.poll();
             visitedNodes++;
             if (isMaxVisitedNodesExceeded() || finished() || isTimeoutExceeded())
                 break;
 
-            int currNode = currEdge.adjNode;
+            int currNode = state.getAdjNode(currSlot);
+            int currEdge = state.getEdge(currSlot);
+            double currWeight = state.getWeight(currSlot);
             EdgeIterator iter = edgeExplorer.setBaseNode(currNode);
             while (iter.next()) {
-                if (!accept(iter, currEdge.edge))
+                if (!accept(iter, currEdge))
                     continue;
 
-                double tmpWeight = GHUtility.calcWeightWithTurnWeight(weighting, iter, false, currEdge.edge) + currEdge.weight;
+                double tmpWeight = GHUtility.calcWeightWithTurnWeight(weighting, iter, false, currEdge) + currWeight;
                 if (Double.isInfinite(tmpWeight)) {
                     continue;
                 }
                 int traversalId = traversalMode.createTraversalId(iter, false);
 
-                SPTEntry nEdge = fromMap.get(traversalId);
-                if (nEdge == null) {
-                    nEdge = new SPTEntry(iter.getEdge(), iter.getAdjNode(), tmpWeight, currEdge);
-                    fromMap.put(traversalId, nEdge);
-                    fromHeap.add(nEdge);
-                } else if (nEdge.weight > tmpWeight) {
-                    nEdge.setDeleted();
-                    nEdge = new SPTEntry(iter.getEdge(), iter.getAdjNode(), tmpWeight, currEdge);
-                    fromMap.put(traversalId, nEdge);
-                    fromHeap.add(nEdge);
+                int slot = state.getSlot(traversalId);
+                if (slot == NO_SLOT) {
+                    slot = state.add(traversalId, iter.getEdge(), iter.getAdjNode(), currSlot, tmpWeight, tmpWeight);
+                } else if (state.getWeight(slot) > tmpWeight) {
+                    slot = state.update(traversalId, slot, iter.getEdge(), currSlot, tmpWeight, tmpWeight);
                 } else
                     continue;
 
-                updateBestPath(iter, nEdge, traversalId);
+                updateBestPath(iter, slot, traversalId);
             }
         }
     }
 
     protected boolean finished() {
-        return currEdge.adjNode == to;
+        return state.getAdjNode(currSlot) == to;
     }
 
     private Path extractPath() {
-        if (currEdge == null || !finished())
+        if (currSlot == NO_SLOT || !finished())
             return createEmptyPath();
 
-        return PathExtractor.extractPath(graph, weighting, currEdge);
+        return PathExtractor.extractPath(graph, weighting, state, currSlot);
     }
 
     @Override
@@ -122,7 +117,12 @@ public class Dijkstra extends AbstractRoutingAlgorithm {
         return visitedNodes;
     }
 
-    protected void updateBestPath(EdgeIteratorState edgeState, SPTEntry bestSPTEntry, int traversalId) {
+    /**
+     * Called whenever a better entry of the shortest path tree was found
+     *
+     * @param slot the slot of the new entry in {@link #state}
+     */
+    protected void updateBestPath(EdgeIteratorState edgeState, int slot, int traversalId) {
     }
 
     @Override
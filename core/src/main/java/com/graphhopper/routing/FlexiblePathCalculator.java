@@ -25,6 +25,7 @@ import com.graphhopper.util.Parameters;
 import com.graphhopper.util.StopWatch;
 import com.graphhopper.util.exceptions.MaximumNodesExceededException;
 
+import java.time.Instant;
 import java.util.Collections;
 import java.util.List;
 
@@ -37,6 +38,8 @@ public class FlexiblePathCalculator implements PathCalculator {
     private final AlgorithmOptions algoOpts;
     private String debug;
     private int visitedNodes;
+    // the departure time of the next leg of a route with via points, or null to use the one of the algorithm options
+    private String nextDepartureTime;
 
     public FlexiblePathCalculator(QueryGraph queryGraph, RoutingAlgorithmFactory algoFactory, Weighting weighting, AlgorithmOptions algoOpts) {
         this.queryGraph = queryGraph;
@@ -53,11 +56,19 @@ public class FlexiblePathCalculator implements PathCalculator {
 
     private RoutingAlgorithm createAlgo() {
         StopWatch sw = new StopWatch().start();
-        RoutingAlgorithm algo = algoFactory.createAlgo(queryGraph, weighting, algoOpts);
+        RoutingAlgorithm algo = algoFactory.createAlgo(queryGraph, weighting, getAlgoOpts());
         debug = ", algoInit:" + (sw.stop().getNanos() / 1000) + " μs";
         return algo;
     }
 
+    private AlgorithmOptions getAlgoOpts() {
+        if (nextDepartureTime == null)
+            return algoOpts;
+        AlgorithmOptions opts = new AlgorithmOptions(algoOpts);
+        opts.getHints().putObject(Parameters.Routing.DEPARTURE_TIME, nextDepartureTime);
+        return opts;
+    }
+
     private List<Path> calcPaths(int from, int to, EdgeRestrictions edgeRestrictions, RoutingAlgorithm algo) {
         StopWatch sw = new StopWatch().start();
         // todo: so far 'heading' is implemented like this: we mark the unfavored edges on the query graph and then
@@ -87,6 +98,9 @@ public class FlexiblePathCalculator implements PathCalculator {
         if (algo.getVisitedNodes() >= algoOpts.getMaxVisitedNodes())
             throw new MaximumNodesExceededException("No path found due to maximum nodes exceeded " + algoOpts.getMaxVisitedNodes(), algoOpts.getMaxVisitedNodes());
         visitedNodes = algo.getVisitedNodes();
+        if (algo instanceof TimeDependentAStar && ((TimeDependentAStar) algo).getArrivalTime() >= 0)
+            // the next leg of a route with via points departs when this leg arrives
+            nextDepartureTime = Instant.ofEpochMilli(((TimeDependentAStar) algo).getArrivalTime()).toString();
         debug += ", " + algo.getName() + "-routing:" + sw.stop().getMillis() + " ms";
         return paths;
     }
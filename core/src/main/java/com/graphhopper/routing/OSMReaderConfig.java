@@ -34,6 +34,7 @@ public class OSMReaderConfig {
     private double longEdgeSamplingDistance = Double.MAX_VALUE;
     private int workerThreads = 2;
     private double defaultElevation = 0;
+    private String nodeIdMap = "btree";
 
     public List<String> getIgnoredHighways() {
         return ignoredHighways;
@@ -157,6 +158,20 @@ public class OSMReaderConfig {
         return this;
     }
 
+    public String getNodeIdMap() {
+        return nodeIdMap;
+    }
+
+    /**
+     * Sets how the ids of the OSM nodes are mapped during the import. The default 'btree' keeps them in an on-heap
+     * b-tree. Alternatively a data access type like MMAP can be used to store them in blocks of consecutive OSM node
+     * ids, which requires much less heap memory for bigger OSM files, see {@link com.graphhopper.coll.GHLongLongBlockMap}
+     */
+    public OSMReaderConfig setNodeIdMap(String nodeIdMap) {
+        this.nodeIdMap = nodeIdMap;
+        return this;
+    }
+
     public double getDefaultElevation() {
         return defaultElevation;
     }
@@ -31,10 +31,21 @@ public class PathExtractor {
         return new PathExtractor(graph, weighting).extract(sptEntry);
     }
 
+    public static Path extractPath(Graph graph, Weighting weighting, SearchState state, int slot) {
+        return new PathExtractor(graph, weighting).extract(state, slot);
+    }
+
     protected PathExtractor(Graph graph, Weighting weighting) {
+        this(graph, weighting, new Path(graph));
+    }
+
+    /**
+     * @param path the empty path the extracted edges are added to
+     */
+    protected PathExtractor(Graph graph, Weighting weighting, Path path) {
         this.graph = graph;
         this.weighting = weighting;
-        path = new Path(graph);
+        this.path = path;
     }
 
     protected Path extract(SPTEntry sptEntry) {
@@ -50,6 +61,28 @@ public class PathExtractor {
         return path;
     }
 
+    protected Path extract(SearchState state, int slot) {
+        if (slot == SearchState.NO_SLOT) {
+            // path not found
+            return path;
+        }
+        StopWatch sw = new StopWatch().start();
+        int currSlot = slot;
+        int parentSlot = state.getParent(currSlot);
+        while (EdgeIterator.Edge.isValid(state.getEdge(currSlot))) {
+            onEdge(state.getEdge(currSlot), state.getAdjNode(currSlot), state.getEdge(parentSlot));
+            currSlot = parentSlot;
+            parentSlot = state.getParent(currSlot);
+        }
+        ArrayUtil.reverse(path.getEdges());
+        path.setFromNode(state.getAdjNode(currSlot));
+        path.setEndNode(state.getAdjNode(slot));
+        path.setFound(true);
+        path.setWeight(state.getWeight(slot));
+        setExtractionTime(sw.stop().getNanos());
+        return path;
+    }
+
     private void extractPath(SPTEntry sptEntry) {
         SPTEntry currEdge = followParentsUntilRoot(sptEntry);
         ArrayUtil.reverse(path.getEdges());
@@ -467,6 +467,9 @@ public class Router {
 
             if (ROUND_TRIP.equalsIgnoreCase(request.getAlgorithm()))
                 throw new IllegalArgumentException("algorithm=round_trip cannot be used with CH");
+
+            if (request.getHints().has(Parameters.Routing.DEPARTURE_TIME))
+                throw new IllegalArgumentException("The '" + Parameters.Routing.DEPARTURE_TIME + "' parameter is currently not supported for speed mode, you need to disable speed mode with `ch.disable=true`.");
         }
 
         @Override
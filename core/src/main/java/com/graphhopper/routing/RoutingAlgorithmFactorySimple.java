@@ -18,6 +18,7 @@
 package com.graphhopper.routing;
 
 import com.graphhopper.routing.weighting.BeelineWeightApproximator;
+import com.graphhopper.routing.weighting.TimeDependentWeighting;
 import com.graphhopper.routing.weighting.WeightApproximator;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.Graph;
@@ -26,6 +27,7 @@ import com.graphhopper.util.DistanceCalcEarth;
 import com.graphhopper.util.DistancePlaneProjection;
 import com.graphhopper.util.Helper;
 import com.graphhopper.util.PMap;
+import com.graphhopper.util.Parameters;
 
 import static com.graphhopper.util.Parameters.Algorithms.*;
 
@@ -41,6 +43,9 @@ public class RoutingAlgorithmFactorySimple implements RoutingAlgorithmFactory {
         RoutingAlgorithm ra;
         String algoStr = opts.getAlgorithm();
         Weighting weighting = g.wrapWeighting(w);
+        if (w instanceof TimeDependentWeighting)
+            return createTimeDependentAlgo(g, weighting, (TimeDependentWeighting) w, opts,
+                    getApproximation(ASTAR, opts.getHints(), w, g.getNodeAccess()));
         if (DIJKSTRA_BI.equalsIgnoreCase(algoStr)) {
             ra = new DijkstraBidirectionRef(g, weighting, opts.getTraversalMode());
         } else if (DIJKSTRA.equalsIgnoreCase(algoStr)) {
@@ -72,6 +77,33 @@ public class RoutingAlgorithmFactorySimple implements RoutingAlgorithmFactory {
         return ra;
     }
 
+    /**
+     * Creates the algorithm for a time-dependent weighting. This is always a unidirectional search, so the
+     * bidirectional algorithms are replaced with A*.
+     *
+     * @param weighting the given time-dependent weighting, wrapped by the graph
+     * @param approx    the approximation used unless the algorithm is Dijkstra
+     */
+    public static TimeDependentAStar createTimeDependentAlgo(Graph g, Weighting weighting, TimeDependentWeighting tdWeighting,
+                                                             AlgorithmOptions opts, WeightApproximator approx) {
+        String algoStr = opts.getAlgorithm();
+        TimeDependentAStar algo = new TimeDependentAStar(g, weighting, tdWeighting, opts.getTraversalMode());
+        if (DIJKSTRA.equalsIgnoreCase(algoStr) || DIJKSTRA_BI.equalsIgnoreCase(algoStr))
+            algo.setApproximation(null);
+        else if (ASTAR.equalsIgnoreCase(algoStr) || ASTAR_BI.equalsIgnoreCase(algoStr) || Helper.isEmpty(algoStr))
+            algo.setApproximation(approx);
+        else
+            throw new IllegalArgumentException("Time-dependent routing only supports algorithm=" + DIJKSTRA + "," + ASTAR
+                    + " or " + ASTAR_BI + ", but got: " + algoStr);
+        String departureTime = opts.getHints().getString(Parameters.Routing.DEPARTURE_TIME, "");
+        if (departureTime.isEmpty())
+            throw new IllegalArgumentException("Time-dependent routing requires the parameter " + Parameters.Routing.DEPARTURE_TIME);
+        algo.setDepartureTime(TimeDependentWeighting.parseDepartureTime(departureTime));
+        algo.setMaxVisitedNodes(opts.getMaxVisitedNodes());
+        algo.setTimeoutMillis(opts.getTimeoutMillis());
+        return algo;
+    }
+
     public static WeightApproximator getApproximation(String prop, PMap opts, Weighting weighting, NodeAccess na) {
         String approxAsStr = opts.getString(prop + ".approximation", "BeelineSimplification");
         double epsilon = opts.getDouble(prop + ".epsilon", 1);
@@ -0,0 +1,288 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.carrotsearch.hppc.IntIntHashMap;
+import com.carrotsearch.hppc.predicates.IntIntPredicate;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * The shortest path tree and the priority queue of a unidirectional search, stored in primitive arrays instead of
+ * {@link SPTEntry} objects and a {@link java.util.PriorityQueue}. Every traversal id (node or edge key) that is reached
+ * during the search gets a 'slot' and the slots are used as index into parallel arrays holding the edge, the adjacent
+ * node, the parent slot and the weight. The heap is a binary min heap of slots that keeps track of the positions of
+ * its elements, so it supports an efficient update operation and there is no need for lazy deletion.
+ * <p>
+ * Entries that were already polled from the heap ('settled') are never changed, because their descendants in the tree
+ * refer to them. If a better path to a settled traversal id is found, which can happen for A* with an inconsistent
+ * approximation, {@link #update} adds a new entry for it instead.
+ * <p>
+ * The arrays only grow with the number of visited traversal ids and not with the size of the graph. Instances can be
+ * obtained via {@link #acquire()} and handed back via {@link #release()}, which keeps a small pool of cleared instances
+ * per thread such that subsequent searches do not allocate anything once the arrays are large enough.
+ *
+ * @see Dijkstra
+ * @see AStar
+ * @see AbstractNonCHBidirAlgo
+ */
+public class SearchState {
+    public static final int NO_SLOT = -1;
+    /**
+     * Can be used as traversal id of the root of an edge-based search, which does not belong to an edge
+     */
+    public static final int NO_TRAVERSAL_ID = -1;
+    private static final int SETTLED = 0;
+    // the pooled states of a thread are kept for the lifetime of the thread, so we limit the number of their slots
+    // to roughly 30MB per thread. The states of larger searches are left to the garbage collector.
+    static final int MAX_POOLED_SLOTS = 1 << 19;
+    private static final ThreadLocal<ArrayDeque<SearchState>> POOL = ThreadLocal.withInitial(ArrayDeque::new);
+
+    private final IntIntHashMap slotsByTraversalId;
+    private int[] edges;
+    private int[] adjNodes;
+    private int[] parents;
+    private double[] weights;
+    private int size;
+    // heap, the 0th elements are not used, so a heap position of 0 means the slot was polled already
+    private int[] heapSlots;
+    private double[] heapKeys;
+    private int[] heapPositions;
+    private int heapSize;
+
+    public SearchState() {
+        this(128);
+    }
+
+    public SearchState(int initialCapacity) {
+        initialCapacity = Math.max(2, initialCapacity);
+        slotsByTraversalId = new IntIntHashMap(initialCapacity);
+        edges = new int[initialCapacity];
+        adjNodes = new int[initialCapacity];
+        parents = new int[initialCapacity];
+        weights = new double[initialCapacity];
+        heapPositions = new int[initialCapacity];
+        heapSlots = new int[initialCapacity + 1];
+        heapKeys = new double[initialCapacity + 1];
+        heapKeys[0] = Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * @return a cleared instance from the pool of the current thread or a new one if the pool is empty
+     */
+    public static SearchState acquire() {
+        SearchState state = POOL.get().pollFirst();
+        return state == null ? new SearchState() : state;
+    }
+
+    /**
+     * Clears this instance and puts it back into the pool of the current thread. It must not be used afterwards.
+     */
+    public void release() {
+        ArrayDeque<SearchState> pool = POOL.get();
+        long pooledSlots = edges.length;
+        for (SearchState state : pool)
+            pooledSlots += state.edges.length;
+        if (pooledSlots > MAX_POOLED_SLOTS)
+            return;
+        clear();
+        pool.addFirst(this);
+    }
+
+    /**
+     * @return the slot of the given traversal id or {@link #NO_SLOT} if it was not reached yet
+     */
+    public int getSlot(int traversalId) {
+        return slotsByTraversalId.getOrDefault(traversalId, NO_SLOT);
+    }
+
+    /**
+     * Adds a new entry to the shortest path tree and pushes it into the heap.
+     *
+     * @param traversalId the traversal id of the entry or {@link #NO_TRAVERSAL_ID} if the entry shall not be found
+     *                    via {@link #getSlot(int)}
+     * @return the slot of the new entry
+     */
+    public int add(int traversalId, int edge, int adjNode, int parentSlot, double weight, double heapKey) {
+        if (size == edges.length)
+            grow();
+        int slot = size++;
+        if (traversalId != NO_TRAVERSAL_ID)
+            slotsByTraversalId.put(traversalId, slot);
+        edges[slot] = edge;
+        adjNodes[slot] = adjNode;
+        parents[slot] = parentSlot;
+        weights[slot] = weight;
+        push(slot, heapKey);
+        return slot;
+    }
+
+    /**
+     * Replaces the entry at the given slot with a better one. If the entry is still in the heap it is changed in place,
+     * otherwise it was settled already and a new entry is added for the same traversal id.
+     *
+     * @return the slot of the updated entry, which is the given slot unless the entry was settled already
+     */
+    public int update(int traversalId, int slot, int edge, int parentSlot, double weight, double heapKey) {
+        int index = heapPositions[slot];
+        if (index == SETTLED)
+            return add(traversalId, edge, adjNodes[slot], parentSlot, weight, heapKey);
+        edges[slot] = edge;
+        parents[slot] = parentSlot;
+        weights[slot] = weight;
+        double prev = heapKeys[index];
+        heapKeys[index] = heapKey;
+        if (heapKey < prev)
+            percolateUp(index);
+        else if (heapKey > prev)
+            percolateDown(index);
+        return slot;
+    }
+
+    /**
+     * @return true if the given slot was polled from the heap already
+     */
+    public boolean isSettled(int slot) {
+        return heapPositions[slot] == SETTLED;
+    }
+
+    public boolean isHeapEmpty() {
+        return heapSize == 0;
+    }
+
+    /**
+     * @return the smallest heap key, i.e. the key of the slot that will be polled next
+     */
+    public double peekKey() {
+        if (heapSize == 0)
+            throw new IllegalStateException("The heap is empty");
+        return heapKeys[1];
+    }
+
+    /**
+     * Removes the slot with the smallest heap key from the heap
+     */
+    public int poll() {
+        int slot = heapSlots[1];
+        heapPositions[slot] = SETTLED;
+        heapSlots[1] = heapSlots[heapSize];
+        heapKeys[1] = heapKeys[heapSize];
+        heapSize--;
+        if (heapSize > 0) {
+            heapPositions[heapSlots[1]] = 1;
+            percolateDown(1);
+        }
+        return slot;
+    }
+
+    public int getEdge(int slot) {
+        return edges[slot];
+    }
+
+    public int getAdjNode(int slot) {
+        return adjNodes[slot];
+    }
+
+    /**
+     * @return the slot of the parent entry or {@link #NO_SLOT} for the root of the tree
+     */
+    public int getParent(int slot) {
+        return parents[slot];
+    }
+
+    public double getWeight(int slot) {
+        return weights[slot];
+    }
+
+    /**
+     * @return the number of entries of the shortest path tree
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Calls the given predicate for the traversal ids and slots of all entries that can be found via
+     * {@link #getSlot(int)} until it returns false.
+     */
+    public void forEach(IntIntPredicate predicate) {
+        slotsByTraversalId.forEach(predicate);
+    }
+
+    public void clear() {
+        slotsByTraversalId.clear();
+        size = 0;
+        heapSize = 0;
+    }
+
+    private void push(int slot, double key) {
+        heapSize++;
+        heapSlots[heapSize] = slot;
+        heapKeys[heapSize] = key;
+        heapPositions[slot] = heapSize;
+        percolateUp(heapSize);
+    }
+
+    private void percolateUp(int index) {
+        final int slot = heapSlots[index];
+        final double key = heapKeys[index];
+        // the loop stops at index 1 at the latest, because we set heapKeys[0] = -inf
+        while (key < heapKeys[index >> 1]) {
+            int parent = index >> 1;
+            heapSlots[index] = heapSlots[parent];
+            heapKeys[index] = heapKeys[parent];
+            heapPositions[heapSlots[index]] = index;
+            index = parent;
+        }
+        heapSlots[index] = slot;
+        heapKeys[index] = key;
+        heapPositions[slot] = index;
+    }
+
+    private void percolateDown(int index) {
+        final int slot = heapSlots[index];
+        final double key = heapKeys[index];
+        while (index << 1 <= heapSize) {
+            int child = index << 1;
+            if (child != heapSize && heapKeys[child + 1] < heapKeys[child])
+                child++;
+            if (heapKeys[child] >= key)
+                break;
+            heapSlots[index] = heapSlots[child];
+            heapKeys[index] = heapKeys[child];
+            heapPositions[heapSlots[index]] = index;
+            index = child;
+        }
+        heapSlots[index] = slot;
+        heapKeys[index] = key;
+        heapPositions[slot] = index;
+    }
+
+    private void grow() {
+        int capacity = edges.length * 2;
+        edges = Arrays.copyOf(edges, capacity);
+        adjNodes = Arrays.copyOf(adjNodes, capacity);
+        parents = Arrays.copyOf(parents, capacity);
+        weights = Arrays.copyOf(weights, capacity);
+        heapPositions = Arrays.copyOf(heapPositions, capacity);
+        // every slot is contained in the heap at most once, so the heap never needs more space than the slot arrays
+        heapSlots = Arrays.copyOf(heapSlots, capacity + 1);
+        heapKeys = Arrays.copyOf(heapKeys, capacity + 1);
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.BeelineWeightApproximator;
+import com.graphhopper.routing.weighting.TimeDependentWeighting;
+import com.graphhopper.routing.weighting.WeightApproximator;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.*;
+
+import java.util.Arrays;
+
+import static com.graphhopper.routing.SearchState.NO_SLOT;
+import static com.graphhopper.routing.SearchState.NO_TRAVERSAL_ID;
+import static com.graphhopper.util.EdgeIterator.ANY_EDGE;
+import static com.graphhopper.util.EdgeIterator.NO_EDGE;
+
+/**
+ * A time-dependent variant of {@link AStar}: the weight of an edge depends on the time it is entered, which is the
+ * departure time plus the time of the path to the edge, see {@link TimeDependentWeighting}. The search has to be
+ * unidirectional because the arrival time is not known in advance. Without an approximation, i.e. with
+ * {@link #setApproximation} set to null, this is a time-dependent Dijkstra.
+ * <p>
+ * The approximation must be valid for the weighting without time, e.g. the beeline or landmarks, because the
+ * time-dependent weights are never smaller. The paths are optimal as long as no vehicle can arrive earlier by
+ * entering an edge later, which holds for speed profiles that do not change too abruptly.
+ */
+public class TimeDependentAStar extends AbstractRoutingAlgorithm implements EdgeToEdgeRoutingAlgorithm {
+    private final TimeDependentWeighting tdWeighting;
+    private SearchState state;
+    // the local time at the adjacent node of every slot of the search state
+    private long[] times = new long[64];
+    private int currSlot = NO_SLOT;
+    private int visitedNodes;
+    private int to = -1;
+    private WeightApproximator weightApprox;
+    private int fromOutEdge;
+    private int toInEdge;
+    private long departureTime;
+    private long localDepartureTime;
+    private long arrivalTime = -1;
+
+    /**
+     * @param weighting   the weighting of the graph, e.g. wrapped by a query graph, used for the turn costs and the
+     *                    weights without time
+     * @param tdWeighting the time-dependent weighting that is wrapped by the given weighting
+     */
+    public TimeDependentAStar(Graph graph, Weighting weighting, TimeDependentWeighting tdWeighting, TraversalMode tMode) {
+        super(graph, weighting, tMode);
+        this.tdWeighting = tdWeighting;
+        BeelineWeightApproximator defaultApprox = new BeelineWeightApproximator(nodeAccess, weighting);
+        defaultApprox.setDistanceCalc(DistancePlaneProjection.DIST_PLANE);
+        setApproximation(defaultApprox);
+    }
+
+    /**
+     * @param approx defines how the weight to the goal node is approximated, null disables the approximation
+     */
+    public TimeDependentAStar setApproximation(WeightApproximator approx) {
+        weightApprox = approx;
+        return this;
+    }
+
+    /**
+     * @param departureTime the departure time in milliseconds since the epoch
+     */
+    public TimeDependentAStar setDepartureTime(long departureTime) {
+        this.departureTime = departureTime;
+        this.localDepartureTime = tdWeighting.getSpeedProfiles().toLocalMillis(departureTime);
+        return this;
+    }
+
+    /**
+     * @return the arrival time in milliseconds since the epoch or -1 if no path was found
+     */
+    public long getArrivalTime() {
+        return arrivalTime;
+    }
+
+    @Override
+    public Path calcPath(int from, int to) {
+        return calcPath(from, to, EdgeIterator.ANY_EDGE, EdgeIterator.ANY_EDGE);
+    }
+
+    @Override
+    public Path calcPath(int from, int to, int fromOutEdge, int toInEdge) {
+        if ((fromOutEdge != ANY_EDGE || toInEdge != ANY_EDGE) && !traversalMode.isEdgeBased()) {
+            throw new IllegalArgumentException("Restricting the start/target edges is only possible for edge-based graph traversal");
+        }
+        this.fromOutEdge = fromOutEdge;
+        this.toInEdge = toInEdge;
+        checkAlreadyRun();
+        setupFinishTime();
+        this.to = to;
+        if (fromOutEdge == NO_EDGE || toInEdge == NO_EDGE)
+            return extractPath();
+        double weightToGoal = 0;
+        if (weightApprox != null) {
+            weightApprox.setTo(to);
+            weightToGoal = weightApprox.approximate(from);
+            if (Double.isInfinite(weightToGoal))
+                return extractPath();
+        }
+        state = SearchState.acquire();
+        try {
+            int slot = state.add(traversalMode.isEdgeBased() ? NO_TRAVERSAL_ID : from, EdgeIterator.NO_EDGE, from, NO_SLOT, 0, weightToGoal);
+            setTime(slot, localDepartureTime);
+            runAlgo();
+            return extractPath();
+        } finally {
+            state.release();
+        }
+    }
+
+    private void runAlgo() {
+        while (!state.isHeapEmpty()) {
+            currSlot = state.poll();
+            visitedNodes++;
+            if (isMaxVisitedNodesExceeded() || finished() || isTimeoutExceeded())
+                break;
+
+            int currNode = state.getAdjNode(currSlot);
+            int currEdge = state.getEdge(currSlot);
+            double currWeight = state.getWeight(currSlot);
+            long currTime = times[currSlot];
+            EdgeIterator iter = edgeExplorer.setBaseNode(currNode);
+            while (iter.next()) {
+                if (!accept(iter, currEdge) || (currEdge == NO_EDGE && fromOutEdge != ANY_EDGE && iter.getEdge() != fromOutEdge))
+                    continue;
+
+                double slowdown = tdWeighting.calcSlowdown(iter, false, currTime);
+                double turnWeight = EdgeIterator.Edge.isValid(currEdge) ? weighting.calcTurnWeight(currEdge, currNode, iter.getEdge()) : 0;
+                double tmpWeight = weighting.calcEdgeWeight(iter, false) * slowdown + turnWeight + currWeight;
+                if (Double.isInfinite(tmpWeight)) {
+                    continue;
+                }
+                int traversalId = traversalMode.createTraversalId(iter, false);
+
+                int slot = state.getSlot(traversalId);
+                if (slot == NO_SLOT || state.getWeight(slot) > tmpWeight) {
+                    int neighborNode = iter.getAdjNode();
+                    double currWeightToGoal = weightApprox == null ? 0 : weightApprox.approximate(neighborNode);
+                    if (Double.isInfinite(currWeightToGoal))
+                        continue;
+                    double estimationFullWeight = tmpWeight + currWeightToGoal;
+                    if (slot == NO_SLOT)
+                        slot = state.add(traversalId, iter.getEdge(), neighborNode, currSlot, tmpWeight, estimationFullWeight);
+                    else
+                        slot = state.update(traversalId, slot, iter.getEdge(), currSlot, tmpWeight, estimationFullWeight);
+                    long turnMillis = EdgeIterator.Edge.isValid(currEdge) ? weighting.calcTurnMillis(currEdge, currNode, iter.getEdge()) : 0;
+                    setTime(slot, currTime + Math.round(weighting.calcEdgeMillis(iter, false) * slowdown) + turnMillis);
+                }
+            }
+        }
+    }
+
+    private void setTime(int slot, long time) {
+        if (slot >= times.length)
+            times = Arrays.copyOf(times, Math.max(slot + 1, times.length * 2));
+        times[slot] = time;
+    }
+
+    private boolean finished() {
+        int currEdge = state.getEdge(currSlot);
+        return state.getAdjNode(currSlot) == to && (toInEdge == ANY_EDGE || currEdge == toInEdge) && (fromOutEdge == ANY_EDGE || currEdge != NO_EDGE);
+    }
+
+    protected Path extractPath() {
+        if (currSlot == NO_SLOT || !finished())
+            return createEmptyPath();
+
+        TimeDependentPath path = new TimeDependentPath(graph);
+        new PathExtractor(graph, weighting, path).extract(state, currSlot);
+        // the extractor sums up the times without the speed profiles
+        long millis = times[currSlot] - localDepartureTime;
+        path.setTime(millis);
+        for (int slot = currSlot; EdgeIterator.Edge.isValid(state.getEdge(slot)); slot = state.getParent(slot)) {
+            int edge = state.getEdge(slot);
+            int parent = state.getParent(slot);
+            long turnMillis = EdgeIterator.Edge.isValid(state.getEdge(parent)) ? weighting.calcTurnMillis(state.getEdge(parent), state.getAdjNode(parent), edge) : 0;
+            path.setEdgeMillis(graph.getEdgeIteratorState(edge, state.getAdjNode(slot)).getEdgeKey(), times[slot] - times[parent] - turnMillis);
+        }
+        arrivalTime = departureTime + millis;
+        return path;
+    }
+
+    @Override
+    public int getVisitedNodes() {
+        return visitedNodes;
+    }
+
+    @Override
+    public String getName() {
+        return "td_" + (weightApprox == null ? Parameters.Algorithms.DIJKSTRA : Parameters.Algorithms.ASTAR + "|" + weightApprox);
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.carrotsearch.hppc.IntLongHashMap;
+import com.graphhopper.routing.weighting.AbstractAdjustedWeighting;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeIteratorState;
+
+/**
+ * A path calculated by {@link TimeDependentAStar}. The times of its edges depend on the time they were entered, so
+ * they cannot be calculated from the weighting alone.
+ */
+public class TimeDependentPath extends Path {
+    // the time of every edge of this path without the turn time, by edge key
+    private final IntLongHashMap edgeMillis = new IntLongHashMap();
+
+    TimeDependentPath(Graph graph) {
+        super(graph);
+    }
+
+    void setEdgeMillis(int edgeKey, long millis) {
+        edgeMillis.put(edgeKey, millis);
+    }
+
+    /**
+     * @return a weighting that returns the times of the edges of this path as they were traversed, so the times of
+     * the instructions and path details add up to {@link #getTime()}
+     */
+    public Weighting wrapWeighting(Weighting weighting) {
+        return new AbstractAdjustedWeighting(weighting) {
+            @Override
+            public long calcEdgeMillis(EdgeIteratorState edgeState, boolean reverse) {
+                int edgeKey = reverse ? edgeState.getReverseEdgeKey() : edgeState.getEdgeKey();
+                return edgeMillis.containsKey(edgeKey) ? edgeMillis.get(edgeKey) : superWeighting.calcEdgeMillis(edgeState, reverse);
+            }
+
+            @Override
+            public String getName() {
+                return superWeighting.getName();
+            }
+        };
+    }
+}
@@ -33,6 +33,7 @@ import com.graphhopper.util.Helper;
 import com.graphhopper.util.shapes.GHPoint;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static com.graphhopper.util.EdgeIterator.ANY_EDGE;
@@ -63,11 +64,14 @@ public class ViaRouting {
         EdgeFilter strictEdgeFilter = snapPreventions.isEmpty()
                 ? snapFilter
                 : new SnapPreventionEdgeFilter(snapFilter, roadClassEnc, roadEnvEnc, snapPreventions);
-        List<Snap> snaps = new ArrayList<>(points.size());
-        IntArrayList pointsNotFound = new IntArrayList();
+        Snap[] snaps = new Snap[points.size()];
+        // the points without heading and point hint are snapped at once, which is faster. this is done with the snap
+        // preventions first and the points that cannot be snapped this way are snapped using the snap filter only.
+        IntArrayList strictSnapPoints = new IntArrayList();
+        IntArrayList defaultSnapPoints = new IntArrayList();
         for (int placeIndex = 0; placeIndex < points.size(); placeIndex++) {
             GHPoint point = points.get(placeIndex);
-            Snap snap = null;
+            Snap snap;
             if (placeIndex < headings.size() && !Double.isNaN(headings.get(placeIndex))) {
                 if (!pointHints.isEmpty() && !Helper.isEmpty(pointHints.get(placeIndex)))
                     throw new IllegalArgumentException("Cannot specify heading and point_hint at the same time. " +
@@ -77,21 +81,50 @@ public class ViaRouting {
                 snap = locationIndex.findClosest(point.lat, point.lon, new NameSimilarityEdgeFilter(strictEdgeFilter,
                         pointHints.get(placeIndex), point, 170));
             } else if (!snapPreventions.isEmpty()) {
-                snap = locationIndex.findClosest(point.lat, point.lon, strictEdgeFilter);
+                strictSnapPoints.add(placeIndex);
+                continue;
+            } else {
+                defaultSnapPoints.add(placeIndex);
+                continue;
             }
 
-            if (snap == null || !snap.isValid())
-                snap = locationIndex.findClosest(point.lat, point.lon, snapFilter);
             if (!snap.isValid())
-                pointsNotFound.add(placeIndex);
+                defaultSnapPoints.add(placeIndex);
+            else
+                snaps[placeIndex] = snap;
+        }
 
-            snaps.add(snap);
+        Snap[] strictSnaps = findClosestBatch(locationIndex, points, strictSnapPoints, strictEdgeFilter);
+        for (int i = 0; i < strictSnapPoints.size(); i++) {
+            if (strictSnaps[i].isValid())
+                snaps[strictSnapPoints.get(i)] = strictSnaps[i];
+            else
+                defaultSnapPoints.add(strictSnapPoints.get(i));
         }
+        Snap[] defaultSnaps = findClosestBatch(locationIndex, points, defaultSnapPoints, snapFilter);
+        for (int i = 0; i < defaultSnapPoints.size(); i++)
+            snaps[defaultSnapPoints.get(i)] = defaultSnaps[i];
 
+        IntArrayList pointsNotFound = new IntArrayList();
+        for (int placeIndex = 0; placeIndex < snaps.length; placeIndex++)
+            if (!snaps[placeIndex].isValid())
+                pointsNotFound.add(placeIndex);
         if (!pointsNotFound.isEmpty())
             throw new MultiplePointsNotFoundException(pointsNotFound);
 
-        return snaps;
+        return Arrays.asList(snaps);
+    }
+
+    private static Snap[] findClosestBatch(LocationIndex locationIndex, List<GHPoint> points, IntArrayList placeIndices, EdgeFilter edgeFilter) {
+        if (placeIndices.isEmpty())
+            return new Snap[0];
+        double[] lats = new double[placeIndices.size()];
+        double[] lons = new double[placeIndices.size()];
+        for (int i = 0; i < placeIndices.size(); i++) {
+            lats[i] = points.get(placeIndices.get(i)).lat;
+            lons[i] = points.get(placeIndices.get(i)).lon;
+        }
+        return locationIndex.findClosestBatch(lats, lons, edgeFilter);
     }
 
     public static Result calcPaths(List<GHPoint> points, QueryGraph queryGraph, List<Snap> snaps,
@@ -0,0 +1,297 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.CHStorage;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.StopWatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+import static com.graphhopper.util.Helper.nf;
+
+/**
+ * Re-calculates the shortcut weights of a customizable CH (see {@link CHParameters#CUSTOMIZABLE}) for a new
+ * weighting, while the node ordering and the shortcuts themselves are kept. For customizable CH the shortcuts are
+ * created without witness searches, so every shortcut a-b has a 'lower triangle' a-x-b for every node x below a and b
+ * that is adjacent to both of them, and the weight of the shortcut is simply the minimum over these triangles. We
+ * process the shortcuts bottom-up: all shortcuts whose lower node has the same 'depth' in the hierarchy only depend
+ * on shortcuts of lower depths and can be calculated in parallel.
+ * <p>
+ * This only works for node-based CH and the shortcuts must not be bidirectional, because the weights of the two
+ * directions can be different.
+ */
+public class CHCustomizer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CHCustomizer.class);
+    // the number of shortcuts or edges below which we do not bother to run in parallel
+    private static final int MIN_PARALLEL_SIZE = 2048;
+    private final BaseGraph graph;
+    private final CHStorage source;
+    private final int nodes;
+    private final int edges;
+    private final int shortcuts;
+    private final int[] levels;
+    // the lower (nodeA) and the upper (nodeB) node of every shortcut and whether it is a forward (nodeA->nodeB) or
+    // a backward (nodeB->nodeA) shortcut
+    private final int[] shortcutNodeA;
+    private final int[] shortcutNodeB;
+    private final boolean[] shortcutFwd;
+    // for every node y the 'arcs' (base edges and shortcuts) that connect y with a node x below y, stored as
+    // (x << 32 | arc) and sorted by x. the arc ids are the same as the CH edge ids, i.e. shortcut s has the arc id
+    // edges + s
+    private final int[] downStart;
+    private final long[] down;
+    // the shortcuts ordered by the depth of their lower node
+    private final int[] shortcutsByDepth;
+    private final int[] depthStart;
+
+    public CHCustomizer(BaseGraph graph, CHStorage source) {
+        if (source.isEdgeBased())
+            throw new IllegalArgumentException("Customization is only supported for node-based CH");
+        if (!source.isCustomizable())
+            throw new IllegalArgumentException("The CH was not prepared to be customizable, use " + CHParameters.CUSTOMIZABLE);
+        if (source.getNodes() != graph.getNodes())
+            throw new IllegalArgumentException("The number of nodes of the CH does not match the graph: "
+                    + source.getNodes() + " vs. " + graph.getNodes());
+        this.graph = graph;
+        this.source = source;
+        nodes = graph.getNodes();
+        edges = graph.getEdges();
+        shortcuts = source.getShortcuts();
+
+        levels = new int[nodes];
+        int[] nodesByLevel = new int[nodes];
+        Arrays.fill(nodesByLevel, -1);
+        for (int node = 0; node < nodes; node++) {
+            int level = source.getLevel(source.toNodePointer(node));
+            if (level < 0 || level >= nodes || nodesByLevel[level] >= 0)
+                throw new IllegalArgumentException("All nodes must be contracted for customization, but node " + node
+                        + " has level " + level);
+            levels[node] = level;
+            nodesByLevel[level] = node;
+        }
+
+        shortcutNodeA = new int[shortcuts];
+        shortcutNodeB = new int[shortcuts];
+        shortcutFwd = new boolean[shortcuts];
+        int[] downCounts = new int[nodes];
+        for (int s = 0; s < shortcuts; s++) {
+            long pointer = source.toShortcutPointer(s);
+            if (source.getFwdAccess(pointer) == source.getBwdAccess(pointer))
+                throw new IllegalStateException("Customization requires one-directional shortcuts, but shortcut " + s
+                        + " has fwd: " + source.getFwdAccess(pointer) + ", bwd: " + source.getBwdAccess(pointer));
+            shortcutNodeA[s] = source.getNodeA(pointer);
+            shortcutNodeB[s] = source.getNodeB(pointer);
+            shortcutFwd[s] = source.getFwdAccess(pointer);
+            downCounts[shortcutNodeB[s]]++;
+        }
+        int[] edgeNodes = new int[2 * edges];
+        for (int edge = 0; edge < edges; edge++) {
+            EdgeIteratorState edgeState = graph.getEdgeIteratorState(edge, Integer.MIN_VALUE);
+            edgeNodes[2 * edge] = edgeState.getBaseNode();
+            edgeNodes[2 * edge + 1] = edgeState.getAdjNode();
+            // a loop is never part of a shortcut, so it has no place in the down arcs (the base graph rejects them anyway)
+            if (edgeState.getBaseNode() != edgeState.getAdjNode())
+                downCounts[upperNode(edgeState.getBaseNode(), edgeState.getAdjNode())]++;
+        }
+
+        downStart = new int[nodes + 1];
+        for (int node = 0; node < nodes; node++)
+            downStart[node + 1] = downStart[node] + downCounts[node];
+        down = new long[downStart[nodes]];
+        int[] downPos = Arrays.copyOf(downStart, nodes);
+        for (int edge = 0; edge < edges; edge++) {
+            int base = edgeNodes[2 * edge];
+            int adj = edgeNodes[2 * edge + 1];
+            if (base == adj)
+                continue;
+            int upper = upperNode(base, adj);
+            down[downPos[upper]++] = toDownEntry(upper == adj ? base : adj, edge);
+        }
+        for (int s = 0; s < shortcuts; s++)
+            down[downPos[shortcutNodeB[s]]++] = toDownEntry(shortcutNodeA[s], edges + s);
+        for (int node = 0; node < nodes; node++)
+            Arrays.sort(down, downStart[node], downStart[node + 1]);
+
+        // the depth of a node is the length of the longest downward path starting at this node
+        int[] depths = new int[nodes];
+        int maxDepth = 0;
+        for (int level = 0; level < nodes; level++) {
+            int node = nodesByLevel[level];
+            int depth = 0;
+            for (int i = downStart[node]; i < downStart[node + 1]; i++)
+                depth = Math.max(depth, depths[(int) (down[i] >>> 32)] + 1);
+            depths[node] = depth;
+            maxDepth = Math.max(maxDepth, depth);
+        }
+        depthStart = new int[maxDepth + 2];
+        for (int s = 0; s < shortcuts; s++)
+            depthStart[depths[shortcutNodeA[s]] + 1]++;
+        for (int depth = 0; depth <= maxDepth; depth++)
+            depthStart[depth + 1] += depthStart[depth];
+        shortcutsByDepth = new int[shortcuts];
+        int[] depthPos = Arrays.copyOf(depthStart, maxDepth + 1);
+        for (int s = 0; s < shortcuts; s++)
+            shortcutsByDepth[depthPos[depths[shortcutNodeA[s]]]++] = s;
+    }
+
+    private int upperNode(int base, int adj) {
+        return levels[base] < levels[adj] ? adj : base;
+    }
+
+    private static long toDownEntry(int lowerNode, int arc) {
+        return ((long) lowerNode << 32) | arc;
+    }
+
+    /**
+     * Calculates the shortcut weights for the given weighting and writes them to the given storage.
+     *
+     * @param target either the source storage, whose weights are then updated in place (which must not happen while
+     *               it is used for routing), or a new storage that was not created yet. In the latter case the node
+     *               levels and shortcuts are copied from the source storage.
+     * @param pool   used to run the calculation in parallel, or null to use the calling thread only. The weighting
+     *               must be thread-safe.
+     */
+    public void customize(Weighting weighting, CHStorage target, ForkJoinPool pool) {
+        if (weighting.hasTurnCosts())
+            throw new IllegalArgumentException("Customization is only supported for node-based CH, but the weighting has turn costs: " + weighting);
+        StopWatch sw = new StopWatch().start();
+        // the weights of the base edges going up (from the lower to the upper node) and down the hierarchy
+        double[] upWeights = new double[edges];
+        double[] downWeights = new double[edges];
+        run(pool, edges, edge -> {
+            // the edge state is not reversed, so reverse=false means from the base to the adj node
+            EdgeIteratorState edgeState = graph.getEdgeIteratorState(edge, Integer.MIN_VALUE);
+            double weightFwd = weighting.calcEdgeWeight(edgeState, false);
+            double weightBwd = weighting.calcEdgeWeight(edgeState, true);
+            boolean baseIsLower = levels[edgeState.getBaseNode()] < levels[edgeState.getAdjNode()];
+            upWeights[edge] = baseIsLower ? weightFwd : weightBwd;
+            downWeights[edge] = baseIsLower ? weightBwd : weightFwd;
+        });
+
+        double[] weights = new double[shortcuts];
+        int[] skipped = new int[2 * shortcuts];
+        for (int depth = 0; depth + 1 < depthStart.length; depth++) {
+            int from = depthStart[depth];
+            run(pool, depthStart[depth + 1] - from,
+                    i -> customizeShortcut(shortcutsByDepth[from + i], upWeights, downWeights, weights, skipped));
+        }
+
+        if (target != source) {
+            target.create(nodes, shortcuts);
+            for (int node = 0; node < nodes; node++) {
+                long sourcePointer = source.toNodePointer(node);
+                long targetPointer = target.toNodePointer(node);
+                target.setLevel(targetPointer, source.getLevel(sourcePointer));
+                target.setLastShortcut(targetPointer, source.getLastShortcut(sourcePointer));
+            }
+            for (int s = 0; s < shortcuts; s++)
+                target.shortcutNodeBased(shortcutNodeA[s], shortcutNodeB[s],
+                        shortcutFwd[s] ? PrepareEncoder.getScFwdDir() : PrepareEncoder.getScBwdDir(),
+                        weights[s], skipped[2 * s], skipped[2 * s + 1]);
+            target.setCustomizable(true);
+        } else {
+            for (int s = 0; s < shortcuts; s++) {
+                long pointer = target.toShortcutPointer(s);
+                target.setWeight(pointer, weights[s]);
+                target.setSkippedEdges(pointer, skipped[2 * s], skipped[2 * s + 1]);
+            }
+        }
+        LOGGER.info("Customized {} shortcuts for {}, depth: {}, took: {}s", nf(shortcuts), weighting,
+                depthStart.length - 1, sw.stop().getSeconds());
+    }
+
+    private void customizeShortcut(int shortcut, double[] upWeights, double[] downWeights, double[] weights, int[] skipped) {
+        int nodeA = shortcutNodeA[shortcut];
+        int nodeB = shortcutNodeB[shortcut];
+        // for a forward shortcut we go down from nodeA to x and then up to nodeB, for a backward shortcut we go down
+        // from nodeB to x and then up to nodeA
+        boolean fwd = shortcutFwd[shortcut];
+        double bestWeight = Double.POSITIVE_INFINITY;
+        // in case there is no finite path we keep the skipped edges, the shortcut will not be used anyway
+        long pointer = source.toShortcutPointer(shortcut);
+        int bestArcA = source.getSkippedEdge1(pointer);
+        int bestArcB = source.getSkippedEdge2(pointer);
+        int i = downStart[nodeA], endA = downStart[nodeA + 1];
+        int j = downStart[nodeB], endB = downStart[nodeB + 1];
+        while (i < endA && j < endB) {
+            int xA = (int) (down[i] >>> 32);
+            int xB = (int) (down[j] >>> 32);
+            if (xA < xB) {
+                i++;
+            } else if (xB < xA) {
+                j++;
+            } else {
+                // there can be multiple arcs between two nodes, e.g. a shortcut and a base edge
+                double weightA = Double.POSITIVE_INFINITY;
+                int arcA = -1;
+                for (; i < endA && (int) (down[i] >>> 32) == xA; i++) {
+                    int arc = (int) down[i];
+                    double weight = getArcWeight(arc, !fwd, upWeights, downWeights, weights);
+                    if (weight < weightA) {
+                        weightA = weight;
+                        arcA = arc;
+                    }
+                }
+                double weightB = Double.POSITIVE_INFINITY;
+                int arcB = -1;
+                for (; j < endB && (int) (down[j] >>> 32) == xB; j++) {
+                    int arc = (int) down[j];
+                    double weight = getArcWeight(arc, fwd, upWeights, downWeights, weights);
+                    if (weight < weightB) {
+                        weightB = weight;
+                        arcB = arc;
+                    }
+                }
+                if (weightA + weightB < bestWeight) {
+                    bestWeight = weightA + weightB;
+                    bestArcA = arcA;
+                    bestArcB = arcB;
+                }
+            }
+        }
+        weights[shortcut] = bestWeight;
+        // like for the shortcuts created during the contraction the first skipped edge is the one adjacent to nodeA
+        skipped[2 * shortcut] = bestArcA;
+        skipped[2 * shortcut + 1] = bestArcB;
+    }
+
+    /**
+     * @param up true to get the weight going from the lower to the upper node of the arc
+     */
+    private double getArcWeight(int arc, boolean up, double[] upWeights, double[] downWeights, double[] weights) {
+        if (arc < edges)
+            return up ? upWeights[arc] : downWeights[arc];
+        int shortcut = arc - edges;
+        return shortcutFwd[shortcut] == up ? weights[shortcut] : Double.POSITIVE_INFINITY;
+    }
+
+    private static void run(ForkJoinPool pool, int size, IntConsumer task) {
+        if (pool == null || size < MIN_PARALLEL_SIZE)
+            IntStream.range(0, size).forEach(task);
+        else
+            pool.submit(() -> IntStream.range(0, size).parallel().forEach(task)).join();
+    }
+}
@@ -85,12 +85,7 @@ public class CHPreparationGraph {
     }
 
     public static void buildFromGraph(CHPreparationGraph prepareGraph, Graph graph, Weighting weighting) {
-        if (graph.getNodes() != prepareGraph.getNodes())
-            throw new IllegalArgumentException("Cannot initialize from given graph. The number of nodes does not match: " +
-                    graph.getNodes() + " vs. " + prepareGraph.getNodes());
-        if (graph.getEdges() != prepareGraph.getOriginalEdges())
-            throw new IllegalArgumentException("Cannot initialize from given graph. The number of edges does not match: " +
-                    graph.getEdges() + " vs. " + prepareGraph.getOriginalEdges());
+        checkGraphSize(prepareGraph, graph);
         AllEdgesIterator iter = graph.getAllEdges();
         while (iter.next()) {
             double weightFwd = weighting.calcEdgeWeight(iter, false);
@@ -100,6 +95,28 @@ public class CHPreparationGraph {
         prepareGraph.prepareForContraction();
     }
 
+    /**
+     * Adds all edges of the given graph in both directions and uses their distance as weight. This is used for
+     * customizable CH, where the shortcuts must not depend on the actual weights (or even on the accessibility) of the
+     * edges, because these can change after the preparation.
+     */
+    public static void buildFromGraphIgnoringWeights(CHPreparationGraph prepareGraph, Graph graph) {
+        checkGraphSize(prepareGraph, graph);
+        AllEdgesIterator iter = graph.getAllEdges();
+        while (iter.next())
+            prepareGraph.addEdge(iter.getBaseNode(), iter.getAdjNode(), iter.getEdge(), iter.getDistance(), iter.getDistance());
+        prepareGraph.prepareForContraction();
+    }
+
+    private static void checkGraphSize(CHPreparationGraph prepareGraph, Graph graph) {
+        if (graph.getNodes() != prepareGraph.getNodes())
+            throw new IllegalArgumentException("Cannot initialize from given graph. The number of nodes does not match: " +
+                    graph.getNodes() + " vs. " + prepareGraph.getNodes());
+        if (graph.getEdges() != prepareGraph.getOriginalEdges())
+            throw new IllegalArgumentException("Cannot initialize from given graph. The number of edges does not match: " +
+                    graph.getEdges() + " vs. " + prepareGraph.getOriginalEdges());
+    }
+
     public static TurnCostFunction buildTurnCostFunctionFromTurnCostStorage(Graph graph, Weighting weighting) {
         // At some point we used an optimized version where we copied the turn costs to sorted arrays
         // temporarily. This seemed to be around 25% faster according to measurements on the Bavaria
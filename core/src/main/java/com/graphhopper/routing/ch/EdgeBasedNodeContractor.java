@@ -28,7 +28,10 @@ import com.graphhopper.util.StopWatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
+import java.util.function.IntPredicate;
 
 import static com.graphhopper.routing.ch.CHParameters.*;
 import static com.graphhopper.util.GHUtility.reverseEdgeKey;
@@ -49,12 +52,15 @@ import static com.graphhopper.util.Helper.nf;
 class EdgeBasedNodeContractor implements NodeContractor {
     private static final Logger LOGGER = LoggerFactory.getLogger(EdgeBasedNodeContractor.class);
     private final CHPreparationGraph prepareGraph;
+    // the contractor this one was created from using createWorker(), or this one itself. the heuristic state
+    // (meanDegree and hierarchyDepths) is kept by the owner only
+    private final EdgeBasedNodeContractor owner;
     private PrepareGraphEdgeExplorer inEdgeExplorer;
     private PrepareGraphEdgeExplorer outEdgeExplorer;
     private PrepareGraphEdgeExplorer existingShortcutExplorer;
     private PrepareGraphOrigEdgeExplorer sourceNodeOrigInEdgeExplorer;
     private CHStorageBuilder chBuilder;
-    private final Params params = new Params();
+    private final Params params;
     private final StopWatch dijkstraSW = new StopWatch();
     // temporary data used during node contraction
     private final IntSet sourceNodes = new IntHashSet(10);
@@ -85,9 +91,26 @@ class EdgeBasedNodeContractor implements NodeContractor {
     public EdgeBasedNodeContractor(CHPreparationGraph prepareGraph, CHStorageBuilder chBuilder, PMap pMap) {
         this.prepareGraph = prepareGraph;
         this.chBuilder = chBuilder;
+        this.params = new Params();
+        this.owner = this;
         extractParams(pMap);
     }
 
+    private EdgeBasedNodeContractor(EdgeBasedNodeContractor owner) {
+        this.prepareGraph = owner.prepareGraph;
+        this.params = owner.params;
+        this.owner = owner;
+        // workers never insert shortcuts into the CH storage
+        this.chBuilder = null;
+        inEdgeExplorer = prepareGraph.createInEdgeExplorer();
+        outEdgeExplorer = prepareGraph.createOutEdgeExplorer();
+        existingShortcutExplorer = prepareGraph.createOutEdgeExplorer();
+        sourceNodeOrigInEdgeExplorer = prepareGraph.createInOrigEdgeExplorer();
+        hierarchyDepths = owner.hierarchyDepths;
+        witnessPathSearcher = new EdgeBasedWitnessPathSearcher(prepareGraph);
+        bridgePathFinder = new BridgePathFinder(prepareGraph);
+    }
+
     private void extractParams(PMap pMap) {
         params.edgeQuotientWeight = pMap.getFloat(EDGE_QUOTIENT_WEIGHT, params.edgeQuotientWeight);
         params.originalEdgeQuotientWeight = pMap.getFloat(ORIGINAL_EDGE_QUOTIENT_WEIGHT, params.originalEdgeQuotientWeight);
@@ -118,7 +141,7 @@ class EdgeBasedNodeContractor implements NodeContractor {
             // no shortcuts will be introduced
             return Float.NEGATIVE_INFINITY;
         stats().stopWatch.start();
-        findAndHandlePrepareShortcuts(node, this::countShortcuts, (int) (meanDegree * params.maxPollFactorHeuristic), wpsStatsHeur);
+        findAndHandlePrepareShortcuts(node, this::countShortcuts, (int) (owner.meanDegree * params.maxPollFactorHeuristic), null, wpsStatsHeur);
         stats().stopWatch.stop();
         // the higher the priority the later (!) this node will be contracted
         float edgeQuotient = numShortcuts / (float) (prepareGraph.getDegree(node));
@@ -140,7 +163,44 @@ class EdgeBasedNodeContractor implements NodeContractor {
     public IntContainer contractNode(int node) {
         activeStats = addingStats;
         stats().stopWatch.start();
-        findAndHandlePrepareShortcuts(node, this::addShortcutsToPrepareGraph, (int) (meanDegree * params.maxPollFactorContraction), wpsStatsContr);
+        findAndHandlePrepareShortcuts(node, this::addShortcutsToPrepareGraph, (int) (meanDegree * params.maxPollFactorContraction), null, wpsStatsContr);
+        return insertShortcutsAndDisconnect(node);
+    }
+
+    @Override
+    public NodeContractor createWorker() {
+        return new EdgeBasedNodeContractor(this);
+    }
+
+    @Override
+    public Runnable findShortcuts(int node, IntPredicate blockedNodes) {
+        activeStats = addingStats;
+        stats().stopWatch.start();
+        List<PrepareCHEntry> edgesFrom = new ArrayList<>();
+        List<PrepareCHEntry> edgesTo = new ArrayList<>();
+        IntArrayList origEdgeCounts = new IntArrayList();
+        // the bridge path entries are created freshly for every search, so we can keep them until we add the shortcuts
+        findAndHandlePrepareShortcuts(node, (edgeFrom, edgeTo, origEdgeCount) -> {
+            edgesFrom.add(edgeFrom);
+            edgesTo.add(edgeTo);
+            origEdgeCounts.add(origEdgeCount);
+        }, (int) (owner.meanDegree * params.maxPollFactorContraction), blockedNodes, wpsStatsContr);
+        stats().stopWatch.stop();
+        return () -> {
+            for (int i = 0; i < edgesFrom.size(); i++)
+                addShortcutsToPrepareGraph(edgesFrom.get(i), edgesTo.get(i), origEdgeCounts.get(i));
+        };
+    }
+
+    @Override
+    public IntContainer contractNode(int node, Runnable addShortcuts) {
+        activeStats = addingStats;
+        stats().stopWatch.start();
+        addShortcuts.run();
+        return insertShortcutsAndDisconnect(node);
+    }
+
+    private IntContainer insertShortcutsAndDisconnect(int node) {
         insertShortcuts(node);
         IntContainer neighbors = prepareGraph.disconnect(node);
         // We maintain an approximation of the mean degree which we update after every contracted node.
@@ -175,7 +235,7 @@ class EdgeBasedNodeContractor implements NodeContractor {
      * This method performs witness searches between all nodes adjacent to the given node and calls the
      * given handler for all required shortcuts.
      */
-    private void findAndHandlePrepareShortcuts(int node, PrepareShortcutHandler shortcutHandler, int maxPolls, EdgeBasedWitnessPathSearcher.Stats wpsStats) {
+    private void findAndHandlePrepareShortcuts(int node, PrepareShortcutHandler shortcutHandler, int maxPolls, IntPredicate blockedNodes, EdgeBasedWitnessPathSearcher.Stats wpsStats) {
         stats().nodes++;
         addedShortcuts.clear();
         sourceNodes.clear();
@@ -197,7 +257,7 @@ class EdgeBasedNodeContractor implements NodeContractor {
                 IntObjectMap<BridgePathFinder.BridePathEntry> bridgePaths = bridgePathFinder.find(origInKey, sourceNode, node);
                 if (bridgePaths.isEmpty())
                     continue;
-                witnessPathSearcher.initSearch(origInKey, sourceNode, node, wpsStats);
+                witnessPathSearcher.initSearch(origInKey, sourceNode, node, blockedNodes, wpsStats);
                 for (IntObjectCursor<BridgePathFinder.BridePathEntry> bridgePath : bridgePaths) {
                     if (!Double.isFinite(bridgePath.value.weight))
                         throw new IllegalStateException("Bridge entry weights should always be finite");
@@ -23,6 +23,7 @@ import com.graphhopper.util.GHUtility;
 
 import java.util.Arrays;
 import java.util.Locale;
+import java.util.function.IntPredicate;
 
 import static com.graphhopper.util.Helper.nf;
 
@@ -59,6 +60,7 @@ public class EdgeBasedWitnessPathSearcher {
 
     private int sourceNode;
     private int centerNode;
+    private IntPredicate blockedNodes;
 
     // various counters
     private int numPolls;
@@ -94,7 +96,16 @@ public class EdgeBasedWitnessPathSearcher {
      * @param centerNode    the node to be contracted (x)
      */
     public void initSearch(int sourceEdgeKey, int sourceNode, int centerNode, Stats stats) {
+        initSearch(sourceEdgeKey, sourceNode, centerNode, null, stats);
+    }
+
+    /**
+     * Like {@link #initSearch(int, int, int, Stats)}, but the search also does not use any node (other than the center
+     * node) for which blockedNodes returns true. This is used when multiple nodes are contracted in parallel.
+     */
+    public void initSearch(int sourceEdgeKey, int sourceNode, int centerNode, IntPredicate blockedNodes, Stats stats) {
         this.stats = stats;
+        this.blockedNodes = blockedNodes;
         stats.numTrees++;
         this.sourceNode = sourceNode;
         this.centerNode = centerNode;
@@ -151,6 +162,8 @@ public class EdgeBasedWitnessPathSearcher {
                 // being recognized as witnesses when there are double zero weight loops at the source node
                 if (currNode == sourceNode && iter.getAdjNode() == sourceNode && iter.getWeight() < MAX_ZERO_WEIGHT_LOOP)
                     continue;
+                if (blockedNodes != null && iter.getAdjNode() != centerNode && blockedNodes.test(iter.getAdjNode()))
+                    continue;
                 final double weight = weights[currKey] + calcTurnWeight(currKey, currNode, iter.getOrigEdgeKeyFirst()) + iter.getWeight();
                 if (Double.isInfinite(weight))
                     continue;
@@ -241,6 +254,7 @@ public class EdgeBasedWitnessPathSearcher {
     private void reset() {
         numPolls = 0;
         numUpdates = 0;
+        blockedNodes = null;
         resetShortestPathTree();
     }
 
@@ -0,0 +1,273 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.carrotsearch.hppc.*;
+import com.graphhopper.apache.commons.collections.IntFloatBinaryHeap;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.RoutingCHEdgeExplorer;
+import com.graphhopper.storage.RoutingCHEdgeIterator;
+import com.graphhopper.storage.RoutingCHEdgeIteratorState;
+import com.graphhopper.storage.RoutingCHGraph;
+
+import java.util.Arrays;
+
+import static com.graphhopper.util.EdgeIterator.NO_EDGE;
+
+/**
+ * Calculates the weights, times and distances between many sources and many targets using the bucket-based
+ * approach for Contraction Hierarchies: For every target we run one backward search that only goes 'upwards' in the
+ * hierarchy and store the settled nodes with their weight in buckets. Afterwards we run one upward forward search per
+ * source and scan the buckets of all nodes it settles. Since every shortest path in a CH graph consists of an upward
+ * part followed by a downward part the minimum over all bucket entries yields the optimal weight for every pair.
+ * <p>
+ * Only node-based CH graphs are supported. Times and distances are not stored in the CH graph, so they are obtained by
+ * unpacking the traversed shortcuts. The results are cached per CH edge, so every shortcut is unpacked at most once
+ * per direction for the entire matrix.
+ * <p>
+ * The upward searches only visit a small part of the graph, so their state is kept in hash maps sized to the search
+ * space, and creating an instance per matrix is cheap. An instance must not be used concurrently.
+ *
+ * @see PrepareContractionHierarchies
+ */
+public class ManyToManyCH {
+    private final RoutingCHGraph graph;
+    private final Weighting weighting;
+    private final int maxNodes;
+    private final RoutingCHEdgeExplorer inEdgeExplorer;
+    private final RoutingCHEdgeExplorer outEdgeExplorer;
+    private final ShortcutUnpacker fwdUnpacker;
+    private final ShortcutUnpacker bwdUnpacker;
+    private final LongDoubleHashMap distanceCache = new LongDoubleHashMap();
+    private final LongLongHashMap timeCache = new LongLongHashMap();
+    // state of the current search: every visited node gets an index into the following lists, and the heap contains
+    // these indices
+    private final IntIntHashMap nodeIndices = new IntIntHashMap();
+    private final IntArrayList nodes = new IntArrayList();
+    private final DoubleArrayList weights = new DoubleArrayList();
+    private final DoubleArrayList distances = new DoubleArrayList();
+    private final LongArrayList times = new LongArrayList();
+    private final IntFloatBinaryHeap heap = new IntFloatBinaryHeap(1000);
+    // the buckets are stored as linked lists of entries that all share the following arrays
+    private final IntIntHashMap bucketHeads = new IntIntHashMap();
+    private final IntArrayList bucketNext = new IntArrayList();
+    private final IntArrayList bucketTargets = new IntArrayList();
+    private final DoubleArrayList bucketWeights = new DoubleArrayList();
+    private final DoubleArrayList bucketDistances = new DoubleArrayList();
+    private final LongArrayList bucketTimes = new LongArrayList();
+    private double unpackedDistance;
+    private long unpackedTime;
+    private int visitedNodes;
+
+    public ManyToManyCH(RoutingCHGraph graph) {
+        if (graph.isEdgeBased())
+            throw new IllegalArgumentException("Many-to-many calculation is only supported for node-based CH graphs");
+        this.graph = graph;
+        this.weighting = graph.getWeighting();
+        this.maxNodes = graph.getBaseGraph().getBaseGraph().getNodes();
+        inEdgeExplorer = graph.createInEdgeExplorer();
+        outEdgeExplorer = graph.createOutEdgeExplorer();
+        ShortcutUnpacker.Visitor visitor = (edge, reverse, prevOrNextEdgeId) -> {
+            unpackedDistance += edge.getDistance();
+            unpackedTime += weighting.calcEdgeMillis(edge, reverse);
+        };
+        fwdUnpacker = new ShortcutUnpacker(graph, visitor, false);
+        bwdUnpacker = new ShortcutUnpacker(graph, visitor, false);
+    }
+
+    /**
+     * @return the matrix of weights, times and distances where the rows correspond to the sources and the columns to
+     * the targets. Unreachable entries have an infinite weight.
+     */
+    public Result calcMatrix(int[] sources, int[] targets) {
+        clearBuckets();
+        Result result = new Result(sources.length, targets.length);
+        for (int t = 0; t < targets.length; t++) {
+            search(targets[t], true);
+            for (int i = 0; i < nodes.size(); i++) {
+                int node = nodes.get(i);
+                int head = bucketHeads.getOrDefault(node, -1);
+                bucketHeads.put(node, bucketTargets.size());
+                bucketNext.add(head);
+                bucketTargets.add(t);
+                bucketWeights.add(weights.get(i));
+                bucketDistances.add(distances.get(i));
+                bucketTimes.add(times.get(i));
+            }
+            reset();
+        }
+
+        for (int s = 0; s < sources.length; s++) {
+            search(sources[s], false);
+            double[] weightRow = result.weights[s];
+            double[] distanceRow = result.distances[s];
+            long[] timeRow = result.times[s];
+            for (int i = 0; i < nodes.size(); i++) {
+                double weight = weights.get(i);
+                for (int entry = bucketHeads.getOrDefault(nodes.get(i), -1); entry >= 0; entry = bucketNext.get(entry)) {
+                    int t = bucketTargets.get(entry);
+                    double candidate = weight + bucketWeights.get(entry);
+                    if (candidate < weightRow[t]) {
+                        weightRow[t] = candidate;
+                        distanceRow[t] = distances.get(i) + bucketDistances.get(entry);
+                        timeRow[t] = times.get(i) + bucketTimes.get(entry);
+                    }
+                }
+            }
+            reset();
+        }
+        clearBuckets();
+        return result;
+    }
+
+    public int getVisitedNodes() {
+        return visitedNodes;
+    }
+
+    private void search(int start, boolean reverse) {
+        RoutingCHEdgeExplorer explorer = reverse ? inEdgeExplorer : outEdgeExplorer;
+        heap.insert(0, addNode(start, 0, 0, 0));
+        while (!heap.isEmpty()) {
+            float key = heap.peekKey();
+            int index = heap.poll();
+            double currWeight = weights.get(index);
+            // instead of updating the key of a node we insert it again, so we skip the outdated entries
+            if (key > (float) currWeight)
+                continue;
+            visitedNodes++;
+            RoutingCHEdgeIterator iter = explorer.setBaseNode(nodes.get(index));
+            while (iter.next()) {
+                if (!acceptUpward(iter))
+                    continue;
+                double edgeWeight = iter.getWeight(reverse);
+                if (Double.isInfinite(edgeWeight))
+                    continue;
+                double weight = currWeight + edgeWeight;
+                int adjIndex = nodeIndices.getOrDefault(iter.getAdjNode(), -1);
+                if (adjIndex >= 0 && weight >= weights.get(adjIndex))
+                    continue;
+                unpack(iter, reverse);
+                double distance = distances.get(index) + unpackedDistance;
+                long time = times.get(index) + unpackedTime;
+                if (adjIndex < 0) {
+                    adjIndex = addNode(iter.getAdjNode(), weight, distance, time);
+                } else {
+                    weights.set(adjIndex, weight);
+                    distances.set(adjIndex, distance);
+                    times.set(adjIndex, time);
+                }
+                heap.insert(weight, adjIndex);
+            }
+        }
+    }
+
+    private int addNode(int node, double weight, double distance, long time) {
+        int index = nodes.size();
+        nodeIndices.put(node, index);
+        nodes.add(node);
+        weights.add(weight);
+        distances.add(distance);
+        times.add(time);
+        return index;
+    }
+
+    private boolean acceptUpward(RoutingCHEdgeIteratorState edgeState) {
+        int base = edgeState.getBaseNode();
+        int adj = edgeState.getAdjNode();
+        // always accept virtual edges, see #288
+        if (base >= maxNodes || adj >= maxNodes)
+            return true;
+        return graph.getLevel(base) <= graph.getLevel(adj);
+    }
+
+    /**
+     * Sets {@link #unpackedDistance} and {@link #unpackedTime} for the given edge or shortcut. For the forward search
+     * the edge is traversed from base to adj node, for the backward search it is the other way around.
+     */
+    private void unpack(RoutingCHEdgeIteratorState edgeState, boolean reverse) {
+        long key = ((long) edgeState.getEdge() << 2) | (edgeState.getBaseNode() < edgeState.getAdjNode() ? 2 : 0) | (reverse ? 1 : 0);
+        int idx = distanceCache.indexOf(key);
+        if (distanceCache.indexExists(idx)) {
+            unpackedDistance = distanceCache.indexGet(idx);
+            unpackedTime = timeCache.get(key);
+            return;
+        }
+        unpackedDistance = 0;
+        unpackedTime = 0;
+        if (reverse)
+            bwdUnpacker.visitOriginalEdgesBwd(edgeState.getEdge(), edgeState.getAdjNode(), false, NO_EDGE);
+        else
+            fwdUnpacker.visitOriginalEdgesFwd(edgeState.getEdge(), edgeState.getAdjNode(), false, NO_EDGE);
+        distanceCache.put(key, unpackedDistance);
+        timeCache.put(key, unpackedTime);
+    }
+
+    private void reset() {
+        nodeIndices.clear();
+        nodes.clear();
+        weights.clear();
+        distances.clear();
+        times.clear();
+        heap.clear();
+    }
+
+    private void clearBuckets() {
+        bucketHeads.clear();
+        bucketNext.clear();
+        bucketTargets.clear();
+        bucketWeights.clear();
+        bucketDistances.clear();
+        bucketTimes.clear();
+    }
+
+    public static class Result {
+        private final double[][] weights;
+        private final long[][] times;
+        private final double[][] distances;
+
+        Result(int sources, int targets) {
+            weights = new double[sources][targets];
+            times = new long[sources][targets];
+            distances = new double[sources][targets];
+            for (double[] row : weights)
+                Arrays.fill(row, Double.POSITIVE_INFINITY);
+        }
+
+        public double getWeight(int source, int target) {
+            return weights[source][target];
+        }
+
+        /**
+         * @return the time in milliseconds, only meaningful if {@link #isConnected} is true
+         */
+        public long getTime(int source, int target) {
+            return times[source][target];
+        }
+
+        /**
+         * @return the distance in meters, only meaningful if {@link #isConnected} is true
+         */
+        public double getDistance(int source, int target) {
+            return distances[source][target];
+        }
+
+        public boolean isConnected(int source, int target) {
+            return Double.isFinite(weights[source][target]);
+        }
+    }
+}
@@ -17,6 +17,8 @@
  */
 package com.graphhopper.routing.ch;
 
+import com.carrotsearch.hppc.DoubleArrayList;
+import com.carrotsearch.hppc.IntArrayList;
 import com.carrotsearch.hppc.IntContainer;
 import com.graphhopper.storage.CHStorageBuilder;
 import com.graphhopper.util.PMap;
@@ -25,13 +27,17 @@ import com.graphhopper.util.StopWatch;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
+import java.util.function.IntPredicate;
 
 import static com.graphhopper.routing.ch.CHParameters.*;
 import static com.graphhopper.util.Helper.nf;
 
 class NodeBasedNodeContractor implements NodeContractor {
     private final CHPreparationGraph prepareGraph;
-    private final Params params = new Params();
+    private final Params params;
+    // the contractor this one was created from using createWorker(), or this one itself. the heuristic state
+    // (meanDegree) is kept by the owner only
+    private final NodeBasedNodeContractor owner;
     // todo: maybe use a set to prevent duplicates instead?
     private List<Shortcut> shortcuts = new ArrayList<>();
     private CHStorageBuilder chBuilder;
@@ -51,15 +57,30 @@ class NodeBasedNodeContractor implements NodeContractor {
 
     NodeBasedNodeContractor(CHPreparationGraph prepareGraph, CHStorageBuilder chBuilder, PMap pMap) {
         this.prepareGraph = prepareGraph;
+        this.params = new Params();
+        this.owner = this;
         extractParams(pMap);
         this.chBuilder = chBuilder;
     }
 
+    private NodeBasedNodeContractor(NodeBasedNodeContractor owner) {
+        this.prepareGraph = owner.prepareGraph;
+        this.params = owner.params;
+        this.owner = owner;
+        // workers never insert shortcuts into the CH storage
+        this.chBuilder = null;
+        inEdgeExplorer = prepareGraph.createInEdgeExplorer();
+        outEdgeExplorer = prepareGraph.createOutEdgeExplorer();
+        existingShortcutExplorer = prepareGraph.createOutEdgeExplorer();
+        witnessPathSearcher = new NodeBasedWitnessPathSearcher(prepareGraph);
+    }
+
     private void extractParams(PMap pMap) {
         params.edgeDifferenceWeight = pMap.getFloat(EDGE_DIFFERENCE_WEIGHT, params.edgeDifferenceWeight);
         params.originalEdgesCountWeight = pMap.getFloat(ORIGINAL_EDGE_COUNT_WEIGHT, params.originalEdgesCountWeight);
         params.maxPollFactorHeuristic = pMap.getDouble(MAX_POLL_FACTOR_HEURISTIC_NODE, params.maxPollFactorHeuristic);
         params.maxPollFactorContraction = pMap.getDouble(MAX_POLL_FACTOR_CONTRACTION_NODE, params.maxPollFactorContraction);
+        params.customizable = pMap.getBool(CUSTOMIZABLE, params.customizable);
     }
 
     @Override
@@ -97,7 +118,7 @@ class NodeBasedNodeContractor implements NodeContractor {
         // originalEdgesCount = σ(v) := sum_{ (u,w) ∈ shortcuts(v) } of r(u, w)
         shortcutsCount = 0;
         originalEdgesCount = 0;
-        findAndHandleShortcuts(node, this::countShortcuts, (int) (meanDegree * params.maxPollFactorHeuristic));
+        findAndHandleShortcuts(node, this::countShortcuts, (int) (owner.meanDegree * params.maxPollFactorHeuristic), null);
 
         // from shortcuts we can compute the edgeDifference
         // # low influence: with it the shortcut creation is slightly faster
@@ -116,13 +137,56 @@ class NodeBasedNodeContractor implements NodeContractor {
 
     @Override
     public IntContainer contractNode(int node) {
-        long degree = findAndHandleShortcuts(node, this::addOrUpdateShortcut, (int) (meanDegree * params.maxPollFactorContraction));
+        long degree = findAndHandleShortcuts(node, this::addOrUpdateShortcut, (int) (meanDegree * params.maxPollFactorContraction), null);
         insertShortcuts(node);
         // put weight factor on meanDegree instead of taking the average => meanDegree is more stable
         meanDegree = (meanDegree * 2 + degree) / 3;
         return prepareGraph.disconnect(node);
     }
 
+    @Override
+    public NodeContractor createWorker() {
+        return new NodeBasedNodeContractor(this);
+    }
+
+    @Override
+    public Runnable findShortcuts(int node, IntPredicate blockedNodes) {
+        // per shortcut we store fromNode, toNode, outgoingEdge, outOrigEdgeCount, incomingEdge, inOrigEdgeCount
+        IntArrayList shortcutInts = new IntArrayList();
+        DoubleArrayList shortcutWeights = new DoubleArrayList();
+        findAndHandleShortcuts(node, (fromNode, toNode, weight, outgoingEdge, outOrigEdgeCount, incomingEdge, inOrigEdgeCount) -> {
+            shortcutInts.add(fromNode, toNode, outgoingEdge, outOrigEdgeCount, incomingEdge, inOrigEdgeCount);
+            shortcutWeights.add(weight);
+        }, (int) (owner.meanDegree * params.maxPollFactorContraction), blockedNodes);
+        return () -> {
+            for (int i = 0; i < shortcutWeights.size(); i++) {
+                int j = 6 * i;
+                addOrUpdateShortcut(shortcutInts.get(j), shortcutInts.get(j + 1), shortcutWeights.get(i),
+                        shortcutInts.get(j + 2), shortcutInts.get(j + 3), shortcutInts.get(j + 4), shortcutInts.get(j + 5));
+            }
+        };
+    }
+
+    @Override
+    public IntContainer contractNode(int node, Runnable addShortcuts) {
+        addShortcuts.run();
+        insertShortcuts(node);
+        meanDegree = (meanDegree * 2 + countIncomingEdges(node)) / 3;
+        return prepareGraph.disconnect(node);
+    }
+
+    /**
+     * @return the number of incoming edges with finite weight, which is the 'degree' returned by findAndHandleShortcuts
+     */
+    private long countIncomingEdges(int node) {
+        long degree = 0;
+        PrepareGraphEdgeIterator iter = inEdgeExplorer.setBaseNode(node);
+        while (iter.next())
+            if (Double.isFinite(iter.getWeight()))
+                degree++;
+        return degree;
+    }
+
     /**
      * Calls the shortcut handler for all edges and shortcuts adjacent to the given node. After this method is called
      * these edges and shortcuts will be removed from the prepare graph, so this method offers the last chance to deal
@@ -165,6 +229,12 @@ class NodeBasedNodeContractor implements NodeContractor {
 
             int skippedEdge1 = iter.getSkipped2();
             int skippedEdge2 = iter.getSkipped1();
+            // for customizable CH the weights of both directions are only known after the customization, so we
+            // never merge them into a single bidirectional shortcut
+            if (params.customizable) {
+                shortcuts.add(new Shortcut(-1, iter.getPrepareEdge(), node, iter.getAdjNode(), skippedEdge1, skippedEdge2, PrepareEncoder.getScBwdDir(), iter.getWeight()));
+                continue;
+            }
             // we check if this shortcut already exists (with the same weight) for the other direction and if so we can use
             // it for both ways instead of adding another one
             boolean bidir = false;
@@ -206,7 +276,7 @@ class NodeBasedNodeContractor implements NodeContractor {
      * Returns the 'degree' of the given node (disregarding edges from/to already contracted nodes).
      * Note that here the degree is not the total number of adjacent edges, but only the number of incoming edges
      */
-    private long findAndHandleShortcuts(int node, PrepareShortcutHandler handler, int maxVisitedNodes) {
+    private long findAndHandleShortcuts(int node, PrepareShortcutHandler handler, int maxVisitedNodes, IntPredicate blockedNodes) {
         long degree = 0;
         PrepareGraphEdgeIterator incomingEdges = inEdgeExplorer.setBaseNode(node);
         // collect outgoing nodes (goal-nodes) only once
@@ -222,7 +292,8 @@ class NodeBasedNodeContractor implements NodeContractor {
             }
             // collect outgoing nodes (goal-nodes) only once
             PrepareGraphEdgeIterator outgoingEdges = outEdgeExplorer.setBaseNode(node);
-            witnessPathSearcher.init(fromNode, node);
+            if (!params.customizable)
+                witnessPathSearcher.init(fromNode, node, blockedNodes);
             degree++;
             while (outgoingEdges.next()) {
                 int toNode = outgoingEdges.getAdjNode();
@@ -237,6 +308,14 @@ class NodeBasedNodeContractor implements NodeContractor {
                 if (Double.isInfinite(existingDirectWeight))
                     continue;
 
+                // the shortcuts of customizable CH must not depend on the weights, so we do not search for witnesses
+                if (params.customizable) {
+                    handler.handleShortcut(fromNode, toNode, existingDirectWeight,
+                            outgoingEdges.getPrepareEdge(), outgoingEdges.getOrigEdgeCount(),
+                            incomingEdges.getPrepareEdge(), incomingEdges.getOrigEdgeCount());
+                    continue;
+                }
+
                 dijkstraSW.start();
                 dijkstraCount++;
                 double maxWeight = witnessPathSearcher.findUpperBound(toNode, existingDirectWeight, maxVisitedNodes);
@@ -308,6 +387,7 @@ class NodeBasedNodeContractor implements NodeContractor {
         // cost of a longer preparation (see #2514)
         private double maxPollFactorHeuristic = 5;
         private double maxPollFactorContraction = 200;
+        private boolean customizable = false;
     }
 
     private static class Shortcut {
@@ -23,6 +23,7 @@ import com.graphhopper.apache.commons.collections.IntFloatBinaryHeap;
 import com.graphhopper.util.Helper;
 
 import java.util.Arrays;
+import java.util.function.IntPredicate;
 
 /**
  * Used to perform witness searches during node-based CH preparation. Witness searches at node B determine if there is a
@@ -34,6 +35,7 @@ public class NodeBasedWitnessPathSearcher {
     private final IntArrayList changedNodes;
     private final IntFloatBinaryHeap heap;
     private int ignoreNode = -1;
+    private IntPredicate blockedNodes;
     private int settledNodes = 0;
 
     public NodeBasedWitnessPathSearcher(CHPreparationGraph graph) {
@@ -49,8 +51,17 @@ public class NodeBasedWitnessPathSearcher {
      * target nodes until this method is called again.
      */
     public void init(int startNode, int ignoreNode) {
+        init(startNode, ignoreNode, null);
+    }
+
+    /**
+     * Like {@link #init(int, int)}, but the search also does not use any node for which blockedNodes returns true.
+     * This is used when multiple nodes are contracted in parallel.
+     */
+    public void init(int startNode, int ignoreNode, IntPredicate blockedNodes) {
         reset();
         this.ignoreNode = ignoreNode;
+        this.blockedNodes = blockedNodes;
         weights[startNode] = 0;
         changedNodes.add(startNode);
         heap.insert(0, startNode);
@@ -85,7 +96,7 @@ public class NodeBasedWitnessPathSearcher {
             PrepareGraphEdgeIterator iter = outEdgeExplorer.setBaseNode(node);
             while (iter.next()) {
                 int adjNode = iter.getAdjNode();
-                if (adjNode == ignoreNode)
+                if (adjNode == ignoreNode || (blockedNodes != null && blockedNodes.test(adjNode)))
                     continue;
                 double weight = weights[node] + iter.getWeight();
                 if (Double.isInfinite(weight))
@@ -119,6 +130,7 @@ public class NodeBasedWitnessPathSearcher {
         changedNodes.elementsCount = 0;
         heap.clear();
         ignoreNode = -1;
+        blockedNodes = null;
         settledNodes = 0;
     }
 
@@ -20,6 +20,8 @@ package com.graphhopper.routing.ch;
 
 import com.carrotsearch.hppc.IntContainer;
 
+import java.util.function.IntPredicate;
+
 public interface NodeContractor {
     void initFromGraph();
 
@@ -37,6 +39,26 @@ public interface NodeContractor {
      */
     IntContainer contractNode(int node);
 
+    /**
+     * Creates a contractor for the same graph that has its own witness path searcher and explorers, so it can be used
+     * to call {@link #calculatePriority} and {@link #findShortcuts} from another thread. Workers share the graph and
+     * the heuristic state of this contractor, so they must only be used while the graph is not modified.
+     */
+    NodeContractor createWorker();
+
+    /**
+     * Runs the witness searches that are required to contract the given node without changing the graph. The searches
+     * do not use any of the blocked nodes, so the result remains valid when these nodes are contracted in the meantime.
+     *
+     * @return a task that adds the required shortcuts to the graph, to be passed to {@link #contractNode(int, Runnable)}
+     */
+    Runnable findShortcuts(int node, IntPredicate blockedNodes);
+
+    /**
+     * Like {@link #contractNode(int)}, but uses the shortcuts that were found by {@link #findShortcuts} before.
+     */
+    IntContainer contractNode(int node, Runnable addShortcuts);
+
     void finishContraction();
 
     long getAddedShortcutsCount();
@@ -17,7 +17,9 @@
  */
 package com.graphhopper.routing.ch;
 
+import com.carrotsearch.hppc.IntArrayList;
 import com.carrotsearch.hppc.IntContainer;
+import com.carrotsearch.hppc.IntHashSet;
 import com.carrotsearch.hppc.cursors.IntCursor;
 import com.graphhopper.coll.MinHeapWithUpdate;
 import com.graphhopper.routing.util.TraversalMode;
@@ -28,8 +30,11 @@ import com.graphhopper.util.StopWatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
 import java.util.Random;
+import java.util.concurrent.*;
 
 import static com.graphhopper.routing.ch.CHParameters.*;
 import static com.graphhopper.util.Helper.getMemInfo;
@@ -49,6 +54,9 @@ import static com.graphhopper.util.Helper.nf;
  * @author Peter Karich
  */
 public class PrepareContractionHierarchies {
+    // the number of nodes we try to contract at once per contraction thread
+    private static final int BATCH_SIZE_PER_THREAD = 8;
+    private static final int PRIORITY_CHUNK_SIZE = 256;
     private final Logger logger = LoggerFactory.getLogger(getClass());
     private final CHConfig chConfig;
     private final CHStorage chStore;
@@ -61,6 +69,7 @@ public class PrepareContractionHierarchies {
     private final StopWatch contractionSW = new StopWatch();
     private final Params params;
     private final BaseGraph graph;
+    private CHPreparationGraph prepareGraph;
     private NodeContractor nodeContractor;
     private final int nodes;
     private NodeOrderingProvider nodeOrderingProvider;
@@ -70,6 +79,12 @@ public class PrepareContractionHierarchies {
     private PMap pMap = new PMap();
     private int checkCounter;
     private boolean prepared = false;
+    // only used when contracting with multiple threads
+    private ExecutorService executor;
+    private BlockingQueue<NodeContractor> idleWorkers;
+    private PrepareGraphEdgeExplorer batchOutExplorer;
+    private PrepareGraphEdgeExplorer batchInExplorer;
+    private final IntArrayList batchNeighbors = new IntArrayList();
 
     public static PrepareContractionHierarchies fromGraph(BaseGraph graph, CHConfig chConfig) {
         return new PrepareContractionHierarchies(graph.getBaseGraph(), chConfig);
@@ -100,6 +115,15 @@ public class PrepareContractionHierarchies {
         params.setMaxNeighborUpdates(pMap.getInt(NEIGHBOR_UPDATES_MAX, params.getMaxNeighborUpdates()));
         params.setNodesContractedPercentage(pMap.getInt(CONTRACTED_NODES, params.getNodesContractedPercentage()));
         params.setLogMessagesPercentage(pMap.getInt(LOG_MESSAGES, params.getLogMessagesPercentage()));
+        params.setContractionThreads(pMap.getInt(CONTRACTION_THREADS, params.getContractionThreads()));
+        params.setCustomizable(pMap.getBool(CUSTOMIZABLE, params.isCustomizable()));
+        if (params.isCustomizable() && isEdgeBased()) {
+            logger.warn("{} is only supported for node-based CH, ignoring it for {}", CUSTOMIZABLE, chConfig.getName());
+            params.setCustomizable(false);
+        }
+        if (params.isCustomizable() && params.getNodesContractedPercentage() < 100)
+            throw new IllegalArgumentException(CUSTOMIZABLE + " requires all nodes to be contracted, but "
+                    + CONTRACTED_NODES + " was " + params.getNodesContractedPercentage());
         return this;
     }
 
@@ -131,6 +155,8 @@ public class PrepareContractionHierarchies {
         allSW.start();
         initFromGraph();
         runGraphContraction();
+        if (params.isCustomizable())
+            customize();
         allSW.stop();
         logFinalGraphStats();
         return new Result(
@@ -157,20 +183,62 @@ public class PrepareContractionHierarchies {
         if (nodes < 1)
             return;
         setMaxLevelOnAllNodes();
-        if (nodeOrderingProvider != null) {
-            contractNodesUsingFixedNodeOrdering();
-        } else {
-            contractNodesUsingHeuristicNodeOrdering();
+        if (params.getContractionThreads() > 1)
+            startWorkers();
+        try {
+            if (nodeOrderingProvider != null) {
+                contractNodesUsingFixedNodeOrdering();
+            } else {
+                contractNodesUsingHeuristicNodeOrdering();
+            }
+        } finally {
+            stopWorkers();
         }
     }
 
+    /**
+     * For customizable CH the shortcuts were created using the edge distances, so here we calculate the actual
+     * shortcut weights, just like it is done when the weights change later, see {@link CHCustomizer}.
+     */
+    private void customize() {
+        chStore.setCustomizable(true);
+        ForkJoinPool pool = params.getContractionThreads() > 1 ? new ForkJoinPool(params.getContractionThreads()) : null;
+        try {
+            new CHCustomizer(graph, chStore).customize(chConfig.getWeighting(), chStore, pool);
+        } finally {
+            if (pool != null)
+                pool.shutdown();
+        }
+    }
+
+    private void startWorkers() {
+        int threads = params.getContractionThreads();
+        logger.info("Using {} threads for the contraction", threads);
+        executor = Executors.newFixedThreadPool(threads);
+        idleWorkers = new ArrayBlockingQueue<>(threads);
+        for (int i = 0; i < threads; i++)
+            idleWorkers.add(nodeContractor.createWorker());
+        batchOutExplorer = prepareGraph.createOutEdgeExplorer();
+        batchInExplorer = prepareGraph.createInEdgeExplorer();
+    }
+
+    private void stopWorkers() {
+        if (executor == null)
+            return;
+        executor.shutdownNow();
+        // the workers share the prepare graph with the node contractor, so they must not be closed
+        executor = null;
+        idleWorkers = null;
+        batchOutExplorer = null;
+        batchInExplorer = null;
+    }
+
     private boolean isEdgeBased() {
         return chConfig.isEdgeBased();
     }
 
     private void initFromGraph() {
         logger.info("Creating CH prepare graph, {}", getMemInfo());
-        CHPreparationGraph prepareGraph;
         if (chConfig.getTraversalMode().isEdgeBased()) {
             TurnCostStorage turnCostStorage = graph.getTurnCostStorage();
             if (turnCostStorage == null)
@@ -189,7 +257,10 @@ public class PrepareContractionHierarchies {
         sortedNodes = new MinHeapWithUpdate(prepareGraph.getNodes());
         logger.info("Building CH prepare graph, {}", getMemInfo());
         StopWatch sw = new StopWatch().start();
-        CHPreparationGraph.buildFromGraph(prepareGraph, graph, chConfig.getWeighting());
+        if (params.isCustomizable())
+            CHPreparationGraph.buildFromGraphIgnoringWeights(prepareGraph, graph);
+        else
+            CHPreparationGraph.buildFromGraph(prepareGraph, graph, chConfig.getWeighting());
         logger.info("Finished building CH prepare graph, took: {}s, {}", sw.stop().getSeconds(), getMemInfo());
         nodeContractor.initFromGraph();
     }
@@ -201,11 +272,22 @@ public class PrepareContractionHierarchies {
     private void updatePrioritiesOfRemainingNodes() {
         periodicUpdateSW.start();
         sortedNodes.clear();
-        for (int node = 0; node < nodes; node++) {
-            if (isContracted(node))
-                continue;
-            float priority = calculatePriority(node);
-            sortedNodes.push(node, priority);
+        if (executor == null) {
+            for (int node = 0; node < nodes; node++) {
+                if (isContracted(node))
+                    continue;
+                float priority = calculatePriority(node);
+                sortedNodes.push(node, priority);
+            }
+        } else {
+            IntArrayList remainingNodes = new IntArrayList();
+            for (int node = 0; node < nodes; node++)
+                if (!isContracted(node))
+                    remainingNodes.add(node);
+            float[] priorities = new float[remainingNodes.size()];
+            runInParallel(remainingNodes.size(), PRIORITY_CHUNK_SIZE, (worker, i) -> priorities[i] = calculatePriority(worker, remainingNodes.get(i)));
+            for (int i = 0; i < remainingNodes.size(); i++)
+                sortedNodes.push(remainingNodes.get(i), priorities[i]);
         }
         periodicUpdateSW.stop();
     }
@@ -246,7 +328,10 @@ public class PrepareContractionHierarchies {
         // reduces number of shortcuts.
         final boolean neighborUpdate = (params.getNeighborUpdatePercentage() != 0);
 
-        while (!sortedNodes.isEmpty()) {
+        if (executor != null)
+            updateCounter = contractBatchesUsingHeuristicNodeOrdering(logSize, periodicUpdatesCount, lastNodesLazyUpdates, nodesToAvoidContract, neighborUpdate);
+
+        while (executor == null && !sortedNodes.isEmpty()) {
             stopIfInterrupted();
             // periodically update priorities of ALL nodes
             if (checkCounter > 0 && checkCounter % periodicUpdatesCount == 0) {
@@ -307,6 +392,7 @@ public class PrepareContractionHierarchies {
                         + ", periodic:" + params.getPeriodicUpdatesPercentage()
                         + ", lazy:" + params.getLastNodesLazyUpdatePercentage()
                         + ", neighbor:" + params.getNeighborUpdatePercentage()
+                        + ", threads:" + params.getContractionThreads()
                         + ", " + getTimesAsString()
                         + ", lazy-overhead: " + (int) (100 * ((checkCounter / (double) initSize) - 1)) + "%"
                         + ", " + Helper.getMemInfo());
@@ -316,11 +402,118 @@ public class PrepareContractionHierarchies {
         _close();
     }
 
+    /**
+     * Contracts the nodes in batches of nodes that are far enough apart from each other such that their witness
+     * searches can run in parallel. The graph is only changed by the calling thread and the batches are processed in
+     * a deterministic order, so the result does not depend on the thread scheduling.
+     *
+     * @return the number of periodic updates
+     */
+    private int contractBatchesUsingHeuristicNodeOrdering(long logSize, long periodicUpdatesCount, long lastNodesLazyUpdates,
+                                                          long nodesToAvoidContract, boolean neighborUpdate) {
+        final int maxBatchSize = BATCH_SIZE_PER_THREAD * params.getContractionThreads();
+        final IntArrayList candidates = new IntArrayList(maxBatchSize);
+        final float[] priorities = new float[maxBatchSize];
+        final IntArrayList batch = new IntArrayList(maxBatchSize);
+        final IntHashSet batchArea = new IntHashSet();
+        final IntArrayList neighborsToUpdate = new IntArrayList();
+        int level = 0;
+        int updateCounter = 0;
+        long nextPeriodicUpdate = periodicUpdatesCount;
+        long nextLog = 0;
+        while (!sortedNodes.isEmpty()) {
+            stopIfInterrupted();
+            // periodically update priorities of ALL nodes
+            if (checkCounter >= nextPeriodicUpdate) {
+                updatePrioritiesOfRemainingNodes();
+                updateCounter++;
+                nextPeriodicUpdate = (checkCounter / periodicUpdatesCount + 1) * periodicUpdatesCount;
+                if (sortedNodes.isEmpty())
+                    throw new IllegalStateException("Cannot prepare as no unprepared nodes where found. Called preparation twice?");
+            }
+
+            if (checkCounter >= nextLog) {
+                logHeuristicStats(updateCounter);
+                nextLog = (checkCounter / logSize + 1) * logSize;
+            }
+
+            candidates.clear();
+            while (candidates.size() < maxBatchSize && !sortedNodes.isEmpty()) {
+                priorities[candidates.size()] = sortedNodes.peekValue();
+                candidates.add(sortedNodes.poll());
+            }
+            checkCounter += candidates.size();
+
+            float maxPriority = Float.POSITIVE_INFINITY;
+            if (!sortedNodes.isEmpty() && sortedNodes.size() < lastNodesLazyUpdates) {
+                lazyUpdateSW.start();
+                runInParallel(candidates.size(), 1, (worker, i) -> priorities[i] = calculatePriority(worker, candidates.get(i)));
+                maxPriority = sortedNodes.peekValue();
+                lazyUpdateSW.stop();
+            }
+
+            batch.clear();
+            batchArea.clear();
+            for (int i = 0; i < candidates.size(); i++) {
+                if (priorities[i] <= maxPriority && addIfIndependent(candidates.get(i), batch, batchArea))
+                    continue;
+                // node got more important or is too close to another node of this batch => contract it later
+                sortedNodes.push(candidates.get(i), priorities[i]);
+            }
+            if (batch.isEmpty())
+                continue;
+
+            neighborsToUpdate.clear();
+            contractBatch(batch, level, neighborUpdate ? neighborsToUpdate : null);
+            level += batch.size();
+
+            if (sortedNodes.size() < nodesToAvoidContract)
+                // skipped nodes are already set to maxLevel
+                break;
+
+            if (!neighborsToUpdate.isEmpty()) {
+                neighborUpdateSW.start();
+                float[] neighborPriorities = new float[neighborsToUpdate.size()];
+                runInParallel(neighborsToUpdate.size(), 1, (worker, i) -> neighborPriorities[i] = calculatePriority(worker, neighborsToUpdate.get(i)));
+                for (int i = 0; i < neighborsToUpdate.size(); i++)
+                    sortedNodes.update(neighborsToUpdate.get(i), neighborPriorities[i]);
+                neighborUpdateSW.stop();
+            }
+        }
+        return updateCounter;
+    }
+
     private void contractNodesUsingFixedNodeOrdering() {
         final int nodesToContract = nodeOrderingProvider.getNumNodes();
         final int logSize = Math.max(10, (int) (params.getLogMessagesPercentage() / 100.0 * nodesToContract));
         StopWatch stopWatch = new StopWatch();
         stopWatch.start();
+        if (executor != null) {
+            final int maxBatchSize = BATCH_SIZE_PER_THREAD * params.getContractionThreads();
+            final IntArrayList batch = new IntArrayList(maxBatchSize);
+            final IntHashSet batchArea = new IntHashSet();
+            int i = 0;
+            while (i < nodesToContract) {
+                stopIfInterrupted();
+                batch.clear();
+                batchArea.clear();
+                // the batch consists of consecutive nodes of the ordering, so the levels do not change
+                int next = i;
+                while (next < nodesToContract && batch.size() < maxBatchSize
+                        && addIfIndependent(nodeOrderingProvider.getNodeIdForLevel(next), batch, batchArea))
+                    next++;
+                contractBatch(batch, i, null);
+                int prevLogs = i / logSize;
+                i += batch.size();
+                if (i / logSize > prevLogs) {
+                    stopWatch.stop();
+                    logFixedNodeOrderingStats(i, logSize, stopWatch);
+                    stopWatch.start();
+                }
+            }
+            nodeContractor.finishContraction();
+            return;
+        }
         for (int i = 0; i < nodesToContract; ++i) {
             stopIfInterrupted();
             int node = nodeOrderingProvider.getNodeIdForLevel(i);
@@ -340,6 +533,94 @@ public class PrepareContractionHierarchies {
         }
     }
 
+    /**
+     * Adds the given node to the batch unless it or one of its neighbors is adjacent to another node of the batch.
+     * This guarantees that contracting one of the nodes of the batch neither removes nor adds edges that are adjacent
+     * to the other nodes, and the witness searches avoid the other nodes anyway.
+     *
+     * @param batchArea the nodes of the batch and their neighbors
+     */
+    private boolean addIfIndependent(int node, IntArrayList batch, IntHashSet batchArea) {
+        if (batchArea.contains(node))
+            return false;
+        batchNeighbors.clear();
+        PrepareGraphEdgeIterator iter = batchOutExplorer.setBaseNode(node);
+        while (iter.next())
+            batchNeighbors.add(iter.getAdjNode());
+        iter = batchInExplorer.setBaseNode(node);
+        while (iter.next())
+            batchNeighbors.add(iter.getAdjNode());
+        for (int i = 0; i < batchNeighbors.size(); i++)
+            if (batchArea.contains(batchNeighbors.get(i)))
+                return false;
+        batch.add(node);
+        batchArea.add(node);
+        batchArea.addAll(batchNeighbors);
+        return true;
+    }
+
+    /**
+     * Runs the witness searches for all nodes of the batch in parallel and then contracts the nodes one after another
+     * using the given levels, starting at firstLevel.
+     *
+     * @param neighborsToUpdate the neighbors selected for a priority update are added here, unless this is null
+     */
+    private void contractBatch(IntArrayList batch, int firstLevel, IntArrayList neighborsToUpdate) {
+        contractionSW.start();
+        IntHashSet batchNodes = new IntHashSet(batch);
+        Runnable[] addShortcuts = new Runnable[batch.size()];
+        runInParallel(batch.size(), 1, (worker, i) -> addShortcuts[i] = worker.findShortcuts(batch.get(i), batchNodes::contains));
+        for (int i = 0; i < batch.size(); i++) {
+            int node = batch.get(i);
+            if (isContracted(node))
+                throw new IllegalArgumentException("Node " + node + " was contracted already");
+            chBuilder.setLevel(node, firstLevel + i);
+            IntContainer neighbors = nodeContractor.contractNode(node, addShortcuts[i]);
+            if (neighborsToUpdate == null)
+                continue;
+            // the neighbor sets of the batch nodes are disjoint, so there are no duplicates
+            int neighborCount = 0;
+            for (IntCursor neighbor : neighbors) {
+                if ((params.getMaxNeighborUpdates() < 0 || neighborCount < params.getMaxNeighborUpdates()) && rand.nextInt(100) < params.getNeighborUpdatePercentage()) {
+                    neighborCount++;
+                    neighborsToUpdate.add(neighbor.value);
+                }
+            }
+        }
+        contractionSW.stop();
+    }
+
+    /**
+     * Splits the indices [0, size) into chunks and runs the given task for them using the idle workers. Returns once
+     * all chunks are finished.
+     */
+    private void runInParallel(int size, int chunkSize, WorkerTask task) {
+        List<Callable<Object>> chunks = new ArrayList<>();
+        for (int start = 0; start < size; start += chunkSize) {
+            final int from = start;
+            final int to = Math.min(size, start + chunkSize);
+            chunks.add(() -> {
+                NodeContractor worker = idleWorkers.take();
+                try {
+                    for (int i = from; i < to; i++)
+                        task.run(worker, i);
+                } finally {
+                    idleWorkers.add(worker);
+                }
+                return null;
+            });
+        }
+        try {
+            for (Future<Object> future : executor.invokeAll(chunks))
+                future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Thread was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
     private IntContainer contractNode(int node, int level) {
         if (isContracted(node))
             throw new IllegalArgumentException("Node " + node + " was contracted already");
@@ -403,9 +684,13 @@ public class PrepareContractionHierarchies {
     }
 
     private float calculatePriority(int node) {
+        return calculatePriority(nodeContractor, node);
+    }
+
+    private float calculatePriority(NodeContractor contractor, int node) {
         if (isContracted(node))
             throw new IllegalArgumentException("Priority should only be calculated for not yet contracted nodes");
-        return nodeContractor.calculatePriority(node);
+        return contractor.calculatePriority(node);
     }
 
     @Override
@@ -426,6 +711,11 @@ public class PrepareContractionHierarchies {
         chStore.close();
     }
 
+    @FunctionalInterface
+    private interface WorkerTask {
+        void run(NodeContractor worker, int index);
+    }
+
     public static class Result {
         private final CHConfig chConfig;
         private final CHStorage chStorage;
@@ -514,6 +804,18 @@ public class PrepareContractionHierarchies {
          * @see #periodicUpdatesPercentage
          */
         private int logMessagesPercentage;
+        /**
+         * Specifies the number of threads used to contract the graph. With more than one thread the witness searches
+         * of nodes that are not too close to each other run in parallel, while the graph is still changed by a
+         * single thread. Every thread needs its own witness search data.
+         */
+        private int contractionThreads = 1;
+        /**
+         * Specifies whether the node ordering and the shortcuts should be independent of the weights, such that the
+         * shortcut weights can be quickly re-calculated when the weights change, see {@link CHCustomizer}. This yields
+         * more shortcuts and therefore a slower preparation and slower queries.
+         */
+        private boolean customizable = false;
 
         static Params forTraversalMode(TraversalMode traversalMode) {
             // Lower values for the neighbor update percentage (and/or max neighbor updates) yield a slower
@@ -588,6 +890,24 @@ public class PrepareContractionHierarchies {
             this.logMessagesPercentage = logMessagesPercentage;
         }
 
+        int getContractionThreads() {
+            return contractionThreads;
+        }
+
+        void setContractionThreads(int contractionThreads) {
+            if (contractionThreads < 1)
+                throw new IllegalArgumentException(CONTRACTION_THREADS + " has to be at least 1");
+            this.contractionThreads = contractionThreads;
+        }
+
+        boolean isCustomizable() {
+            return customizable;
+        }
+
+        void setCustomizable(boolean customizable) {
+            this.customizable = customizable;
+        }
+
         private void checkPercentage(String name, int value) {
             if (value < 0 || value > 100) {
                 throw new IllegalArgumentException(name + " has to be in [0, 100], to disable it use 0");
@@ -0,0 +1,176 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ev;
+
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.GHUtility;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Holds the values of a set of encoded values for a list of edges in primitive arrays, with one column per encoded
+ * value and one row per edge. This is useful to read many values at once, e.g. for all edges of a vector tile,
+ * without going through an {@link EdgeIteratorState} and without boxing every single value. The type of every column
+ * is determined once, so reading a row only needs the edge flags and no further lookups.
+ * <p>
+ * Decimal values are stored as double, all other values as int: booleans as 0 or 1, enums as their ordinal and
+ * strings as their index, see {@link StringEncodedValue}. The values in reverse direction are only stored if
+ * requested and only for the encoded values that store two directions.
+ */
+public class EncodedValueColumns {
+    private static final byte INT = 0, DECIMAL = 1, BOOLEAN = 2;
+    private final List<EncodedValue> encodedValues;
+    private final byte[] types;
+    private final int size;
+    // indexed by column and row, the column of the other type is null
+    private final int[][] ints;
+    private final double[][] decimals;
+    private final int[][] reverseInts;
+    private final double[][] reverseDecimals;
+
+    /**
+     * @param size        the number of edges
+     * @param withReverse true if the values in reverse direction should be stored as well
+     */
+    public EncodedValueColumns(List<? extends EncodedValue> encodedValues, int size, boolean withReverse) {
+        this.encodedValues = new ArrayList<>(encodedValues);
+        this.size = size;
+        int columns = encodedValues.size();
+        types = new byte[columns];
+        ints = new int[columns][];
+        decimals = new double[columns][];
+        reverseInts = new int[columns][];
+        reverseDecimals = new double[columns][];
+        for (int col = 0; col < columns; col++) {
+            EncodedValue ev = encodedValues.get(col);
+            boolean reverse = withReverse && ev.isStoreTwoDirections();
+            if (ev instanceof DecimalEncodedValue) {
+                types[col] = DECIMAL;
+                decimals[col] = new double[size];
+                if (reverse)
+                    reverseDecimals[col] = new double[size];
+            } else if (ev instanceof BooleanEncodedValue || ev instanceof IntEncodedValue) {
+                types[col] = ev instanceof BooleanEncodedValue ? BOOLEAN : INT;
+                ints[col] = new int[size];
+                if (reverse)
+                    reverseInts[col] = new int[size];
+            } else {
+                throw new IllegalArgumentException("Unsupported encoded value " + ev.getName() + ": " + ev.getClass().getName());
+            }
+        }
+    }
+
+    /**
+     * Reads the values of the edges with the given keys in a single pass over their flags. Row i is the edge with
+     * edge key i, so the values of edges in reverse direction are swapped.
+     */
+    public static EncodedValueColumns read(List<? extends EncodedValue> encodedValues, int[] edgeKeys,
+                                           EdgeIntAccess edgeIntAccess, boolean withReverse) {
+        EncodedValueColumns columns = new EncodedValueColumns(encodedValues, edgeKeys.length, withReverse);
+        for (int row = 0; row < edgeKeys.length; row++)
+            columns.read(row, edgeKeys[row], edgeIntAccess);
+        return columns;
+    }
+
+    /**
+     * Reads the values of the given row from the edge with the given key
+     */
+    public void read(int row, int edgeKey, EdgeIntAccess edgeIntAccess) {
+        int edgeId = GHUtility.getEdgeFromEdgeKey(edgeKey);
+        boolean reverse = edgeKey % 2 != 0;
+        for (int col = 0; col < types.length; col++) {
+            EncodedValue ev = encodedValues.get(col);
+            switch (types[col]) {
+                case DECIMAL:
+                    DecimalEncodedValue dev = (DecimalEncodedValue) ev;
+                    decimals[col][row] = dev.getDecimal(reverse, edgeId, edgeIntAccess);
+                    if (reverseDecimals[col] != null)
+                        reverseDecimals[col][row] = dev.getDecimal(!reverse, edgeId, edgeIntAccess);
+                    break;
+                case BOOLEAN:
+                    BooleanEncodedValue bev = (BooleanEncodedValue) ev;
+                    ints[col][row] = bev.getBool(reverse, edgeId, edgeIntAccess) ? 1 : 0;
+                    if (reverseInts[col] != null)
+                        reverseInts[col][row] = bev.getBool(!reverse, edgeId, edgeIntAccess) ? 1 : 0;
+                    break;
+                default:
+                    IntEncodedValue iev = (IntEncodedValue) ev;
+                    ints[col][row] = iev.getInt(reverse, edgeId, edgeIntAccess);
+                    if (reverseInts[col] != null)
+                        reverseInts[col][row] = iev.getInt(!reverse, edgeId, edgeIntAccess);
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public List<EncodedValue> getEncodedValues() {
+        return encodedValues;
+    }
+
+    public boolean hasReverse(int column) {
+        return reverseInts[column] != null || reverseDecimals[column] != null;
+    }
+
+    /**
+     * @return the raw int value of a boolean, enum, string or int encoded value
+     */
+    public int getInt(int column, int row) {
+        return ints[column][row];
+    }
+
+    public int getReverseInt(int column, int row) {
+        return reverseInts[column][row];
+    }
+
+    public double getDecimal(int column, int row) {
+        return decimals[column][row];
+    }
+
+    public double getReverseDecimal(int column, int row) {
+        return reverseDecimals[column][row];
+    }
+
+    public boolean getBool(int column, int row) {
+        return ints[column][row] == 1;
+    }
+
+    /**
+     * @return the value of the given cell as object, e.g. the enum constant of an enum encoded value. This boxes
+     * the value, so only use it when an object is needed anyway.
+     */
+    public Object getValue(int column, int row, boolean reverse) {
+        EncodedValue ev = encodedValues.get(column);
+        switch (types[column]) {
+            case DECIMAL:
+                return reverse ? reverseDecimals[column][row] : decimals[column][row];
+            case BOOLEAN:
+                return (reverse ? reverseInts[column][row] : ints[column][row]) == 1;
+            default:
+                int value = reverse ? reverseInts[column][row] : ints[column][row];
+                if (ev instanceof EnumEncodedValue)
+                    return ((EnumEncodedValue<?>) ev).getValues()[value];
+                if (ev instanceof StringEncodedValue)
+                    return value == 0 ? null : ((StringEncodedValue) ev).getValues().get(value - 1);
+                return value;
+        }
+    }
+}
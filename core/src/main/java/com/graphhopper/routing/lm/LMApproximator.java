@@ -41,6 +41,9 @@ public class LMApproximator implements WeightApproximator {
     private final int[] activeLandmarkIndices;
     private final int[] weightsFromActiveLandmarksToT;
     private final int[] weightsFromTToActiveLandmarks;
+    // the factors of the active landmarks, they only differ for the compact landmark format
+    private final double[] fromFactors;
+    private final double[] toFactors;
     private double epsilon = 1;
     private int towerNodeNextToT = -1;
     private double weightFromTToTowerNode;
@@ -74,6 +77,8 @@ public class LMApproximator implements WeightApproximator {
         Arrays.fill(activeLandmarkIndices, -1);
         weightsFromActiveLandmarksToT = new int[activeCount];
         weightsFromTToActiveLandmarks = new int[activeCount];
+        fromFactors = new double[activeCount];
+        toFactors = new double[activeCount];
 
         this.graph = graph;
         this.lmWeighting = lmWeighting;
@@ -112,6 +117,8 @@ public class LMApproximator implements WeightApproximator {
                 for (int i = 0; i < activeLandmarkIndices.length; i++) {
                     weightsFromActiveLandmarksToT[i] = lms.getFromWeight(activeLandmarkIndices[i], towerNodeNextToT);
                     weightsFromTToActiveLandmarks[i] = lms.getToWeight(activeLandmarkIndices[i], towerNodeNextToT);
+                    fromFactors[i] = lms.isCompact() ? lms.getFromFactor(activeLandmarkIndices[i], towerNodeNextToT) : factor;
+                    toFactors[i] = lms.isCompact() ? lms.getToFactor(activeLandmarkIndices[i], towerNodeNextToT) : factor;
                 }
             } else {
                 // note: fallback==true means forever true!
@@ -127,16 +134,14 @@ public class LMApproximator implements WeightApproximator {
     }
 
     private double getRemainingWeightUnderestimationUpToTowerNode(int v) {
-        int maxWeightInt = 0;
+        double maxWeight = 0;
         for (int i = 0; i < activeLandmarkIndices.length; i++) {
-            int resultInt = approximateForLandmark(i, v);
-            maxWeightInt = Math.max(maxWeightInt, resultInt);
+            maxWeight = Math.max(maxWeight, approximateForLandmark(i, v));
         }
-        // Round down, we need to be an underestimator.
-        return (maxWeightInt - 1) * factor;
+        return maxWeight;
     }
 
-    private int approximateForLandmark(int i, int v) {
+    private double approximateForLandmark(int i, int v) {
         // ---> means shortest path, d means length of shortest path
         // but remember that d(v,t) != d(t,v)
         //
@@ -174,7 +179,9 @@ public class LMApproximator implements WeightApproximator {
             rhs1Int *= -1;
             rhs2Int *= -1;
         }
-        return Math.max(rhs1Int, rhs2Int);
+        // Round down, we need to be an underestimator. The stored weights are rounded down, so the difference of two
+        // of them can be too large by one unit of the factor of the landmark.
+        return Math.max((rhs1Int - 1) * toFactors[i], (rhs2Int - 1) * fromFactors[i]);
     }
 
     @Override
@@ -188,15 +195,9 @@ public class LMApproximator implements WeightApproximator {
         Dijkstra dijkstra = new Dijkstra(graph, lmWeighting, TraversalMode.NODE_BASED) {
             @Override
             protected boolean finished() {
-                towerNodeNextToT = currEdge.adjNode;
-                weightFromTToTowerNode = currEdge.weight;
-                return currEdge.adjNode < maxBaseNodes;
-            }
-
-            // We only expect a very short search
-            @Override
-            protected void initCollections(int size) {
-                super.initCollections(2);
+                towerNodeNextToT = state.getAdjNode(currSlot);
+                weightFromTToTowerNode = state.getWeight(currSlot);
+                return towerNodeNextToT < maxBaseNodes;
             }
         };
         dijkstra.calcPath(t, -1);
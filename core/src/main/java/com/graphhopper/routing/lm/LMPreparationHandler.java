@@ -59,6 +59,7 @@ public class LMPreparationHandler {
     private final List<String> lmSuggestionsLocations = new ArrayList<>(5);
     private int preparationThreads;
     private boolean logDetails = false;
+    private boolean compact = false;
     private AreaIndex<SplitArea> areaIndex;
 
     public LMPreparationHandler() {
@@ -77,6 +78,7 @@ public class LMPreparationHandler {
         landmarkCount = ghConfig.getInt(Parameters.Landmark.COUNT, landmarkCount);
         logDetails = ghConfig.getBool(Landmark.PREPARE + "log_details", false);
         minNodes = ghConfig.getInt(Landmark.PREPARE + "min_network_size", -1);
+        compact = ghConfig.getBool(Landmark.PREPARE + "compact", false);
 
         for (String loc : ghConfig.getString(Landmark.PREPARE + "suggestions_location", "").split(",")) {
             if (!loc.trim().isEmpty())
@@ -224,6 +226,7 @@ public class LMPreparationHandler {
                     lmConfig, landmarkCount).
                     setLandmarkSuggestions(lmSuggestions).
                     setMaximumWeight(maximumWeight).
+                    setCompact(compact).
                     setLogDetails(logDetails);
             if (minNodes > 1)
                 prepareLandmarks.setMinimumNodes(minNodes);
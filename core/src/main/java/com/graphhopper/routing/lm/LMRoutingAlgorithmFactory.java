@@ -20,6 +20,7 @@ package com.graphhopper.routing.lm;
 
 import com.graphhopper.routing.AStar;
 import com.graphhopper.routing.*;
+import com.graphhopper.routing.weighting.TimeDependentWeighting;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.Graph;
 import com.graphhopper.util.Helper;
@@ -48,7 +49,12 @@ public class LMRoutingAlgorithmFactory implements RoutingAlgorithmFactory {
         int activeLM = Math.max(1, opts.getHints().getInt(Parameters.Landmark.ACTIVE_COUNT, defaultActiveLandmarks));
         final String algoStr = opts.getAlgorithm();
         final Weighting weighting = g.wrapWeighting(w);
-        if (ASTAR.equalsIgnoreCase(algoStr)) {
+        if (w instanceof TimeDependentWeighting) {
+            // the landmarks stay valid, because the time-dependent weights are never lower than the weights without time
+            double epsilon = opts.getHints().getDouble(Parameters.Algorithms.AStar.EPSILON, 1);
+            return RoutingAlgorithmFactorySimple.createTimeDependentAlgo(g, weighting, (TimeDependentWeighting) w, opts,
+                    getApproximator(g, weighting, activeLM, epsilon));
+        } else if (ASTAR.equalsIgnoreCase(algoStr)) {
             double epsilon = opts.getHints().getDouble(Parameters.Algorithms.AStar.EPSILON, 1);
             AStar algo = new AStar(g, weighting, opts.getTraversalMode());
             algo.setApproximation(getApproximator(g, weighting, activeLM, epsilon));
@@ -19,12 +19,10 @@ package com.graphhopper.routing.lm;
 
 import com.carrotsearch.hppc.IntArrayList;
 import com.carrotsearch.hppc.IntHashSet;
-import com.carrotsearch.hppc.IntObjectMap;
-import com.carrotsearch.hppc.predicates.IntObjectPredicate;
-import com.carrotsearch.hppc.procedures.IntObjectProcedure;
+import com.carrotsearch.hppc.predicates.IntIntPredicate;
 import com.graphhopper.coll.MapEntry;
 import com.graphhopper.routing.DijkstraBidirectionRef;
-import com.graphhopper.routing.SPTEntry;
+import com.graphhopper.routing.SearchState;
 import com.graphhopper.routing.ev.BooleanEncodedValue;
 import com.graphhopper.routing.ev.EncodedValueLookup;
 import com.graphhopper.routing.ev.Subnetwork;
@@ -65,6 +63,9 @@ public class LandmarkStorage {
     private static final int SHORT_INFINITY = Short.MAX_VALUE * 2 + 1;
     // We have large values that do not fit into a short, use a specific maximum value
     static final int SHORT_MAX = SHORT_INFINITY - 1;
+    // the compact format stores one unsigned byte per weight
+    private static final int BYTE_INFINITY = 0xFF;
+    static final int BYTE_MAX = BYTE_INFINITY - 1;
 
     private static final Logger LOGGER = LoggerFactory.getLogger(LandmarkStorage.class);
     // This value is used to identify nodes where no subnetwork is associated
@@ -75,10 +76,17 @@ public class LandmarkStorage {
     private long LM_ROW_LENGTH;
     private int landmarks;
     private final int FROM_OFFSET;
-    private final int TO_OFFSET;
+    private int TO_OFFSET;
+    // 2 for the default format and 1 for the compact format
+    private int bytesPerWeight = 2;
+    private int weightInfinity = SHORT_INFINITY;
+    private int weightMax = SHORT_MAX;
     private final DataAccess landmarkWeightDA;
     // every subnetwork has its own landmark mapping but the count of landmarks is always the same
     private final List<int[]> landmarkIDs;
+    // only for the compact format: the factors per subnetwork and landmark, parallel to landmarkIDs
+    private final List<double[]> fromFactors = new ArrayList<>();
+    private final List<double[]> toFactors = new ArrayList<>();
     private double factor = -1;
     private final static double DOUBLE_MLTPL = 1e6;
     private final BaseGraph graph;
@@ -162,6 +170,33 @@ public class LandmarkStorage {
         return this;
     }
 
+    /**
+     * The compact format stores the weights in one byte instead of two, which halves the memory usage. To keep
+     * enough precision every landmark gets its own factor per subnetwork and direction, derived from the maximum
+     * weight of this landmark. The approximation stays a lower bound, but is less precise. This needs to be set
+     * before the landmarks are created, when loading existing landmarks the format is read from the storage.
+     */
+    public LandmarkStorage setCompact(boolean compact) {
+        if (isInitialized())
+            throw new IllegalStateException("Cannot change the format of the landmark storage after initialization");
+        setBytesPerWeight(compact ? 1 : 2);
+        return this;
+    }
+
+    public boolean isCompact() {
+        return bytesPerWeight == 1;
+    }
+
+    private void setBytesPerWeight(int bytesPerWeight) {
+        if (bytesPerWeight != 1 && bytesPerWeight != 2)
+            throw new IllegalArgumentException("Unsupported landmark format with " + bytesPerWeight + " bytes per weight");
+        this.bytesPerWeight = bytesPerWeight;
+        this.weightInfinity = bytesPerWeight == 1 ? BYTE_INFINITY : SHORT_INFINITY;
+        this.weightMax = weightInfinity - 1;
+        this.LM_ROW_LENGTH = landmarks * 2L * bytesPerWeight;
+        this.TO_OFFSET = bytesPerWeight;
+    }
+
     /**
      * By default do not log many details.
      */
@@ -235,13 +270,20 @@ public class LandmarkStorage {
         this.landmarkWeightDA.create(2000);
         this.landmarkWeightDA.ensureCapacity(maxBytes);
 
-        for (long pointer = 0; pointer < maxBytes; pointer += 2) {
-            landmarkWeightDA.setShort(pointer, (short) SHORT_INFINITY);
+        for (long pointer = 0; pointer < maxBytes; pointer += bytesPerWeight) {
+            if (isCompact())
+                landmarkWeightDA.setByte(pointer, (byte) BYTE_INFINITY);
+            else
+                landmarkWeightDA.setShort(pointer, (short) SHORT_INFINITY);
         }
 
         int[] empty = new int[landmarks];
         Arrays.fill(empty, UNSET_SUBNETWORK);
         landmarkIDs.add(empty);
+        if (isCompact()) {
+            fromFactors.add(new double[landmarks]);
+            toFactors.add(new double[landmarks]);
+        }
 
         byte[] subnetworks = new byte[graph.getNodes()];
         Arrays.fill(subnetworks, (byte) UNSET_SUBNETWORK);
@@ -277,8 +319,8 @@ public class LandmarkStorage {
             LOGGER.info("Calculated " + graphComponents.getComponents().size() + " subnetworks via tarjan in " + sw.stop().getSeconds() + "s, " + Helper.getMemInfo());
 
         String additionalInfo = "";
-        // guess the factor
-        if (factor <= 0) {
+        // guess the factor, the compact format picks a factor per landmark instead
+        if (factor <= 0 && !isCompact()) {
             // A 'factor' is necessary to store the weight in just a short value but without losing too much precision.
             // This factor is rather delicate to pick, we estimate it from an exploration with some "test landmarks",
             // see estimateMaxWeight. If we pick the distance too big for small areas this could lead to (slightly)
@@ -297,7 +339,7 @@ public class LandmarkStorage {
             nodes += subnetworkIds.size();
             if (subnetworkIds.size() < minimumNodes)
                 continue;
-            if (factor <= 0)
+            if (factor <= 0 && !isCompact())
                 throw new IllegalStateException("factor wasn't initialized " + factor + ", subnetworks:"
                         + graphComponents.getComponents().size() + ", minimumNodes:" + minimumNodes + ", current size:" + subnetworkIds.size());
 
@@ -322,7 +364,8 @@ public class LandmarkStorage {
 
         int subnetworkCount = landmarkIDs.size();
         // store all landmark node IDs and one int for the factor itself.
-        this.landmarkWeightDA.ensureCapacity(maxBytes /* landmark weights */ + (long) subnetworkCount * landmarks /* landmark mapping per subnetwork */ + 4);
+        this.landmarkWeightDA.ensureCapacity(maxBytes /* landmark weights */ + (long) subnetworkCount * landmarks * 4 /* landmark mapping per subnetwork */
+                + (isCompact() ? (long) subnetworkCount * landmarks * 2 * 4 : 0) /* factors per landmark and direction */ + 4);
 
         // calculate offset to point into landmark mapping
         long bytePos = maxBytes;
@@ -332,13 +375,35 @@ public class LandmarkStorage {
                 bytePos += 4L;
             }
         }
+        if (isCompact()) {
+            // the factors are rounded up to floats when they are created, so they are stored without loss
+            factor = 0;
+            for (int subnetwork = 0; subnetwork < subnetworkCount; subnetwork++) {
+                for (double[] factors : Arrays.asList(fromFactors.get(subnetwork), toFactors.get(subnetwork))) {
+                    for (double f : factors) {
+                        landmarkWeightDA.setInt(bytePos, Float.floatToIntBits((float) f));
+                        bytePos += 4L;
+                        factor = Math.max(factor, f);
+                    }
+                }
+            }
+            // the global factor is the maximum rounding error and used as slack of the approximation
+            if (factor <= 0)
+                factor = 1;
+        }
 
         landmarkWeightDA.setHeader(0 * 4, graph.getNodes());
         landmarkWeightDA.setHeader(1 * 4, landmarks);
         landmarkWeightDA.setHeader(2 * 4, subnetworkCount);
-        if (factor * DOUBLE_MLTPL > Integer.MAX_VALUE)
-            throw new UnsupportedOperationException("landmark weight factor cannot be bigger than Integer.MAX_VALUE " + factor * DOUBLE_MLTPL);
-        landmarkWeightDA.setHeader(3 * 4, (int) Math.round(factor * DOUBLE_MLTPL));
+        if (isCompact()) {
+            landmarkWeightDA.setHeader(3 * 4, Float.floatToIntBits((float) factor));
+        } else {
+            if (factor * DOUBLE_MLTPL > Integer.MAX_VALUE)
+                throw new UnsupportedOperationException("landmark weight factor cannot be bigger than Integer.MAX_VALUE " + factor * DOUBLE_MLTPL);
+            landmarkWeightDA.setHeader(3 * 4, (int) Math.round(factor * DOUBLE_MLTPL));
+        }
+        // 0 for landmarks that were created before the compact format existed
+        landmarkWeightDA.setHeader(4 * 4, bytesPerWeight);
 
         // serialize fast byte[] into DataAccess
         subnetworkStorage.create(graph.getNodes());
@@ -384,7 +449,7 @@ public class LandmarkStorage {
                     explorer = new LandmarkExplorer(graph, this, weighting, traversalMode, accessFilter, false);
                     explorer.setStartNode(lmNodeId);
                     explorer.runAlgo();
-                    maxWeight = Math.max(maxWeight, explorer.getLastEntry().weight);
+                    maxWeight = Math.max(maxWeight, explorer.getLastWeight());
                 }
                 break;
             }
@@ -407,6 +472,8 @@ public class LandmarkStorage {
         final int subnetworkId = landmarkIDs.size();
         int[] tmpLandmarkNodeIds = new int[landmarks];
         int logOffset = Math.max(1, landmarks / 2);
+        double[] tmpFromFactors = new double[landmarks];
+        double[] tmpToFactors = new double[landmarks];
         boolean pickedPrecalculatedLandmarks = false;
 
         if (!landmarkSuggestions.isEmpty()) {
@@ -453,7 +520,7 @@ public class LandmarkStorage {
             LandmarkExplorer explorer = new LandmarkExplorer(graph, this, weighting, traversalMode, accessFilter, false);
             explorer.setStartNode(lmNodeId);
             explorer.runAlgo();
-            explorer.initLandmarkWeights(lmIdx, lmNodeId, LM_ROW_LENGTH, FROM_OFFSET);
+            tmpFromFactors[lmIdx] = explorer.initLandmarkWeights(lmIdx, lmNodeId, LM_ROW_LENGTH, FROM_OFFSET);
 
             // set subnetwork id to all explored nodes, but do this only for the first landmark
             if (lmIdx == 0) {
@@ -464,7 +531,7 @@ public class LandmarkStorage {
             explorer = new LandmarkExplorer(graph, this, weighting, traversalMode, accessFilter, true);
             explorer.setStartNode(lmNodeId);
             explorer.runAlgo();
-            explorer.initLandmarkWeights(lmIdx, lmNodeId, LM_ROW_LENGTH, TO_OFFSET);
+            tmpToFactors[lmIdx] = explorer.initLandmarkWeights(lmIdx, lmNodeId, LM_ROW_LENGTH, TO_OFFSET);
 
             if (lmIdx == 0) {
                 if (explorer.setSubnetworks(subnetworks, subnetworkId))
@@ -478,6 +545,10 @@ public class LandmarkStorage {
 
         // TODO set weight to SHORT_MAX if entry has either no 'from' or no 'to' entry
         landmarkIDs.add(tmpLandmarkNodeIds);
+        if (isCompact()) {
+            fromFactors.add(tmpFromFactors);
+            toFactors.add(tmpToFactors);
+        }
         return true;
     }
 
@@ -518,55 +589,88 @@ public class LandmarkStorage {
         return factor;
     }
 
+    /**
+     * @return the factor of the weights from the specified landmark (as index) in the subnetwork of the specified node.
+     * Only the compact format has different factors per landmark.
+     */
+    double getFromFactor(int landmarkIndex, int node) {
+        return isCompact() ? fromFactors.get(subnetworkStorage.getSubnetwork(node))[landmarkIndex] : factor;
+    }
+
+    /**
+     * @return the factor of the weights to the specified landmark (as index) in the subnetwork of the specified node
+     */
+    double getToFactor(int landmarkIndex, int node) {
+        return isCompact() ? toFactors.get(subnetworkStorage.getSubnetwork(node))[landmarkIndex] : factor;
+    }
+
+    /**
+     * @return the smallest factor that is at least maxWeight / (BYTE_MAX - 1) and exactly representable as float.
+     * This way the weights of the landmark are never maxed out and the factor can be stored without loss.
+     */
+    static double calcCompactFactor(double maxWeight) {
+        double exact = Math.max(maxWeight, 1e-3) / (BYTE_MAX - 1);
+        float f = (float) exact;
+        if (f < exact)
+            f = Math.nextUp(f);
+        return f;
+    }
+
+    private int getWeight(long pointer) {
+        int res = isCompact()
+                ? landmarkWeightDA.getByte(pointer) & 0xFF
+                : landmarkWeightDA.getShort(pointer) & 0x0000FFFF;
+        // TODO can happen if endstanding oneway
+        // we should set a 'from' value to SHORT_MAX if the 'to' value was already set to find real bugs
+        // and what to return? Integer.MAX_VALUE i.e. convert to Double.pos_infinity upstream?
+        // TODO if(res == MAX) fallback to beeline approximation!?
+        return res == weightInfinity ? weightMax : res;
+    }
+
     /**
      * @return the weight from the landmark to the specified node. Where the landmark integer is not
      * a node ID but the internal index of the landmark array.
      */
     int getFromWeight(int landmarkIndex, int node) {
-        int res = (int) landmarkWeightDA.getShort((long) node * LM_ROW_LENGTH + landmarkIndex * 4L + FROM_OFFSET)
-                & 0x0000FFFF;
-        if (res == SHORT_INFINITY)
-            // TODO can happen if endstanding oneway
-            // we should set a 'from' value to SHORT_MAX if the 'to' value was already set to find real bugs
-            // and what to return? Integer.MAX_VALUE i.e. convert to Double.pos_infinity upstream?
-            return SHORT_MAX;
-        // throw new IllegalStateException("Do not call getFromWeight for wrong landmark[" + landmarkIndex + "]=" + landmarkIDs[landmarkIndex] + " and node " + node);
-        // TODO if(res == MAX) fallback to beeline approximation!?
-
-        return res;
+        return getWeight((long) node * LM_ROW_LENGTH + landmarkIndex * 2L * bytesPerWeight + FROM_OFFSET);
     }
 
     /**
      * @return the weight from the specified node to the landmark (specified *as index*)
      */
     int getToWeight(int landmarkIndex, int node) {
-        int res = (int) landmarkWeightDA.getShort((long) node * LM_ROW_LENGTH + landmarkIndex * 4 + TO_OFFSET)
-                & 0x0000FFFF;
-        if (res == SHORT_INFINITY)
-            return SHORT_MAX;
-
-        return res;
+        return getWeight((long) node * LM_ROW_LENGTH + landmarkIndex * 2L * bytesPerWeight + TO_OFFSET);
     }
 
     /**
      * @return false if the value capacity was reached and instead of the real value the SHORT_MAX was stored.
      */
     final boolean setWeight(long pointer, double value) {
+        return setWeight(pointer, value, factor);
+    }
+
+    /**
+     * @return false if the value capacity was reached and instead of the real value the maximum value was stored.
+     */
+    final boolean setWeight(long pointer, double value, double factor) {
         double tmpVal = value / factor;
         if (tmpVal > Integer.MAX_VALUE)
             throw new UnsupportedOperationException("Cannot store infinity explicitly, pointer=" + pointer + ", value=" + value + ", factor=" + factor);
 
-        if (tmpVal >= SHORT_MAX) {
-            landmarkWeightDA.setShort(pointer, (short) SHORT_MAX);
-            return false;
-        } else {
-            landmarkWeightDA.setShort(pointer, (short) tmpVal);
-            return true;
-        }
+        boolean maxedOut = tmpVal >= weightMax;
+        int storedVal = maxedOut ? weightMax : (int) tmpVal;
+        if (isCompact())
+            landmarkWeightDA.setByte(pointer, (byte) storedVal);
+        else
+            landmarkWeightDA.setShort(pointer, (short) storedVal);
+        return !maxedOut;
     }
 
     boolean isInfinity(long pointer) {
-        return ((int) landmarkWeightDA.getShort(pointer) & 0x0000FFFF) == SHORT_INFINITY;
+        int res = isCompact()
+                ? landmarkWeightDA.getByte(pointer) & 0xFF
+                : landmarkWeightDA.getShort(pointer) & 0x0000FFFF;
+        return res == weightInfinity;
     }
 
     // From all available landmarks pick just a few active ones
@@ -584,11 +688,12 @@ public class LandmarkStorage {
                     + " vs. " + subnetworkTo, new HashMap<>());
         }
 
-        // See the similar formula in LMApproximator.approximateForLandmark
-        List<Map.Entry<Integer, Integer>> list = new ArrayList<>(landmarks);
+        // See the similar formula in LMApproximator.approximateForLandmark. The weights of different landmarks are
+        // only comparable after multiplying them with their factors, which differ for the compact format.
+        List<Map.Entry<Double, Integer>> list = new ArrayList<>(landmarks);
         for (int lmIndex = 0; lmIndex < landmarks; lmIndex++) {
-            int fromWeight = getFromWeight(lmIndex, toNode) - getFromWeight(lmIndex, fromNode);
-            int toWeight = getToWeight(lmIndex, fromNode) - getToWeight(lmIndex, toNode);
+            double fromWeight = (getFromWeight(lmIndex, toNode) - getFromWeight(lmIndex, fromNode)) * getFromFactor(lmIndex, fromNode);
+            double toWeight = (getToWeight(lmIndex, fromNode) - getToWeight(lmIndex, toNode)) * getToFactor(lmIndex, fromNode);
 
             list.add(new MapEntry<>(reverse
                     ? Math.max(-fromWeight, -toWeight)
@@ -688,8 +793,11 @@ public class LandmarkStorage {
                 throw new IllegalArgumentException("Cannot load landmark data as written for different graph storage with " + nodes + " nodes, not " + graph.getNodes());
             landmarks = landmarkWeightDA.getHeader(1 * 4);
             int subnetworks = landmarkWeightDA.getHeader(2 * 4);
-            factor = landmarkWeightDA.getHeader(3 * 4) / DOUBLE_MLTPL;
-            LM_ROW_LENGTH = landmarks * 4;
+            int storedBytesPerWeight = landmarkWeightDA.getHeader(4 * 4);
+            setBytesPerWeight(storedBytesPerWeight == 0 ? 2 : storedBytesPerWeight);
+            factor = isCompact()
+                    ? Float.intBitsToFloat(landmarkWeightDA.getHeader(3 * 4))
+                    : landmarkWeightDA.getHeader(3 * 4) / DOUBLE_MLTPL;
             long maxBytes = LM_ROW_LENGTH * nodes;
             long bytePos = maxBytes;
 
@@ -702,6 +810,18 @@ public class LandmarkStorage {
                 }
                 landmarkIDs.add(tmpLandmarks);
             }
+            if (isCompact()) {
+                for (int j = 0; j < subnetworks; j++) {
+                    for (List<double[]> factors : Arrays.asList(fromFactors, toFactors)) {
+                        double[] tmpFactors = new double[landmarks];
+                        for (int i = 0; i < tmpFactors.length; i++) {
+                            tmpFactors[i] = Float.intBitsToFloat(landmarkWeightDA.getInt(bytePos));
+                            bytePos += 4;
+                        }
+                        factors.add(tmpFactors);
+                    }
+                }
+            }
 
             initialized = true;
             return true;
@@ -741,7 +861,7 @@ public class LandmarkStorage {
 
         if (explorer.getFromCount() >= minimumNodes) {
             // 1b) we have one landmark, now determine the other landmarks
-            landmarkNodeIdsToReturn[0] = explorer.getLastEntry().adjNode;
+            landmarkNodeIdsToReturn[0] = explorer.getLastNode();
             for (int lmIdx = 0; lmIdx < landmarkNodeIdsToReturn.length - 1; lmIdx++) {
                 explorer = new LandmarkExplorer(graph, this, initWeighting, traversalMode, accessFilter, false);
                 // set all current landmarks as start so that the next getLastNode is hopefully a "far away" node
@@ -749,7 +869,7 @@ public class LandmarkStorage {
                     explorer.setStartNode(landmarkNodeIdsToReturn[j]);
                 }
                 explorer.runAlgo();
-                landmarkNodeIdsToReturn[lmIdx + 1] = explorer.getLastEntry().adjNode;
+                landmarkNodeIdsToReturn[lmIdx + 1] = explorer.getLastNode();
                 if (logDetails && lmIdx % logOffset == 0)
                     LOGGER.info("Finding landmarks [" + lmConfig + "] in network [" + explorer.getVisitedNodes() + "] for " + info + ". "
                             + "Start node:" + startNode + " (" + createPoint(graph, startNode) + ")"
@@ -774,7 +894,7 @@ public class LandmarkStorage {
         private EdgeFilter accessFilter;
         private final boolean reverse;
         private final LandmarkStorage lms;
-        private SPTEntry lastEntry;
+        private int lastSlot;
 
         public LandmarkExplorer(Graph g, LandmarkStorage lms, Weighting weighting, TraversalMode tMode, EdgeFilter accessFilter, boolean reverse) {
             super(g, weighting, tMode);
@@ -799,33 +919,43 @@ public class LandmarkStorage {
         }
 
         @Override
-        protected double calcWeight(EdgeIteratorState iter, SPTEntry currEdge, boolean reverse) {
+        protected double calcWeight(EdgeIteratorState iter, int prevOrNextEdge, double currWeight, boolean reverse) {
             if (!accessFilter.accept(iter))
                 return Double.POSITIVE_INFINITY;
-            return GHUtility.calcWeightWithTurnWeight(weighting, iter, reverse, currEdge.edge) + currEdge.getWeightOfVisitedPath();
+            return GHUtility.calcWeightWithTurnWeight(weighting, iter, reverse, prevOrNextEdge) + currWeight;
+        }
+
+        private SearchState getState() {
+            return reverse ? toState : fromState;
         }
 
         int getFromCount() {
-            return bestWeightMapFrom.size();
+            return getState().size();
         }
 
         public void runAlgo() {
             super.runAlgo();
         }
 
-        SPTEntry getLastEntry() {
+        int getLastNode() {
+            if (!finished())
+                throw new IllegalStateException("Cannot get last node if not yet finished");
+            return getState().getAdjNode(lastSlot);
+        }
+
+        double getLastWeight() {
             if (!finished())
                 throw new IllegalStateException("Cannot get max weight if not yet finished");
-            return lastEntry;
+            return getState().getWeight(lastSlot);
         }
 
         @Override
         public boolean finished() {
             if (reverse) {
-                lastEntry = currTo;
+                lastSlot = currToSlot;
                 return finishedTo;
             } else {
-                lastEntry = currFrom;
+                lastSlot = currFromSlot;
                 return finishedFrom;
             }
         }
@@ -835,10 +965,9 @@ public class LandmarkStorage {
                 throw new IllegalStateException("Too many subnetworks " + subnetworkId);
 
             final AtomicBoolean failed = new AtomicBoolean(false);
-            IntObjectMap<SPTEntry> map = reverse ? bestWeightMapTo : bestWeightMapFrom;
-            map.forEach(new IntObjectPredicate<SPTEntry>() {
+            getState().forEach(new IntIntPredicate() {
                 @Override
-                public boolean apply(int nodeId, SPTEntry value) {
+                public boolean apply(int nodeId, int slot) {
                     int sn = subnetworks[nodeId];
                     if (sn != subnetworkId) {
                         if (sn != UNSET_SUBNETWORK && sn != UNCLEAR_SUBNETWORK) {
@@ -858,36 +987,54 @@ public class LandmarkStorage {
             return failed.get();
         }
 
-        public void initLandmarkWeights(final int lmIdx, int lmNodeId, final long rowSize, final int offset) {
-            IntObjectMap<SPTEntry> map = reverse ? bestWeightMapTo : bestWeightMapFrom;
+        /**
+         * @return the factor that was used to store the weights of this landmark
+         */
+        public double initLandmarkWeights(final int lmIdx, int lmNodeId, final long rowSize, final int offset) {
+            final SearchState state = getState();
             final AtomicInteger maxedout = new AtomicInteger(0);
             final Map.Entry<Double, Double> finalMaxWeight = new MapEntry<>(0d, 0d);
+            final double factor;
+            if (lms.isCompact()) {
+                double maxWeight = 0;
+                for (int slot = 0; slot < state.size(); slot++)
+                    if (Double.isFinite(state.getWeight(slot)))
+                        maxWeight = Math.max(maxWeight, state.getWeight(slot));
+                factor = calcCompactFactor(maxWeight);
+            } else {
+                factor = lms.factor;
+            }
 
-            map.forEach(new IntObjectProcedure<SPTEntry>() {
+            final AtomicInteger count = new AtomicInteger(0);
+            state.forEach(new IntIntPredicate() {
                 @Override
-                public void apply(int nodeId, SPTEntry b) {
-                    if (!lms.setWeight(nodeId * rowSize + lmIdx * 4 + offset, b.weight)) {
+                public boolean apply(int nodeId, int slot) {
+                    double weight = state.getWeight(slot);
+                    if (!lms.setWeight(nodeId * rowSize + lmIdx * 2L * lms.bytesPerWeight + offset, weight, factor)) {
                         maxedout.incrementAndGet();
-                        finalMaxWeight.setValue(Math.max(b.weight, finalMaxWeight.getValue()));
+                        finalMaxWeight.setValue(Math.max(weight, finalMaxWeight.getValue()));
                     }
+                    count.incrementAndGet();
+                    return true;
                 }
             });
 
-            if ((double) maxedout.get() / map.size() > 0.1) {
+            if ((double) maxedout.get() / count.get() > 0.1) {
                 LOGGER.warn("landmark " + lmIdx + " (" + nodeAccess.getLat(lmNodeId) + "," + nodeAccess.getLon(lmNodeId) + "): " +
-                        "too many weights were maxed out (" + maxedout.get() + "/" + map.size() + "). Use a bigger factor than " + lms.factor
+                        "too many weights were maxed out (" + maxedout.get() + "/" + count.get() + "). Use a bigger factor than " + lms.factor
                         + ". For example use maximum_lm_weight: " + finalMaxWeight.getValue() * 1.2 + " in your LM profile definition");
             }
+            return factor;
         }
     }
 
     /**
      * Sort landmark by weight and let maximum weight come first, to pick best active landmarks.
      */
-    final static Comparator<Map.Entry<Integer, Integer>> SORT_BY_WEIGHT = new Comparator<Map.Entry<Integer, Integer>>() {
+    final static Comparator<Map.Entry<Double, Integer>> SORT_BY_WEIGHT = new Comparator<Map.Entry<Double, Integer>>() {
         @Override
-        public int compare(Map.Entry<Integer, Integer> o1, Map.Entry<Integer, Integer> o2) {
-            return Integer.compare(o2.getKey(), o1.getKey());
+        public int compare(Map.Entry<Double, Integer> o1, Map.Entry<Double, Integer> o2) {
+            return Double.compare(o2.getKey(), o1.getKey());
         }
     };
 
@@ -74,6 +74,14 @@ public class PrepareLandmarks {
         return this;
     }
 
+    /**
+     * @see LandmarkStorage#setCompact(boolean)
+     */
+    public PrepareLandmarks setCompact(boolean compact) {
+        lms.setCompact(compact);
+        return this;
+    }
+
     /**
      * @see LandmarkStorage#setLMSelectionWeighting(Weighting)
      */
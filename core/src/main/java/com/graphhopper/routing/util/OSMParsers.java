@@ -70,6 +70,9 @@ public class OSMParsers {
         return this;
     }
 
+    /**
+     * This is called concurrently during the import, so it must only read the given way and this object's configuration.
+     */
     public boolean acceptWay(ReaderWay way) {
         String highway = way.getTag("highway");
         if (highway != null)
@@ -0,0 +1,88 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.weighting;
+
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.GHUtility;
+
+/**
+ * Reads the edge weights and times from an {@link EdgeWeightCache} instead of calculating them. The given weighting
+ * must be the one the cache was built with. It is still used for the turn costs and for the edges that are not
+ * part of the cache, i.e. the virtual edges of a query graph, for which e.g. the heading penalty can apply.
+ */
+public class CachedWeighting implements Weighting {
+    private final Weighting weighting;
+    private final EdgeWeightCache cache;
+    private final int cachedEdges;
+
+    public CachedWeighting(Weighting weighting, EdgeWeightCache cache) {
+        this.weighting = weighting;
+        this.cache = cache;
+        this.cachedEdges = cache.getEdges();
+    }
+
+    @Override
+    public double calcMinWeightPerDistance() {
+        return weighting.calcMinWeightPerDistance();
+    }
+
+    @Override
+    public double calcEdgeWeight(EdgeIteratorState edgeState, boolean reverse) {
+        int edgeKey = edgeState.getEdgeKey();
+        int edge = GHUtility.getEdgeFromEdgeKey(edgeKey);
+        if (edge >= cachedEdges)
+            return weighting.calcEdgeWeight(edgeState, reverse);
+        // an odd edge key means the edge state is reversed compared to the storage direction
+        return cache.getWeight(edge, reverse != ((edgeKey & 1) == 1));
+    }
+
+    @Override
+    public long calcEdgeMillis(EdgeIteratorState edgeState, boolean reverse) {
+        int edgeKey = edgeState.getEdgeKey();
+        int edge = GHUtility.getEdgeFromEdgeKey(edgeKey);
+        if (edge >= cachedEdges)
+            return weighting.calcEdgeMillis(edgeState, reverse);
+        long millis = cache.getMillis(edge, reverse != ((edgeKey & 1) == 1));
+        return millis < 0 ? weighting.calcEdgeMillis(edgeState, reverse) : millis;
+    }
+
+    @Override
+    public double calcTurnWeight(int inEdge, int viaNode, int outEdge) {
+        return weighting.calcTurnWeight(inEdge, viaNode, outEdge);
+    }
+
+    @Override
+    public long calcTurnMillis(int inEdge, int viaNode, int outEdge) {
+        return weighting.calcTurnMillis(inEdge, viaNode, outEdge);
+    }
+
+    @Override
+    public boolean hasTurnCosts() {
+        return weighting.hasTurnCosts();
+    }
+
+    @Override
+    public String getName() {
+        return weighting.getName();
+    }
+
+    @Override
+    public String toString() {
+        return "cached|" + weighting;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.weighting;
+
+import com.graphhopper.routing.util.AllEdgesIterator;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.util.Helper;
+
+/**
+ * Stores the weight and the time of both directions of every edge of the {@link BaseGraph} as they are calculated by
+ * the weighting of a profile. This way the weighting (e.g. the custom model) does not have to be evaluated again and
+ * again at query time, see {@link CachedWeighting}. This only makes sense as long as the weighting is not modified
+ * per request, and it takes 24 bytes per edge.
+ */
+public class EdgeWeightCache {
+    // forward and backward weight (as double) and forward and backward millis (as int)
+    private static final int BYTES_PER_EDGE = 24;
+    // used for millis that do not fit into an int, e.g. for inaccessible edges
+    private static final int NO_MILLIS = -1;
+    private final String profileName;
+    private final DataAccess da;
+    private int edges;
+    private int profileHash;
+
+    public EdgeWeightCache(Directory dir, String profileName) {
+        this.profileName = profileName;
+        this.da = dir.create("weight_cache_" + profileName);
+    }
+
+    public String getProfileName() {
+        return profileName;
+    }
+
+    /**
+     * Calculates the weights of all edges using the given weighting.
+     *
+     * @param profileHash the hash of the profile the weighting was created for, to detect a changed configuration
+     */
+    public EdgeWeightCache build(BaseGraph graph, Weighting weighting, int profileHash) {
+        edges = graph.getEdges();
+        this.profileHash = profileHash;
+        da.create((long) edges * BYTES_PER_EDGE);
+        da.ensureCapacity((long) edges * BYTES_PER_EDGE);
+        AllEdgesIterator iter = graph.getAllEdges();
+        // the edge states of the AllEdgesIterator are not reversed, so reverse=false means the storage direction
+        while (iter.next()) {
+            long pointer = (long) iter.getEdge() * BYTES_PER_EDGE;
+            setDouble(pointer, weighting.calcEdgeWeight(iter, false));
+            setDouble(pointer + 8, weighting.calcEdgeWeight(iter, true));
+            da.setInt(pointer + 16, toStoredMillis(weighting.calcEdgeMillis(iter, false)));
+            da.setInt(pointer + 20, toStoredMillis(weighting.calcEdgeMillis(iter, true)));
+        }
+        da.setHeader(0, edges);
+        da.setHeader(4, profileHash);
+        return this;
+    }
+
+    public boolean loadExisting() {
+        if (!da.loadExisting())
+            return false;
+        edges = da.getHeader(0);
+        profileHash = da.getHeader(4);
+        return true;
+    }
+
+    /**
+     * @return the number of edges of the graph this cache was built for. Edges with a higher id, like the virtual
+     * edges of a query graph, are not included.
+     */
+    public int getEdges() {
+        return edges;
+    }
+
+    public int getProfileHash() {
+        return profileHash;
+    }
+
+    /**
+     * @param backward true if the edge is traversed against its storage direction
+     */
+    public double getWeight(int edge, boolean backward) {
+        long pointer = (long) edge * BYTES_PER_EDGE + (backward ? 8 : 0);
+        return Double.longBitsToDouble(((long) da.getInt(pointer + 4) << 32) | (da.getInt(pointer) & 0xFFFF_FFFFL));
+    }
+
+    /**
+     * @return the millis of the edge or -1 if they are not stored, because they were too large
+     */
+    public long getMillis(int edge, boolean backward) {
+        return da.getInt((long) edge * BYTES_PER_EDGE + (backward ? 20 : 16));
+    }
+
+    private void setDouble(long pointer, double value) {
+        long bits = Double.doubleToRawLongBits(value);
+        da.setInt(pointer, (int) bits);
+        da.setInt(pointer + 4, (int) (bits >>> 32));
+    }
+
+    private static int toStoredMillis(long millis) {
+        return millis >= 0 && millis < Integer.MAX_VALUE ? (int) millis : NO_MILLIS;
+    }
+
+    public void flush() {
+        da.flush();
+    }
+
+    public void close() {
+        da.close();
+    }
+
+    public boolean isClosed() {
+        return da.isClosed();
+    }
+
+    public long getCapacity() {
+        return da.getCapacity();
+    }
+
+    @Override
+    public String toString() {
+        return "weight_cache_" + profileName + ", edges: " + Helper.nf(edges);
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.weighting;
+
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.util.Helper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Stores historic speed profiles for the edges of the graph, e.g. to model the rush hour, see
+ * {@link TimeDependentWeighting}. A profile consists of the speeds in km/h for consecutive buckets of 15 minutes,
+ * either 96 buckets for one day, which then apply to every day, or 672 buckets for a whole week starting on monday.
+ * Between the middles of two buckets the speed is interpolated linearly. The speeds refer to the local time of the
+ * time zone given in the constructor.
+ * <p>
+ * Every speed takes one byte and equal profiles are stored only once, so the storage needs 4 bytes per edge plus
+ * the size of the distinct profiles. The profiles apply to both directions of an edge.
+ */
+public class SpeedProfileStorage {
+    public static final int BUCKETS_PER_DAY = 96;
+    public static final int BUCKETS_PER_WEEK = 7 * BUCKETS_PER_DAY;
+    private static final long BUCKET_MILLIS = 15 * 60 * 1000L;
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+    // the 1st of January 1970 was a thursday, so this many days have to be added to start the week on monday
+    private static final long MONDAY_OFFSET_MILLIS = 3 * DAY_MILLIS;
+    // per edge the index of its profile plus one, 0 means the edge has no profile
+    private final DataAccess edgesDA;
+    // per profile one unsigned byte per bucket
+    private final DataAccess profilesDA;
+    private final ZoneId timeZone;
+    private int edges;
+    private int profiles;
+    private int buckets;
+
+    public SpeedProfileStorage(Directory dir, ZoneId timeZone) {
+        this.edgesDA = dir.create("speed_profile_edges");
+        this.profilesDA = dir.create("speed_profiles");
+        this.timeZone = timeZone;
+    }
+
+    /**
+     * Imports the speed profiles from a CSV file. Every line contains the edge id followed by the speeds of all buckets
+     * in km/h, all lines must have the same number of buckets. Empty lines, comments starting with # and a header line
+     * are skipped. The speeds must be in the range 1 to 255.
+     *
+     * @param edges the number of edges of the graph
+     */
+    public SpeedProfileStorage importCSV(BufferedReader reader, int edges) {
+        this.edges = edges;
+        edgesDA.create((long) edges * 4);
+        edgesDA.ensureCapacity((long) edges * 4);
+        profilesDA.create(1000);
+        Map<ByteBuffer, Integer> profileIndices = new HashMap<>();
+        try {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#") || !Character.isDigit(line.charAt(0)))
+                    continue;
+                String[] columns = line.split(",");
+                int edge = Integer.parseInt(columns[0].trim());
+                if (edge < 0 || edge >= edges)
+                    throw new IllegalArgumentException("Invalid edge id " + edge + " in line " + lineNumber + ", the graph has " + edges + " edges");
+                if (buckets == 0) {
+                    buckets = columns.length - 1;
+                    if (buckets != BUCKETS_PER_DAY && buckets != BUCKETS_PER_WEEK)
+                        throw new IllegalArgumentException("A speed profile needs " + BUCKETS_PER_DAY + " or " + BUCKETS_PER_WEEK
+                                + " speeds, but line " + lineNumber + " has " + buckets);
+                } else if (columns.length - 1 != buckets) {
+                    throw new IllegalArgumentException("Line " + lineNumber + " has " + (columns.length - 1) + " speeds instead of " + buckets);
+                }
+                byte[] profile = new byte[buckets];
+                for (int i = 0; i < buckets; i++) {
+                    int speed = (int) Math.round(Double.parseDouble(columns[i + 1].trim()));
+                    if (speed < 1 || speed > 255)
+                        throw new IllegalArgumentException("Speed " + columns[i + 1] + " in line " + lineNumber + " must be in the range 1 to 255");
+                    profile[i] = (byte) speed;
+                }
+                ByteBuffer key = ByteBuffer.wrap(profile);
+                Integer index = profileIndices.get(key);
+                if (index == null) {
+                    index = profiles++;
+                    profileIndices.put(key, index);
+                    profilesDA.ensureCapacity((long) profiles * buckets);
+                    profilesDA.setBytes((long) index * buckets, profile, buckets);
+                }
+                edgesDA.setInt((long) edge * 4, index + 1);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        edgesDA.setHeader(0, edges);
+        profilesDA.setHeader(0, profiles);
+        profilesDA.setHeader(4, buckets);
+        return this;
+    }
+
+    public boolean loadExisting() {
+        if (!edgesDA.loadExisting())
+            return false;
+        if (!profilesDA.loadExisting())
+            throw new IllegalStateException("Speed profile edges loaded but not the profiles");
+        edges = edgesDA.getHeader(0);
+        profiles = profilesDA.getHeader(0);
+        buckets = profilesDA.getHeader(4);
+        return true;
+    }
+
+    /**
+     * @return the number of edges of the graph the profiles were imported for. Edges with a higher id, like the
+     * virtual edges of a query graph, have no profile.
+     */
+    public int getEdges() {
+        return edges;
+    }
+
+    /**
+     * @return the number of distinct profiles
+     */
+    public int getProfiles() {
+        return profiles;
+    }
+
+    public boolean hasProfile(int edge) {
+        return edge < edges && edgesDA.getInt((long) edge * 4) > 0;
+    }
+
+    /**
+     * @return the local time of the time zone of the profiles in milliseconds since 1970-01-01T00:00. This can be
+     * used for {@link #getSpeed(int, long)}.
+     */
+    public long toLocalMillis(long epochMillis) {
+        Instant instant = Instant.ofEpochMilli(epochMillis);
+        return epochMillis + timeZone.getRules().getOffset(instant).getTotalSeconds() * 1000L;
+    }
+
+    /**
+     * @param localMillis the local time, see {@link #toLocalMillis(long)}
+     * @return the speed in km/h of the given edge at the given time or NaN if the edge has no profile
+     */
+    public double getSpeed(int edge, long localMillis) {
+        if (edge >= edges)
+            return Double.NaN;
+        int index = edgesDA.getInt((long) edge * 4) - 1;
+        if (index < 0)
+            return Double.NaN;
+        long periodMillis = buckets * BUCKET_MILLIS;
+        // the speed of a bucket applies to its middle
+        double position = Math.floorMod(localMillis + MONDAY_OFFSET_MILLIS, periodMillis) / (double) BUCKET_MILLIS - 0.5;
+        int bucket = (int) Math.floor(position);
+        double fraction = position - bucket;
+        long pointer = (long) index * buckets;
+        int speed = profilesDA.getByte(pointer + Math.floorMod(bucket, buckets)) & 0xFF;
+        int nextSpeed = profilesDA.getByte(pointer + (bucket + 1) % buckets) & 0xFF;
+        return speed + (nextSpeed - speed) * fraction;
+    }
+
+    public void flush() {
+        edgesDA.flush();
+        profilesDA.flush();
+    }
+
+    public void close() {
+        edgesDA.close();
+        profilesDA.close();
+    }
+
+    public boolean isClosed() {
+        return edgesDA.isClosed();
+    }
+
+    public long getCapacity() {
+        return edgesDA.getCapacity() + profilesDA.getCapacity();
+    }
+
+    @Override
+    public String toString() {
+        return "speed_profiles, edges: " + Helper.nf(edges) + ", profiles: " + Helper.nf(profiles) + ", buckets: " + buckets;
+    }
+}
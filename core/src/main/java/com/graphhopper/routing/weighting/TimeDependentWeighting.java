@@ -0,0 +1,107 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.weighting;
+
+import com.graphhopper.routing.querygraph.VirtualEdgeIteratorState;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.GHUtility;
+import com.graphhopper.util.Parameters;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Slows down the edges of another weighting according to the historic speed profiles of a
+ * {@link SpeedProfileStorage} at the time the edge is entered, see TimeDependentAStar. The speed of a profile is
+ * only used if it is lower than the speed of the wrapped weighting, so the weights of this weighting are never
+ * lower than those of the wrapped weighting. The methods without a time return the weights of the wrapped
+ * weighting, which are a lower bound for all times. Therefore the beeline and the landmark approximations of the
+ * wrapped weighting stay valid.
+ */
+public class TimeDependentWeighting extends AbstractAdjustedWeighting {
+    private final SpeedProfileStorage speedProfiles;
+
+    public TimeDependentWeighting(Weighting superWeighting, SpeedProfileStorage speedProfiles) {
+        super(superWeighting);
+        this.speedProfiles = speedProfiles;
+    }
+
+    public SpeedProfileStorage getSpeedProfiles() {
+        return speedProfiles;
+    }
+
+    /**
+     * @param localMillis the local time the edge is entered, see {@link SpeedProfileStorage#toLocalMillis(long)}
+     * @return the factor the weight and the time of the given edge have to be multiplied with at the given time. It
+     * is never smaller than 1.
+     */
+    public double calcSlowdown(EdgeIteratorState edgeState, boolean reverse, long localMillis) {
+        int edge = edgeState.getEdge();
+        if (edge >= speedProfiles.getEdges()) {
+            // a virtual edge of a query graph has the profile of the edge it is part of
+            EdgeIteratorState state = edgeState instanceof VirtualEdgeIteratorState ? edgeState : edgeState.detach(false);
+            if (!(state instanceof VirtualEdgeIteratorState))
+                return 1;
+            edge = GHUtility.getEdgeFromEdgeKey(((VirtualEdgeIteratorState) state).getOriginalEdgeKey());
+        }
+        double speed = speedProfiles.getSpeed(edge, localMillis);
+        if (Double.isNaN(speed))
+            return 1;
+        long millis = superWeighting.calcEdgeMillis(edgeState, reverse);
+        if (millis <= 0)
+            return 1;
+        // distance in meters per millisecond times 3600 is km/h
+        double speedOfWeighting = edgeState.getDistance() / millis * 3600;
+        return Math.max(1, speedOfWeighting / speed);
+    }
+
+    public double calcEdgeWeight(EdgeIteratorState edgeState, boolean reverse, long localMillis) {
+        return superWeighting.calcEdgeWeight(edgeState, reverse) * calcSlowdown(edgeState, reverse, localMillis);
+    }
+
+    public long calcEdgeMillis(EdgeIteratorState edgeState, boolean reverse, long localMillis) {
+        return Math.round(superWeighting.calcEdgeMillis(edgeState, reverse) * calcSlowdown(edgeState, reverse, localMillis));
+    }
+
+    /**
+     * @return the given departure time in milliseconds since the epoch
+     */
+    public static long parseDepartureTime(String departureTime) {
+        try {
+            return Instant.parse(departureTime).toEpochMilli();
+        } catch (DateTimeParseException ex) {
+            try {
+                return OffsetDateTime.parse(departureTime).toInstant().toEpochMilli();
+            } catch (DateTimeParseException ex2) {
+                throw new IllegalArgumentException("Cannot parse " + Parameters.Routing.DEPARTURE_TIME + " '" + departureTime
+                        + "', use an ISO-8601 date time like 2024-05-21T08:00:00Z");
+            }
+        }
+    }
+
+    @Override
+    public String getName() {
+        return superWeighting.getName();
+    }
+
+    @Override
+    public String toString() {
+        return "time_dependent|" + superWeighting;
+    }
+}
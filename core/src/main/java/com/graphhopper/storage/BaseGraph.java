@@ -27,6 +27,7 @@ import com.graphhopper.util.*;
 import com.graphhopper.util.shapes.BBox;
 
 import java.io.Closeable;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Consumer;
 import java.util.function.IntConsumer;
@@ -485,6 +486,13 @@ public class BaseGraph implements Graph, Closeable {
         return store;
     }
 
+    /**
+     * Reads the given encoded values of the edges with the given keys in a single pass, see {@link EncodedValueColumns}
+     */
+    public EncodedValueColumns readColumns(List<? extends EncodedValue> encodedValues, int[] edgeKeys, boolean withReverse) {
+        return EncodedValueColumns.read(encodedValues, edgeKeys, store, withReverse);
+    }
+
     private void setWayGeometryAtGeoRef(PointList pillarNodes, long edgePointer, boolean reverse, long geoRef) {
         byte[] wayGeometryBytes = createWayGeometryBytes(pillarNodes, reverse);
         wayGeometry.ensureCapacity(geoRef + wayGeometryBytes.length);
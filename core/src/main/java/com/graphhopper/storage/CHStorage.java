@@ -63,6 +63,8 @@ public class CHStorage {
     private int nodeCount = -1;
 
     private boolean edgeBased;
+    // the shortcuts of a customizable CH do not depend on the weighting, see CHCustomizer
+    private boolean customizable;
     // some shortcuts exceed the maximum storable weight, and we count them here
     private int numShortcutsExceedingWeight;
 
@@ -152,6 +154,7 @@ public class CHStorage {
         shortcuts.setHeader(8, shortcutEntryBytes);
         shortcuts.setHeader(12, numShortcutsExceedingWeight);
         shortcuts.setHeader(16, edgeBased ? 1 : 0);
+        shortcuts.setHeader(20, customizable ? 1 : 0);
         shortcuts.flush();
     }
 
@@ -172,6 +175,7 @@ public class CHStorage {
         shortcutEntryBytes = shortcuts.getHeader(8);
         numShortcutsExceedingWeight = shortcuts.getHeader(12);
         edgeBased = shortcuts.getHeader(16) == 1;
+        customizable = shortcuts.getHeader(20) == 1;
 
         return true;
     }
@@ -248,6 +252,18 @@ public class CHStorage {
         return edgeBased;
     }
 
+    /**
+     * @return true if the node ordering and the shortcuts were created without considering the weights, such that
+     * only the shortcut weights need to be re-calculated when the weights of the edges change
+     */
+    public boolean isCustomizable() {
+        return customizable;
+    }
+
+    public void setCustomizable(boolean customizable) {
+        this.customizable = customizable;
+    }
+
     public int getLastShortcut(long nodePointer) {
         return nodesCH.getInt(nodePointer + N_LAST_SC);
     }
@@ -405,7 +421,9 @@ public class CHStorage {
         if (weight < MIN_WEIGHT)
             weight = MIN_WEIGHT;
         if (weight >= MAX_WEIGHT) {
-            numShortcutsExceedingWeight++;
+            // infinite weights are expected, e.g. for the shortcuts of a customizable CH that cannot be used
+            if (!Double.isInfinite(weight))
+                numShortcutsExceedingWeight++;
             return (int) MAX_STORED_INTEGER_WEIGHT; // negative
         } else
             return (int) Math.round(weight * WEIGHT_FACTOR);
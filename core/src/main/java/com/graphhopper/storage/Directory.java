@@ -53,6 +53,12 @@ public interface Directory {
      */
     void remove(String name);
 
+    /**
+     * Closes the specified object and removes it from the directory, but keeps its files. So it can be created and
+     * loaded again later.
+     */
+    void close(String name);
+
     /**
      * @return the default type of a newly created DataAccess object
      */
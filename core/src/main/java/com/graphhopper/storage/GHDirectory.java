@@ -19,6 +19,7 @@ package com.graphhopper.storage;
 
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.*;
 
 import static com.graphhopper.storage.DAType.RAM_INT;
 import static com.graphhopper.storage.DAType.RAM_INT_STORE;
@@ -86,13 +87,87 @@ public class GHDirectory implements Directory {
     }
 
     public void loadMMap() {
-        for (DataAccess da : map.values()) {
-            if (!(da instanceof MMapDataAccess))
-                continue;
-            int preload = getPreload(da.getName());
-            if (preload > 0)
-                ((MMapDataAccess) da).load(preload);
+        loadMMap(1);
+    }
+
+    /**
+     * Loads the memory mapped DataAccess objects into physical memory like {@link #loadMMap()}, but segment by
+     * segment with the given number of threads. The segments of the DataAccess objects that every query needs, see
+     * {@link #getPreloadPriority(String)}, are loaded first. If the calling thread is interrupted the remaining
+     * segments are skipped, but this method returns only after all running threads have finished, so the
+     * DataAccess objects can be closed afterwards.
+     */
+    public void loadMMap(int threads) {
+        List<MMapDataAccess> dataAccesses = new ArrayList<>();
+        synchronized (map) {
+            for (DataAccess da : map.values())
+                if (da instanceof MMapDataAccess && getPreload(da.getName()) > 0)
+                    dataAccesses.add((MMapDataAccess) da);
+        }
+        dataAccesses.sort(Comparator.comparingInt((MMapDataAccess da) -> getPreloadPriority(da.getName())).thenComparing(DataAccess::getName));
+        List<Runnable> tasks = new ArrayList<>();
+        for (MMapDataAccess da : dataAccesses) {
+            int segments = da.getSegmentsToLoad(getPreload(da.getName()));
+            for (int i = 0; i < segments; i++) {
+                int segment = i;
+                tasks.add(() -> da.loadSegment(segment));
+            }
+        }
+        if (threads <= 1) {
+            for (Runnable task : tasks) {
+                if (Thread.currentThread().isInterrupted())
+                    return;
+                task.run();
+            }
+            return;
+        }
+
+        // the queue of the pool keeps the order of the tasks
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>(tasks.size());
+            for (Runnable task : tasks)
+                futures.add(executor.submit(task));
+            for (Future<?> future : futures)
+                future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            throw new RuntimeException("Couldn't load DataAccess into memory in " + location, ex.getCause());
+        } finally {
+            executor.shutdownNow();
+            awaitTermination(executor);
+        }
+    }
+
+    private static void awaitTermination(ExecutorService executor) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (executor.awaitTermination(1, TimeUnit.MINUTES))
+                    break;
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
         }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Returns the order in which the DataAccess objects are loaded into memory by {@link #loadMMap(int)}: the base
+     * graph first, then the CH graphs and then the data needed by every query like the location index. The rest,
+     * like the way geometries or the key-value storage, is needed only for the responses.
+     */
+    static int getPreloadPriority(String name) {
+        if (name.equals("nodes") || name.equals("edges"))
+            return 0;
+        if (name.startsWith("nodes_ch_") || name.startsWith("shortcuts_"))
+            return 1;
+        if (name.equals("location_index") || name.equals("turn_costs") || name.startsWith("landmarks_")
+                || name.startsWith("weight_cache_"))
+            return 2;
+        return 3;
     }
 
     @Override
@@ -174,6 +249,15 @@ public class GHDirectory implements Directory {
         removeBackingFile(old, name);
     }
 
+    @Override
+    public void close(String name) {
+        DataAccess old = map.remove(name);
+        if (old == null)
+            throw new IllegalStateException("Couldn't close DataAccess: " + name);
+
+        old.close();
+    }
+
     private void removeBackingFile(DataAccess da, String name) {
         if (da.getType().isStoring())
             removeDir(new File(location + name));
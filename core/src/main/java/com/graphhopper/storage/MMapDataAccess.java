@@ -234,14 +234,28 @@ public final class MMapDataAccess extends AbstractDataAccess {
      * Load memory mapped files into physical memory.
      */
     public void load(int percentage) {
-        if (percentage < 0 || percentage > 100)
-            throw new IllegalArgumentException("Percentage for MMapDataAccess.load for " + getName() + " must be in [0,100] but was " + percentage);
-        int max = Math.round(segments.size() * percentage / 100f);
+        int max = getSegmentsToLoad(percentage);
         for (int i = 0; i < max; i++) {
-            segments.get(i).load();
+            loadSegment(i);
         }
     }
 
+    /**
+     * @return the number of segments that {@link #load(int)} loads for the given percentage
+     */
+    int getSegmentsToLoad(int percentage) {
+        if (percentage < 0 || percentage > 100)
+            throw new IllegalArgumentException("Percentage for MMapDataAccess.load for " + getName() + " must be in [0,100] but was " + percentage);
+        return Math.round(segments.size() * percentage / 100f);
+    }
+
+    /**
+     * Loads a single segment into physical memory, which allows loading the segments in parallel.
+     */
+    void loadSegment(int index) {
+        segments.get(index).load();
+    }
+
     @Override
     public void close() {
         super.close();
@@ -87,6 +87,10 @@ public class RoutingCHGraphImpl implements RoutingCHGraph {
         return weighting;
     }
 
+    public CHStorage getCHStorage() {
+        return chStorage;
+    }
+
     @Override
     public boolean hasTurnCosts() {
         return weighting.hasTurnCosts();
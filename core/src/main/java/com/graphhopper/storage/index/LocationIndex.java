@@ -46,6 +46,21 @@ public interface LocationIndex {
      */
     Snap findClosest(double lat, double lon, EdgeFilter edgeFilter);
 
+    /**
+     * Returns the closest Snap for every given location, see {@link #findClosest}. Implementations can do this more
+     * efficiently than snapping the points one by one, e.g. by sharing work between points that are close together.
+     *
+     * @return the snaps in the same order as the given locations
+     */
+    default Snap[] findClosestBatch(double[] lats, double[] lons, EdgeFilter edgeFilter) {
+        if (lats.length != lons.length)
+            throw new IllegalArgumentException("lats and lons must have the same length, " + lats.length + " vs. " + lons.length);
+        Snap[] snaps = new Snap[lats.length];
+        for (int i = 0; i < lats.length; i++)
+            snaps[i] = findClosest(lats[i], lons[i], edgeFilter);
+        return snaps;
+    }
+
     /**
      * This method explores the LocationIndex with the specified Visitor. It visits only the stored edges (and only once)
      * and limited by the queryBBox. Also (a few) more edges slightly outside of queryBBox could be
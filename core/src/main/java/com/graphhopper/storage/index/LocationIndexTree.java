@@ -18,6 +18,7 @@
 package com.graphhopper.storage.index;
 
 import com.carrotsearch.hppc.IntHashSet;
+import com.graphhopper.geohash.SpatialKeyAlgo;
 import com.graphhopper.routing.util.AllEdgesIterator;
 import com.graphhopper.routing.util.EdgeFilter;
 import com.graphhopper.storage.Directory;
@@ -28,7 +29,12 @@ import com.graphhopper.util.shapes.BBox;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 
 import static com.graphhopper.util.DistancePlaneProjection.DIST_PLANE;
 
@@ -280,15 +286,8 @@ public class LocationIndexTree implements LocationIndex {
             lineIntIndex.findEdgeIdsInNeighborhood(queryLat, queryLon, iteration, edgeId -> {
                 EdgeIteratorState edgeIteratorState = graph.getEdgeIteratorStateForKey(edgeId * 2);
                 if (seenEdges.add(edgeId) && edgeFilter.accept(edgeIteratorState)) { // TODO: or reverse?
-                    traverseEdge(queryLat, queryLon, edgeIteratorState, (node, normedDist, wayIndex, pos) -> {
-                        if (normedDist < closestMatch.getQueryDistance()) {
-                            closestMatch.setQueryDistance(normedDist);
-                            closestMatch.setClosestNode(node);
-                            closestMatch.setClosestEdge(edgeIteratorState.detach(false));
-                            closestMatch.setWayIndex(wayIndex);
-                            closestMatch.setSnappedPosition(pos);
-                        }
-                    });
+                    traverseEdge(queryLat, queryLon, edgeIteratorState, (node, normedDist, wayIndex, pos) ->
+                            updateClosestMatch(closestMatch, edgeIteratorState, node, normedDist, wayIndex, pos));
                 }
             });
             if (closestMatch.isValid()) {
@@ -301,11 +300,111 @@ public class LocationIndexTree implements LocationIndex {
             }
         }
 
+        finishClosestMatch(closestMatch);
+        return closestMatch;
+    }
+
+    private static void updateClosestMatch(Snap closestMatch, EdgeIteratorState edge, int node, double normedDist, int wayIndex, Snap.Position pos) {
+        if (normedDist < closestMatch.getQueryDistance()) {
+            closestMatch.setQueryDistance(normedDist);
+            closestMatch.setClosestNode(node);
+            closestMatch.setClosestEdge(edge.detach(false));
+            closestMatch.setWayIndex(wayIndex);
+            closestMatch.setSnappedPosition(pos);
+        }
+    }
+
+    private static void finishClosestMatch(Snap closestMatch) {
         if (closestMatch.isValid()) {
             closestMatch.calcSnappedPoint(DIST_PLANE);
-            closestMatch.setQueryDistance(DIST_PLANE.calcDist(closestMatch.getSnappedPoint().lat, closestMatch.getSnappedPoint().lon, queryLat, queryLon));
+            closestMatch.setQueryDistance(DIST_PLANE.calcDist(closestMatch.getSnappedPoint().lat, closestMatch.getSnappedPoint().lon,
+                    closestMatch.getQueryPoint().lat, closestMatch.getQueryPoint().lon));
+        }
+    }
+
+    @Override
+    public Snap[] findClosestBatch(double[] lats, double[] lons, EdgeFilter edgeFilter) {
+        return findClosestBatch(lats, lons, edgeFilter, null);
+    }
+
+    /**
+     * Returns the same snaps as calling {@link #findClosest} for every point, but the points are sorted by tile and
+     * points within the same tile share the traversal of the neighboring tiles, the edge filter calls and the
+     * geometries of the found edges.
+     *
+     * @param pool if not null, the points of different tiles are snapped in parallel using this pool. In this case
+     *             the edge filter must be thread-safe.
+     */
+    public Snap[] findClosestBatch(double[] lats, double[] lons, EdgeFilter edgeFilter, ForkJoinPool pool) {
+        if (isClosed())
+            throw new IllegalStateException("You need to create a new LocationIndex instance as it is already closed");
+        if (lats.length != lons.length)
+            throw new IllegalArgumentException("lats and lons must have the same length, " + lats.length + " vs. " + lons.length);
+
+        SpatialKeyAlgo keyAlgo = indexStructureInfo.getKeyAlgo();
+        long[] tileKeys = new long[lats.length];
+        for (int i = 0; i < lats.length; i++)
+            tileKeys[i] = keyAlgo.encode(keyAlgo.x(lons[i]), keyAlgo.y(lats[i]));
+        int[] sorted = IntStream.range(0, lats.length).boxed()
+                .sorted(Comparator.comparingLong(i -> tileKeys[i]))
+                .mapToInt(Integer::intValue).toArray();
+        List<int[]> groups = new ArrayList<>();
+        for (int start = 0, end = 1; start < sorted.length; end++) {
+            if (end == sorted.length || tileKeys[sorted[end]] != tileKeys[sorted[start]]) {
+                groups.add(Arrays.copyOfRange(sorted, start, end));
+                start = end;
+            }
+        }
+
+        Snap[] snaps = new Snap[lats.length];
+        if (pool == null || groups.size() < 2)
+            groups.forEach(group -> findClosestInTile(group, lats, lons, edgeFilter, snaps));
+        else
+            pool.submit(() -> groups.parallelStream().forEach(group -> findClosestInTile(group, lats, lons, edgeFilter, snaps))).join();
+        return snaps;
+    }
+
+    /**
+     * Does the same as {@link #findClosest} for all the given points, which must be located in the same tile.
+     */
+    private void findClosestInTile(int[] points, double[] lats, double[] lons, EdgeFilter edgeFilter, Snap[] snaps) {
+        Snap[] closestMatches = new Snap[points.length];
+        for (int i = 0; i < points.length; i++)
+            closestMatches[i] = new Snap(lats[points[i]], lons[points[i]]);
+        boolean[] finished = new boolean[points.length];
+        int remaining = points.length;
+        IntHashSet seenEdges = new IntHashSet();
+        List<EdgeGeometry> edges = new ArrayList<>();
+        for (int iteration = 0; iteration < maxRegionSearch && remaining > 0; iteration++) {
+            // all points of the tile visit the same tiles, so we only need to do this once
+            edges.clear();
+            lineIntIndex.findEdgeIdsInNeighborhood(lats[points[0]], lons[points[0]], iteration, edgeId -> {
+                EdgeIteratorState edgeIteratorState = graph.getEdgeIteratorStateForKey(edgeId * 2);
+                if (seenEdges.add(edgeId) && edgeFilter.accept(edgeIteratorState))
+                    edges.add(new EdgeGeometry(edgeIteratorState));
+            });
+            for (int i = 0; i < points.length; i++) {
+                if (finished[i])
+                    continue;
+                Snap closestMatch = closestMatches[i];
+                for (EdgeGeometry edge : edges)
+                    traverseEdge(closestMatch.getQueryPoint().lat, closestMatch.getQueryPoint().lon, edge, (node, normedDist, wayIndex, pos) ->
+                            updateClosestMatch(closestMatch, edge.edgeState, node, normedDist, wayIndex, pos));
+                if (closestMatch.isValid()) {
+                    double rMin = calculateRMin(closestMatch.getQueryPoint().lat, closestMatch.getQueryPoint().lon, iteration);
+                    double minDistance = DIST_PLANE.calcDenormalizedDist(closestMatch.getQueryDistance());
+                    if (minDistance < rMin) {
+                        finished[i] = true;
+                        remaining--;
+                    }
+                }
+            }
+        }
+
+        for (int i = 0; i < points.length; i++) {
+            finishClosestMatch(closestMatches[i]);
+            snaps[points[i]] = closestMatches[i];
         }
-        return closestMatch;
     }
 
     @Override
@@ -318,17 +417,19 @@ public class LocationIndexTree implements LocationIndex {
     }
 
     public void traverseEdge(double queryLat, double queryLon, EdgeIteratorState currEdge, EdgeCheck edgeCheck) {
-        int baseNode = currEdge.getBaseNode();
-        double baseLat = nodeAccess.getLat(baseNode);
-        double baseLon = nodeAccess.getLon(baseNode);
+        traverseEdge(queryLat, queryLon, new EdgeGeometry(currEdge), edgeCheck);
+    }
+
+    private void traverseEdge(double queryLat, double queryLon, EdgeGeometry edge, EdgeCheck edgeCheck) {
+        int baseNode = edge.baseNode;
+        double baseLat = edge.baseLat;
+        double baseLon = edge.baseLon;
         double baseDist = DIST_PLANE.calcNormalizedDist(queryLat, queryLon, baseLat, baseLon);
 
-        int adjNode = currEdge.getAdjNode();
-        double adjLat = nodeAccess.getLat(adjNode);
-        double adjLon = nodeAccess.getLon(adjNode);
-        double adjDist = DIST_PLANE.calcNormalizedDist(queryLat, queryLon, adjLat, adjLon);
+        int adjNode = edge.adjNode;
+        double adjDist = DIST_PLANE.calcNormalizedDist(queryLat, queryLon, edge.adjLat, edge.adjLon);
 
-        PointList pointList = currEdge.fetchWayGeometry(FetchMode.PILLAR_AND_ADJ);
+        PointList pointList = edge.pointList;
         final int len = pointList.size();
 
         int closestTowerNode;
@@ -375,4 +476,28 @@ public class LocationIndexTree implements LocationIndex {
         }
     }
 
+    /**
+     * The coordinates of an edge that are needed to snap a point onto it
+     */
+    private final class EdgeGeometry {
+        final EdgeIteratorState edgeState;
+        final int baseNode;
+        final double baseLat;
+        final double baseLon;
+        final int adjNode;
+        final double adjLat;
+        final double adjLon;
+        final PointList pointList;
+
+        EdgeGeometry(EdgeIteratorState edgeState) {
+            this.edgeState = edgeState;
+            baseNode = edgeState.getBaseNode();
+            baseLat = nodeAccess.getLat(baseNode);
+            baseLon = nodeAccess.getLon(baseNode);
+            adjNode = edgeState.getAdjNode();
+            adjLat = nodeAccess.getLat(adjNode);
+            adjLon = nodeAccess.getLon(adjNode);
+            pointList = edgeState.fetchWayGeometry(FetchMode.PILLAR_AND_ADJ);
+        }
+    }
 }
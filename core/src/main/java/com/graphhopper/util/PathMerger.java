@@ -20,6 +20,7 @@ package com.graphhopper.util;
 import com.graphhopper.ResponsePath;
 import com.graphhopper.routing.InstructionsFromEdges;
 import com.graphhopper.routing.Path;
+import com.graphhopper.routing.TimeDependentPath;
 import com.graphhopper.routing.ev.EncodedValueLookup;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.Graph;
@@ -110,8 +111,9 @@ public class PathMerger {
             fullTimeInMillis += path.getTime();
             fullDistance += path.getDistance();
             fullWeight += path.getWeight();
+            Weighting pathWeighting = path instanceof TimeDependentPath ? ((TimeDependentPath) path).wrapWeighting(weighting) : weighting;
             if (enableInstructions) {
-                InstructionList il = InstructionsFromEdges.calcInstructions(path, graph, weighting, evLookup, tr);
+                InstructionList il = InstructionsFromEdges.calcInstructions(path, graph, pathWeighting, evLookup, tr);
 
                 if (!il.isEmpty()) {
                     fullInstructions.addAll(il);
@@ -136,7 +138,7 @@ public class PathMerger {
                 }
 
                 fullPoints.add(tmpPoints);
-                responsePath.addPathDetails(PathDetailsFromEdges.calcDetails(path, evLookup, weighting, requestedPathDetails, pathBuilderFactory, origPoints, graph));
+                responsePath.addPathDetails(PathDetailsFromEdges.calcDetails(path, evLookup, pathWeighting, requestedPathDetails, pathBuilderFactory, origPoints, graph));
                 wayPointIndices.add(origPoints);
                 if (pathIndex == paths.size() - 1)
                     wayPointIndices.add(fullPoints.size() - 1);
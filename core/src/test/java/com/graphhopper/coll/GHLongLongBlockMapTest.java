@@ -0,0 +1,103 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.coll;
+
+import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.GHDirectory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GHLongLongBlockMapTest {
+
+    @Test
+    public void testPutAndGet() {
+        GHLongLongBlockMap map = new GHLongLongBlockMap(new GHDirectory("", DAType.RAM), "ids", DAType.RAM, -1);
+        assertEquals(-1, map.get(5));
+        assertEquals(-1, map.put(5, 10));
+        assertEquals(10, map.put(5, 11));
+        assertEquals(11, map.get(5));
+        assertEquals(-1, map.get(6));
+        // negative values and values that need more than four bytes
+        assertEquals(-1, map.put(12_000_000_000L, -2_200_000_000L));
+        assertEquals(-1, map.put(12_000_000_001L, 300_000_000_000L));
+        assertEquals(-2_200_000_000L, map.get(12_000_000_000L));
+        assertEquals(300_000_000_000L, map.get(12_000_000_001L));
+        // negative keys are stored separately
+        assertEquals(-1, map.put(-Long.MAX_VALUE, 1));
+        assertEquals(1, map.get(-Long.MAX_VALUE));
+        assertEquals(4, map.getSize());
+
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () -> map.put(1, -1));
+        assertTrue(ex.getMessage().contains("Value cannot be the 'empty value' -1"), ex.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> map.put(1, map.getMaxValue() + 1));
+
+        map.clear();
+        assertEquals(0, map.getSize());
+        assertEquals(-1, map.get(5));
+        assertEquals(-1, map.get(-Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testRandom() {
+        long seed = System.nanoTime();
+        Random rnd = new Random(seed);
+        GHLongLongBlockMap map = new GHLongLongBlockMap(new GHDirectory("", DAType.RAM), "ids", DAType.RAM, -1);
+        Map<Long, Long> reference = new HashMap<>();
+        for (int i = 0; i < 100_000; i++) {
+            // keys are clustered like OSM node ids
+            long key = rnd.nextInt(100) * 1_000_000L + rnd.nextInt(10_000);
+            long value = rnd.nextLong() % map.getMaxValue();
+            if (value == -1)
+                continue;
+            Long prev = reference.put(key, value);
+            assertEquals(prev == null ? -1 : prev, map.put(key, value), "seed: " + seed);
+        }
+        assertEquals(reference.size(), map.getSize(), "seed: " + seed);
+        for (Map.Entry<Long, Long> e : reference.entrySet())
+            assertEquals(e.getValue(), map.get(e.getKey()), "seed: " + seed);
+    }
+
+    @Test
+    public void testMemoryUsage() {
+        GHLongLongBlockMap map = new GHLongLongBlockMap(new GHDirectory("", DAType.RAM), "ids", DAType.RAM, -1);
+        // the block index needs four bytes per block, so 1.6MB for this key
+        map.put(400_000L << 16, 1);
+        assertEquals(2, map.getMemoryUsage());
+    }
+
+    @Test
+    public void testMMap(@TempDir Path path) {
+        GHDirectory dir = new GHDirectory(path.toAbsolutePath().toString(), DAType.RAM_STORE);
+        GHLongLongBlockMap map = new GHLongLongBlockMap(dir, "tmp_ids", DAType.MMAP, -1);
+        for (long key = 0; key < 200_000; key += 3)
+            map.put(key, key * 2);
+        for (long key = 0; key < 200_000; key++)
+            assertEquals(key % 3 == 0 ? key * 2 : -1, map.get(key));
+        assertTrue(new File(path.toFile(), "tmp_ids").exists());
+        map.clear();
+        assertFalse(new File(path.toFile(), "tmp_ids").exists());
+    }
+}
@@ -22,9 +22,15 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 
+import com.graphhopper.util.Downloader;
+
+import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * @author Peter Karich
@@ -99,6 +105,47 @@ public class SRTMProviderTest {
         assertEquals(161, instance.getEle(55.8943144, -3), 1e-1);
     }
 
+    @Test
+    public void testCacheSize() {
+        instance = new SRTMProvider("./files/");
+        // only the last used tile is kept open, so the tiles have to be loaded again from the cache directory
+        instance.setCacheSize(1);
+        for (int i = 0; i < 2; i++) {
+            assertEquals(466, instance.getEle(49.968651, 11.574869), 1e-1);
+            assertEquals(1678, instance.getEle(-28.88316, -71.070557), 1e-1);
+            assertEquals(161, instance.getEle(55.8943144, -3), 1e-1);
+            assertEquals(330, instance.getEle(49.958233, 11.558647), 1e-1);
+        }
+        instance.release();
+        // the files of the closed tiles are removed as well
+        assertEquals(0, new File("./files/").list((dir, name) -> name.startsWith("dem")).length);
+    }
+
+    @Test
+    public void testSeaLevelTileIsReloaded() {
+        instance = new SRTMProvider("./files/");
+        AtomicInteger downloads = new AtomicInteger();
+        instance.setDownloader(new Downloader("test") {
+            @Override
+            public void downloadFile(String url, String toFile) throws IOException {
+                downloads.incrementAndGet();
+                throw new FileNotFoundException(url);
+            }
+        });
+        // only the last used tile is kept open, so the sea level tile is closed and loaded again
+        instance.setCacheSize(1);
+        for (int i = 0; i < 2; i++) {
+            // there is no file for this tile, so it is treated as sea level
+            assertEquals(0, instance.getEle(49.5, 12.5), 1e-1);
+            assertEquals(466, instance.getEle(49.968651, 11.574869), 1e-1);
+        }
+        // the sea level tile was loaded from the cache directory and not downloaded again
+        int downloadsOfFirstLoad = downloads.get();
+        assertTrue(downloadsOfFirstLoad > 0);
+        assertEquals(0, instance.getEle(49.5, 12.5), 1e-1);
+        assertEquals(downloadsOfFirstLoad, downloads.get());
+    }
+
     @Disabled
     @Test
     public void testGetEle() {
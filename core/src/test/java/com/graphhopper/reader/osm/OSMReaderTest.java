@@ -34,6 +34,7 @@ import com.graphhopper.routing.util.countryrules.CountryRuleFactory;
 import com.graphhopper.routing.util.parsers.CountryParser;
 import com.graphhopper.routing.util.parsers.OSMBikeNetworkTagParser;
 import com.graphhopper.routing.util.parsers.OSMMtbNetworkTagParser;
+import com.graphhopper.routing.util.parsers.OSMRoadClassParser;
 import com.graphhopper.routing.util.parsers.OSMRoadAccessParser;
 import com.graphhopper.storage.*;
 import com.graphhopper.storage.index.LocationIndex;
@@ -984,6 +985,41 @@ public class OSMReaderTest {
         assertEquals(Country.BGR, iter.get(countryEnc));
     }
 
+    @Test
+    public void testSameGraphWithMultipleWorkerThreads() throws IOException {
+        BaseGraph graph1 = readAndorra(1);
+        BaseGraph graph4 = readAndorra(4);
+        assertTrue(graph1.getEdges() > 1000);
+        assertEquals(graph1.getNodes(), graph4.getNodes());
+        assertEquals(graph1.getEdges(), graph4.getEdges());
+        for (int node = 0; node < graph1.getNodes(); node++) {
+            assertEquals(graph1.getNodeAccess().getLat(node), graph4.getNodeAccess().getLat(node));
+            assertEquals(graph1.getNodeAccess().getLon(node), graph4.getNodeAccess().getLon(node));
+        }
+        for (int edge = 0; edge < graph1.getEdges(); edge++) {
+            EdgeIteratorState edge1 = graph1.getEdgeIteratorState(edge, Integer.MIN_VALUE);
+            EdgeIteratorState edge4 = graph4.getEdgeIteratorState(edge, Integer.MIN_VALUE);
+            assertEquals(edge1.getBaseNode(), edge4.getBaseNode());
+            assertEquals(edge1.getAdjNode(), edge4.getAdjNode());
+            assertEquals(edge1.getDistance(), edge4.getDistance());
+            assertEquals(edge1.getFlags(), edge4.getFlags());
+            assertEquals(edge1.getName(), edge4.getName());
+        }
+    }
+
+    private BaseGraph readAndorra(int workerThreads) throws IOException {
+        BooleanEncodedValue accessEnc = VehicleAccess.create("car");
+        DecimalEncodedValue speedEnc = VehicleSpeed.create("car", 5, 5, false);
+        EncodingManager em = EncodingManager.start().add(accessEnc).add(speedEnc).add(RoadClass.create()).build();
+        OSMParsers osmParsers = new OSMParsers()
+                .addWayTagParser(new OSMRoadClassParser(em.getEnumEncodedValue(RoadClass.KEY, RoadClass.class)));
+        BaseGraph graph = new BaseGraph.Builder(em).create();
+        OSMReader reader = new OSMReader(graph, osmParsers, new OSMReaderConfig().setWorkerThreads(workerThreads));
+        reader.setFile(new File("../core/files/andorra.osm.pbf"));
+        reader.readGraph();
+        return graph;
+    }
+
     @Test
     public void testFixWayName() {
         assertEquals("B8, B12", OSMReader.fixWayName("B8;B12"));
@@ -27,8 +27,13 @@ import com.graphhopper.routing.weighting.SpeedWeighting;
 import com.graphhopper.routing.weighting.WeightApproximator;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.GHUtility;
+import org.junit.jupiter.api.RepeatedTest;
 import org.junit.jupiter.api.Test;
 
+import java.util.Random;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 class AStarBidirectionTest {
@@ -39,8 +44,8 @@ class AStarBidirectionTest {
         // search first explores the 0-1-2-3-4 branch, then polls node 10 which causes an update for node 2, but the
         // search stops before node 2 is polled again such that nodes 3 and 4 cannot be updated, because the bwd search
         // already arrived and the stopping criterion is fulfilled. Node 2 still remains in the queue at this point.
-        // This means the resulting path contains the invalid search tree branch 2(old)-3-4 and is not the shortest path,
-        // because the SPTEntry for node 3 still points to the outdated/deleted entry for node 2.
+        // This means the resulting path contains the search tree branch 2(old)-3-4 and is not the shortest path,
+        // because the entry for node 3 still points to the settled entry for node 2, which is not changed by the update.
         // We do not expect an exception, though, because for an infeasible approximator we cannot expect optimal paths.
         DecimalEncodedValue speedEnc = new DecimalEncodedValueImpl("speed", 2, 1, true);
         EncodingManager em = EncodingManager.start().add(speedEnc).build();
@@ -80,6 +85,49 @@ class AStarBidirectionTest {
         assertEquals(IntArrayList.from(0, 1, 10, 2, 3, 4, 5, 6, 7, 8, 9), optimalPath.calcNodes());
     }
 
+    @RepeatedTest(20)
+    void inconsistentApproximator_pathMatchesItsWeight() {
+        long seed = System.nanoTime();
+        Random rnd = new Random(seed);
+        DecimalEncodedValue speedEnc = new DecimalEncodedValueImpl("speed", 5, 5, true);
+        BaseGraph graph = new BaseGraph.Builder(EncodingManager.start().add(speedEnc).build()).create();
+        GHUtility.buildRandomGraph(graph, rnd, 50, 2.5, false, speedEnc, null, 0.8, 0.8);
+        Weighting weighting = new SpeedWeighting(speedEnc);
+        // random approximations for both directions, so entries that were settled already are updated regularly and
+        // the search can stop before they are polled again. The paths are not optimal, but must match their weight.
+        double[] fwdApproximations = new double[graph.getNodes()];
+        double[] bwdApproximations = new double[graph.getNodes()];
+        for (int i = 0; i < graph.getNodes(); i++) {
+            fwdApproximations[i] = rnd.nextDouble() * 100;
+            bwdApproximations[i] = rnd.nextDouble() * 100;
+        }
+        for (int i = 0; i < 50; i++) {
+            int from = rnd.nextInt(graph.getNodes());
+            int to = rnd.nextInt(graph.getNodes());
+            Path refPath = new Dijkstra(graph, weighting, TraversalMode.NODE_BASED).calcPath(from, to);
+            AStarBidirection algo = new AStarBidirection(graph, weighting, TraversalMode.NODE_BASED);
+            algo.setApproximation(new AStarTest.ArrayApproximator(fwdApproximations) {
+                @Override
+                public WeightApproximator reverse() {
+                    return new AStarTest.ArrayApproximator(bwdApproximations);
+                }
+            });
+            Path path = algo.calcPath(from, to);
+            String msg = "seed: " + seed + ", " + from + "->" + to;
+            assertEquals(refPath.isFound(), path.isFound(), msg);
+            if (!path.isFound())
+                continue;
+            double weight = 0;
+            double distance = 0;
+            for (EdgeIteratorState edge : path.calcEdges()) {
+                weight += weighting.calcEdgeWeight(edge, false);
+                distance += edge.getDistance();
+            }
+            assertEquals(weight, path.getWeight(), 1.e-6, msg);
+            assertEquals(distance, path.getDistance(), 1.e-6, msg);
+        }
+    }
+
     private static class InfeasibleApproximator implements WeightApproximator {
         int to;
 
@@ -0,0 +1,99 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.routing.ev.DecimalEncodedValue;
+import com.graphhopper.routing.ev.DecimalEncodedValueImpl;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.SpeedWeighting;
+import com.graphhopper.routing.weighting.WeightApproximator;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.GHUtility;
+import org.junit.jupiter.api.RepeatedTest;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AStarTest {
+
+    @RepeatedTest(20)
+    void inconsistentApproximator_pathMatchesItsWeight() {
+        long seed = System.nanoTime();
+        Random rnd = new Random(seed);
+        DecimalEncodedValue speedEnc = new DecimalEncodedValueImpl("speed", 5, 5, true);
+        BaseGraph graph = new BaseGraph.Builder(EncodingManager.start().add(speedEnc).build()).create();
+        GHUtility.buildRandomGraph(graph, rnd, 50, 2.5, false, speedEnc, null, 0.8, 0.8);
+        Weighting weighting = new SpeedWeighting(speedEnc);
+        // the approximations are random, so they are neither consistent nor admissible and settled nodes are
+        // updated regularly. We cannot expect the shortest paths, but every path must be a valid branch of the tree.
+        double[] approximations = new double[graph.getNodes()];
+        for (int i = 0; i < approximations.length; i++)
+            approximations[i] = rnd.nextDouble() * 100;
+        for (int i = 0; i < 50; i++) {
+            int from = rnd.nextInt(graph.getNodes());
+            int to = rnd.nextInt(graph.getNodes());
+            Path refPath = new Dijkstra(graph, weighting, TraversalMode.NODE_BASED).calcPath(from, to);
+            AStar aStar = new AStar(graph, weighting, TraversalMode.NODE_BASED);
+            aStar.setApproximation(new ArrayApproximator(approximations));
+            Path path = aStar.calcPath(from, to);
+            String msg = "seed: " + seed + ", " + from + "->" + to;
+            assertEquals(refPath.isFound(), path.isFound(), msg);
+            if (!path.isFound())
+                continue;
+            double weight = 0;
+            double distance = 0;
+            for (EdgeIteratorState edge : path.calcEdges()) {
+                weight += weighting.calcEdgeWeight(edge, false);
+                distance += edge.getDistance();
+            }
+            assertEquals(weight, path.getWeight(), 1.e-6, msg);
+            assertEquals(distance, path.getDistance(), 1.e-6, msg);
+        }
+    }
+
+    static class ArrayApproximator implements WeightApproximator {
+        private final double[] approximations;
+
+        ArrayApproximator(double[] approximations) {
+            this.approximations = approximations;
+        }
+
+        @Override
+        public double approximate(int currentNode) {
+            return approximations[currentNode];
+        }
+
+        @Override
+        public void setTo(int to) {
+        }
+
+        @Override
+        public WeightApproximator reverse() {
+            return this;
+        }
+
+        @Override
+        public double getSlack() {
+            return 0;
+        }
+    }
+}
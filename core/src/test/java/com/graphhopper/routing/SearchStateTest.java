@@ -0,0 +1,119 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import static com.graphhopper.routing.SearchState.NO_SLOT;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchStateTest {
+
+    @Test
+    void addUpdateAndPoll() {
+        SearchState state = new SearchState(2);
+        int a = state.add(10, 0, 1, NO_SLOT, 0, 5);
+        int b = state.add(20, 1, 2, a, 3, 3);
+        int c = state.add(30, 2, 3, b, 4, 4);
+        assertEquals(3, state.size());
+        assertEquals(b, state.getSlot(20));
+        assertEquals(NO_SLOT, state.getSlot(40));
+
+        assertEquals(a, state.update(10, a, 0, NO_SLOT, 0, 1));
+        assertEquals(a, state.poll());
+        assertEquals(b, state.poll());
+        assertTrue(state.isSettled(b));
+        assertFalse(state.isSettled(c));
+        // c was not polled yet, so this is a regular decrease-key
+        assertEquals(c, state.update(30, c, 5, a, 2, 2));
+        assertEquals(a, state.getParent(c));
+        assertEquals(5, state.getEdge(c));
+        // b was polled already, so it is kept as it is and a new entry is added
+        int d = state.update(20, b, 6, a, 1, 1);
+        assertNotEquals(b, d);
+        assertEquals(d, state.getSlot(20));
+        assertEquals(2, state.getAdjNode(d));
+        assertEquals(a, state.getParent(d));
+        assertEquals(1, state.getEdge(b));
+        assertEquals(3, state.getWeight(b));
+        assertEquals(d, state.poll());
+        assertEquals(c, state.poll());
+        assertTrue(state.isHeapEmpty());
+        assertEquals(3, state.getAdjNode(c));
+        assertEquals(2, state.getWeight(c));
+        assertEquals(4, state.size());
+
+        state.clear();
+        assertEquals(0, state.size());
+        assertEquals(NO_SLOT, state.getSlot(10));
+    }
+
+    @Test
+    void pooling() {
+        SearchState state = SearchState.acquire();
+        state.add(1, 0, 1, NO_SLOT, 0, 0);
+        state.release();
+        SearchState other = SearchState.acquire();
+        assertSame(state, other);
+        assertEquals(0, other.size());
+        assertTrue(other.isHeapEmpty());
+        // nested searches must not share their state
+        assertNotSame(other, SearchState.acquire());
+        other.release();
+    }
+
+    @Test
+    void largeStatesAreNotPooled() {
+        SearchState large = new SearchState(SearchState.MAX_POOLED_SLOTS + 1);
+        large.release();
+        SearchState state = SearchState.acquire();
+        assertNotSame(large, state);
+        state.release();
+    }
+
+    @RepeatedTest(10)
+    void randomAgainstPriorityQueue() {
+        long seed = System.nanoTime();
+        Random rnd = new Random(seed);
+        SearchState state = new SearchState();
+        double[] keys = new double[1000];
+        PriorityQueue<Integer> reference = new PriorityQueue<>((x, y) -> Double.compare(keys[x], keys[y]));
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = rnd.nextDouble() * 100;
+            assertEquals(i, state.add(i, i, i, NO_SLOT, keys[i], keys[i]));
+            reference.add(i);
+            if (rnd.nextDouble() < 0.3) {
+                int slot = rnd.nextInt(i + 1);
+                if (reference.remove(slot)) {
+                    keys[slot] = rnd.nextDouble() * 100;
+                    assertEquals(slot, state.update(slot, slot, slot, NO_SLOT, keys[slot], keys[slot]));
+                    reference.add(slot);
+                }
+            }
+            if (rnd.nextDouble() < 0.2)
+                assertEquals(keys[reference.poll()], keys[state.poll()], 1.e-12, "seed: " + seed);
+        }
+        while (!reference.isEmpty())
+            assertEquals(keys[reference.poll()], keys[state.poll()], 1.e-12, "seed: " + seed);
+        assertTrue(state.isHeapEmpty());
+    }
+}
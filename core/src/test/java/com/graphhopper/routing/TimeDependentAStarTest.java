@@ -0,0 +1,138 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.graphhopper.routing.ev.DecimalEncodedValue;
+import com.graphhopper.routing.ev.DecimalEncodedValueImpl;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.SpeedProfileStorage;
+import com.graphhopper.routing.weighting.SpeedWeighting;
+import com.graphhopper.routing.weighting.TimeDependentWeighting;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.util.EdgeIteratorState;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static com.graphhopper.routing.weighting.TimeDependentWeighting.parseDepartureTime;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TimeDependentAStarTest {
+    private DecimalEncodedValue speedEnc;
+    private BaseGraph graph;
+    private String csv;
+
+    @BeforeEach
+    public void setUp() {
+        speedEnc = new DecimalEncodedValueImpl("speed", 5, 5, false);
+        graph = new BaseGraph.Builder(EncodingManager.start().add(speedEnc).build()).create();
+        // the short route 0-1-3 and the long route 0-2-3, both at 15m/s = 54km/h
+        graph.edge(0, 1).setDistance(1000).set(speedEnc, 15);
+        graph.edge(1, 3).setDistance(1000).set(speedEnc, 15);
+        graph.edge(0, 2).setDistance(1500).set(speedEnc, 15);
+        graph.edge(2, 3).setDistance(1500).set(speedEnc, 15);
+
+        // edge 0 is congested from 07:00 to 10:00, the higher speeds at other times are limited by the weighting
+        StringBuilder sb = new StringBuilder("edge,speeds\n0");
+        for (int bucket = 0; bucket < SpeedProfileStorage.BUCKETS_PER_DAY; bucket++)
+            sb.append(",").append(bucket >= 28 && bucket < 40 ? 10 : 60);
+        csv = sb.append("\n").toString();
+    }
+
+    private SpeedProfileStorage createSpeedProfiles(ZoneId timeZone) {
+        return new SpeedProfileStorage(new RAMDirectory(), timeZone).importCSV(new BufferedReader(new StringReader(csv)), graph.getEdges());
+    }
+
+    @Test
+    public void testSpeedProfiles() {
+        SpeedProfileStorage speedProfiles = createSpeedProfiles(ZoneOffset.UTC);
+        assertEquals(1, speedProfiles.getProfiles());
+        assertTrue(speedProfiles.hasProfile(0));
+        assertFalse(speedProfiles.hasProfile(1));
+        assertTrue(Double.isNaN(speedProfiles.getSpeed(1, parseDepartureTime("2024-05-21T08:00:00Z"))));
+        assertEquals(10, speedProfiles.getSpeed(0, parseDepartureTime("2024-05-21T08:00:00Z")), 1.e-6);
+        assertEquals(60, speedProfiles.getSpeed(0, parseDepartureTime("2024-05-22T02:00:00Z")), 1.e-6);
+        // interpolated between the middles of the buckets
+        assertEquals(35, speedProfiles.getSpeed(0, parseDepartureTime("2024-05-21T07:00:00Z")), 1.e-6);
+    }
+
+    @Test
+    public void testRouteDependsOnDepartureTime() {
+        SpeedProfileStorage speedProfiles = createSpeedProfiles(ZoneOffset.UTC);
+        TimeDependentWeighting weighting = new TimeDependentWeighting(new SpeedWeighting(speedEnc), speedProfiles);
+
+        Path path = calcPath(weighting, "2024-05-21T02:00:00Z", true);
+        assertEquals(IntArrayList.from(0, 1, 3), path.calcNodes());
+        assertEquals(133_332, path.getTime());
+
+        path = calcPath(weighting, "2024-05-21T08:00:00Z", true);
+        assertEquals(IntArrayList.from(0, 2, 3), path.calcNodes());
+        assertEquals(200_000, path.getTime());
+        assertEquals(200, path.getWeight(), 1.e-6);
+        assertEquals(path.getWeight(), calcPath(weighting, "2024-05-21T08:00:00Z", false).getWeight(), 1.e-6);
+
+        // without congestion the weights are the same as those of the wrapped weighting
+        assertEquals(new Dijkstra(graph, new SpeedWeighting(speedEnc), TraversalMode.NODE_BASED).calcPath(0, 3).getWeight(),
+                calcPath(weighting, "2024-05-21T22:00:00Z", false).getWeight(), 1.e-6);
+    }
+
+    @Test
+    public void testEdgeTimesOfPath() {
+        TimeDependentWeighting weighting = new TimeDependentWeighting(new SpeedWeighting(speedEnc), createSpeedProfiles(ZoneOffset.UTC));
+        TimeDependentAStar algo = new TimeDependentAStar(graph, weighting, weighting, TraversalMode.NODE_BASED);
+        algo.setDepartureTime(parseDepartureTime("2024-05-21T07:00:00Z"));
+        Path path = algo.calcPath(0, 1);
+        // 1000m at 35km/h instead of 54km/h
+        assertEquals(IntArrayList.from(0, 1), path.calcNodes());
+        assertEquals(102_857, path.getTime());
+        // the instructions and path details use the times of the edges as they were traversed
+        Weighting pathWeighting = ((TimeDependentPath) path).wrapWeighting(weighting);
+        long millis = 0;
+        for (EdgeIteratorState edge : path.calcEdges())
+            millis += pathWeighting.calcEdgeMillis(edge, false);
+        assertEquals(path.getTime(), millis);
+        assertEquals(66_666, pathWeighting.calcEdgeMillis(graph.getEdgeIteratorState(1, 3), false));
+    }
+
+    @Test
+    public void testTimeZone() {
+        // 06:00 UTC is 08:00 in Berlin in summer
+        TimeDependentWeighting weighting = new TimeDependentWeighting(new SpeedWeighting(speedEnc), createSpeedProfiles(ZoneId.of("Europe/Berlin")));
+        assertEquals(IntArrayList.from(0, 2, 3), calcPath(weighting, "2024-05-21T06:00:00Z", true).calcNodes());
+        assertEquals(IntArrayList.from(0, 1, 3), calcPath(weighting, "2024-05-21T08:30:00Z", true).calcNodes());
+    }
+
+    private Path calcPath(TimeDependentWeighting weighting, String departureTime, boolean aStar) {
+        TimeDependentAStar algo = new TimeDependentAStar(graph, weighting, weighting, TraversalMode.NODE_BASED);
+        if (!aStar)
+            algo.setApproximation(null);
+        algo.setDepartureTime(parseDepartureTime(departureTime));
+        Path path = algo.calcPath(0, 3);
+        assertTrue(path.isFound());
+        assertEquals(parseDepartureTime(departureTime) + path.getTime(), algo.getArrivalTime());
+        return path;
+    }
+}
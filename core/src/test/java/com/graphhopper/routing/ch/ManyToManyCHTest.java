@@ -0,0 +1,158 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.routing.Dijkstra;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.ev.DecimalEncodedValue;
+import com.graphhopper.routing.ev.DecimalEncodedValueImpl;
+import com.graphhopper.routing.ev.TurnCost;
+import com.graphhopper.routing.querygraph.QueryGraph;
+import com.graphhopper.routing.querygraph.QueryRoutingCHGraph;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.SpeedWeighting;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.CHConfig;
+import com.graphhopper.storage.RoutingCHGraph;
+import com.graphhopper.storage.RoutingCHGraphImpl;
+import com.graphhopper.storage.index.LocationIndexTree;
+import com.graphhopper.storage.index.Snap;
+import com.graphhopper.util.GHUtility;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static com.graphhopper.util.GHUtility.createRandomSnaps;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ManyToManyCHTest {
+
+    @Test
+    void simpleMatrix() {
+        DecimalEncodedValue speedEnc = new DecimalEncodedValueImpl("speed", 5, 5, true);
+        BaseGraph graph = new BaseGraph.Builder(EncodingManager.start().add(speedEnc).build()).create();
+        // 0 - 1 - 2
+        //     |   |
+        //     3 - 4 -> 5
+        graph.edge(0, 1).setDistance(100).set(speedEnc, 10, 10);
+        graph.edge(1, 2).setDistance(200).set(speedEnc, 10, 10);
+        graph.edge(1, 3).setDistance(100).set(speedEnc, 10, 10);
+        graph.edge(2, 4).setDistance(100).set(speedEnc, 10, 10);
+        graph.edge(3, 4).setDistance(100).set(speedEnc, 10, 10);
+        graph.edge(4, 5).setDistance(300).set(speedEnc, 10, 0);
+        graph.freeze();
+        RoutingCHGraph chGraph = prepareCH(graph, new SpeedWeighting(speedEnc));
+
+        ManyToManyCH.Result result = new ManyToManyCH(chGraph).calcMatrix(new int[]{0, 5, 2}, new int[]{5, 0, 2});
+        assertEquals(600, result.getDistance(0, 0), 1.e-6);
+        // the speed weighting takes 1s per meter / speed
+        assertEquals(60_000, result.getTime(0, 0));
+        assertEquals(0, result.getDistance(0, 1), 1.e-6);
+        assertEquals(300, result.getDistance(0, 2), 1.e-6);
+        // node 5 can only be reached, but we cannot leave it
+        assertFalse(result.isConnected(1, 1));
+        assertFalse(result.isConnected(1, 2));
+        assertTrue(result.isConnected(1, 0));
+        assertEquals(0, result.getDistance(1, 0), 1.e-6);
+        assertEquals(400, result.getDistance(2, 0), 1.e-6);
+        assertEquals(0, result.getWeight(2, 2), 1.e-6);
+    }
+
+    @Test
+    void reuseInstance() {
+        DecimalEncodedValue speedEnc = new DecimalEncodedValueImpl("speed", 5, 5, true);
+        BaseGraph graph = new BaseGraph.Builder(EncodingManager.start().add(speedEnc).build()).create();
+        // 0 - 1 - 2 - 3
+        graph.edge(0, 1).setDistance(100).set(speedEnc, 10, 10);
+        graph.edge(1, 2).setDistance(200).set(speedEnc, 10, 10);
+        graph.edge(2, 3).setDistance(300).set(speedEnc, 10, 10);
+        graph.freeze();
+        RoutingCHGraph chGraph = prepareCH(graph, new SpeedWeighting(speedEnc));
+
+        ManyToManyCH manyToMany = new ManyToManyCH(chGraph);
+        ManyToManyCH.Result result = manyToMany.calcMatrix(new int[]{0}, new int[]{3, 1});
+        assertEquals(600, result.getDistance(0, 0), 1.e-6);
+        assertEquals(100, result.getDistance(0, 1), 1.e-6);
+        // the buckets of the previous matrix must not be used again
+        result = manyToMany.calcMatrix(new int[]{3}, new int[]{0});
+        assertEquals(600, result.getDistance(0, 0), 1.e-6);
+        assertEquals(60, result.getWeight(0, 0), 1.e-6);
+    }
+
+    @Test
+    void edgeBasedIsNotSupported() {
+        DecimalEncodedValue speedEnc = new DecimalEncodedValueImpl("speed", 5, 5, true);
+        DecimalEncodedValue turnCostEnc = TurnCost.create("car", 1);
+        BaseGraph graph = new BaseGraph.Builder(EncodingManager.start().add(speedEnc).addTurnCostEncodedValue(turnCostEnc).build()).withTurnCosts(true).create();
+        graph.edge(0, 1).setDistance(100).set(speedEnc, 10, 10);
+        graph.freeze();
+        CHConfig chConfig = CHConfig.edgeBased("p", new SpeedWeighting(speedEnc, turnCostEnc, graph.getTurnCostStorage(), Double.POSITIVE_INFINITY));
+        PrepareContractionHierarchies.Result res = PrepareContractionHierarchies.fromGraph(graph, chConfig).doWork();
+        RoutingCHGraph chGraph = RoutingCHGraphImpl.fromGraph(graph, res.getCHStorage(), res.getCHConfig());
+        assertThrows(IllegalArgumentException.class, () -> new ManyToManyCH(chGraph));
+    }
+
+    @RepeatedTest(10)
+    void random() {
+        long seed = System.nanoTime();
+        Random rnd = new Random(seed);
+        DecimalEncodedValue speedEnc = new DecimalEncodedValueImpl("speed", 5, 5, true);
+        BaseGraph graph = new BaseGraph.Builder(EncodingManager.start().add(speedEnc).build()).create();
+        GHUtility.buildRandomGraph(graph, rnd, 100, 2.5, true, speedEnc, null, 0.9, 0);
+        LocationIndexTree locationIndex = new LocationIndexTree(graph, graph.getDirectory());
+        locationIndex.prepareIndex();
+        graph.freeze();
+        Weighting weighting = new SpeedWeighting(speedEnc);
+        RoutingCHGraph chGraph = prepareCH(graph, weighting);
+
+        List<Snap> snaps = createRandomSnaps(graph.getBounds(), locationIndex, rnd, 10, false, EdgeFilter.ALL_EDGES);
+        QueryGraph queryGraph = QueryGraph.create(graph, snaps);
+        int[] sources = new int[15];
+        int[] targets = new int[20];
+        for (int i = 0; i < sources.length; i++)
+            sources[i] = rnd.nextInt(queryGraph.getNodes());
+        for (int i = 0; i < targets.length; i++)
+            targets[i] = rnd.nextInt(queryGraph.getNodes());
+        ManyToManyCH.Result result = new ManyToManyCH(new QueryRoutingCHGraph(chGraph, queryGraph)).calcMatrix(sources, targets);
+
+        Weighting queryGraphWeighting = queryGraph.wrapWeighting(weighting);
+        for (int s = 0; s < sources.length; s++) {
+            for (int t = 0; t < targets.length; t++) {
+                Path refPath = new Dijkstra(queryGraph, queryGraphWeighting, TraversalMode.NODE_BASED).calcPath(sources[s], targets[t]);
+                String msg = "seed: " + seed + ", " + sources[s] + "->" + targets[t];
+                assertEquals(refPath.isFound(), result.isConnected(s, t), msg);
+                if (!refPath.isFound())
+                    continue;
+                assertEquals(refPath.getWeight(), result.getWeight(s, t), 1.e-2, msg);
+                // the distance is not checked, because there can be multiple paths with the same weight
+                assertEquals(refPath.getTime(), result.getTime(s, t), 50, msg);
+            }
+        }
+    }
+
+    private static RoutingCHGraph prepareCH(BaseGraph graph, Weighting weighting) {
+        CHConfig chConfig = CHConfig.nodeBased("p", weighting);
+        PrepareContractionHierarchies.Result res = PrepareContractionHierarchies.fromGraph(graph, chConfig).doWork();
+        return RoutingCHGraphImpl.fromGraph(graph, res.getCHStorage(), res.getCHConfig());
+    }
+}
@@ -34,6 +34,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 import static com.graphhopper.util.GHUtility.updateDistancesFor;
 import static org.junit.jupiter.api.Assertions.*;
@@ -576,6 +577,99 @@ public class PrepareContractionHierarchiesTest {
         }
     }
 
+    @Test
+    public void testParallelContraction() {
+        int numNodes = 2_000;
+        long seed = System.nanoTime();
+        Random rnd = new Random(seed);
+        BaseGraph graph = new BaseGraph.Builder(encodingManager).create();
+        GHUtility.buildRandomGraph(graph, rnd, numNodes, 1.3, true, speedEnc, null, 0.9, 0.8);
+        graph.freeze();
+        PMap pMap = new PMap().putObject(CHParameters.CONTRACTION_THREADS, 4);
+
+        PrepareContractionHierarchies.Result heuristicResult = PrepareContractionHierarchies.fromGraph(graph, chConfig)
+                .setParams(pMap).doWork();
+        NodeOrderingProvider nodeOrdering = heuristicResult.getCHStorage().getNodeOrderingProvider();
+        PrepareContractionHierarchies.Result fixedResult = PrepareContractionHierarchies.fromGraph(graph, CHConfig.nodeBased("fixed", weighting))
+                .setParams(pMap).useFixedNodeOrdering(nodeOrdering).doWork();
+        PrepareContractionHierarchies.Result fixedResult2 = PrepareContractionHierarchies.fromGraph(graph, CHConfig.nodeBased("fixed2", weighting))
+                .setParams(pMap).useFixedNodeOrdering(nodeOrdering).doWork();
+        // the witness searches run in parallel, but the graph is changed in a deterministic order
+        assertEquals(fixedResult.getShortcuts(), fixedResult2.getShortcuts(), "seed: " + seed);
+
+        for (PrepareContractionHierarchies.Result result : new PrepareContractionHierarchies.Result[]{heuristicResult, fixedResult}) {
+            RoutingCHGraph chGraph = RoutingCHGraphImpl.fromGraph(graph, result.getCHStorage(), result.getCHConfig());
+            for (int i = 0; i < 100; ++i) {
+                int from = rnd.nextInt(numNodes);
+                int to = rnd.nextInt(numNodes);
+                double dijkstraWeight = new Dijkstra(graph, weighting, TraversalMode.NODE_BASED).calcPath(from, to).getWeight();
+                double chWeight = new CHRoutingAlgorithmFactory(chGraph).createAlgo(new PMap()).calcPath(from, to).getWeight();
+                assertEquals(dijkstraWeight, chWeight, 1.e-1, "seed: " + seed);
+            }
+        }
+    }
+
+    @Test
+    public void testCustomizableCH() {
+        int numNodes = 500;
+        long seed = System.nanoTime();
+        Random rnd = new Random(seed);
+        BaseGraph graph = new BaseGraph.Builder(encodingManager).create();
+        GHUtility.buildRandomGraph(graph, rnd, numNodes, 1.3, true, speedEnc, null, 0.9, 0.8);
+        graph.freeze();
+        PMap pMap = new PMap().putObject(CHParameters.CUSTOMIZABLE, true).putObject(CHParameters.CONTRACTION_THREADS, 2);
+        PrepareContractionHierarchies.Result result = PrepareContractionHierarchies.fromGraph(graph, chConfig).setParams(pMap).doWork();
+        CHStorage chStorage = result.getCHStorage();
+        assertTrue(chStorage.isCustomizable());
+        checkCHWeights(graph, RoutingCHGraphImpl.fromGraph(graph, chStorage, result.getCHConfig()), weighting, rnd, seed);
+
+        // change the speeds of some edges, including some road closures
+        AllEdgesIterator iter = graph.getAllEdges();
+        while (iter.next()) {
+            if (rnd.nextDouble() < 0.3)
+                iter.set(speedEnc, rnd.nextDouble() < 0.2 ? 0 : 5 * (1 + rnd.nextInt(20)));
+            if (rnd.nextDouble() < 0.3)
+                iter.setReverse(speedEnc, rnd.nextDouble() < 0.2 ? 0 : 5 * (1 + rnd.nextInt(20)));
+        }
+        CHCustomizer customizer = new CHCustomizer(graph, chStorage);
+        CHStorage customized = new CHStorage(new RAMDirectory(), "customized", -1, false);
+        customizer.customize(weighting, customized, null);
+        assertEquals(chStorage.getShortcuts(), customized.getShortcuts());
+        // the shortcuts made unusable by the road closures get an infinite weight, which does not count as exceeding
+        assertEquals(0, customized.getNumShortcutsExceedingWeight());
+        checkCHWeights(graph, new RoutingCHGraphImpl(graph, customized, weighting), weighting, rnd, seed);
+
+        // we can also update the weights in place, and the result does not depend on the number of threads
+        ForkJoinPool pool = new ForkJoinPool(4);
+        customizer.customize(weighting, chStorage, pool);
+        pool.shutdown();
+        for (int i = 0; i < chStorage.getShortcuts(); i++)
+            assertEquals(customized.getWeight(customized.toShortcutPointer(i)), chStorage.getWeight(chStorage.toShortcutPointer(i)), "seed: " + seed);
+        checkCHWeights(graph, RoutingCHGraphImpl.fromGraph(graph, chStorage, result.getCHConfig()), weighting, rnd, seed);
+    }
+
+    @Test
+    public void testCustomizableCHRequiresAllNodesContracted() {
+        initExampleGraph(g, speedEnc);
+        PMap pMap = new PMap().putObject(CHParameters.CUSTOMIZABLE, true).putObject(CHParameters.CONTRACTED_NODES, 50);
+        assertThrows(IllegalArgumentException.class, () -> createPrepareContractionHierarchies(g).setParams(pMap));
+    }
+
+    private void checkCHWeights(BaseGraph graph, RoutingCHGraph chGraph, Weighting weighting, Random rnd, long seed) {
+        for (int i = 0; i < 100; ++i) {
+            int from = rnd.nextInt(graph.getNodes());
+            int to = rnd.nextInt(graph.getNodes());
+            Path dijkstraPath = new Dijkstra(graph, weighting, TraversalMode.NODE_BASED).calcPath(from, to);
+            Path chPath = new CHRoutingAlgorithmFactory(chGraph).createAlgo(new PMap()).calcPath(from, to);
+            assertEquals(dijkstraPath.isFound(), chPath.isFound(), "seed: " + seed + ", " + from + "->" + to);
+            if (dijkstraPath.isFound()) {
+                assertEquals(dijkstraPath.getWeight(), chPath.getWeight(), 1.e-1, "seed: " + seed + ", " + from + "->" + to);
+                assertEquals(dijkstraPath.getWeight(), chPath.calcEdges().stream()
+                        .mapToDouble(edge -> weighting.calcEdgeWeight(edge, false)).sum(), 1.e-1, "unpacked path, seed: " + seed);
+            }
+        }
+    }
+
     private void checkPath(BaseGraph g, CHConfig c, int expShortcuts, double expDistance, IntIndexedContainer expNodes, int[] nodeOrdering) {
         PrepareContractionHierarchies prepare = createPrepareContractionHierarchies(g, c);
         useNodeOrdering(prepare, nodeOrdering);
@@ -0,0 +1,74 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ev;
+
+import com.graphhopper.util.GHUtility;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EncodedValueColumnsTest {
+
+    @Test
+    public void testRead() {
+        DecimalEncodedValue speedEnc = new DecimalEncodedValueImpl("speed", 5, 5, true);
+        BooleanEncodedValue accessEnc = new SimpleBooleanEncodedValue("access", true);
+        EnumEncodedValue<RoadClass> roadClassEnc = RoadClass.create();
+        StringEncodedValue stringEnc = new StringEncodedValue("string", 4);
+        IntEncodedValue lanesEnc = new IntEncodedValueImpl("lanes", 3, false);
+        List<EncodedValue> encodedValues = List.of(speedEnc, accessEnc, roadClassEnc, stringEnc, lanesEnc);
+        EncodedValue.InitializerConfig config = new EncodedValue.InitializerConfig();
+        for (EncodedValue ev : encodedValues)
+            ev.init(config);
+
+        ArrayEdgeIntAccess edgeIntAccess = ArrayEdgeIntAccess.createFromBytes(config.getRequiredBytes());
+        for (int edge = 0; edge < 3; edge++) {
+            speedEnc.setDecimal(false, edge, edgeIntAccess, 10 * edge);
+            speedEnc.setDecimal(true, edge, edgeIntAccess, 5);
+            accessEnc.setBool(false, edge, edgeIntAccess, edge != 1);
+            roadClassEnc.setEnum(false, edge, edgeIntAccess, edge == 2 ? RoadClass.PRIMARY : RoadClass.RESIDENTIAL);
+            stringEnc.setString(false, edge, edgeIntAccess, edge == 0 ? null : "value" + edge);
+            lanesEnc.setInt(false, edge, edgeIntAccess, edge + 1);
+        }
+
+        // the second edge in reverse direction
+        int[] edgeKeys = {GHUtility.createEdgeKey(2, false), GHUtility.createEdgeKey(1, true), GHUtility.createEdgeKey(0, false)};
+        EncodedValueColumns columns = EncodedValueColumns.read(encodedValues, edgeKeys, edgeIntAccess, true);
+        assertEquals(3, columns.size());
+        assertEquals(20, columns.getDecimal(0, 0));
+        assertEquals(5, columns.getReverseDecimal(0, 0));
+        assertEquals(5, columns.getDecimal(0, 1));
+        assertEquals(10, columns.getReverseDecimal(0, 1));
+        assertTrue(columns.getBool(1, 0));
+        assertFalse(columns.getBool(1, 1));
+        assertEquals(false, columns.getValue(1, 1, true));
+        assertEquals(RoadClass.PRIMARY, columns.getValue(2, 0, false));
+        assertEquals(RoadClass.RESIDENTIAL, columns.getValue(2, 2, false));
+        assertEquals("value1", columns.getValue(3, 1, false));
+        assertNull(columns.getValue(3, 2, false));
+        assertEquals(3, columns.getInt(4, 0));
+        assertEquals(1, columns.getInt(4, 2));
+
+        assertTrue(columns.hasReverse(0));
+        assertTrue(columns.hasReverse(1));
+        assertFalse(columns.hasReverse(2));
+        assertFalse(columns.hasReverse(4));
+    }
+}
@@ -19,6 +19,7 @@ package com.graphhopper.routing.lm;
 
 import com.graphhopper.routing.AStar;
 import com.graphhopper.routing.AlgorithmOptions;
+import com.graphhopper.routing.Dijkstra;
 import com.graphhopper.routing.Path;
 import com.graphhopper.routing.RoutingAlgorithm;
 import com.graphhopper.routing.ev.*;
@@ -212,4 +213,56 @@ public class PrepareLandmarksTest {
 
         Helper.removeDir(new File(fileStr));
     }
+
+    @Test
+    public void testCompactStoreAndLoad() {
+        Random rand = new Random(0);
+        int width = 15, height = 15;
+        for (int hIndex = 0; hIndex < height; hIndex++) {
+            for (int wIndex = 0; wIndex < width; wIndex++) {
+                int node = wIndex + hIndex * width;
+                double speed = 20 + rand.nextDouble() * 30;
+                if (wIndex + 1 < width)
+                    graph.edge(node, node + 1).set(speedEnc, speed);
+                if (hIndex + 1 < height)
+                    graph.edge(node, node + width).set(speedEnc, speed);
+                updateDistancesFor(graph, node, -hIndex / 50.0, wIndex / 50.0);
+            }
+        }
+        String fileStr = "./target/tmp-lm-compact";
+        Helper.removeDir(new File(fileStr));
+
+        Directory dir = new RAMDirectory(fileStr, true).create();
+        Weighting weighting = new SpeedWeighting(speedEnc);
+        LMConfig lmConfig = new LMConfig("car", weighting);
+        PrepareLandmarks plm = new PrepareLandmarks(dir, graph, encodingManager, lmConfig, 8).setCompact(true);
+        plm.setMinimumNodes(2);
+        plm.doWork();
+        LandmarkStorage lms = plm.getLandmarkStorage();
+        assertTrue(lms.isCompact());
+        // one byte per weight instead of two
+        assertTrue(lms.getFromWeight(0, 112) <= LandmarkStorage.BYTE_MAX);
+        double fromFactor = lms.getFromFactor(0, 112);
+
+        dir = new RAMDirectory(fileStr, true);
+        plm = new PrepareLandmarks(dir, graph, encodingManager, lmConfig, 8);
+        assertTrue(plm.loadExisting());
+        lms = plm.getLandmarkStorage();
+        assertTrue(lms.isCompact());
+        assertEquals(fromFactor, lms.getFromFactor(0, 112));
+
+        // the approximation must stay a lower bound, so the routes have to be optimal
+        PMap hints = new PMap().putObject(Parameters.Landmark.ACTIVE_COUNT, 4);
+        for (int i = 0; i < 50; i++) {
+            int from = rand.nextInt(graph.getNodes()), to = rand.nextInt(graph.getNodes());
+            Path expectedPath = new Dijkstra(graph, weighting, tm).calcPath(from, to);
+            for (String algo : Arrays.asList(ASTAR, ASTAR_BI)) {
+                Path path = new LMRoutingAlgorithmFactory(lms).createAlgo(graph, weighting,
+                        new AlgorithmOptions().setAlgorithm(algo).setTraversalMode(tm).setHints(hints)).calcPath(from, to);
+                assertEquals(expectedPath.getWeight(), path.getWeight(), 1.e-6, algo + " " + from + "->" + to);
+            }
+        }
+
+        Helper.removeDir(new File(fileStr));
+    }
 }
@@ -0,0 +1,125 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.weighting;
+
+import com.graphhopper.routing.ev.BooleanEncodedValue;
+import com.graphhopper.routing.ev.DecimalEncodedValue;
+import com.graphhopper.routing.ev.VehicleAccess;
+import com.graphhopper.routing.ev.VehicleSpeed;
+import com.graphhopper.routing.querygraph.VirtualEdgeIteratorState;
+import com.graphhopper.routing.util.AllEdgesIterator;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.weighting.custom.CustomModelParser;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.GHDirectory;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.util.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Random;
+
+import static com.graphhopper.json.Statement.If;
+import static com.graphhopper.json.Statement.Op.LIMIT;
+import static com.graphhopper.json.Statement.Op.MULTIPLY;
+import static com.graphhopper.routing.weighting.TurnCostProvider.NO_TURN_COST_PROVIDER;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CachedWeightingTest {
+    private BooleanEncodedValue accessEnc;
+    private DecimalEncodedValue speedEnc;
+    private EncodingManager encodingManager;
+    private BaseGraph graph;
+    private Weighting weighting;
+
+    @BeforeEach
+    public void setup() {
+        accessEnc = VehicleAccess.create("car");
+        speedEnc = VehicleSpeed.create("car", 5, 5, true);
+        encodingManager = EncodingManager.start().add(accessEnc).add(speedEnc).build();
+        graph = new BaseGraph.Builder(encodingManager).create();
+        Random rnd = new Random(42);
+        GHUtility.buildRandomGraph(graph, rnd, 100, 2.2, true, speedEnc, null, 0.8, 0.8);
+        AllEdgesIterator iter = graph.getAllEdges();
+        while (iter.next())
+            iter.set(accessEnc, rnd.nextDouble() < 0.9, rnd.nextDouble() < 0.7);
+        // a zero speed leads to infinite millis, which cannot be stored
+        graph.edge(0, 1).setDistance(100).set(accessEnc, true, true).set(speedEnc, 0, 50);
+
+        CustomModel customModel = new CustomModel();
+        customModel.addToPriority(If("!car_access", MULTIPLY, "0"));
+        customModel.addToSpeed(If("true", LIMIT, speedEnc.getName()));
+        customModel.setDistanceInfluence(70d);
+        weighting = CustomModelParser.createWeighting(encodingManager, NO_TURN_COST_PROVIDER, customModel);
+    }
+
+    @Test
+    public void sameWeightsAsWeighting() {
+        EdgeWeightCache cache = new EdgeWeightCache(new RAMDirectory(), "car").build(graph, weighting, 123);
+        Weighting cachedWeighting = new CachedWeighting(weighting, cache);
+        assertEquals(graph.getEdges(), cache.getEdges());
+        for (int edge = 0; edge < graph.getEdges(); edge++) {
+            // the edge states in both directions
+            for (int edgeKey : new int[]{2 * edge, 2 * edge + 1}) {
+                EdgeIteratorState edgeState = graph.getEdgeIteratorStateForKey(edgeKey);
+                for (boolean reverse : new boolean[]{false, true}) {
+                    String msg = "edge key: " + edgeKey + ", reverse: " + reverse;
+                    assertEquals(weighting.calcEdgeWeight(edgeState, reverse), cachedWeighting.calcEdgeWeight(edgeState, reverse), msg);
+                    assertEquals(weighting.calcEdgeMillis(edgeState, reverse), cachedWeighting.calcEdgeMillis(edgeState, reverse), msg);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void virtualEdgesAreNotCached() {
+        CustomModel customModel = new CustomModel();
+        customModel.addToSpeed(If("true", LIMIT, speedEnc.getName()));
+        customModel.setHeadingPenalty(100);
+        Weighting weighting = CustomModelParser.createWeighting(encodingManager, NO_TURN_COST_PROVIDER, customModel);
+        Weighting cachedWeighting = new CachedWeighting(weighting, new EdgeWeightCache(new RAMDirectory(), "car").build(graph, weighting, 123));
+
+        EdgeIteratorState edge = graph.getEdgeIteratorState(0, Integer.MIN_VALUE);
+        VirtualEdgeIteratorState virtualEdge = new VirtualEdgeIteratorState(edge.getEdgeKey(), 2 * graph.getEdges(), 1000, 1001,
+                edge.getDistance() / 2, edge.getFlags(), edge.getKeyValues(), Helper.createPointList(), false);
+        virtualEdge.setUnfavored(true);
+        assertEquals(weighting.calcEdgeWeight(virtualEdge, false), cachedWeighting.calcEdgeWeight(virtualEdge, false));
+        assertEquals(weighting.calcEdgeWeight(edge, false) / 2 + 100, cachedWeighting.calcEdgeWeight(virtualEdge, false), 1.e-6);
+    }
+
+    @Test
+    public void loadExisting(@TempDir Path path) {
+        GHDirectory dir = new GHDirectory(path.toAbsolutePath().toString(), DAType.RAM_STORE);
+        EdgeWeightCache cache = new EdgeWeightCache(dir, "car").build(graph, weighting, 123);
+        cache.flush();
+        cache.close();
+
+        EdgeWeightCache loaded = new EdgeWeightCache(new GHDirectory(path.toAbsolutePath().toString(), DAType.RAM_STORE), "car");
+        assertEquals(true, loaded.loadExisting());
+        assertEquals(123, loaded.getProfileHash());
+        assertEquals(graph.getEdges(), loaded.getEdges());
+        Weighting cachedWeighting = new CachedWeighting(weighting, loaded);
+        AllEdgesIterator iter = graph.getAllEdges();
+        while (iter.next())
+            assertEquals(weighting.calcEdgeWeight(iter, true), cachedWeighting.calcEdgeWeight(iter, true));
+        loaded.close();
+    }
+}
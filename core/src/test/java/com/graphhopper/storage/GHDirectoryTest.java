@@ -1,10 +1,13 @@
 package com.graphhopper.storage;
 
+import com.graphhopper.util.Helper;
 import org.junit.jupiter.api.Test;
 
+import java.io.File;
 import java.util.LinkedHashMap;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class GHDirectoryTest {
 
@@ -33,4 +36,39 @@ class GHDirectoryTest {
         assertEquals(DAType.MMAP, dir.getDefaultType("nodes_ch_car", false));
     }
 
-}
\ No newline at end of file
+
+    @Test
+    public void testPreloadPriority() {
+        assertEquals(0, GHDirectory.getPreloadPriority("nodes"));
+        assertEquals(0, GHDirectory.getPreloadPriority("edges"));
+        assertEquals(1, GHDirectory.getPreloadPriority("shortcuts_car"));
+        assertEquals(1, GHDirectory.getPreloadPriority("nodes_ch_car"));
+        assertEquals(2, GHDirectory.getPreloadPriority("location_index"));
+        assertEquals(2, GHDirectory.getPreloadPriority("landmarks_car"));
+        assertEquals(3, GHDirectory.getPreloadPriority("geometry"));
+    }
+
+    @Test
+    public void testLoadMMapInParallel() {
+        String location = "./target/tmp-preload";
+        Helper.removeDir(new File(location));
+        GHDirectory dir = new GHDirectory(location, DAType.MMAP);
+        dir.create();
+        LinkedHashMap<String, String> map = new LinkedHashMap<>();
+        map.put("preload..*", "100");
+        dir.configure(map);
+        DataAccess nodes = dir.create("nodes", 128);
+        DataAccess geometry = dir.create("geometry", 128);
+        nodes.create(1000);
+        geometry.create(1000);
+        nodes.setInt(996, 123);
+        geometry.setInt(996, 456);
+        assertTrue(nodes.getSegments() > 1);
+
+        dir.loadMMap(3);
+        assertEquals(123, nodes.getInt(996));
+        assertEquals(456, geometry.getInt(996));
+        dir.clear();
+        Helper.removeDir(new File(location));
+    }
+}
@@ -35,6 +35,7 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -594,6 +595,52 @@ public class LocationIndexTreeTest {
         return graph;
     }
 
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    public void testFindClosestBatch(boolean parallel) {
+        long seed = System.nanoTime();
+        Random rnd = new Random(seed);
+        BaseGraph graph = new BaseGraph.Builder(encodingManager).create();
+        GHUtility.buildRandomGraph(graph, rnd, 500, 2.2, true, speedEnc, 60d, 0.8, 0.8);
+        LocationIndexTree index = createIndexNoPrepare(graph, 100);
+        index.prepareIndex();
+        // a filter that skips some edges, so the search has to look at more tiles for some points
+        EdgeFilter filter = edge -> edge.getEdge() % 3 != 0;
+
+        int points = 2000;
+        double[] lats = new double[points];
+        double[] lons = new double[points];
+        for (int i = 0; i < points; i++) {
+            // some points are outside the bounds of the graph and some are equal
+            lats[i] = i % 10 == 0 && i > 0 ? lats[i - 1] : 49.398 + rnd.nextDouble() * 0.014;
+            lons[i] = i % 10 == 0 && i > 0 ? lons[i - 1] : 9.698 + rnd.nextDouble() * 0.014;
+        }
+        ForkJoinPool pool = parallel ? new ForkJoinPool(4) : null;
+        Snap[] snaps;
+        try {
+            snaps = index.findClosestBatch(lats, lons, filter, pool);
+        } finally {
+            if (pool != null)
+                pool.shutdown();
+        }
+        assertEquals(points, snaps.length);
+        for (int i = 0; i < points; i++) {
+            Snap expected = index.findClosest(lats[i], lons[i], filter);
+            String msg = "seed: " + seed + ", point: " + i;
+            assertEquals(lats[i], snaps[i].getQueryPoint().lat, msg);
+            assertEquals(expected.isValid(), snaps[i].isValid(), msg);
+            if (!expected.isValid())
+                continue;
+            assertEquals(expected.getClosestEdge().getEdge(), snaps[i].getClosestEdge().getEdge(), msg);
+            assertEquals(expected.getClosestNode(), snaps[i].getClosestNode(), msg);
+            assertEquals(expected.getWayIndex(), snaps[i].getWayIndex(), msg);
+            assertEquals(expected.getSnappedPosition(), snaps[i].getSnappedPosition(), msg);
+            assertEquals(expected.getQueryDistance(), snaps[i].getQueryDistance(), 1.e-6, msg);
+        }
+        assertEquals(0, index.findClosestBatch(new double[0], new double[0], filter).length);
+        graph.close();
+    }
+
     @Test
     public void testDifferentVehicles() {
         BooleanEncodedValue carAccessEnc = new SimpleBooleanEncodedValue("car_access", true);
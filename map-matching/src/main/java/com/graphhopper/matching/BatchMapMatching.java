@@ -0,0 +1,213 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.matching;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.graphhopper.util.StopWatch;
+import com.graphhopper.util.shapes.GHPoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Matches many traces concurrently, e.g. to re-match all trips of a day. Every thread uses its own
+ * {@link MapMatching} instance, because it is not thread-safe, but all instances can share the same graph and location
+ * index as long as they are only read.
+ * <p>
+ * The result is written as newline-delimited JSON with one line per trace, in the order in which the traces were
+ * finished. The edges are stored as arrays of edge ids and of the adjacent node in the direction of travel, which
+ * is much more compact than one object per edge:
+ * <pre>
+ * {"trace":"trip1.gpx","observations":120,"gpx_length":1520.3,"match_length":1498.2,"time":181000,"edge_ids":[...],"adj_nodes":[...]}
+ * {"trace":"trip2.gpx","message":"Sequence is broken for submitted track at time step 12. ..."}
+ * </pre>
+ */
+public class BatchMapMatching {
+    private static final Logger logger = LoggerFactory.getLogger(BatchMapMatching.class);
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Supplier<MapMatching> mapMatchingFactory;
+    private final int threads;
+
+    /**
+     * Reads the observations of a single trace
+     */
+    public interface TraceReader {
+        List<Observation> read(File file) throws IOException;
+    }
+
+    /**
+     * @param mapMatchingFactory is called once per thread, so it must return a new instance on every call
+     */
+    public BatchMapMatching(Supplier<MapMatching> mapMatchingFactory, int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("At least one thread is required, threads: " + threads);
+        this.mapMatchingFactory = mapMatchingFactory;
+        this.threads = threads;
+    }
+
+    /**
+     * Matches the given traces and writes the results to the given output, which is not closed. Traces that cannot
+     * be read or matched are counted as failed and do not stop the other ones.
+     */
+    public Statistics match(List<File> traces, TraceReader reader, OutputStream output) {
+        Statistics statistics = new Statistics();
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+        ThreadLocal<MapMatching> mapMatching = ThreadLocal.withInitial(mapMatchingFactory);
+        StopWatch sw = StopWatch.started();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>(traces.size());
+            for (File trace : traces)
+                futures.add(executor.submit(() -> {
+                    String line = matchTrace(trace, reader, mapMatching.get(), statistics);
+                    synchronized (writer) {
+                        writer.write(line);
+                        writer.write('\n');
+                    }
+                    return null;
+                }));
+            for (Future<?> future : futures)
+                future.get();
+            writer.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while matching the traces", e);
+        } catch (ExecutionException e) {
+            // only writing the output can fail here, the errors of the single traces are caught
+            throw new RuntimeException("Could not write the map matching result", e.getCause());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            executor.shutdownNow();
+        }
+        statistics.seconds = sw.stop().getSeconds();
+        logger.info("map matching of {} traces with {} threads finished, {}", traces.size(), threads, statistics);
+        return statistics;
+    }
+
+    private String matchTrace(File trace, TraceReader reader, MapMatching mapMatching, Statistics statistics) throws IOException {
+        ObjectNode json = objectMapper.createObjectNode();
+        json.put("trace", trace.getName());
+        try {
+            List<Observation> observations = reader.read(trace);
+            MatchResult result = mapMatching.match(observations);
+            json.put("observations", observations.size());
+            json.put("gpx_length", result.getGpxEntriesLength());
+            json.put("match_length", result.getMatchLength());
+            json.put("time", result.getMatchMillis());
+            ArrayNode edgeIds = json.putArray("edge_ids");
+            ArrayNode adjNodes = json.putArray("adj_nodes");
+            for (EdgeMatch edgeMatch : result.getEdgeMatches()) {
+                edgeIds.add(edgeMatch.getEdgeState().getEdge());
+                adjNodes.add(edgeMatch.getEdgeState().getAdjNode());
+            }
+            statistics.matched.incrementAndGet();
+            statistics.observations.addAndGet(observations.size());
+            statistics.edges.addAndGet(result.getEdgeMatches().size());
+        } catch (Exception e) {
+            logger.debug("could not match " + trace, e);
+            json.removeAll();
+            json.put("trace", trace.getName());
+            json.put("message", String.valueOf(e.getMessage()));
+            statistics.failed.incrementAndGet();
+        }
+        return objectMapper.writeValueAsString(json);
+    }
+
+    /**
+     * Reads a trace with one observation per line in the form 'lat,lon'. Further columns like a timestamp are
+     * ignored, as are empty lines and a header line that does not start with a number.
+     */
+    public static List<Observation> readCSV(File file) throws IOException {
+        List<Observation> observations = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty())
+                    continue;
+                String[] columns = line.split("[,;]");
+                if (columns.length < 2)
+                    throw new IllegalArgumentException("Line " + lineNumber + " must contain at least the latitude and longitude: " + line);
+                double lat, lon;
+                try {
+                    lat = Double.parseDouble(columns[0].trim());
+                    lon = Double.parseDouble(columns[1].trim());
+                } catch (NumberFormatException e) {
+                    if (lineNumber == 1)
+                        continue;
+                    throw new IllegalArgumentException("Line " + lineNumber + " contains an invalid coordinate: " + line);
+                }
+                observations.add(new Observation(new GHPoint(lat, lon)));
+            }
+        }
+        return observations;
+    }
+
+    public static class Statistics {
+        private final AtomicInteger matched = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final AtomicLong observations = new AtomicLong();
+        private final AtomicLong edges = new AtomicLong();
+        private float seconds;
+
+        public int getMatched() {
+            return matched.get();
+        }
+
+        public int getFailed() {
+            return failed.get();
+        }
+
+        public long getObservations() {
+            return observations.get();
+        }
+
+        public long getEdges() {
+            return edges.get();
+        }
+
+        public float getSeconds() {
+            return seconds;
+        }
+
+        @Override
+        public String toString() {
+            float traces = getMatched() + getFailed();
+            return "matched: " + getMatched() + ", failed: " + getFailed() + ", observations: " + getObservations()
+                    + ", edges: " + getEdges() + ", took: " + seconds + "s"
+                    + (seconds > 0 ? ", traces/s: " + traces / seconds + ", observations/s: " + getObservations() / seconds : "");
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.matching;
+
+import com.graphhopper.routing.Dijkstra;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.PathExtractor;
+import com.graphhopper.routing.SearchState;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeIteratorState;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.graphhopper.routing.SearchState.NO_SLOT;
+import static com.graphhopper.routing.SearchState.NO_TRAVERSAL_ID;
+import static com.graphhopper.util.EdgeIterator.ANY_EDGE;
+
+/**
+ * An edge-based Dijkstra that calculates the paths from one map matching candidate to all candidates of the next time
+ * step using a single search, instead of running one bidirectional search for every pair of candidates. Just like
+ * {@link com.graphhopper.routing.DijkstraBidirectionRef#calcPath(int, int, int, int)} the start and target edges can
+ * be restricted. The search does not continue along paths that are longer than the given maximum distance, so targets
+ * that can only be reached using a longer path are not found.
+ */
+public class EdgeBasedDijkstraOneToMany extends Dijkstra {
+    private int fromOutEdge = ANY_EDGE;
+    private int[] toNodes;
+    private int[] toInEdges;
+    private int[] targetSlots;
+    private int remainingTargets;
+    private double maxDistance = Double.POSITIVE_INFINITY;
+    // the distance of the path to each slot of the search state
+    private double[] distances = new double[64];
+
+    public EdgeBasedDijkstraOneToMany(Graph graph, Weighting weighting) {
+        super(graph, weighting, TraversalMode.EDGE_BASED);
+    }
+
+    /**
+     * Paths that are longer than the given distance [m] are not considered
+     */
+    public EdgeBasedDijkstraOneToMany setMaxDistance(double maxDistance) {
+        this.maxDistance = maxDistance;
+        return this;
+    }
+
+    /**
+     * @param fromOutEdge the first edge of all paths, or {@link EdgeIterator#ANY_EDGE}
+     * @param toInEdges   the last edge of the path to the target node at the same index, or
+     *                    {@link EdgeIterator#ANY_EDGE}
+     * @return the paths to the given target nodes in the same order. Paths to targets that cannot be reached are not
+     * found.
+     */
+    public List<Path> calcPaths(int from, int fromOutEdge, int[] toNodes, int[] toInEdges) {
+        if (toNodes.length != toInEdges.length)
+            throw new IllegalArgumentException("There must be one incoming edge per target node, use ANY_EDGE to not restrict it");
+        checkAlreadyRun();
+        setupFinishTime();
+        this.fromOutEdge = fromOutEdge;
+        this.toNodes = toNodes;
+        this.toInEdges = toInEdges;
+        targetSlots = new int[toNodes.length];
+        Arrays.fill(targetSlots, NO_SLOT);
+        remainingTargets = toNodes.length;
+        List<Path> paths = new ArrayList<>(toNodes.length);
+        state = SearchState.acquire();
+        try {
+            if (remainingTargets > 0) {
+                // the start does not belong to an edge and has no traversal id
+                int startSlot = state.add(NO_TRAVERSAL_ID, EdgeIterator.NO_EDGE, from, NO_SLOT, 0, 0);
+                distances[startSlot] = 0;
+                runAlgo();
+            }
+            for (int targetSlot : targetSlots)
+                paths.add(targetSlot == NO_SLOT ? createEmptyPath() : PathExtractor.extractPath(graph, weighting, state, targetSlot));
+            return paths;
+        } finally {
+            state.release();
+        }
+    }
+
+    @Override
+    public Path calcPath(int from, int to) {
+        return calcPaths(from, ANY_EDGE, new int[]{to}, new int[]{ANY_EDGE}).get(0);
+    }
+
+    @Override
+    protected boolean accept(EdgeIteratorState iter, int prevOrNextEdgeId) {
+        if (prevOrNextEdgeId == EdgeIterator.NO_EDGE && fromOutEdge != ANY_EDGE && iter.getEdge() != fromOutEdge)
+            return false;
+        return distances[currSlot] + iter.getDistance() <= maxDistance && super.accept(iter, prevOrNextEdgeId);
+    }
+
+    @Override
+    protected void updateBestPath(EdgeIteratorState edgeState, int slot, int traversalId) {
+        if (slot >= distances.length)
+            distances = Arrays.copyOf(distances, Math.max(2 * distances.length, slot + 1));
+        distances[slot] = distances[state.getParent(slot)] + edgeState.getDistance();
+    }
+
+    @Override
+    protected boolean finished() {
+        int node = state.getAdjNode(currSlot);
+        int edge = state.getEdge(currSlot);
+        // the start only counts as target if the start edge is not restricted, just like for the bidirectional search
+        if (edge == EdgeIterator.NO_EDGE && fromOutEdge != ANY_EDGE)
+            return false;
+        for (int i = 0; i < toNodes.length; i++) {
+            if (targetSlots[i] == NO_SLOT && toNodes[i] == node && (toInEdges[i] == ANY_EDGE || toInEdges[i] == edge)) {
+                // weights are never negative, so the first time we poll a slot its weight is final
+                targetSlots[i] = currSlot;
+                remainingTargets--;
+            }
+        }
+        return remainingTargets == 0;
+    }
+}
@@ -23,6 +23,12 @@ package com.graphhopper.matching;
  */
 public class HmmProbabilities {
 
+    /**
+     * Transitions with a transition metric of more than this many times beta are not considered, because they are
+     * less likely than a candidate that is 40 sigma away from its observation
+     */
+    private static final double MAX_TRANSITION_METRIC_BETAS = 1000;
+
     private final double sigma;
     private final double beta;
 
@@ -62,4 +68,15 @@ public class HmmProbabilities {
         return Distributions.logExponentialDistribution(beta, transitionMetric);
     }
 
+    /**
+     * Returns the length [m] of the shortest route between two consecutive map matching candidates above which the
+     * transition is practically impossible, so there is no need to search for longer routes.
+     *
+     * @param linearDistance Linear distance [m] between two consecutive GPS
+     *                       measurements.
+     */
+    public double maxRouteLength(double linearDistance) {
+        return linearDistance + MAX_TRANSITION_METRIC_BETAS * beta;
+    }
+
 }
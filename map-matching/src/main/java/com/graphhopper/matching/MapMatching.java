@@ -21,7 +21,6 @@ import com.carrotsearch.hppc.IntHashSet;
 import com.graphhopper.GraphHopper;
 import com.graphhopper.config.Profile;
 import com.graphhopper.routing.AStarBidirection;
-import com.graphhopper.routing.DijkstraBidirectionRef;
 import com.graphhopper.routing.Path;
 import com.graphhopper.routing.ev.BooleanEncodedValue;
 import com.graphhopper.routing.ev.Subnetwork;
@@ -131,7 +130,22 @@ public class MapMatching {
 
             @Override
             public List<Path> calcPaths(QueryGraph queryGraph, int fromNode, int fromOutEdge, int[] toNodes, int[] toInEdges) {
+                return calcPaths(queryGraph, fromNode, fromOutEdge, toNodes, toInEdges, Double.POSITIVE_INFINITY);
+            }
+
+            @Override
+            public List<Path> calcPaths(QueryGraph queryGraph, int fromNode, int fromOutEdge, int[] toNodes, int[] toInEdges, double maxDistance) {
                 assert (toNodes.length == toInEdges.length);
+                if (landmarks == null || Double.isFinite(maxDistance)) {
+                    // a single search for all targets is faster than one bidirectional search per target, because
+                    // the targets are usually close to each other. with a maximum distance this search only explores
+                    // the area around the source, so we use it with landmarks as well. they only pay off for the
+                    // searches without a bound.
+                    EdgeBasedDijkstraOneToMany dijkstra = new EdgeBasedDijkstraOneToMany(queryGraph, queryGraph.wrapWeighting(weighting));
+                    dijkstra.setMaxDistance(maxDistance);
+                    dijkstra.setMaxVisitedNodes(maxVisitedNodes);
+                    return dijkstra.calcPaths(fromNode, fromOutEdge, toNodes, toInEdges);
+                }
                 List<Path> result = new ArrayList<>();
                 for (int i = 0; i < toNodes.length; i++) {
                     result.add(calcOnePath(queryGraph, fromNode, toNodes[i], fromOutEdge, toInEdges[i]));
@@ -141,28 +155,12 @@ public class MapMatching {
 
             private Path calcOnePath(QueryGraph queryGraph, int fromNode, int toNode, int fromOutEdge, int toInEdge) {
                 Weighting queryGraphWeighting = queryGraph.wrapWeighting(weighting);
-                if (landmarks != null) {
-                    AStarBidirection aStarBidirection = new AStarBidirection(queryGraph, queryGraphWeighting, TraversalMode.EDGE_BASED) {
-                        @Override
-                        protected void initCollections(int size) {
-                            super.initCollections(50);
-                        }
-                    };
-                    int activeLM = Math.min(8, landmarks.getLandmarkCount());
-                    LMApproximator lmApproximator = LMApproximator.forLandmarks(queryGraph, queryGraphWeighting, landmarks, activeLM);
-                    aStarBidirection.setApproximation(lmApproximator);
-                    aStarBidirection.setMaxVisitedNodes(maxVisitedNodes);
-                    return aStarBidirection.calcPath(fromNode, toNode, fromOutEdge, toInEdge);
-                } else {
-                    DijkstraBidirectionRef dijkstraBidirectionRef = new DijkstraBidirectionRef(queryGraph, queryGraphWeighting, TraversalMode.EDGE_BASED) {
-                        @Override
-                        protected void initCollections(int size) {
-                            super.initCollections(50);
-                        }
-                    };
-                    dijkstraBidirectionRef.setMaxVisitedNodes(maxVisitedNodes);
-                    return dijkstraBidirectionRef.calcPath(fromNode, toNode, fromOutEdge, toInEdge);
-                }
+                AStarBidirection aStarBidirection = new AStarBidirection(queryGraph, queryGraphWeighting, TraversalMode.EDGE_BASED);
+                int activeLM = Math.min(8, landmarks.getLandmarkCount());
+                LMApproximator lmApproximator = LMApproximator.forLandmarks(queryGraph, queryGraphWeighting, landmarks, activeLM);
+                aStarBidirection.setApproximation(lmApproximator);
+                aStarBidirection.setMaxVisitedNodes(maxVisitedNodes);
+                return aStarBidirection.calcPath(fromNode, toNode, fromOutEdge, toInEdge);
             }
 
             @Override
@@ -415,7 +413,7 @@ public class MapMatching {
             int fromOutEdge = from.isOnDirectedEdge() ? from.getOutgoingVirtualEdge().getEdge() : EdgeIterator.ANY_EDGE;
             int[] toNodes = nextTimeStep.candidates.stream().mapToInt(c -> c.getSnap().getClosestNode()).toArray();
             int[] toInEdges = nextTimeStep.candidates.stream().mapToInt(to -> to.isOnDirectedEdge() ? to.getIncomingVirtualEdge().getEdge() : EdgeIterator.ANY_EDGE).toArray();
-            List<Path> paths = router.calcPaths(queryGraph, fromNode, fromOutEdge, toNodes, toInEdges);
+            List<Path> paths = router.calcPaths(queryGraph, fromNode, fromOutEdge, toNodes, toInEdges, probabilities.maxRouteLength(linearDistance));
             for (int i = 0; i < nextTimeStep.candidates.size(); i++) {
                 State to = nextTimeStep.candidates.get(i);
                 Path path = paths.get(i);
@@ -569,6 +567,14 @@ public class MapMatching {
 
         List<Path> calcPaths(QueryGraph queryGraph, int fromNode, int fromOutEdge, int[] toNodes, int[] toInEdges);
 
+        /**
+         * Like {@link #calcPaths(QueryGraph, int, int, int[], int[])}, but paths that are longer than the given
+         * distance [m] are of no interest, so they do not have to be found.
+         */
+        default List<Path> calcPaths(QueryGraph queryGraph, int fromNode, int fromOutEdge, int[] toNodes, int[] toInEdges, double maxDistance) {
+            return calcPaths(queryGraph, fromNode, fromOutEdge, toNodes, toInEdges);
+        }
+
         Weighting getWeighting();
 
         default long getVisitedNodes() {
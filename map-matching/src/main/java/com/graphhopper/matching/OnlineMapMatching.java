@@ -0,0 +1,148 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.matching;
+
+import com.graphhopper.util.EdgeIteratorState;
+
+import java.util.*;
+
+/**
+ * Matches a stream of observations with bounded memory, e.g. for very long tracks or for observations that arrive
+ * over time. The observations are matched in windows of a fixed size using {@link MapMatching}, so a new query graph
+ * is created for each window. The result of the observations at the end of each window is not final yet, because
+ * it still depends on the observations that follow. Therefore only the edges up to the last observation that is at
+ * least 'overlap' observations away from the end of the window are returned, and the next window starts at this
+ * observation.
+ * <p>
+ * The result can differ from the one of {@link MapMatching#match} for the entire track, but the differences vanish
+ * for a large enough overlap.
+ */
+public class OnlineMapMatching {
+    private final MapMatching mapMatching;
+    private final int windowSize;
+    private final int overlap;
+    private final List<Observation> window = new ArrayList<>();
+    // the edge at the start of the current window and the states on it that were matched in the previous window
+    private EdgeMatch pending;
+
+    /**
+     * @param windowSize the number of observations that are matched at once
+     * @param overlap    the number of observations at the end of each window for which the result is not returned
+     */
+    public OnlineMapMatching(MapMatching mapMatching, int windowSize, int overlap) {
+        if (overlap < 0 || windowSize < overlap + 2)
+            throw new IllegalArgumentException("The window size must be at least the overlap + 2, window size: " + windowSize + ", overlap: " + overlap);
+        this.mapMatching = mapMatching;
+        this.windowSize = windowSize;
+        this.overlap = overlap;
+    }
+
+    /**
+     * @return the edges that were matched finally because of the new observation, in the order they were traversed.
+     * This is usually empty, or it contains the edges for the observations of an entire window.
+     */
+    public List<EdgeMatch> add(Observation observation) {
+        window.add(observation);
+        List<EdgeMatch> result = new ArrayList<>();
+        while (window.size() >= windowSize)
+            matchWindow(result);
+        return result;
+    }
+
+    /**
+     * Matches the remaining observations. Call this once after the last observation was added.
+     *
+     * @return the edges for all observations that were not returned by {@link #add} yet
+     */
+    public List<EdgeMatch> finish() {
+        List<EdgeMatch> result = new ArrayList<>();
+        if (!window.isEmpty()) {
+            addEdgeMatches(mapMatching.match(window).getEdgeMatches(), result);
+            window.clear();
+        }
+        if (pending != null)
+            result.add(pending);
+        pending = null;
+        return result;
+    }
+
+    private void matchWindow(List<EdgeMatch> result) {
+        List<EdgeMatch> edgeMatches = mapMatching.match(window).getEdgeMatches();
+        Map<Observation, Integer> indices = new IdentityHashMap<>();
+        for (int i = 0; i < window.size(); i++)
+            indices.put(window.get(i), i);
+
+        // find the last observation in the final part of the window, the next window starts at this observation
+        int limit = window.size() - overlap;
+        int restart = 0;
+        int restartEdgeMatch = -1;
+        for (int i = 0; i < edgeMatches.size(); i++) {
+            for (State state : edgeMatches.get(i).getStates()) {
+                int index = indices.get(state.getEntry());
+                if (index < limit && index > restart) {
+                    restart = index;
+                    restartEdgeMatch = i;
+                }
+            }
+        }
+        if (restartEdgeMatch < 0) {
+            // none of the observations in the final part of the window except the first one was matched to an edge,
+            // usually because they are so close to the first one that they were filtered, so we skip them
+            window.subList(1, limit).clear();
+            return;
+        }
+
+        addEdgeMatches(edgeMatches.subList(0, restartEdgeMatch), result);
+        // the states that come before the restart observation on its edge are already final, but the edge might be
+        // extended by the next window
+        EdgeMatch restartMatch = edgeMatches.get(restartEdgeMatch);
+        List<State> finalStates = new ArrayList<>();
+        for (State state : restartMatch.getStates())
+            if (indices.get(state.getEntry()) < restart)
+                finalStates.add(state);
+        addEdgeMatches(Collections.singletonList(new EdgeMatch(restartMatch.getEdgeState(), finalStates)), result);
+        pending = result.remove(result.size() - 1);
+        window.subList(0, restart).clear();
+    }
+
+    /**
+     * Adds the given edge matches to the result, but if the first one is on the same edge as the pending edge match
+     * their states are merged.
+     */
+    private void addEdgeMatches(List<EdgeMatch> edgeMatches, List<EdgeMatch> result) {
+        for (EdgeMatch edgeMatch : edgeMatches) {
+            if (pending != null) {
+                if (equalEdges(pending.getEdgeState(), edgeMatch.getEdgeState())) {
+                    List<State> states = new ArrayList<>(pending.getStates());
+                    states.addAll(edgeMatch.getStates());
+                    edgeMatch = new EdgeMatch(edgeMatch.getEdgeState(), states);
+                } else {
+                    result.add(pending);
+                }
+                pending = null;
+            }
+            result.add(edgeMatch);
+        }
+    }
+
+    private static boolean equalEdges(EdgeIteratorState edge1, EdgeIteratorState edge2) {
+        return edge1.getEdge() == edge2.getEdge()
+                && edge1.getBaseNode() == edge2.getBaseNode()
+                && edge1.getAdjNode() == edge2.getAdjNode();
+    }
+}
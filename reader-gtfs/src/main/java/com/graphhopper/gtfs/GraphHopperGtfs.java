@@ -18,8 +18,6 @@
 
 package com.graphhopper.gtfs;
 
-import com.conveyal.gtfs.GTFSFeed;
-import com.conveyal.gtfs.model.Stop;
 import com.conveyal.gtfs.model.Transfer;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Multimaps;
@@ -41,7 +39,6 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.time.Duration;
 import java.time.Instant;
-import java.time.LocalDate;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -76,16 +73,9 @@ public class GraphHopperGtfs extends GraphHopper {
             ptGraph.loadExisting();
             stopIndex.loadExisting();
             if (ghConfig.getBool("gtfs.trip_based", false)) {
-                for (String trafficDayString : ghConfig.getString("gtfs.schedule_day", null).split(",")) {
-                    LocalDate trafficDay = LocalDate.parse(trafficDayString);
-                    LOGGER.info("Loading trip-based transfers for pt router. Schedule day: {}", trafficDay);
-                    gtfsStorage.tripTransfers.getTripTransfers().put(trafficDay, gtfsStorage.deserializeTripTransfersMap("trip_transfers_" + trafficDayString));
-                }
-                for (Map.Entry<String, GTFSFeed> entry : this.gtfsStorage.getGtfsFeeds().entrySet()) {
-                    for (Stop stop : entry.getValue().stops.values()) {
-                        gtfsStorage.tripTransfers.getPatternBoardings(new GtfsStorage.FeedIdWithStopId(entry.getKey(), stop.stop_id));
-                    }
-                }
+                if (!gtfsStorage.loadTimetable())
+                    throw new IllegalStateException("The timetable for the trip-based router is missing, import the graph with gtfs.trip_based: true");
+                LOGGER.info("Loaded {}, {}", gtfsStorage.getTimetable(), gtfsStorage.getTripTransfers());
             }
         } else {
             ensureWriteAccess();
@@ -122,15 +112,11 @@ public class GraphHopperGtfs extends GraphHopper {
                 });
                 interpolateTransfers(allReaders, allTransfers);
                 if (ghConfig.getBool("gtfs.trip_based", false)) {
+                    gtfsStorage.createTimetable();
                     ArrayListMultimap<Integer, GtfsStorage.FeedIdWithStopId> stopsForStationNode = Multimaps.invertFrom(Multimaps.forMap(gtfsStorage.getStationNodes()), ArrayListMultimap.create());
-                    for (String trafficDayString : ghConfig.getString("gtfs.schedule_day", null).split(",")) {
-                        LocalDate trafficDay = LocalDate.parse(trafficDayString);
-                        LOGGER.info("Computing trip-based transfers for pt router. Schedule day: {}", trafficDay);
-                        Map<Trips.TripAtStopTime, Collection<Trips.TripAtStopTime>> tripTransfersMap = gtfsStorage.tripTransfers.getTripTransfers(trafficDay);
-                        gtfsStorage.tripTransfers.findAllTripTransfersInto(tripTransfersMap, trafficDay, allTransfers, stopsForStationNode);
-                        LOGGER.info("Writing. Schedule day: {}", trafficDay);
-                        gtfsStorage.serializeTripTransfersMap("trip_transfers_" + trafficDayString, tripTransfersMap);
-                    }
+                    LOGGER.info("Computing trip-based transfers for pt router");
+                    gtfsStorage.createTripTransfers(allTransfers, stopsForStationNode);
+                    LOGGER.info("Created {}", gtfsStorage.getTripTransfers());
                 }
             } catch (Exception e) {
                 throw new RuntimeException("Error while constructing transit network. Is your GTFS file valid? Please check log for possible causes.", e);
@@ -30,6 +30,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.MappingIterator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SequenceWriter;
+import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.HashMultimap;
 import com.graphhopper.storage.Directory;
 import com.graphhopper.storage.index.LineIntIndex;
@@ -53,7 +54,10 @@ public class GtfsStorage {
 
 	private LineIntIndex stopIndex;
 	private PtGraph ptGraph;
-	public Trips tripTransfers;
+	private Trips trips;
+	private Timetable timetable;
+	private TripTransfers tripTransfers;
+	private RaptorData raptorData;
 
 	public void setStopIndex(LineIntIndex stopIndex) {
 		this.stopIndex = stopIndex;
@@ -297,12 +301,68 @@ public class GtfsStorage {
 		LOGGER.info("Calendar range covered by all feeds: {} till {}", latestStartDate, earliestEndDate);
 		faresByFeed = new HashMap<>();
 		this.gtfsFeeds.forEach((feed_id, feed) -> faresByFeed.put(feed_id, feed.fares));
-		tripTransfers = new Trips(this);
+	}
+
+	/**
+	 * The trips are only built when needed, e.g. to compute the trip transfers at import. The trip-based router
+	 * uses the {@link Timetable} instead.
+	 */
+	public synchronized Trips getTrips() {
+		if (trips == null)
+			trips = new Trips(this);
+		return trips;
+	}
+
+	void createTimetable() {
+		timetable = new Timetable(dir).build(getTrips(), gtfsFeeds);
+		timetable.flush();
+		LOGGER.info("Created {}", timetable);
+	}
+
+	void createTripTransfers(Map<String, Transfers> transfers, ArrayListMultimap<Integer, FeedIdWithStopId> stopsForStationNode) {
+		tripTransfers = new TripTransfers(dir).build(timetable, this, transfers, stopsForStationNode);
+		tripTransfers.flush();
+		LOGGER.info("Created {}", tripTransfers);
+	}
+
+	boolean loadTimetable() {
+		Timetable timetable = new Timetable(dir);
+		if (!timetable.loadExisting())
+			return false;
+		TripTransfers tripTransfers = new TripTransfers(dir);
+		if (!tripTransfers.loadExisting())
+			throw new IllegalStateException("The timetable exists but not the trip transfers");
+		this.timetable = timetable;
+		this.tripTransfers = tripTransfers;
+		return true;
+	}
+
+	public Timetable getTimetable() {
+		return timetable;
+	}
+
+	public TripTransfers getTripTransfers() {
+		return tripTransfers;
+	}
+
+	/**
+	 * The arrays of the RAPTOR router are derived from the timetable when they are first needed.
+	 */
+	public synchronized RaptorData getRaptorData() {
+		if (raptorData == null) {
+			raptorData = new RaptorData(this);
+			LOGGER.info("Created {}", raptorData);
+		}
+		return raptorData;
 	}
 
 	public void close() {
 		if (!isClosed) {
 			isClosed = true;
+			if (timetable != null)
+				timetable.close();
+			if (tripTransfers != null)
+				tripTransfers.close();
 			data.close();
 			for (GTFSFeed feed : gtfsFeeds.values()) {
 				feed.close();
@@ -345,45 +405,6 @@ public class GtfsStorage {
 		}
 	}
 
-	public void serializeTripTransfersMap(String filename, Map<Trips.TripAtStopTime, Collection<Trips.TripAtStopTime>> data) {
-		try (ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(Paths.get(dir.getLocation() + filename))))) {
-			oos.writeInt(data.size());
-			for (Map.Entry<Trips.TripAtStopTime, Collection<Trips.TripAtStopTime>> entry : data.entrySet()) {
-				oos.writeInt(entry.getKey().tripIdx);
-				oos.writeInt(entry.getKey().stop_sequence);
-				oos.writeInt(entry.getValue().size());
-				for (Trips.TripAtStopTime tripAtStopTime : entry.getValue()) {
-					oos.writeInt(tripAtStopTime.tripIdx);
-					oos.writeInt(tripAtStopTime.stop_sequence);
-				}
-			}
-		} catch (IOException e) {
-			throw new RuntimeException(e);
-		}
-	}
-
-	public Map<Trips.TripAtStopTime, Collection<Trips.TripAtStopTime>> deserializeTripTransfersMap(String filename) {
-		try (FileInputStream in = new FileInputStream(dir.getLocation() + filename)) {
-			ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(in));
-			int size = ois.readInt();
-			Map<Trips.TripAtStopTime, Collection<Trips.TripAtStopTime>> result = new TreeMap<>();
-			for (int i = 0; i < size; i++) {
-				Trips.TripAtStopTime origin = new Trips.TripAtStopTime(ois.readInt(), ois.readInt());
-				int nDestinations = ois.readInt();
-				List<Trips.TripAtStopTime> destinations = new ArrayList<>(nDestinations);
-				for (int j = 0; j < nDestinations; j++) {
-					int tripIdxTo = ois.readInt();
-					int stop_sequenceTo = ois.readInt();
-					destinations.add(new Trips.TripAtStopTime(tripIdxTo, stop_sequenceTo));
-				}
-				result.put(origin, destinations);
-			}
-			return result;
-		} catch (IOException e) {
-			throw new RuntimeException(e);
-		}
-	}
-
 	public void serialize(String filename, IntObjectHashMap<int[]> data) {
 		try (ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(Paths.get(dir.getLocation() + filename))))) {
 			oos.writeInt(data.size());
@@ -65,7 +65,18 @@ public class MultiCriteriaLabelSetting {
 
     public Iterable<Label> calcLabels(Label.NodeId from, Instant startTime) {
         this.startTime = startTime.toEpochMilli();
-        return () -> Spliterators.iterator(new MultiCriteriaLabelSettingSpliterator(from));
+        return () -> Spliterators.iterator(new MultiCriteriaLabelSettingSpliterator(Collections.singletonMap(from, 0L)));
+    }
+
+    /**
+     * Starts at several nodes at once, e.g. the platforms found by a street-only search, so that the walk to them
+     * does not have to be repeated for every start time.
+     *
+     * @param streetTimes the time in milliseconds it takes to reach each start node by street
+     */
+    public Iterable<Label> calcLabels(Map<Label.NodeId, Long> streetTimes, Instant startTime) {
+        this.startTime = startTime.toEpochMilli();
+        return () -> Spliterators.iterator(new MultiCriteriaLabelSettingSpliterator(streetTimes));
     }
 
     void setBetaTransfers(double betaTransfers) {
@@ -82,13 +93,15 @@ public class MultiCriteriaLabelSetting {
 
     private class MultiCriteriaLabelSettingSpliterator extends Spliterators.AbstractSpliterator<Label> {
 
-        MultiCriteriaLabelSettingSpliterator(Label.NodeId from) {
+        MultiCriteriaLabelSettingSpliterator(Map<Label.NodeId, Long> streetTimes) {
             super(0, 0);
-            Label label = new Label(startTime, null, from, 0, null, 0, 0L, 0, false, null);
-            ArrayList<Label> labels = new ArrayList<>(1);
-            labels.add(label);
-            fromMap.put(from, labels);
-            fromHeap.add(label);
+            streetTimes.forEach((from, streetTime) -> {
+                Label label = new Label(startTime + (reverse ? -1 : 1) * streetTime, null, from, 0, null, streetTime, 0L, 0, false, null);
+                ArrayList<Label> labels = new ArrayList<>(1);
+                labels.add(label);
+                fromMap.put(from, labels);
+                fromHeap.add(label);
+            });
         }
 
         @Override
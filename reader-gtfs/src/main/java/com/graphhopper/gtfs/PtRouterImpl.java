@@ -107,6 +107,14 @@ public final class PtRouterImpl implements PtRouter {
             return new PtRouterImpl(config, translationMap, baseGraph, encodingManager, locationIndex, gtfsStorage, RealtimeFeed.fromProtobuf(gtfsStorage, this.transfers, realtimeFeeds), new PathDetailsBuilderFactory());
         }
 
+        public PtRouter createWith(RealtimeFeed realtimeFeed) {
+            return new PtRouterImpl(config, translationMap, baseGraph, encodingManager, locationIndex, gtfsStorage, realtimeFeed, new PathDetailsBuilderFactory());
+        }
+
+        public RealtimeFeedUpdater createRealtimeFeedUpdater() {
+            return new RealtimeFeedUpdater(gtfsStorage, transfers);
+        }
+
         public PtRouter createWithoutRealtimeFeed() {
             return new PtRouterImpl(config, translationMap, baseGraph, encodingManager, locationIndex, gtfsStorage, RealtimeFeed.empty(), new PathDetailsBuilderFactory());
         }
@@ -0,0 +1,68 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.gtfs;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.GraphHopperConfig;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.index.LocationIndex;
+import com.graphhopper.util.TranslationMap;
+import com.graphhopper.util.details.PathDetailsBuilderFactory;
+
+import jakarta.inject.Inject;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A {@link PtRouter} with the round-based {@link RaptorRouter}. Like the trip-based router it needs the timetable
+ * of a graph imported with gtfs.trip_based: true. The profile queries are split across gtfs.raptor.threads threads.
+ */
+public final class PtRouterRaptorImpl extends AbstractTimetablePtRouter<RaptorRouter.Journey> {
+
+    // shared by all requests, so the profile queries do not compete with other users of the common pool
+    private final ForkJoinPool pool;
+
+    @Inject
+    public PtRouterRaptorImpl(GraphHopper graphHopper, GraphHopperConfig config, TranslationMap translationMap, BaseGraph baseGraph, EncodingManager encodingManager, LocationIndex locationIndex, GtfsStorage gtfsStorage, PathDetailsBuilderFactory pathDetailsBuilderFactory) {
+        super(graphHopper, config, translationMap, baseGraph, encodingManager, locationIndex, gtfsStorage, pathDetailsBuilderFactory);
+        this.pool = new ForkJoinPool(config.getInt("gtfs.raptor.threads", Runtime.getRuntime().availableProcessors()));
+    }
+
+    @Override
+    protected List<RaptorRouter.Journey> routeStations(TripBasedRouter.Parameters parameters) {
+        return new RaptorRouter(gtfsStorage, pool).route(parameters);
+    }
+
+    @Override
+    protected TripBasedRouter.StopWithTimeDelta getAccessStation(RaptorRouter.Journey journey) {
+        return journey.getAccessStation();
+    }
+
+    @Override
+    protected TripBasedRouter.StopWithTimeDelta getEgressStation(RaptorRouter.Journey journey) {
+        return journey.getEgressStation();
+    }
+
+    @Override
+    protected List<RaptorRouter.Leg> getLegs(RaptorRouter.Journey journey) {
+        return journey.getLegs();
+    }
+
+}
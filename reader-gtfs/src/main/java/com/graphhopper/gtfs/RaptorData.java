@@ -0,0 +1,202 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.gtfs;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntIntHashMap;
+import com.carrotsearch.hppc.IntObjectHashMap;
+import com.carrotsearch.hppc.cursors.IntIntCursor;
+import com.conveyal.gtfs.GTFSFeed;
+import com.conveyal.gtfs.model.Transfer;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The arrays the {@link RaptorRouter} scans, derived from the {@link Timetable} when the router is first used: the
+ * stops of every pattern in the order its trips visit them, the patterns serving every stop, the footpaths
+ * between the stops and the trips that continue the blocks.
+ */
+public class RaptorData {
+    private final Timetable timetable;
+    // per pattern the stops and the stop sequences of its first trip
+    final int[][] patternStops;
+    final int[][] patternStopSequences;
+    // per pattern the latest arrival of its trips at their last stop
+    final int[] patternLatestArrivals;
+    // per trip its stop sequences if they differ from those of the first trip of its pattern, otherwise null
+    final int[][] tripStopSequences;
+    // per trip the later trips of its block ordered by their first departure, otherwise null
+    final int[][] blockSuccessors;
+    // per stop the patterns serving it and the position of the stop within them as pairs
+    final int[][] stopPatterns;
+    // per stop the stops of the same station and those reachable by an interpolated transfer with the walking time
+    // in seconds as pairs
+    final int[][] footpaths;
+    private final Map<String, Transfers> transfersByFeed = new HashMap<>();
+    // the transfer rules that start at a stop per route of the arriving trip, see Transfers#getTransfersFromStop
+    private final boolean[] hasTransferRules;
+    private final Map<String, List<Transfer>> transferRules = new ConcurrentHashMap<>();
+
+    public RaptorData(GtfsStorage gtfsStorage) {
+        timetable = gtfsStorage.getTimetable();
+        if (timetable == null)
+            throw new IllegalStateException("The RAPTOR router needs the timetable, import the graph with gtfs.trip_based: true");
+        int patterns = timetable.getPatterns();
+        int stops = timetable.getStops();
+        patternStops = new int[patterns][];
+        patternStopSequences = new int[patterns][];
+        patternLatestArrivals = new int[patterns];
+        tripStopSequences = new int[timetable.getTrips()][];
+        IntArrayList[] patternsByStop = new IntArrayList[stops];
+        for (int pattern = 0; pattern < patterns; pattern++) {
+            int firstTrip = timetable.getFirstTripOfPattern(pattern);
+            int[] stopSequences = getStopSequences(firstTrip);
+            patternStopSequences[pattern] = stopSequences;
+            patternStops[pattern] = new int[stopSequences.length];
+            for (int position = 0; position < stopSequences.length; position++) {
+                int stop = timetable.getStopIndex(firstTrip, stopSequences[position]);
+                patternStops[pattern][position] = stop;
+                if (patternsByStop[stop] == null)
+                    patternsByStop[stop] = new IntArrayList();
+                patternsByStop[stop].add(pattern, position);
+            }
+            int latestArrival = 0;
+            for (int trip = firstTrip; trip < timetable.getEndTripOfPattern(firstTrip); trip++) {
+                int[] tripSequences = trip == firstTrip ? stopSequences : getStopSequences(trip);
+                if (!Arrays.equals(tripSequences, stopSequences))
+                    tripStopSequences[trip] = tripSequences;
+                if (tripSequences.length > 0)
+                    latestArrival = Math.max(latestArrival, timetable.getArrivalTime(trip, tripSequences[tripSequences.length - 1]));
+            }
+            patternLatestArrivals[pattern] = latestArrival;
+        }
+        Map<String, IntArrayList> tripsByBlock = new HashMap<>();
+        for (int trip = 0; trip < timetable.getTrips(); trip++) {
+            String blockId = timetable.getBlockId(trip);
+            if (blockId != null && getStopSequences(trip).length > 0)
+                tripsByBlock.computeIfAbsent(timetable.getFeedId(trip) + ":" + blockId, k -> new IntArrayList()).add(trip);
+        }
+        blockSuccessors = new int[timetable.getTrips()][];
+        for (IntArrayList blockTrips : tripsByBlock.values()) {
+            int[] sortedTrips = Arrays.stream(blockTrips.toArray()).boxed()
+                    .sorted(Comparator.comparingInt(trip -> timetable.getDepartureTime(trip, getStopSequence(timetable.getPattern(trip), trip, 0))))
+                    .mapToInt(Integer::intValue).toArray();
+            for (int i = 0; i < sortedTrips.length - 1; i++)
+                blockSuccessors[sortedTrips[i]] = Arrays.copyOfRange(sortedTrips, i + 1, sortedTrips.length);
+        }
+
+        stopPatterns = new int[stops][];
+        for (int stop = 0; stop < stops; stop++)
+            stopPatterns[stop] = patternsByStop[stop] == null ? new int[0] : patternsByStop[stop].toArray();
+
+        IntObjectHashMap<IntArrayList> stopsByStationNode = new IntObjectHashMap<>();
+        for (int stop = 0; stop < stops; stop++) {
+            Integer stationNode = gtfsStorage.getStationNodes().get(timetable.getStop(stop));
+            if (stationNode == null)
+                continue;
+            IntArrayList stationStops = stopsByStationNode.get(stationNode);
+            if (stationStops == null) {
+                stationStops = new IntArrayList();
+                stopsByStationNode.put(stationNode, stationStops);
+            }
+            stationStops.add(stop);
+        }
+        footpaths = new int[stops][];
+        for (int stop = 0; stop < stops; stop++) {
+            GtfsStorage.FeedIdWithStopId stopId = timetable.getStop(stop);
+            IntIntHashMap walkingTimes = new IntIntHashMap();
+            Integer stationNode = gtfsStorage.getStationNodes().get(stopId);
+            if (stationNode != null)
+                for (int i = 0; i < stopsByStationNode.get(stationNode).size(); i++)
+                    walkingTimes.put(stopsByStationNode.get(stationNode).get(i), 0);
+            for (GtfsStorage.InterpolatedTransfer it : gtfsStorage.interpolatedTransfers.get(stopId)) {
+                int toStop = timetable.getStopIndex(it.toPlatformDescriptor);
+                if (toStop >= 0)
+                    walkingTimes.put(toStop, Math.min(it.streetTime, walkingTimes.getOrDefault(toStop, Integer.MAX_VALUE)));
+            }
+            walkingTimes.remove(stop);
+            IntArrayList pairs = new IntArrayList(walkingTimes.size() * 2);
+            for (IntIntCursor c : walkingTimes)
+                pairs.add(c.key, c.value);
+            footpaths[stop] = pairs.toArray();
+        }
+
+        for (Map.Entry<String, GTFSFeed> feed : gtfsStorage.getGtfsFeeds().entrySet())
+            if (!feed.getValue().transfers.isEmpty())
+                transfersByFeed.put(feed.getKey(), new Transfers(feed.getValue()));
+        hasTransferRules = new boolean[stops];
+        for (int stop = 0; stop < stops; stop++) {
+            GtfsStorage.FeedIdWithStopId stopId = timetable.getStop(stop);
+            Transfers transfers = transfersByFeed.get(stopId.feedId);
+            hasTransferRules[stop] = transfers != null && transfers.hasTransfersFromStop(stopId.stopId);
+        }
+    }
+
+    private int[] getStopSequences(int trip) {
+        IntArrayList result = new IntArrayList();
+        for (int stopSequence = 0; stopSequence < timetable.getStopSequences(trip); stopSequence++)
+            if (timetable.hasStopTime(trip, stopSequence))
+                result.add(stopSequence);
+        return result.toArray();
+    }
+
+    int getStopSequence(int pattern, int trip, int position) {
+        int[] stopSequences = tripStopSequences[trip];
+        return stopSequences == null ? patternStopSequences[pattern][position] : stopSequences[position];
+    }
+
+    boolean hasTransferRules(int stop) {
+        return hasTransferRules[stop];
+    }
+
+    /**
+     * @return the transfer rules from the given stop after arriving there with the given trip
+     */
+    List<Transfer> getTransferRules(int stop, int arrivingTrip) {
+        if (!hasTransferRules[stop])
+            return Collections.emptyList();
+        String routeId = timetable.getRouteId(arrivingTrip);
+        return transferRules.computeIfAbsent(stop + " " + routeId, k -> {
+            GtfsStorage.FeedIdWithStopId stopId = timetable.getStop(stop);
+            return transfersByFeed.get(stopId.feedId).getTransfersFromStop(stopId.stopId, routeId);
+        });
+    }
+
+    /**
+     * @return the minimum time in seconds to change from the given arriving trip to the given departing trip at the
+     * same stop
+     */
+    int getMinTransferTime(int stop, int arrivingTrip, int departingTrip) {
+        if (!hasTransferRules[stop])
+            return 0;
+        String stopId = timetable.getStop(stop).stopId;
+        String routeId = timetable.getRouteId(departingTrip);
+        int result = 0;
+        for (Transfer transfer : getTransferRules(stop, arrivingTrip))
+            if (stopId.equals(transfer.to_stop_id) && routeId.equals(transfer.to_route_id))
+                result += transfer.min_transfer_time;
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "raptor data: " + patternStops.length + " patterns, " + stopPatterns.length + " stops";
+    }
+}
@@ -0,0 +1,564 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.gtfs;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntHashSet;
+import com.conveyal.gtfs.model.Transfer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * A round-based router (RAPTOR) over the arrays of {@link RaptorData}. Round k computes the earliest arrival at
+ * every stop with k trips: every pattern serving a stop that was improved in the previous round is scanned once,
+ * then the footpaths from the stops improved by the scan are relaxed.
+ * <p>
+ * Range queries work like rRAPTOR: the departures within the profile are routed from the latest to the earliest
+ * and the arrivals of a later departure stay valid as upper bounds for the earlier ones. The departures are split
+ * into consecutive parts that are routed in parallel with separate labels, and the journeys of all parts are
+ * reduced to the Pareto set of departure time, arrival time and number of transfers.
+ * <p>
+ * The transfer rules of the feeds are applied per arriving and departing trip at the stop where they change, but
+ * only the earliest arrival per stop and round is kept, regardless of the trip it arrives with. Staying in the
+ * vehicle at the end of a trip is relaxed like a footpath to the first stop of the next trip of its block.
+ */
+public class RaptorRouter {
+    private static final Logger logger = LoggerFactory.getLogger(RaptorRouter.class);
+    // like in the trip-based router a journey has at most this number of trips
+    static final int N_ROUNDS = 8;
+    private static final int INFINITY = Integer.MAX_VALUE;
+    private static final int ACCESS = -2, FOOTPATH = -1;
+    // the trips of the day before the service day of the query, which can run past midnight, of the service day and
+    // of the next day, for journeys departing late or continuing overnight
+    private static final int DAYS = 3;
+
+    private final Timetable timetable;
+    private final RaptorData data;
+    private final ForkJoinPool pool;
+
+    /**
+     * @param pool the pool the parts of a profile query are routed in, one part per thread of the pool
+     */
+    public RaptorRouter(GtfsStorage gtfsStorage, ForkJoinPool pool) {
+        this.timetable = gtfsStorage.getTimetable();
+        this.data = gtfsStorage.getRaptorData();
+        this.pool = pool;
+    }
+
+    /**
+     * @return the Pareto set of journeys departing within the profile of the given parameters, sorted by departure
+     * time from the latest to the earliest
+     */
+    public List<Journey> route(TripBasedRouter.Parameters parameters) {
+        Query query = new Query(parameters);
+        if (query.accessStops.length == 0 || query.egressStops.length == 0)
+            return new ArrayList<>();
+        int[] departureTimes = query.getDepartureTimes();
+        int parts = Math.max(1, Math.min(pool.getParallelism(), departureTimes.length));
+        logger.debug("{} departures in {} parts", departureTimes.length, parts);
+        List<Journey> journeys = pool.submit(() -> IntStream.range(0, parts).parallel()
+                .mapToObj(part -> new Search(query).route(departureTimes, part * departureTimes.length / parts, (part + 1) * departureTimes.length / parts))
+                .flatMap(List::stream)
+                .collect(Collectors.toList())).join();
+        return filterPareto(journeys);
+    }
+
+    private static List<Journey> filterPareto(List<Journey> journeys) {
+        journeys.sort(Comparator.comparingInt((Journey j) -> -j.departureTime)
+                .thenComparingInt(j -> j.generalizedArrivalTime)
+                .thenComparingInt(j -> j.realTransfers));
+        List<Journey> result = new ArrayList<>();
+        for (Journey journey : journeys)
+            if (result.stream().noneMatch(other -> other.dominates(journey)))
+                result.add(journey);
+        return result;
+    }
+
+    private class Query {
+        final TripBasedRouter.Parameters parameters;
+        final LocalDate serviceDay;
+        // the times of the search are in seconds since the start of the service day in the time zone of the access
+        final long startOfServiceDay;
+        final int profileStartTime;
+        final int profileEndTime;
+        final TripBasedRouter.StopWithTimeDelta[] accessStations;
+        final int[] accessStops;
+        final int[] accessTimes;
+        final TripBasedRouter.StopWithTimeDelta[] egressStations;
+        final int[] egressStops;
+        final int[] egressTimes;
+        // per day its date, the services running on it and per pattern the offset of its times
+        final LocalDate[] dates = new LocalDate[DAYS];
+        final boolean[][] activeServices = new boolean[DAYS][];
+        final int[][] patternOffsets = new int[DAYS][];
+
+        Query(TripBasedRouter.Parameters parameters) {
+            this.parameters = parameters;
+            ZoneId zoneId = parameters.getAccessStations().isEmpty() ? ZoneOffset.UTC : parameters.getAccessStations().get(0).zoneId;
+            serviceDay = parameters.getProfileStartTime().atZone(zoneId).toLocalDate();
+            startOfServiceDay = serviceDay.atStartOfDay(zoneId).toEpochSecond();
+            profileStartTime = (int) (parameters.getProfileStartTime().getEpochSecond() - startOfServiceDay);
+            profileEndTime = profileStartTime + (int) parameters.getProfileLength().getSeconds();
+
+            Map<Integer, TripBasedRouter.StopWithTimeDelta> access = getStationsByStop(parameters.getAccessStations());
+            accessStations = access.values().toArray(new TripBasedRouter.StopWithTimeDelta[0]);
+            accessStops = access.keySet().stream().mapToInt(Integer::intValue).toArray();
+            accessTimes = Arrays.stream(accessStations).mapToInt(s -> (int) (s.timeDelta / 1000L)).toArray();
+            Map<Integer, TripBasedRouter.StopWithTimeDelta> egress = getStationsByStop(parameters.getEgressStations());
+            egressStations = egress.values().toArray(new TripBasedRouter.StopWithTimeDelta[0]);
+            egressStops = egress.keySet().stream().mapToInt(Integer::intValue).toArray();
+            egressTimes = Arrays.stream(egressStations).mapToInt(s -> (int) (s.timeDelta / 1000L)).toArray();
+
+            for (int d = 0; d < DAYS; d++) {
+                LocalDate date = serviceDay.plusDays(d - 1);
+                dates[d] = date;
+                int day = timetable.getDay(date);
+                activeServices[d] = new boolean[timetable.getServices()];
+                for (int service = 0; service < timetable.getServices(); service++)
+                    activeServices[d][service] = timetable.isServiceActiveOn(service, day);
+                Map<ZoneId, Integer> offsets = new HashMap<>();
+                patternOffsets[d] = new int[timetable.getPatterns()];
+                for (int pattern = 0; pattern < timetable.getPatterns(); pattern++)
+                    patternOffsets[d][pattern] = offsets.computeIfAbsent(timetable.getZoneId(timetable.getFirstTripOfPattern(pattern)),
+                            z -> (int) (date.atStartOfDay(z).toEpochSecond() - startOfServiceDay));
+            }
+        }
+
+        /**
+         * @return per stop the station with the shortest access or egress time
+         */
+        private Map<Integer, TripBasedRouter.StopWithTimeDelta> getStationsByStop(List<TripBasedRouter.StopWithTimeDelta> stations) {
+            Map<Integer, TripBasedRouter.StopWithTimeDelta> result = new LinkedHashMap<>();
+            for (TripBasedRouter.StopWithTimeDelta station : stations) {
+                int stop = timetable.getStopIndex(station.stopId);
+                if (stop >= 0)
+                    result.merge(stop, station, (a, b) -> a.timeDelta <= b.timeDelta ? a : b);
+            }
+            return result;
+        }
+
+        boolean isBoardable(int trip, int day) {
+            return activeServices[day][timetable.getService(trip)] && parameters.getTripFilter().test(trip);
+        }
+
+        /**
+         * @return the start and the end of the profile and all departures from the access stops within the profile,
+         * latest first. Routing from the end of the profile finds the first departure after it, which is still the best
+         * one for the last part of the profile.
+         */
+        int[] getDepartureTimes() {
+            IntHashSet result = new IntHashSet();
+            result.add(profileStartTime);
+            result.add(profileEndTime);
+            for (int i = 0; i < accessStops.length && profileEndTime > profileStartTime; i++) {
+                int stop = accessStops[i];
+                for (int group = timetable.getFirstBoardingGroup(stop); group < timetable.getFirstBoardingGroup(stop + 1); group++) {
+                    int pattern = timetable.getPattern(timetable.getBoardingTrip(timetable.getFirstBoarding(group)));
+                    int endBoarding = timetable.getFirstBoarding(group + 1);
+                    for (int day = 0; day < DAYS; day++) {
+                        int offset = patternOffsets[day][pattern];
+                        for (int boarding = timetable.getFirstBoardingAfter(group, profileStartTime + accessTimes[i] - offset); boarding < endBoarding; boarding++) {
+                            int trip = timetable.getBoardingTrip(boarding);
+                            int departureTime = timetable.getDepartureTime(trip, timetable.getBoardingStopSequence(boarding)) + offset - accessTimes[i];
+                            if (departureTime > profileEndTime)
+                                break;
+                            if (isBoardable(trip, day))
+                                result.add(departureTime);
+                        }
+                    }
+                }
+            }
+            int[] departureTimes = result.toArray();
+            Arrays.sort(departureTimes);
+            for (int i = 0, j = departureTimes.length - 1; i < j; i++, j--) {
+                int tmp = departureTimes[i];
+                departureTimes[i] = departureTimes[j];
+                departureTimes[j] = tmp;
+            }
+            return departureTimes;
+        }
+    }
+
+    private class Search {
+        private final Query query;
+        // per round and stop the earliest arrival and how it was reached
+        private final int[][] arrivals = new int[N_ROUNDS + 1][];
+        private final int[][] parentTrips = new int[N_ROUNDS + 1][];
+        private final int[][] parentStops = new int[N_ROUNDS + 1][];
+        private final int[][] boardStopSequences = new int[N_ROUNDS + 1][];
+        private final int[][] alightStopSequences = new int[N_ROUNDS + 1][];
+        private final int[][] parentDays = new int[N_ROUNDS + 1][];
+        // per round the earliest arrival at the destination with at most that number of trips
+        private final int[] targetArrivals = new int[N_ROUNDS + 1];
+        private final int[] recordedArrivals = new int[N_ROUNDS + 1];
+        // per pattern the first position to scan in the current round
+        private final int[] firstPositions;
+        private final IntArrayList markedPatterns = new IntArrayList();
+        private final boolean[] markedStops;
+        private final List<Journey> journeys = new ArrayList<>();
+
+        Search(Query query) {
+            this.query = query;
+            int stops = timetable.getStops();
+            for (int round = 0; round <= N_ROUNDS; round++) {
+                arrivals[round] = new int[stops];
+                Arrays.fill(arrivals[round], INFINITY);
+                parentTrips[round] = new int[stops];
+                parentStops[round] = new int[stops];
+                boardStopSequences[round] = new int[stops];
+                alightStopSequences[round] = new int[stops];
+                parentDays[round] = new int[stops];
+            }
+            Arrays.fill(targetArrivals, INFINITY);
+            Arrays.fill(recordedArrivals, INFINITY);
+            firstPositions = new int[timetable.getPatterns()];
+            Arrays.fill(firstPositions, INFINITY);
+            markedStops = new boolean[stops];
+        }
+
+        List<Journey> route(int[] departureTimes, int from, int to) {
+            for (int i = from; i < to; i++)
+                route(departureTimes[i]);
+            return journeys;
+        }
+
+        private void route(int departureTime) {
+            IntArrayList improved = new IntArrayList();
+            for (int i = 0; i < query.accessStops.length; i++) {
+                int stop = query.accessStops[i];
+                int arrival = departureTime + query.accessTimes[i];
+                if (arrival < arrivals[0][stop]) {
+                    arrivals[0][stop] = arrival;
+                    parentTrips[0][stop] = ACCESS;
+                    parentStops[0][stop] = i;
+                    improved.add(stop);
+                }
+            }
+            for (int round = 1; round <= N_ROUNDS && !improved.isEmpty(); round++) {
+                improved = scanPatterns(round, improved);
+                relaxFootpaths(round, improved);
+                for (int i = 0; i < improved.size(); i++)
+                    markedStops[improved.get(i)] = false;
+                updateTargetArrivals(round);
+            }
+            recordJourneys();
+        }
+
+        private IntArrayList scanPatterns(int round, IntArrayList stops) {
+            for (int i = 0; i < stops.size(); i++) {
+                int[] patterns = data.stopPatterns[stops.get(i)];
+                for (int j = 0; j < patterns.length; j += 2) {
+                    int pattern = patterns[j];
+                    if (firstPositions[pattern] == INFINITY)
+                        markedPatterns.add(pattern);
+                    firstPositions[pattern] = Math.min(firstPositions[pattern], patterns[j + 1]);
+                }
+            }
+            IntArrayList improved = new IntArrayList();
+            for (int i = 0; i < markedPatterns.size(); i++) {
+                int pattern = markedPatterns.get(i);
+                for (int day = 0; day < DAYS; day++)
+                    if (data.patternLatestArrivals[pattern] + query.patternOffsets[day][pattern] >= query.profileStartTime)
+                        scanPattern(round, pattern, firstPositions[pattern], day, improved);
+                firstPositions[pattern] = INFINITY;
+            }
+            markedPatterns.clear();
+            return improved;
+        }
+
+        private void scanPattern(int round, int pattern, int firstPosition, int day, IntArrayList improved) {
+            int[] stops = data.patternStops[pattern];
+            int offset = query.patternOffsets[day][pattern];
+            int firstTrip = timetable.getFirstTripOfPattern(pattern);
+            int endTrip = timetable.getEndTripOfPattern(firstTrip);
+            int trip = -1;
+            int boardPosition = -1;
+            for (int position = firstPosition; position < stops.length; position++) {
+                int stop = stops[position];
+                if (trip >= 0) {
+                    int arrival = timetable.getArrivalTime(trip, data.getStopSequence(pattern, trip, position)) + offset;
+                    if (arrival < arrivals[round][stop] && arrival < targetArrivals[round]) {
+                        arrivals[round][stop] = arrival;
+                        parentTrips[round][stop] = trip;
+                        parentStops[round][stop] = stops[boardPosition];
+                        boardStopSequences[round][stop] = data.getStopSequence(pattern, trip, boardPosition);
+                        alightStopSequences[round][stop] = data.getStopSequence(pattern, trip, position);
+                        parentDays[round][stop] = day;
+                        mark(improved, stop);
+                    }
+                }
+                // like in the trip-based router one cannot board at the last stop
+                int readyTime = arrivals[round - 1][stop];
+                if (position == stops.length - 1 || readyTime == INFINITY)
+                    continue;
+                if (trip >= 0 && readyTime > timetable.getDepartureTime(trip, data.getStopSequence(pattern, trip, position)) + offset)
+                    continue;
+                int arrivingTrip = parentTrips[round - 1][stop];
+                int earlierTrip = findEarliestTrip(pattern, position, firstTrip, trip >= 0 ? trip : endTrip, readyTime - offset, arrivingTrip, stop, day);
+                if (earlierTrip >= 0) {
+                    trip = earlierTrip;
+                    boardPosition = position;
+                }
+            }
+        }
+
+        /**
+         * @return the first trip in the given range that departs at the given position at or after the given time
+         * and can be boarded after changing from the given arriving trip, or -1
+         */
+        private int findEarliestTrip(int pattern, int position, int fromTrip, int toTrip, int secondOfDay, int arrivingTrip, int stop, int day) {
+            // the trips of a pattern are sorted by departure and do not overtake each other
+            int low = fromTrip, high = toTrip;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (timetable.getDepartureTime(mid, data.getStopSequence(pattern, mid, position)) >= secondOfDay)
+                    high = mid;
+                else
+                    low = mid + 1;
+            }
+            boolean transferRules = arrivingTrip >= 0 && data.hasTransferRules(stop);
+            for (int trip = low; trip < toTrip; trip++) {
+                if (!query.isBoardable(trip, day))
+                    continue;
+                if (transferRules && timetable.getDepartureTime(trip, data.getStopSequence(pattern, trip, position)) < secondOfDay + data.getMinTransferTime(stop, arrivingTrip, trip))
+                    continue;
+                return trip;
+            }
+            return -1;
+        }
+
+        private void relaxFootpaths(int round, IntArrayList improved) {
+            int improvedByTrips = improved.size();
+            for (int i = 0; i < improvedByTrips; i++) {
+                int stop = improved.get(i);
+                int arrivingTrip = parentTrips[round][stop];
+                // the stop might have been improved by a footpath in the meantime
+                if (arrivingTrip < 0)
+                    continue;
+                int arrival = arrivals[round][stop];
+                int[] footpaths = data.footpaths[stop];
+                for (int j = 0; j < footpaths.length; j += 2)
+                    relaxFootpath(round, stop, footpaths[j], arrival + footpaths[j + 1], improved);
+                for (Transfer transfer : data.getTransferRules(stop, arrivingTrip)) {
+                    int toStop = timetable.getStopIndex(new GtfsStorage.FeedIdWithStopId(timetable.getFeedId(arrivingTrip), transfer.to_stop_id));
+                    if (toStop >= 0 && toStop != stop)
+                        relaxFootpath(round, stop, toStop, arrival + transfer.min_transfer_time, improved);
+                }
+                relaxBlock(round, stop, arrivingTrip, arrival, improved);
+            }
+        }
+
+        /**
+         * The vehicle continues at the last stop of a trip with the next trip of its block running on the same day,
+         * which can depart from another stop, e.g. when the trips in between do not run on that day.
+         */
+        private void relaxBlock(int round, int stop, int arrivingTrip, int arrival, IntArrayList improved) {
+            int[] nextTrips = data.blockSuccessors[arrivingTrip];
+            int pattern = timetable.getPattern(arrivingTrip);
+            if (nextTrips == null || alightStopSequences[round][stop] != data.getStopSequence(pattern, arrivingTrip, data.patternStops[pattern].length - 1))
+                return;
+            int day = parentDays[round][stop];
+            for (int nextTrip : nextTrips) {
+                int nextPattern = timetable.getPattern(nextTrip);
+                int departure = timetable.getDepartureTime(nextTrip, data.getStopSequence(nextPattern, nextTrip, 0)) + query.patternOffsets[day][nextPattern];
+                if (departure < arrival || !query.activeServices[day][timetable.getService(nextTrip)])
+                    continue;
+                if (query.parameters.getTripFilter().test(nextTrip))
+                    relaxFootpath(round, stop, data.patternStops[nextPattern][0], departure, improved);
+                return;
+            }
+        }
+
+        private void relaxFootpath(int round, int fromStop, int toStop, int arrival, IntArrayList improved) {
+            if (arrival < arrivals[round][toStop] && arrival < targetArrivals[round]) {
+                arrivals[round][toStop] = arrival;
+                parentTrips[round][toStop] = FOOTPATH;
+                parentStops[round][toStop] = fromStop;
+                mark(improved, toStop);
+            }
+        }
+
+        private void mark(IntArrayList improved, int stop) {
+            if (!markedStops[stop]) {
+                markedStops[stop] = true;
+                improved.add(stop);
+            }
+        }
+
+        /**
+         * @return the egress station with the earliest arrival at the destination in the given round or -1
+         */
+        private int getBestEgress(int round) {
+            int result = -1;
+            for (int i = 0; i < query.egressStops.length; i++)
+                if (arrivals[round][query.egressStops[i]] != INFINITY && (result < 0 || getTargetArrival(round, i) < getTargetArrival(round, result)))
+                    result = i;
+            return result;
+        }
+
+        private int getTargetArrival(int round, int egress) {
+            return egress < 0 ? INFINITY : arrivals[round][query.egressStops[egress]] + query.egressTimes[egress];
+        }
+
+        private void updateTargetArrivals(int round) {
+            int targetArrival = getTargetArrival(round, getBestEgress(round));
+            for (int r = round; r <= N_ROUNDS; r++)
+                targetArrivals[r] = Math.min(targetArrivals[r], targetArrival);
+        }
+
+        private void recordJourneys() {
+            int withFewerTrips = INFINITY;
+            for (int round = 1; round <= N_ROUNDS; round++) {
+                int egress = getBestEgress(round);
+                int targetArrival = getTargetArrival(round, egress);
+                if (targetArrival < withFewerTrips && targetArrival < recordedArrivals[round]) {
+                    Journey journey = extractJourney(round, egress, targetArrival);
+                    if (journey != null) {
+                        logger.debug("{}", journey);
+                        journeys.add(journey);
+                    }
+                    recordedArrivals[round] = targetArrival;
+                }
+                withFewerTrips = Math.min(withFewerTrips, targetArrival);
+            }
+        }
+
+        private Journey extractJourney(int round, int egress, int arrivalTime) {
+            List<Leg> legs = new ArrayList<>();
+            int stop = query.egressStops[egress];
+            int firstOffset = 0;
+            // the labels of later departures can lead to chains of footpaths, but never to cycles
+            for (int steps = 0; round > 0; steps++) {
+                if (steps > timetable.getStops() + N_ROUNDS)
+                    return null;
+                int parentTrip = parentTrips[round][stop];
+                int parentStop = parentStops[round][stop];
+                if (parentTrip != FOOTPATH) {
+                    int day = parentDays[round][stop];
+                    legs.add(new Leg(parentTrip, boardStopSequences[round][stop], alightStopSequences[round][stop], query.dates[day]));
+                    firstOffset = query.patternOffsets[day][timetable.getPattern(parentTrip)];
+                    round--;
+                }
+                stop = parentStop;
+            }
+            if (parentTrips[0][stop] != ACCESS)
+                return null;
+            Collections.reverse(legs);
+            int access = parentStops[0][stop];
+            Leg firstLeg = legs.get(0);
+            int departureTime = timetable.getDepartureTime(firstLeg.trip, firstLeg.boardStopSequence) + firstOffset - query.accessTimes[access];
+            int realTransfers = 0;
+            long routeTypePenalty = 0;
+            for (int i = 0; i < legs.size(); i++) {
+                if (i > 0) {
+                    String blockId = timetable.getBlockId(legs.get(i).trip);
+                    if (blockId == null || !blockId.equals(timetable.getBlockId(legs.get(i - 1).trip)))
+                        realTransfers++;
+                }
+                routeTypePenalty += query.parameters.getTransferPenaltiesByRouteType().getOrDefault(timetable.getRouteType(legs.get(i).trip), 0L);
+            }
+            TripBasedRouter.Parameters parameters = query.parameters;
+            int generalizedArrivalTime = arrivalTime
+                    + (int) (query.accessTimes[access] * (parameters.getBetaAccessTime() - 1.0))
+                    + (int) (query.egressTimes[egress] * (parameters.getBetaEgressTime() - 1.0))
+                    + (int) ((long) (realTransfers * parameters.getBetaTransfers()) / 1000L)
+                    + (int) (routeTypePenalty / 1000L);
+            return new Journey(query.accessStations[access], query.egressStations[egress], legs, departureTime, arrivalTime,
+                    generalizedArrivalTime, realTransfers);
+        }
+    }
+
+    /**
+     * A part of a journey with one trip from boarding to alighting.
+     */
+    public static class Leg {
+        final int trip;
+        final int boardStopSequence;
+        final int alightStopSequence;
+        final LocalDate serviceDay;
+
+        Leg(int trip, int boardStopSequence, int alightStopSequence, LocalDate serviceDay) {
+            this.trip = trip;
+            this.boardStopSequence = boardStopSequence;
+            this.alightStopSequence = alightStopSequence;
+            this.serviceDay = serviceDay;
+        }
+
+        @Override
+        public String toString() {
+            return "Leg{trip=" + trip + ", stops=[" + boardStopSequence + ", " + alightStopSequence + "], serviceDay=" + serviceDay + '}';
+        }
+    }
+
+    public static class Journey {
+        private final TripBasedRouter.StopWithTimeDelta accessStation;
+        private final TripBasedRouter.StopWithTimeDelta egressStation;
+        private final List<Leg> legs;
+        // in seconds since the start of the service day of the query, including the access and the egress
+        private final int departureTime;
+        private final int arrivalTime;
+        // the arrival time plus the penalties of the betas of the request
+        private final int generalizedArrivalTime;
+        private final int realTransfers;
+
+        Journey(TripBasedRouter.StopWithTimeDelta accessStation, TripBasedRouter.StopWithTimeDelta egressStation, List<Leg> legs,
+                int departureTime, int arrivalTime, int generalizedArrivalTime, int realTransfers) {
+            this.accessStation = accessStation;
+            this.egressStation = egressStation;
+            this.legs = legs;
+            this.departureTime = departureTime;
+            this.arrivalTime = arrivalTime;
+            this.generalizedArrivalTime = generalizedArrivalTime;
+            this.realTransfers = realTransfers;
+        }
+
+        boolean dominates(Journey other) {
+            return departureTime >= other.departureTime && generalizedArrivalTime <= other.generalizedArrivalTime && realTransfers <= other.realTransfers;
+        }
+
+        public TripBasedRouter.StopWithTimeDelta getAccessStation() {
+            return accessStation;
+        }
+
+        public TripBasedRouter.StopWithTimeDelta getEgressStation() {
+            return egressStation;
+        }
+
+        public List<Leg> getLegs() {
+            return legs;
+        }
+
+        public int getRealTransfers() {
+            return realTransfers;
+        }
+
+        @Override
+        public String toString() {
+            return "Journey{departureTime=" + departureTime + ", arrivalTime=" + arrivalTime + ", realTransfers=" + realTransfers + ", legs=" + legs + '}';
+        }
+    }
+}
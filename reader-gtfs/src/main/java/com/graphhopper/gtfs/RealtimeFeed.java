@@ -22,7 +22,6 @@ import com.carrotsearch.hppc.IntArrayList;
 import com.carrotsearch.hppc.IntHashSet;
 import com.carrotsearch.hppc.IntLongHashMap;
 import com.conveyal.gtfs.GTFSFeed;
-import com.conveyal.gtfs.model.Frequency;
 import com.conveyal.gtfs.model.StopTime;
 import com.conveyal.gtfs.model.Trip;
 import com.google.transit.realtime.GtfsRealtime;
@@ -43,7 +42,6 @@ import java.util.stream.StreamSupport;
 
 import static com.google.transit.realtime.GtfsRealtime.TripUpdate.StopTimeUpdate.ScheduleRelationship.NO_DATA;
 import static com.google.transit.realtime.GtfsRealtime.TripUpdate.StopTimeUpdate.ScheduleRelationship.SKIPPED;
-import static java.time.temporal.ChronoUnit.DAYS;
 
 public class RealtimeFeed {
     private static final Logger logger = LoggerFactory.getLogger(RealtimeFeed.class);
@@ -54,118 +52,42 @@ public class RealtimeFeed {
     private final TreeSet<PtGraph.PtEdge> additionalEdgesByAdjNode;
     public final Map<String, GtfsRealtime.FeedMessage> feedMessages;
 
-    private RealtimeFeed(Map<String, GtfsRealtime.FeedMessage> feedMessages, IntHashSet blockedEdges,
-                         IntLongHashMap delaysForBoardEdges, IntLongHashMap delaysForAlightEdges, List<PtGraph.PtEdge> additionalEdges) {
+    RealtimeFeed(Map<String, GtfsRealtime.FeedMessage> feedMessages, IntHashSet blockedEdges, IntLongHashMap delaysForBoardEdges,
+                 IntLongHashMap delaysForAlightEdges, TreeSet<PtGraph.PtEdge> additionalEdgesByBaseNode, TreeSet<PtGraph.PtEdge> additionalEdgesByAdjNode) {
         this.feedMessages = feedMessages;
         this.blockedEdges = blockedEdges;
         this.delaysForBoardEdges = delaysForBoardEdges;
         this.delaysForAlightEdges = delaysForAlightEdges;
-        this.additionalEdgesByBaseNode = new TreeSet<>(Comparator.comparingInt(PtGraph.PtEdge::getBaseNode).thenComparingInt(PtGraph.PtEdge::getId));
-        this.additionalEdgesByBaseNode.addAll(additionalEdges);
-        this.additionalEdgesByAdjNode = new TreeSet<>(Comparator.comparingInt(PtGraph.PtEdge::getAdjNode).thenComparingInt(PtGraph.PtEdge::getId));
-        this.additionalEdgesByAdjNode.addAll(additionalEdges);
+        this.additionalEdgesByBaseNode = additionalEdgesByBaseNode;
+        this.additionalEdgesByAdjNode = additionalEdgesByAdjNode;
     }
 
-    public static RealtimeFeed empty() {
-        return new RealtimeFeed(Collections.emptyMap(), new IntHashSet(), new IntLongHashMap(), new IntLongHashMap(), Collections.emptyList());
+    static TreeSet<PtGraph.PtEdge> sortedByBaseNode(Collection<PtGraph.PtEdge> edges) {
+        TreeSet<PtGraph.PtEdge> result = new TreeSet<>(Comparator.comparingInt(PtGraph.PtEdge::getBaseNode).thenComparingInt(PtGraph.PtEdge::getId));
+        result.addAll(edges);
+        return result;
     }
 
-    public static RealtimeFeed fromProtobuf(GtfsStorage staticGtfs, Map<String, Transfers> transfers, Map<String, GtfsRealtime.FeedMessage> feedMessages) {
-        final IntHashSet blockedEdges = new IntHashSet();
-        final IntLongHashMap delaysForBoardEdges = new IntLongHashMap();
-        final IntLongHashMap delaysForAlightEdges = new IntLongHashMap();
-        final LinkedList<PtGraph.PtEdge> additionalEdges = new LinkedList<>();
-        final GtfsReader.PtGraphOut overlayGraph = new GtfsReader.PtGraphOut() {
-            int nextEdge = staticGtfs.getPtGraph().getEdgeCount();
-            int nextNode = staticGtfs.getPtGraph().getNodeCount();
-
-            @Override
-            public int createEdge(int src, int dest, PtEdgeAttributes attrs) {
-                int edgeId = nextEdge++;
-                PtGraph.PtEdge e = new PtGraph.PtEdge(edgeId, src, dest, attrs);
-                assert canBeAdded(e);
-                additionalEdges.add(e);
-                return edgeId;
-            }
-
-            private boolean canBeAdded(PtGraph.PtEdge e) {
-                if (e.getType() != GtfsStorage.EdgeType.ENTER_PT) {
-                    if (staticGtfs.getPtToStreet().containsKey(e.getBaseNode())) {
-                        return false;
-                    }
-                }
-                return true;
-            }
-
-            @Override
-            public int createNode() {
-                return nextNode++;
-            }
-
-        };
-
-        feedMessages.forEach((feedKey, feedMessage) -> {
-            GTFSFeed feed = staticGtfs.getGtfsFeeds().get(feedKey);
-            ZoneId timezone = ZoneId.of(feed.agency.values().stream().findFirst().get().agency_timezone);
-            PtGraph ptGraphNodesAndEdges = staticGtfs.getPtGraph();
-            final GtfsReader gtfsReader = new GtfsReader(feedKey, ptGraphNodesAndEdges, overlayGraph, staticGtfs, null, transfers.get(feedKey), null);
-            Instant timestamp = Instant.ofEpochSecond(feedMessage.getHeader().getTimestamp());
-            LocalDate dateToChange = timestamp.atZone(timezone).toLocalDate(); //FIXME
-            BitSet validOnDay = new BitSet();
-            LocalDate startDate = feed.getStartDate();
-            validOnDay.set((int) DAYS.between(startDate, dateToChange));
-            feedMessage.getEntityList().stream()
-                    .filter(GtfsRealtime.FeedEntity::hasTripUpdate)
-                    .map(GtfsRealtime.FeedEntity::getTripUpdate)
-                    .filter(tripUpdate -> tripUpdate.getTrip().getScheduleRelationship() == GtfsRealtime.TripDescriptor.ScheduleRelationship.SCHEDULED)
-                    .forEach(tripUpdate -> maybeUpdateScheduledTrip(staticGtfs, feedKey, tripUpdate, feed, blockedEdges, delaysForAlightEdges, ptGraphNodesAndEdges, gtfsReader, timezone, validOnDay, delaysForBoardEdges));
-            feedMessage.getEntityList().stream()
-                    .filter(GtfsRealtime.FeedEntity::hasTripUpdate)
-                    .map(GtfsRealtime.FeedEntity::getTripUpdate)
-                    .filter(tripUpdate -> tripUpdate.getTrip().getScheduleRelationship() == GtfsRealtime.TripDescriptor.ScheduleRelationship.ADDED)
-                    .forEach(tripUpdate -> maybeAddExtraTrip(staticGtfs, feedKey, tripUpdate, timezone, validOnDay, gtfsReader));
-            gtfsReader.wireUpAdditionalDeparturesAndArrivals(timezone);
-        });
+    static TreeSet<PtGraph.PtEdge> sortedByAdjNode(Collection<PtGraph.PtEdge> edges) {
+        TreeSet<PtGraph.PtEdge> result = new TreeSet<>(Comparator.comparingInt(PtGraph.PtEdge::getAdjNode).thenComparingInt(PtGraph.PtEdge::getId));
+        result.addAll(edges);
+        return result;
+    }
 
-        return new RealtimeFeed(feedMessages, blockedEdges, delaysForBoardEdges, delaysForAlightEdges, additionalEdges);
+    public static RealtimeFeed empty() {
+        return new RealtimeFeed(Collections.emptyMap(), new IntHashSet(), new IntLongHashMap(), new IntLongHashMap(),
+                sortedByBaseNode(Collections.emptyList()), sortedByAdjNode(Collections.emptyList()));
     }
 
-    private static void maybeUpdateScheduledTrip(GtfsStorage staticGtfs, String feedKey, GtfsRealtime.TripUpdate tripUpdate, GTFSFeed feed, IntHashSet blockedEdges, IntLongHashMap delaysForAlightEdges, PtGraph ptGraphNodesAndEdges, GtfsReader gtfsReader, ZoneId timezone, BitSet validOnDay, IntLongHashMap delaysForBoardEdges) {
-        Collection<Frequency> frequencies = feed.getFrequencies(tripUpdate.getTrip().getTripId());
-        int timeOffset = (tripUpdate.getTrip().hasStartTime() && !frequencies.isEmpty()) ? LocalTime.parse(tripUpdate.getTrip().getStartTime()).toSecondOfDay() : 0;
-        final int[] boardEdges = findBoardEdgesForTrip(staticGtfs, feedKey, feed, tripUpdate.getTrip());
-        final int[] leaveEdges = findAlightEdgesForTrip(staticGtfs, feedKey, feed, tripUpdate.getTrip());
-        if (boardEdges == null || leaveEdges == null) {
-            logger.warn("Trip not found: {}", tripUpdate.getTrip());
-            return;
-        }
-        tripUpdate.getStopTimeUpdateList().stream()
-                .filter(stopTimeUpdate -> stopTimeUpdate.getScheduleRelationship() == SKIPPED)
-                .mapToInt(GtfsRealtime.TripUpdate.StopTimeUpdate::getStopSequence)
-                .forEach(skippedStopSequenceNumber -> {
-                    blockedEdges.add(boardEdges[skippedStopSequenceNumber]);
-                    blockedEdges.add(leaveEdges[skippedStopSequenceNumber]);
-                });
-        GtfsReader.TripWithStopTimes tripWithStopTimes = toTripWithStopTimes(feed, tripUpdate);
-        tripWithStopTimes.stopTimes.forEach(stopTime -> {
-            if (stopTime.stop_sequence > leaveEdges.length - 1) {
-                logger.warn("Stop sequence number too high {} vs {}", stopTime.stop_sequence, leaveEdges.length);
-                return;
-            }
-            final StopTime originalStopTime = feed.stop_times.get(new Fun.Tuple2(tripUpdate.getTrip().getTripId(), stopTime.stop_sequence));
-            int arrivalDelay = stopTime.arrival_time - originalStopTime.arrival_time;
-            delaysForAlightEdges.put(leaveEdges[stopTime.stop_sequence], arrivalDelay * 1000);
-            int departureDelay = stopTime.departure_time - originalStopTime.departure_time;
-            if (departureDelay > 0) {
-                int boardEdge = boardEdges[stopTime.stop_sequence];
-                int departureNode = ptGraphNodesAndEdges.edge(boardEdge).getAdjNode();
-                int delayedBoardEdge = gtfsReader.addDelayedBoardEdge(timezone, tripUpdate.getTrip(), stopTime.stop_sequence, stopTime.departure_time + timeOffset, departureNode, validOnDay);
-                delaysForBoardEdges.put(delayedBoardEdge, departureDelay * 1000);
-            }
-        });
+    /**
+     * Creates the realtime feed for the given feed messages from scratch. A server that refreshes its feeds should
+     * keep a {@link RealtimeFeedUpdater} instead, which only applies the trip updates that changed.
+     */
+    public static RealtimeFeed fromProtobuf(GtfsStorage staticGtfs, Map<String, Transfers> transfers, Map<String, GtfsRealtime.FeedMessage> feedMessages) {
+        return new RealtimeFeedUpdater(staticGtfs, transfers).update(feedMessages);
     }
 
-    private static void maybeAddExtraTrip(GtfsStorage staticGtfs, String feedKey, GtfsRealtime.TripUpdate tripUpdate, ZoneId timezone, BitSet validOnDay, GtfsReader gtfsReader) {
+    static void maybeAddExtraTrip(GtfsStorage staticGtfs, String feedKey, GtfsRealtime.TripUpdate tripUpdate, ZoneId timezone, BitSet validOnDay, GtfsReader gtfsReader) {
         GTFSFeed feed = staticGtfs.getGtfsFeeds().get(feedKey);
         Trip trip = new Trip();
         trip.trip_id = tripUpdate.getTrip().getTripId();
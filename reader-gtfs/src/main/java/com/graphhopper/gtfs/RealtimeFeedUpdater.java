@@ -0,0 +1,360 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.gtfs;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntHashSet;
+import com.carrotsearch.hppc.IntLongHashMap;
+import com.carrotsearch.hppc.cursors.IntCursor;
+import com.conveyal.gtfs.GTFSFeed;
+import com.conveyal.gtfs.model.Frequency;
+import com.conveyal.gtfs.model.StopTime;
+import com.google.transit.realtime.GtfsRealtime;
+import org.mapdb.Fun;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.*;
+
+import static com.google.transit.realtime.GtfsRealtime.TripUpdate.StopTimeUpdate.ScheduleRelationship.SKIPPED;
+import static java.time.temporal.ChronoUnit.DAYS;
+
+/**
+ * Keeps the effects of the trip updates of the last GTFS-realtime feed messages, so that a refresh only applies the
+ * trip updates that were added, changed or removed since then. Every update publishes a new {@link RealtimeFeed}
+ * which is never modified afterwards: a request keeps a consistent view while the feeds are refreshed.
+ * <p>
+ * The blocked edges and the arrival delays belong to the edges of the static graph and are patched per trip update.
+ * The delayed departures and the ADDED trips are wired up with the departure and arrival timelines of their stops,
+ * so the overlay graph is created again from the kept trip updates when one of them changes, without searching the
+ * static graph for the edges of the trips.
+ */
+public class RealtimeFeedUpdater {
+    private static final Logger logger = LoggerFactory.getLogger(RealtimeFeedUpdater.class);
+    private final GtfsStorage staticGtfs;
+    private final Map<String, Transfers> transfers;
+    private final Map<String, FeedState> feedStates = new LinkedHashMap<>();
+    // the board and alight edges of the trips of the static graph, see RealtimeFeed#findBoardEdgesForTrip
+    private final Map<String, int[][]> edgesByTrip = new HashMap<>();
+    private final IntHashSet blockedEdges = new IntHashSet();
+    private final IntLongHashMap delaysForAlightEdges = new IntLongHashMap();
+    // the copies handed out to the snapshots, these are replaced but never modified
+    private IntHashSet publishedBlockedEdges = new IntHashSet();
+    private IntLongHashMap publishedDelaysForAlightEdges = new IntLongHashMap();
+    private IntLongHashMap delaysForBoardEdges = new IntLongHashMap();
+    private TreeSet<PtGraph.PtEdge> additionalEdgesByBaseNode = RealtimeFeed.sortedByBaseNode(Collections.emptyList());
+    private TreeSet<PtGraph.PtEdge> additionalEdgesByAdjNode = RealtimeFeed.sortedByAdjNode(Collections.emptyList());
+    private volatile RealtimeFeed realtimeFeed = RealtimeFeed.empty();
+    private boolean edgesChanged;
+    private boolean overlayChanged;
+
+    public RealtimeFeedUpdater(GtfsStorage staticGtfs, Map<String, Transfers> transfers) {
+        this.staticGtfs = staticGtfs;
+        this.transfers = transfers;
+    }
+
+    /**
+     * @return the realtime feed of the last update
+     */
+    public RealtimeFeed getRealtimeFeed() {
+        return realtimeFeed;
+    }
+
+    /**
+     * Applies the trip updates of the given feed messages that differ from those of the last update and publishes
+     * the result.
+     *
+     * @param feedMessages the current message of every realtime feed by the id of its static feed
+     * @return the new realtime feed, or the last one if the feed messages did not change
+     */
+    public synchronized RealtimeFeed update(Map<String, GtfsRealtime.FeedMessage> feedMessages) {
+        if (feedMessages.equals(realtimeFeed.feedMessages))
+            return realtimeFeed;
+        edgesChanged = false;
+        overlayChanged = false;
+        int changedTripUpdates = 0;
+        Iterator<Map.Entry<String, FeedState>> iter = feedStates.entrySet().iterator();
+        while (iter.hasNext()) {
+            Map.Entry<String, FeedState> entry = iter.next();
+            if (!feedMessages.containsKey(entry.getKey())) {
+                entry.getValue().effects.values().forEach(this::unapply);
+                changedTripUpdates += entry.getValue().effects.size();
+                iter.remove();
+            }
+        }
+        for (Map.Entry<String, GtfsRealtime.FeedMessage> entry : feedMessages.entrySet())
+            changedTripUpdates += applyFeedMessage(entry.getKey(), entry.getValue());
+
+        if (edgesChanged) {
+            publishedBlockedEdges = new IntHashSet(blockedEdges);
+            publishedDelaysForAlightEdges = new IntLongHashMap(delaysForAlightEdges);
+        }
+        if (overlayChanged)
+            createOverlayGraph();
+        logger.debug("Applied {} changed trip updates, {} additional edges", changedTripUpdates, additionalEdgesByBaseNode.size());
+        realtimeFeed = new RealtimeFeed(new HashMap<>(feedMessages), publishedBlockedEdges, delaysForBoardEdges,
+                publishedDelaysForAlightEdges, additionalEdgesByBaseNode, additionalEdgesByAdjNode);
+        return realtimeFeed;
+    }
+
+    /**
+     * @return the number of trip updates of the given feed that were applied or removed
+     */
+    private int applyFeedMessage(String feedKey, GtfsRealtime.FeedMessage feedMessage) {
+        GTFSFeed feed = staticGtfs.getGtfsFeeds().get(feedKey);
+        ZoneId timezone = ZoneId.of(feed.agency.values().stream().findFirst().get().agency_timezone);
+        Instant timestamp = Instant.ofEpochSecond(feedMessage.getHeader().getTimestamp());
+        LocalDate dateToChange = timestamp.atZone(timezone).toLocalDate(); //FIXME
+        int changedTripUpdates = 0;
+        FeedState state = feedStates.get(feedKey);
+        if (state != null && !state.date.equals(dateToChange)) {
+            // the delayed departures are only valid on the day of the feed message, so all trip updates are new
+            state.effects.values().forEach(this::unapply);
+            changedTripUpdates += state.effects.size();
+            state = null;
+        }
+        Map<String, TripUpdateEffect> previousEffects = state == null ? Collections.emptyMap() : state.effects;
+        BitSet validOnDay = new BitSet();
+        validOnDay.set((int) DAYS.between(feed.getStartDate(), dateToChange));
+        FeedState nextState = new FeedState(dateToChange, timezone, validOnDay);
+
+        Map<String, GtfsRealtime.TripUpdate> tripUpdates = new LinkedHashMap<>();
+        for (GtfsRealtime.FeedEntity entity : feedMessage.getEntityList()) {
+            if (!entity.hasTripUpdate())
+                continue;
+            GtfsRealtime.TripUpdate tripUpdate = entity.getTripUpdate();
+            GtfsRealtime.TripDescriptor.ScheduleRelationship scheduleRelationship = tripUpdate.getTrip().getScheduleRelationship();
+            if (scheduleRelationship == GtfsRealtime.TripDescriptor.ScheduleRelationship.SCHEDULED
+                    || scheduleRelationship == GtfsRealtime.TripDescriptor.ScheduleRelationship.ADDED)
+                tripUpdates.put(tripKey(tripUpdate.getTrip()), tripUpdate);
+        }
+        for (Map.Entry<String, TripUpdateEffect> entry : previousEffects.entrySet()) {
+            if (!tripUpdates.containsKey(entry.getKey())) {
+                unapply(entry.getValue());
+                changedTripUpdates++;
+            }
+        }
+        for (Map.Entry<String, GtfsRealtime.TripUpdate> entry : tripUpdates.entrySet()) {
+            TripUpdateEffect effect = previousEffects.get(entry.getKey());
+            if (effect == null || !effect.tripUpdate.equals(entry.getValue())) {
+                // the new effect is created before the old one is taken back, so a trip update that cannot be
+                // applied does not leave the effects half applied
+                TripUpdateEffect nextEffect = tryCreateEffect(feedKey, feed, entry.getValue());
+                if (effect != null)
+                    unapply(effect);
+                if (nextEffect != null)
+                    apply(nextEffect);
+                effect = nextEffect;
+                changedTripUpdates++;
+            }
+            if (effect != null)
+                nextState.effects.put(entry.getKey(), effect);
+        }
+        feedStates.put(feedKey, nextState);
+        return changedTripUpdates;
+    }
+
+    private static String tripKey(GtfsRealtime.TripDescriptor tripDescriptor) {
+        return tripDescriptor.getScheduleRelationship() + " " + tripDescriptor.getTripId() + " " + tripDescriptor.getStartTime();
+    }
+
+    /**
+     * @return the effect of the given trip update or null if it is malformed, e.g. refers to stops the trip does not
+     * have. Such a trip update is skipped, but the others are still applied.
+     */
+    private TripUpdateEffect tryCreateEffect(String feedKey, GTFSFeed feed, GtfsRealtime.TripUpdate tripUpdate) {
+        try {
+            return createEffect(feedKey, feed, tripUpdate);
+        } catch (RuntimeException e) {
+            logger.warn("Cannot apply trip update for {}: {}", tripUpdate.getTrip(), e.toString());
+            return null;
+        }
+    }
+
+    private TripUpdateEffect createEffect(String feedKey, GTFSFeed feed, GtfsRealtime.TripUpdate tripUpdate) {
+        TripUpdateEffect effect = new TripUpdateEffect(tripUpdate);
+        if (effect.isAdded())
+            return effect;
+        Collection<Frequency> frequencies = feed.getFrequencies(tripUpdate.getTrip().getTripId());
+        int timeOffset = (tripUpdate.getTrip().hasStartTime() && !frequencies.isEmpty()) ? LocalTime.parse(tripUpdate.getTrip().getStartTime()).toSecondOfDay() : 0;
+        int[][] edges = findEdgesForTrip(feedKey, feed, tripUpdate.getTrip());
+        if (edges == null) {
+            logger.warn("Trip not found: {}", tripUpdate.getTrip());
+            return effect;
+        }
+        final int[] boardEdges = edges[0];
+        final int[] leaveEdges = edges[1];
+        tripUpdate.getStopTimeUpdateList().stream()
+                .filter(stopTimeUpdate -> stopTimeUpdate.getScheduleRelationship() == SKIPPED)
+                .mapToInt(GtfsRealtime.TripUpdate.StopTimeUpdate::getStopSequence)
+                .forEach(skippedStopSequenceNumber -> {
+                    effect.blockedEdges.add(boardEdges[skippedStopSequenceNumber]);
+                    effect.blockedEdges.add(leaveEdges[skippedStopSequenceNumber]);
+                });
+        GtfsReader.TripWithStopTimes tripWithStopTimes = RealtimeFeed.toTripWithStopTimes(feed, tripUpdate);
+        tripWithStopTimes.stopTimes.forEach(stopTime -> {
+            if (stopTime.stop_sequence > leaveEdges.length - 1) {
+                logger.warn("Stop sequence number too high {} vs {}", stopTime.stop_sequence, leaveEdges.length);
+                return;
+            }
+            final StopTime originalStopTime = feed.stop_times.get(new Fun.Tuple2(tripUpdate.getTrip().getTripId(), stopTime.stop_sequence));
+            int arrivalDelay = stopTime.arrival_time - originalStopTime.arrival_time;
+            effect.delaysForAlightEdges.put(leaveEdges[stopTime.stop_sequence], arrivalDelay * 1000);
+            int departureDelay = stopTime.departure_time - originalStopTime.departure_time;
+            if (departureDelay > 0) {
+                int departureNode = staticGtfs.getPtGraph().edge(boardEdges[stopTime.stop_sequence]).getAdjNode();
+                effect.delayedDepartures.add(new DelayedDeparture(stopTime.stop_sequence, stopTime.departure_time + timeOffset, departureNode, departureDelay * 1000));
+            }
+        });
+        return effect;
+    }
+
+    private int[][] findEdgesForTrip(String feedKey, GTFSFeed feed, GtfsRealtime.TripDescriptor tripDescriptor) {
+        String key = feedKey + " " + tripDescriptor.getTripId() + " " + tripDescriptor.getStartTime();
+        int[][] edges = edgesByTrip.get(key);
+        if (edges == null) {
+            int[] boardEdges = RealtimeFeed.findBoardEdgesForTrip(staticGtfs, feedKey, feed, tripDescriptor);
+            int[] leaveEdges = RealtimeFeed.findAlightEdgesForTrip(staticGtfs, feedKey, feed, tripDescriptor);
+            if (boardEdges == null || leaveEdges == null)
+                return null;
+            edges = new int[][]{boardEdges, leaveEdges};
+            edgesByTrip.put(key, edges);
+        }
+        return edges;
+    }
+
+    private void apply(TripUpdateEffect effect) {
+        blockedEdges.addAll(effect.blockedEdges);
+        delaysForAlightEdges.putAll(effect.delaysForAlightEdges);
+        edgesChanged |= !effect.blockedEdges.isEmpty() || !effect.delaysForAlightEdges.isEmpty();
+        overlayChanged |= effect.changesOverlay();
+    }
+
+    private void unapply(TripUpdateEffect effect) {
+        for (IntCursor c : effect.blockedEdges)
+            blockedEdges.remove(c.value);
+        delaysForAlightEdges.removeAll(effect.delaysForAlightEdges.keys());
+        edgesChanged |= !effect.blockedEdges.isEmpty() || !effect.delaysForAlightEdges.isEmpty();
+        overlayChanged |= effect.changesOverlay();
+    }
+
+    private void createOverlayGraph() {
+        IntLongHashMap delaysForBoardEdges = new IntLongHashMap();
+        List<PtGraph.PtEdge> additionalEdges = new ArrayList<>();
+        final GtfsReader.PtGraphOut overlayGraph = new GtfsReader.PtGraphOut() {
+            int nextEdge = staticGtfs.getPtGraph().getEdgeCount();
+            int nextNode = staticGtfs.getPtGraph().getNodeCount();
+
+            @Override
+            public int createEdge(int src, int dest, PtEdgeAttributes attrs) {
+                int edgeId = nextEdge++;
+                PtGraph.PtEdge e = new PtGraph.PtEdge(edgeId, src, dest, attrs);
+                assert canBeAdded(e);
+                additionalEdges.add(e);
+                return edgeId;
+            }
+
+            private boolean canBeAdded(PtGraph.PtEdge e) {
+                if (e.getType() != GtfsStorage.EdgeType.ENTER_PT) {
+                    if (staticGtfs.getPtToStreet().containsKey(e.getBaseNode())) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public int createNode() {
+                return nextNode++;
+            }
+
+        };
+        feedStates.forEach((feedKey, state) -> {
+            final GtfsReader gtfsReader = new GtfsReader(feedKey, staticGtfs.getPtGraph(), overlayGraph, staticGtfs, null, transfers.get(feedKey), null);
+            for (TripUpdateEffect effect : state.effects.values()) {
+                for (DelayedDeparture delayedDeparture : effect.delayedDepartures) {
+                    int delayedBoardEdge = gtfsReader.addDelayedBoardEdge(state.timezone, effect.tripUpdate.getTrip(), delayedDeparture.stopSequence,
+                            delayedDeparture.departureTime, delayedDeparture.departureNode, state.validOnDay);
+                    delaysForBoardEdges.put(delayedBoardEdge, delayedDeparture.delay);
+                }
+            }
+            for (TripUpdateEffect effect : state.effects.values())
+                if (effect.isAdded())
+                    RealtimeFeed.maybeAddExtraTrip(staticGtfs, feedKey, effect.tripUpdate, state.timezone, state.validOnDay, gtfsReader);
+            gtfsReader.wireUpAdditionalDeparturesAndArrivals(state.timezone);
+        });
+        this.delaysForBoardEdges = delaysForBoardEdges;
+        additionalEdgesByBaseNode = RealtimeFeed.sortedByBaseNode(additionalEdges);
+        additionalEdgesByAdjNode = RealtimeFeed.sortedByAdjNode(additionalEdges);
+    }
+
+    private static class FeedState {
+        final LocalDate date;
+        final ZoneId timezone;
+        final BitSet validOnDay;
+        // the applied trip updates in the order of the feed message
+        final Map<String, TripUpdateEffect> effects = new LinkedHashMap<>();
+
+        FeedState(LocalDate date, ZoneId timezone, BitSet validOnDay) {
+            this.date = date;
+            this.timezone = timezone;
+            this.validOnDay = validOnDay;
+        }
+    }
+
+    /**
+     * What a single trip update changes, so that it can be taken back when the trip update changes or disappears.
+     */
+    private static class TripUpdateEffect {
+        final GtfsRealtime.TripUpdate tripUpdate;
+        final IntArrayList blockedEdges = new IntArrayList();
+        final IntLongHashMap delaysForAlightEdges = new IntLongHashMap();
+        final List<DelayedDeparture> delayedDepartures = new ArrayList<>();
+
+        TripUpdateEffect(GtfsRealtime.TripUpdate tripUpdate) {
+            this.tripUpdate = tripUpdate;
+        }
+
+        boolean isAdded() {
+            return tripUpdate.getTrip().getScheduleRelationship() == GtfsRealtime.TripDescriptor.ScheduleRelationship.ADDED;
+        }
+
+        boolean changesOverlay() {
+            return isAdded() || !delayedDepartures.isEmpty();
+        }
+    }
+
+    private static class DelayedDeparture {
+        final int stopSequence;
+        final int departureTime;
+        final int departureNode;
+        final long delay;
+
+        DelayedDeparture(int stopSequence, int departureTime, int departureNode, long delay) {
+            this.stopSequence = stopSequence;
+            this.departureTime = departureTime;
+            this.departureNode = departureNode;
+            this.delay = delay;
+        }
+    }
+}
@@ -0,0 +1,521 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.gtfs;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.conveyal.gtfs.GTFSFeed;
+import com.conveyal.gtfs.model.Service;
+import com.conveyal.gtfs.model.StopTime;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.util.Helper;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+
+/**
+ * The timetable of the trip-based router in flat int arrays, which are compiled once from {@link Trips} at import
+ * and can be memory mapped like the other DataAccess objects of the graph. The trips are numbered like in
+ * {@link Trips}, so the trip transfers refer to the same trips, and a stop sequence is the index of a stop time
+ * within its trip. The GTFS entities are only needed to build the response.
+ */
+public class Timetable {
+    // trip record
+    private static final int PATTERN = 0, STOP_TIMES = 1, SLOTS = 2, SERVICE = 3, ROUTE_TYPE = 4, FEED = 5, TRIP_ID = 6,
+            ROUTE_ID = 7, HEADSIGN = 8, BLOCK_ID = 9, TRIP_INTS = 10;
+    // stop time record, a stop time slot without a stop is padding
+    private static final int STOP = 0, ARRIVAL = 1, DEPARTURE = 2, STOP_TIME_INTS = 3;
+    // stop record, the boarding groups of a stop end where those of the next stop start
+    private static final int STOP_FEED = 0, STOP_ID = 1, FIRST_GROUP = 2, STOP_INTS = 3;
+    private static final int NO_STRING = -1;
+
+    private final DataAccess tripsDA;
+    private final DataAccess stopTimesDA;
+    // per pattern the first and the end trip, the trips of a pattern are sorted by departure
+    private final DataAccess patternsDA;
+    private final DataAccess stopsDA;
+    // per stop and pattern a group of boardings, per group the index of its first boarding
+    private final DataAccess groupsDA;
+    // per boarding the trip and the stop sequence, sorted by departure within a group
+    private final DataAccess boardingsDA;
+    // per service one bit per day
+    private final DataAccess servicesDA;
+    private final DataAccess stringOffsetsDA;
+    private final DataAccess stringsDA;
+    private int trips, patterns, stops, groups, services, strings;
+    private long firstDay;
+    private int days, serviceInts;
+    // the feed ids and their time zones are stored as the first strings
+    private String[] feedIds;
+    private ZoneId[] zoneIds;
+    private Map<GtfsStorage.FeedIdWithStopId, Integer> stopIndices;
+
+    public Timetable(Directory dir) {
+        tripsDA = dir.create("pt_timetable_trips");
+        stopTimesDA = dir.create("pt_timetable_stop_times");
+        patternsDA = dir.create("pt_timetable_patterns");
+        stopsDA = dir.create("pt_timetable_stops");
+        groupsDA = dir.create("pt_timetable_boarding_groups");
+        boardingsDA = dir.create("pt_timetable_boardings");
+        servicesDA = dir.create("pt_timetable_services");
+        stringOffsetsDA = dir.create("pt_timetable_string_offsets");
+        stringsDA = dir.create("pt_timetable_strings");
+    }
+
+    public Timetable build(Trips tripCollection, Map<String, GTFSFeed> feeds) {
+        for (DataAccess da : getDataAccesses())
+            da.create(1000);
+        Map<String, Integer> stringIndices = new HashMap<>();
+        long[] stringPointer = {0};
+        List<String> feedIdList = new ArrayList<>(new TreeSet<>(feeds.keySet()));
+        // not deduplicated because they must be the first strings in this order
+        for (String feedId : feedIdList)
+            addString(feedId, new HashMap<>(), stringPointer);
+        for (String feedId : feedIdList)
+            addString(feeds.get(feedId).agency.values().stream().findFirst().get().agency_timezone, new HashMap<>(), stringPointer);
+
+        LocalDate start = null, end = null;
+        for (GTFSFeed feed : feeds.values()) {
+            for (LocalDate date : Arrays.asList(feed.getCalendarServiceRangeStart(), feed.getCalendarDateStart()))
+                if (date != null && (start == null || date.isBefore(start)))
+                    start = date;
+            for (LocalDate date : Arrays.asList(feed.getCalendarServiceRangeEnd(), feed.getCalendarDateEnd()))
+                if (date != null && (end == null || date.isAfter(end)))
+                    end = date;
+        }
+        firstDay = start == null ? 0 : start.toEpochDay();
+        days = start == null ? 0 : (int) (end.toEpochDay() - firstDay + 1);
+        serviceInts = (days + 31) / 32;
+
+        Map<String, Integer> serviceIndices = new HashMap<>();
+        Map<GtfsStorage.FeedIdWithStopId, Integer> stopIndexMap = new LinkedHashMap<>();
+        List<TreeMap<Integer, IntArrayList>> boardingsByStop = new ArrayList<>();
+        Trips.Pattern currentPattern = null;
+        long stopTimePointer = 0;
+        for (GTFSFeed.StopTimesForTripWithTripPatternKey trip : tripCollection.trips) {
+            if (trip.idx != trips)
+                throw new IllegalStateException("The trips must be sorted by their index, but trip " + trip.idx + " is at " + trips);
+            if (trip.pattern != currentPattern) {
+                currentPattern = trip.pattern;
+                patternsDA.ensureCapacity((patterns + 1) * 8L);
+                patternsDA.setInt(patterns * 8L, trip.idx);
+                patternsDA.setInt(patterns * 8L + 4, trip.endIdxOfPattern);
+                patterns++;
+            }
+            Integer service = serviceIndices.get(trip.feedId + ":" + trip.service.service_id);
+            if (service == null) {
+                service = services++;
+                serviceIndices.put(trip.feedId + ":" + trip.service.service_id, service);
+                addService(service, trip.service);
+            }
+            long pointer = (long) trips * TRIP_INTS * 4;
+            tripsDA.ensureCapacity(pointer + TRIP_INTS * 4);
+            tripsDA.setInt(pointer + PATTERN * 4, patterns - 1);
+            tripsDA.setInt(pointer + STOP_TIMES * 4, (int) (stopTimePointer / (STOP_TIME_INTS * 4)));
+            tripsDA.setInt(pointer + SLOTS * 4, trip.stopTimes.size());
+            tripsDA.setInt(pointer + SERVICE * 4, service);
+            tripsDA.setInt(pointer + ROUTE_TYPE * 4, trip.routeType);
+            tripsDA.setInt(pointer + FEED * 4, feedIdList.indexOf(trip.feedId));
+            tripsDA.setInt(pointer + TRIP_ID * 4, addString(trip.trip.trip_id, stringIndices, stringPointer));
+            tripsDA.setInt(pointer + ROUTE_ID * 4, addString(trip.trip.route_id, stringIndices, stringPointer));
+            tripsDA.setInt(pointer + HEADSIGN * 4, addString(trip.trip.trip_headsign, stringIndices, stringPointer));
+            tripsDA.setInt(pointer + BLOCK_ID * 4, addString(trip.trip.block_id, stringIndices, stringPointer));
+            trips++;
+
+            stopTimesDA.ensureCapacity(stopTimePointer + (long) trip.stopTimes.size() * STOP_TIME_INTS * 4);
+            for (int i = 0; i < trip.stopTimes.size(); i++) {
+                StopTime stopTime = trip.stopTimes.get(i);
+                int stop = -1;
+                if (stopTime != null) {
+                    GtfsStorage.FeedIdWithStopId stopId = new GtfsStorage.FeedIdWithStopId(trip.feedId, stopTime.stop_id);
+                    Integer index = stopIndexMap.get(stopId);
+                    if (index == null) {
+                        index = stopIndexMap.size();
+                        stopIndexMap.put(stopId, index);
+                        boardingsByStop.add(new TreeMap<>());
+                    }
+                    stop = index;
+                    // like in Trips one cannot board at the last stop
+                    if (i < trip.stopTimes.size() - 1)
+                        boardingsByStop.get(stop).computeIfAbsent(patterns - 1, k -> new IntArrayList()).add(trip.idx, i);
+                }
+                stopTimesDA.setInt(stopTimePointer + STOP * 4, stop);
+                stopTimesDA.setInt(stopTimePointer + ARRIVAL * 4, stopTime == null ? 0 : stopTime.arrival_time);
+                stopTimesDA.setInt(stopTimePointer + DEPARTURE * 4, stopTime == null ? 0 : stopTime.departure_time);
+                stopTimePointer += STOP_TIME_INTS * 4;
+            }
+        }
+
+        stops = stopIndexMap.size();
+        stopsDA.ensureCapacity((stops + 1L) * STOP_INTS * 4);
+        int boardings = 0;
+        for (Map.Entry<GtfsStorage.FeedIdWithStopId, Integer> entry : stopIndexMap.entrySet()) {
+            long pointer = (long) entry.getValue() * STOP_INTS * 4;
+            stopsDA.setInt(pointer + STOP_FEED * 4, feedIdList.indexOf(entry.getKey().feedId));
+            stopsDA.setInt(pointer + STOP_ID * 4, addString(entry.getKey().stopId, stringIndices, stringPointer));
+            stopsDA.setInt(pointer + FIRST_GROUP * 4, groups);
+            for (IntArrayList group : boardingsByStop.get(entry.getValue()).values()) {
+                groupsDA.ensureCapacity((groups + 2L) * 4);
+                groupsDA.setInt(groups * 4L, boardings);
+                boardingsDA.ensureCapacity((long) (boardings + group.size() / 2) * 8);
+                for (int i = 0; i < group.size(); i++)
+                    boardingsDA.setInt(boardings * 8L + i * 4L, group.get(i));
+                boardings += group.size() / 2;
+                groups++;
+            }
+        }
+        stopsDA.setInt((long) stops * STOP_INTS * 4 + FIRST_GROUP * 4, groups);
+        groupsDA.ensureCapacity((groups + 1L) * 4);
+        groupsDA.setInt(groups * 4L, boardings);
+        stringOffsetsDA.ensureCapacity((strings + 1L) * 8);
+        stringOffsetsDA.setInt(strings * 8L, (int) stringPointer[0]);
+        stringOffsetsDA.setInt(strings * 8L + 4, (int) (stringPointer[0] >>> 32));
+
+        tripsDA.setHeader(0, trips);
+        patternsDA.setHeader(0, patterns);
+        stopsDA.setHeader(0, stops);
+        groupsDA.setHeader(0, groups);
+        servicesDA.setHeader(0, services);
+        servicesDA.setHeader(4, (int) firstDay);
+        servicesDA.setHeader(8, days);
+        stringOffsetsDA.setHeader(0, strings);
+        stringOffsetsDA.setHeader(4, feedIdList.size());
+        initFeeds(feedIdList.size());
+        stopIndices = stopIndexMap;
+        return this;
+    }
+
+    private void addService(int service, Service gtfsService) {
+        long pointer = (long) service * serviceInts * 4;
+        servicesDA.ensureCapacity(pointer + serviceInts * 4L + 4);
+        for (int word = 0; word < serviceInts; word++) {
+            int bits = 0;
+            for (int bit = 0; bit < 32 && word * 32 + bit < days; bit++)
+                if (gtfsService.activeOn(LocalDate.ofEpochDay(firstDay + word * 32 + bit)))
+                    bits |= 1 << bit;
+            servicesDA.setInt(pointer + word * 4L, bits);
+        }
+    }
+
+    private int addString(String string, Map<String, Integer> stringIndices, long[] pointer) {
+        if (string == null)
+            return NO_STRING;
+        Integer index = stringIndices.get(string);
+        if (index != null)
+            return index;
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        stringOffsetsDA.ensureCapacity((strings + 1L) * 8);
+        stringOffsetsDA.setInt(strings * 8L, (int) pointer[0]);
+        stringOffsetsDA.setInt(strings * 8L + 4, (int) (pointer[0] >>> 32));
+        stringsDA.ensureCapacity(pointer[0] + bytes.length);
+        stringsDA.setBytes(pointer[0], bytes, bytes.length);
+        pointer[0] += bytes.length;
+        stringIndices.put(string, strings);
+        return strings++;
+    }
+
+    public boolean loadExisting() {
+        if (!tripsDA.loadExisting())
+            return false;
+        for (DataAccess da : getDataAccesses())
+            if (da != tripsDA && !da.loadExisting())
+                throw new IllegalStateException("Cannot load " + da.getName() + " of the timetable");
+        trips = tripsDA.getHeader(0);
+        patterns = patternsDA.getHeader(0);
+        stops = stopsDA.getHeader(0);
+        groups = groupsDA.getHeader(0);
+        services = servicesDA.getHeader(0);
+        firstDay = servicesDA.getHeader(4);
+        days = servicesDA.getHeader(8);
+        serviceInts = (days + 31) / 32;
+        strings = stringOffsetsDA.getHeader(0);
+        initFeeds(stringOffsetsDA.getHeader(4));
+        stopIndices = new HashMap<>(stops);
+        for (int stop = 0; stop < stops; stop++)
+            stopIndices.put(getStop(stop), stop);
+        return true;
+    }
+
+    private void initFeeds(int feeds) {
+        feedIds = new String[feeds];
+        zoneIds = new ZoneId[feeds];
+        for (int i = 0; i < feeds; i++) {
+            feedIds[i] = getString(i);
+            zoneIds[i] = ZoneId.of(getString(feeds + i));
+        }
+    }
+
+    private String getString(int index) {
+        if (index == NO_STRING)
+            return null;
+        long start = getStringOffset(index);
+        byte[] bytes = new byte[(int) (getStringOffset(index + 1) - start)];
+        stringsDA.getBytes(start, bytes, bytes.length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private long getStringOffset(int index) {
+        return (stringOffsetsDA.getInt(index * 8L) & 0xFFFFFFFFL) | ((long) stringOffsetsDA.getInt(index * 8L + 4) << 32);
+    }
+
+    public int getTrips() {
+        return trips;
+    }
+
+    public int getPatterns() {
+        return patterns;
+    }
+
+    public int getStops() {
+        return stops;
+    }
+
+    private int getTripInt(int trip, int field) {
+        return tripsDA.getInt((long) trip * TRIP_INTS * 4 + field * 4);
+    }
+
+    public int getPattern(int trip) {
+        return getTripInt(trip, PATTERN);
+    }
+
+    public int getFirstTripOfPattern(int pattern) {
+        return patternsDA.getInt(pattern * 8L);
+    }
+
+    /**
+     * @return the exclusive end of the trips of the pattern of the given trip. The trips of a pattern are sorted by
+     * their departure, so the trips from the given one to this index depart later.
+     */
+    public int getEndTripOfPattern(int trip) {
+        return patternsDA.getInt(getPattern(trip) * 8L + 4);
+    }
+
+    /**
+     * @return the number of stop sequences of the given trip, the stop times of some of them might be missing
+     */
+    public int getStopSequences(int trip) {
+        return getTripInt(trip, SLOTS);
+    }
+
+    /**
+     * @return the number of stop times of all trips including the missing ones
+     */
+    public int getStopTimes() {
+        return trips == 0 ? 0 : getStopTimeIndex(trips - 1, getStopSequences(trips - 1));
+    }
+
+    /**
+     * @return the index of the given stop time among the stop times of all trips
+     */
+    public int getStopTimeIndex(int trip, int stopSequence) {
+        return getTripInt(trip, STOP_TIMES) + stopSequence;
+    }
+
+    private long getStopTimePointer(int trip, int stopSequence) {
+        return (long) getStopTimeIndex(trip, stopSequence) * STOP_TIME_INTS * 4;
+    }
+
+    public boolean hasStopTime(int trip, int stopSequence) {
+        return getStopIndex(trip, stopSequence) >= 0;
+    }
+
+    /**
+     * @return the index of the stop of the given stop time or -1 if the stop time is missing
+     */
+    public int getStopIndex(int trip, int stopSequence) {
+        return stopTimesDA.getInt(getStopTimePointer(trip, stopSequence) + STOP * 4);
+    }
+
+    /**
+     * @return the arrival time in seconds since the start of the service day
+     */
+    public int getArrivalTime(int trip, int stopSequence) {
+        return stopTimesDA.getInt(getStopTimePointer(trip, stopSequence) + ARRIVAL * 4);
+    }
+
+    /**
+     * @return the departure time in seconds since the start of the service day
+     */
+    public int getDepartureTime(int trip, int stopSequence) {
+        return stopTimesDA.getInt(getStopTimePointer(trip, stopSequence) + DEPARTURE * 4);
+    }
+
+    public int getRouteType(int trip) {
+        return getTripInt(trip, ROUTE_TYPE);
+    }
+
+    public String getFeedId(int trip) {
+        return feedIds[getTripInt(trip, FEED)];
+    }
+
+    public ZoneId getZoneId(int trip) {
+        return zoneIds[getTripInt(trip, FEED)];
+    }
+
+    public String getTripId(int trip) {
+        return getString(getTripInt(trip, TRIP_ID));
+    }
+
+    public String getRouteId(int trip) {
+        return getString(getTripInt(trip, ROUTE_ID));
+    }
+
+    public String getHeadsign(int trip) {
+        return getString(getTripInt(trip, HEADSIGN));
+    }
+
+    /**
+     * @return the block id of the given trip or null
+     */
+    public String getBlockId(int trip) {
+        return getString(getTripInt(trip, BLOCK_ID));
+    }
+
+    public boolean isActiveOn(int trip, LocalDate serviceDay) {
+        return isServiceActiveOn(getService(trip), getDay(serviceDay));
+    }
+
+    /**
+     * @param day the index of the day, see {@link #getDay(LocalDate)}
+     */
+    public boolean isServiceActiveOn(int service, int day) {
+        if (day < 0)
+            return false;
+        long pointer = (long) service * serviceInts * 4 + (day / 32) * 4;
+        return (servicesDA.getInt(pointer) & (1 << (day % 32))) != 0;
+    }
+
+    /**
+     * @return the number of days from the first to the last day of service of all feeds
+     */
+    public int getDays() {
+        return days;
+    }
+
+    /**
+     * @return the index of the given day among the days of service or -1 if no trip runs on it
+     */
+    public int getDay(LocalDate serviceDay) {
+        long day = serviceDay.toEpochDay() - firstDay;
+        return day < 0 || day >= days ? -1 : (int) day;
+    }
+
+    public LocalDate getDate(int day) {
+        return LocalDate.ofEpochDay(firstDay + day);
+    }
+
+    public int getServices() {
+        return services;
+    }
+
+    public int getService(int trip) {
+        return getTripInt(trip, SERVICE);
+    }
+
+    /**
+     * @return the indices of the days the given service runs on, see {@link #getDay(LocalDate)}
+     */
+    public BitSet getServiceDays(int service) {
+        BitSet result = new BitSet(days);
+        long pointer = (long) service * serviceInts * 4;
+        for (int word = 0; word < serviceInts; word++) {
+            int bits = servicesDA.getInt(pointer + word * 4L);
+            for (int bit = 0; bits != 0 && bit < 32; bit++)
+                if ((bits & (1 << bit)) != 0)
+                    result.set(word * 32 + bit);
+        }
+        return result;
+    }
+
+    /**
+     * @return the index of the given stop or -1 if no trip stops there
+     */
+    public int getStopIndex(GtfsStorage.FeedIdWithStopId stopId) {
+        return stopIndices.getOrDefault(stopId, -1);
+    }
+
+    public GtfsStorage.FeedIdWithStopId getStop(int stop) {
+        long pointer = (long) stop * STOP_INTS * 4;
+        return new GtfsStorage.FeedIdWithStopId(feedIds[stopsDA.getInt(pointer + STOP_FEED * 4)], getString(stopsDA.getInt(pointer + STOP_ID * 4)));
+    }
+
+    /**
+     * The boardings at a stop are grouped by pattern. The groups of the given stop range from this index to the
+     * first group of the next stop.
+     */
+    public int getFirstBoardingGroup(int stop) {
+        return stopsDA.getInt((long) stop * STOP_INTS * 4 + FIRST_GROUP * 4);
+    }
+
+    /**
+     * The boardings of a group are sorted by departure and range from this index to the first boarding of the next
+     * group.
+     */
+    public int getFirstBoarding(int group) {
+        return groupsDA.getInt(group * 4L);
+    }
+
+    /**
+     * @return the first boarding of the given group that departs at or after the given time or the first boarding
+     * of the next group if there is none
+     */
+    public int getFirstBoardingAfter(int group, int secondOfDay) {
+        int low = getFirstBoarding(group), high = getFirstBoarding(group + 1);
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (getDepartureTime(getBoardingTrip(mid), getBoardingStopSequence(mid)) >= secondOfDay)
+                high = mid;
+            else
+                low = mid + 1;
+        }
+        return low;
+    }
+
+    public int getBoardingTrip(int boarding) {
+        return boardingsDA.getInt(boarding * 8L);
+    }
+
+    public int getBoardingStopSequence(int boarding) {
+        return boardingsDA.getInt(boarding * 8L + 4);
+    }
+
+    private List<DataAccess> getDataAccesses() {
+        return Arrays.asList(tripsDA, stopTimesDA, patternsDA, stopsDA, groupsDA, boardingsDA, servicesDA, stringOffsetsDA, stringsDA);
+    }
+
+    public void flush() {
+        getDataAccesses().forEach(DataAccess::flush);
+    }
+
+    public void close() {
+        getDataAccesses().forEach(DataAccess::close);
+    }
+
+    public long getCapacity() {
+        return getDataAccesses().stream().mapToLong(DataAccess::getCapacity).sum();
+    }
+
+    @Override
+    public String toString() {
+        return "timetable, trips: " + Helper.nf(trips) + ", patterns: " + Helper.nf(patterns) + ", stops: " + Helper.nf(stops)
+                + ", days: " + days + ", " + Helper.nf(getCapacity() / Helper.MB) + "MB";
+    }
+}
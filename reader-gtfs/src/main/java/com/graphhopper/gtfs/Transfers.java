@@ -144,6 +144,10 @@ public class Transfers {
         return result;
     }
 
+    boolean hasTransfersFromStop(String fromStopId) {
+        return transfersFromStop.containsKey(fromStopId);
+    }
+
     private Transfer findMostSpecificRule(List<Transfer> transfers, String fromRouteId, String toRouteId) {
         final ArrayList<Transfer> transfersBySpecificity = new ArrayList<>(transfers);
         transfersBySpecificity.sort(Comparator.comparingInt(t -> {
@@ -1,40 +1,36 @@
 package com.graphhopper.gtfs;
 
-import com.conveyal.gtfs.GTFSFeed;
-import com.conveyal.gtfs.model.StopTime;
-import com.conveyal.gtfs.model.Trip;
-import com.graphhopper.reader.osm.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.time.*;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
-import java.util.function.Predicate;
-import java.util.function.ToIntFunction;
-import java.util.stream.Collectors;
-
-import static com.graphhopper.gtfs.Trips.TripAtStopTime.ArrivalDeparture.ARRIVAL;
-import static com.graphhopper.gtfs.Trips.TripAtStopTime.print;
+import java.util.function.IntPredicate;
 
 public class TripBasedRouter {
 
     private static final Logger logger = LoggerFactory.getLogger(TripBasedRouter.class);
 
-    private final Trips tripTransfers;
+    private final Timetable timetable;
+    private final TripTransfers tripTransfers;
     private GtfsStorage gtfsStorage;
     int[] earliestArrivalTime;
     private int[][] tripDoneFromIndex;
+    private int[] egressStops;
     private List<ResultLabel> result = new ArrayList<>();
     private Parameters parameters;
+    private long firstServiceDay;
+    private Instant profileEndTime;
     private final int N_ROUNDS = 8;
     int round;
 
-    public TripBasedRouter(GtfsStorage gtfsStorage, Trips tripTransfers) {
+    public TripBasedRouter(GtfsStorage gtfsStorage) {
         this.gtfsStorage = gtfsStorage;
-        this.tripTransfers = tripTransfers;
+        this.timetable = gtfsStorage.getTimetable();
+        this.tripTransfers = gtfsStorage.getTripTransfers();
         earliestArrivalTime = new int[N_ROUNDS + 1];
-        tripDoneFromIndex = new int[N_ROUNDS + 1][tripTransfers.idx];
+        tripDoneFromIndex = new int[N_ROUNDS + 1][timetable.getTrips()];
         for (int i = 0; i < N_ROUNDS + 1; i++) {
             earliestArrivalTime[i] = Integer.MAX_VALUE;
             Arrays.fill(this.tripDoneFromIndex[i], Integer.MAX_VALUE);
@@ -68,6 +64,9 @@ public class TripBasedRouter {
 
     public List<ResultLabel> routeNaiveProfile(Parameters parameters) {
         this.parameters = parameters;
+        firstServiceDay = parameters.getProfileStartTime().atZone(ZoneOffset.UTC).toLocalDate().toEpochDay() - 1;
+        profileEndTime = parameters.getProfileStartTime().plus(parameters.getProfileLength());
+        egressStops = parameters.getEgressStations().stream().mapToInt(s -> timetable.getStopIndex(s.stopId)).toArray();
         while (!parameters.getProfileLength().isNegative()) {
             Instant initialTime = parameters.getProfileStartTime().plus(parameters.getProfileLength());
             route(parameters.getAccessStations(), initialTime, parameters.getTripFilter());
@@ -77,22 +76,24 @@ public class TripBasedRouter {
         return result;
     }
 
-    public List<ResultLabel> route(List<StopWithTimeDelta> accessStations, Instant initialTime, Predicate<GTFSFeed.StopTimesForTripWithTripPatternKey> tripFilter) {
+    public List<ResultLabel> route(List<StopWithTimeDelta> accessStations, Instant initialTime, IntPredicate tripFilter) {
         logger.debug("=== {} ===", initialTime);
         List<EnqueuedTripSegment> queue = new ArrayList<>();
         for (StopWithTimeDelta accessStation : accessStations) {
+            int stop = timetable.getStopIndex(accessStation.stopId);
+            if (stop < 0)
+                continue;
             ZonedDateTime earliestDepartureTime = initialTime.atZone(accessStation.zoneId).plus(accessStation.timeDelta, ChronoUnit.MILLIS);
             LocalDate serviceDay = earliestDepartureTime.toLocalDate(); // FIXME service day across timezones FIXME service day wraparound
-            Map<String, List<Trips.TripAtStopTime>> boardingsByPattern = tripTransfers.getPatternBoardings(accessStation.stopId);
             int targetSecondOfDay = earliestDepartureTime.toLocalTime().toSecondOfDay();
-            for (List<Trips.TripAtStopTime> boardings : boardingsByPattern.values()) {
-                int index = binarySearch(targetSecondOfDay, boardings, boarding -> tripTransfers.getTrip(boarding.tripIdx).stopTimes.get(boarding.stop_sequence).departure_time);
-                for (int i = index; i < boardings.size(); i++) {
-                    Trips.TripAtStopTime boarding = boardings.get(i);
-                    GTFSFeed.StopTimesForTripWithTripPatternKey tripPointer = tripTransfers.getTrip(boarding.tripIdx);
-                    if (tripPointer.service.activeOn(serviceDay) && tripFilter.test(tripPointer)) {
-                        logger.debug("{}", boarding);
-                        enqueue(queue, tripPointer, boarding, null, null, serviceDay, accessStation, 0);
+            for (int group = timetable.getFirstBoardingGroup(stop); group < timetable.getFirstBoardingGroup(stop + 1); group++) {
+                int endBoarding = timetable.getFirstBoarding(group + 1);
+                for (int boarding = timetable.getFirstBoardingAfter(group, targetSecondOfDay); boarding < endBoarding; boarding++) {
+                    int trip = timetable.getBoardingTrip(boarding);
+                    if (timetable.isActiveOn(trip, serviceDay) && tripFilter.test(trip)) {
+                        Trips.TripAtStopTime tripAtBoarding = new Trips.TripAtStopTime(trip, timetable.getBoardingStopSequence(boarding));
+                        logger.debug("{}", tripAtBoarding);
+                        enqueue(queue, tripAtBoarding, null, null, serviceDay, accessStation, 0);
                         break;
                     }
                 }
@@ -102,14 +103,6 @@ public class TripBasedRouter {
         return result;
     }
 
-    private static int binarySearch(int targetSecondOfDay, List<Trips.TripAtStopTime> boardings, ToIntFunction<Trips.TripAtStopTime> tripAtStopTimeToIntFunction) {
-        int index = Collections.binarySearch(boardings, null, (boarding, key) -> {
-            int x = tripAtStopTimeToIntFunction.applyAsInt(boarding);
-            return x >= targetSecondOfDay ? 1 : -1;
-        });
-        return index >= 0 ? index : (- index) - 1;
-    }
-
     private void iterate(List<EnqueuedTripSegment> queue) {
         round = 0;
         logger.debug("Round {}: {}", round, queue.size());
@@ -126,23 +119,20 @@ public class TripBasedRouter {
     }
 
     private void reportQueue(List<EnqueuedTripSegment> queue) {
-        List<Pair<EnqueuedTripSegment, GTFSFeed.StopTimesForTripWithTripPatternKey>> pairs = queue.stream()
-                .map(segment -> new Pair<>(segment, tripTransfers.getTrip(segment.tripAtStopTime.tripIdx)))
-                .collect(Collectors.toList());
-        pairs.forEach(p -> {
-                    EnqueuedTripSegment segment = p.first;
-                    GTFSFeed.StopTimesForTripWithTripPatternKey trip = p.second;
-                    logger.debug(" pattern: {}   trip: {} {},   stops: [{}, {}]",
-                            trip.pattern.pattern_id,
-                            p.first.tripPointer.trip.trip_id,
-                            p.first.tripPointer.idx,
-                            segment.tripAtStopTime.stop_sequence,
-                            segment.toStopSequence);
-                });
+        if (!logger.isDebugEnabled())
+            return;
+        for (EnqueuedTripSegment segment : queue) {
+            int trip = segment.tripAtStopTime.tripIdx;
+            logger.debug(" pattern: {}   trip: {} {},   stops: [{}, {}]",
+                    timetable.getPattern(trip),
+                    timetable.getTripId(trip),
+                    trip,
+                    segment.tripAtStopTime.stop_sequence,
+                    segment.toStopSequence);
+        }
     }
 
     static class EnqueuedTripSegment {
-        GTFSFeed.StopTimesForTripWithTripPatternKey tripPointer;
         Trips.TripAtStopTime tripAtStopTime;
         int toStopSequence;
         LocalDate serviceDay;
@@ -152,8 +142,7 @@ public class TripBasedRouter {
         long routeTypePenalty;
         int nRealTransfers;
 
-        public EnqueuedTripSegment(GTFSFeed.StopTimesForTripWithTripPatternKey tripPointer, Trips.TripAtStopTime tripAtStopTime, int toStopSequence, LocalDate serviceDay, Trips.TripAtStopTime transferOrigin, EnqueuedTripSegment parent, StopWithTimeDelta accessStation) {
-            this.tripPointer = tripPointer;
+        public EnqueuedTripSegment(Trips.TripAtStopTime tripAtStopTime, int toStopSequence, LocalDate serviceDay, Trips.TripAtStopTime transferOrigin, EnqueuedTripSegment parent, StopWithTimeDelta accessStation) {
             this.tripAtStopTime = tripAtStopTime;
             this.toStopSequence = toStopSequence;
             this.serviceDay = serviceDay;
@@ -175,28 +164,29 @@ public class TripBasedRouter {
         List<EnqueuedTripSegment> queue1 = new ArrayList<>();
         for (EnqueuedTripSegment enqueuedTripSegment : queue0) {
             logger.debug("{}", enqueuedTripSegment);
-            GTFSFeed sourceFeed = gtfsStorage.getGtfsFeeds().get(enqueuedTripSegment.tripPointer.feedId);
-            ZoneId sourceZoneId = ZoneId.of(sourceFeed.agency.values().stream().findFirst().get().agency_timezone);
-            int toStopSequence = Math.min(enqueuedTripSegment.toStopSequence, enqueuedTripSegment.tripPointer.stopTimes.size());
+            int trip = enqueuedTripSegment.tripAtStopTime.tripIdx;
+            int day = timetable.getDay(enqueuedTripSegment.serviceDay);
+            ZoneId sourceZoneId = timetable.getZoneId(trip);
+            int toStopSequence = Math.min(enqueuedTripSegment.toStopSequence, timetable.getStopSequences(trip));
             for (int i = enqueuedTripSegment.tripAtStopTime.stop_sequence + 1; i < toStopSequence; i++) {
-                StopTime stopTime = enqueuedTripSegment.tripPointer.stopTimes.get(i);
-                if (stopTime == null) continue;
-                if (! (getArrivalTime(enqueuedTripSegment, stopTime, 0) < earliestArrivalTime[round]))
+                if (!timetable.hasStopTime(trip, i)) continue;
+                int arrivalTime = timetable.getArrivalTime(trip, i);
+                if (! (getArrivalTime(enqueuedTripSegment, arrivalTime, 0) < earliestArrivalTime[round]))
                     break;
-                Trips.TripAtStopTime transferOrigin = new Trips.TripAtStopTime(enqueuedTripSegment.tripPointer.idx, stopTime.stop_sequence);
-                logger.debug("  {}", print(transferOrigin, tripTransfers, ARRIVAL));
-                Collection<Trips.TripAtStopTime> transferDestinations = gtfsStorage.tripTransfers.getTripTransfers(enqueuedTripSegment.serviceDay).get(transferOrigin);
-                if (transferDestinations == null) continue; // currently if we didn't build the service day.
-                for (Trips.TripAtStopTime transferDestination : transferDestinations) {
-                    GTFSFeed.StopTimesForTripWithTripPatternKey destinationTripPointer = tripTransfers.getTrip(transferDestination.tripIdx);
-                    GTFSFeed destinationFeed = gtfsStorage.getGtfsFeeds().get(destinationTripPointer.feedId);
-                    ZoneId destinationZoneId = ZoneId.of(destinationFeed.agency.values().stream().findFirst().get().agency_timezone);
-                    StopTime transferStopTime = destinationTripPointer.stopTimes.get(transferDestination.stop_sequence);
-                    LocalDateTime scheduleArrivalTime = enqueuedTripSegment.serviceDay.atStartOfDay().plusSeconds(stopTime.arrival_time);
+                Trips.TripAtStopTime transferOrigin = new Trips.TripAtStopTime(trip, i);
+                logger.debug("  {}", transferOrigin);
+                int stopTimeIndex = timetable.getStopTimeIndex(trip, i);
+                for (int transfer = tripTransfers.getFirstTransfer(stopTimeIndex); transfer < tripTransfers.getFirstTransfer(stopTimeIndex + 1); transfer++) {
+                    if (!tripTransfers.isValidOn(transfer, day))
+                        continue;
+                    int destinationTrip = tripTransfers.getTransferTrip(transfer);
+                    Trips.TripAtStopTime transferDestination = new Trips.TripAtStopTime(destinationTrip, tripTransfers.getTransferStopSequence(transfer));
+                    ZoneId destinationZoneId = timetable.getZoneId(destinationTrip);
+                    LocalDateTime scheduleArrivalTime = enqueuedTripSegment.serviceDay.atStartOfDay().plusSeconds(arrivalTime);
                     int timeZoneOffset = (int) (scheduleArrivalTime.atZone(sourceZoneId).toEpochSecond() - scheduleArrivalTime.atZone(destinationZoneId).toEpochSecond());
-                    if (transferStopTime.departure_time >= stopTime.arrival_time + timeZoneOffset && destinationTripPointer.service.activeOn(enqueuedTripSegment.serviceDay) && parameters.getTripFilter().test(destinationTripPointer)) {
+                    if (timetable.getDepartureTime(destinationTrip, transferDestination.stop_sequence) >= arrivalTime + timeZoneOffset && timetable.isActiveOn(destinationTrip, enqueuedTripSegment.serviceDay) && parameters.getTripFilter().test(destinationTrip)) {
                         logger.debug("    {}", transferDestination);
-                        enqueue(queue1, destinationTripPointer, transferDestination, transferOrigin, enqueuedTripSegment, enqueuedTripSegment.serviceDay, enqueuedTripSegment.accessStation, round + 1);
+                        enqueue(queue1, transferDestination, transferOrigin, enqueuedTripSegment, enqueuedTripSegment.serviceDay, enqueuedTripSegment.accessStation, round + 1);
                     }
                 }
             }
@@ -206,28 +196,31 @@ public class TripBasedRouter {
 
     private void checkArrivals(List<EnqueuedTripSegment> queue0, int round) {
         for (EnqueuedTripSegment enqueuedTripSegment : queue0) {
-            int toStopSequence = Math.min(enqueuedTripSegment.toStopSequence, enqueuedTripSegment.tripPointer.stopTimes.size() - 1);
+            int trip = enqueuedTripSegment.tripAtStopTime.tripIdx;
+            int toStopSequence = Math.min(enqueuedTripSegment.toStopSequence, timetable.getStopSequences(trip) - 1);
             for (int i = enqueuedTripSegment.tripAtStopTime.stop_sequence + 1; i <= toStopSequence; i++) {
-                StopTime stopTime = enqueuedTripSegment.tripPointer.stopTimes.get(i);
-                if (stopTime == null) continue;
-                for (StopWithTimeDelta destination : parameters.getEgressStations()) {
-                    int newArrivalTime = getArrivalTime(enqueuedTripSegment, stopTime, (int) (destination.timeDelta / 1000L));
-                    if (destination.stopId.stopId.equals(stopTime.stop_id) && destination.stopId.feedId.equals(enqueuedTripSegment.tripPointer.feedId) && newArrivalTime < earliestArrivalTime[round]) {
+                int stop = timetable.getStopIndex(trip, i);
+                if (stop < 0) continue;
+                int arrivalTime = timetable.getArrivalTime(trip, i);
+                for (int d = 0; d < egressStops.length; d++) {
+                    StopWithTimeDelta destination = parameters.getEgressStations().get(d);
+                    int newArrivalTime = getArrivalTime(enqueuedTripSegment, arrivalTime, (int) (destination.timeDelta / 1000L));
+                    if (egressStops[d] == stop && newArrivalTime < earliestArrivalTime[round]) {
                         for (int r = round; r < N_ROUNDS + 1; r++) {
                             if (newArrivalTime < earliestArrivalTime[r]) {
                                 earliestArrivalTime[r] = newArrivalTime;
                             }
                         }
-                        ResultLabel newResult = new ResultLabel(round, destination, enqueuedTripSegment.tripPointer.idx, stopTime.stop_sequence, enqueuedTripSegment);
+                        ResultLabel newResult = new ResultLabel(round, destination, trip, i, enqueuedTripSegment);
                         logger.debug(" {}", newResult);
                         int newRealTransfers = newResult.getRealTransfers();
-                        int newDepartureTime = newResult.getDepartureTime();
+                        int newDepartureTime = newResult.getDepartureTimeWithinProfile();
                         Iterator<ResultLabel> it = result.iterator();
                         while (it.hasNext()) {
                             ResultLabel oldResult = it.next();
                             if (oldResult.getArrivalTime() < newArrivalTime) continue;
                             if (oldResult.getRealTransfers() < newRealTransfers) continue;
-                            if (oldResult.getDepartureTime() > newDepartureTime) continue;
+                            if (oldResult.getDepartureTimeWithinProfile() > newDepartureTime) continue;
                             it.remove();
                         }
                         result.add(newResult);
@@ -240,32 +233,39 @@ public class TripBasedRouter {
         }
     }
 
-    private int getArrivalTime(EnqueuedTripSegment enqueuedTripSegment, StopTime stopTime, int extraSeconds) {
+    private int getArrivalTime(EnqueuedTripSegment enqueuedTripSegment, int arrivalTime, int extraSeconds) {
         int extraDisutilityOfAccessSeconds = (int) (((long) (enqueuedTripSegment.accessStation.timeDelta * (parameters.getBetaAccessTime() - 1.0))) / 1000L);
         int extraDisutilityOfTransfersSeconds = (int) (((long) enqueuedTripSegment.nRealTransfers * parameters.getBetaTransfers()) / 1000L);
         int extraDisutilityOfRouteTypeSeconds = (int) (enqueuedTripSegment.routeTypePenalty / 1000L);
-        return stopTime.arrival_time + extraDisutilityOfAccessSeconds + extraDisutilityOfTransfersSeconds + extraDisutilityOfRouteTypeSeconds + extraSeconds;
+        return getDayOffset(enqueuedTripSegment.serviceDay) + arrivalTime + extraDisutilityOfAccessSeconds + extraDisutilityOfTransfersSeconds + extraDisutilityOfRouteTypeSeconds + extraSeconds;
+    }
+
+    // Times of the schedule are seconds of their service day. Journeys can be on different service days now
+    // that transfers exist for every day, so they are counted from the same day to compare them.
+    private int getDayOffset(LocalDate serviceDay) {
+        return (int) (serviceDay.toEpochDay() - firstServiceDay) * 60 * 60 * 24;
     }
 
-    private void enqueue(List<EnqueuedTripSegment> queue1, GTFSFeed.StopTimesForTripWithTripPatternKey tripPointer, Trips.TripAtStopTime tripAtBoarding, Trips.TripAtStopTime transferOrigin, EnqueuedTripSegment parent, LocalDate serviceDay, StopWithTimeDelta accessStation, int round) {
-        int thisTripDoneFromIndex = tripDoneFromIndex[round][tripPointer.idx];
+    private void enqueue(List<EnqueuedTripSegment> queue1, Trips.TripAtStopTime tripAtBoarding, Trips.TripAtStopTime transferOrigin, EnqueuedTripSegment parent, LocalDate serviceDay, StopWithTimeDelta accessStation, int round) {
+        int thisTripDoneFromIndex = tripDoneFromIndex[round][tripAtBoarding.tripIdx];
         if (tripAtBoarding.stop_sequence < thisTripDoneFromIndex) {
-            long routeTypePenalty = parameters.transferPenaltiesByRouteType.getOrDefault(tripPointer.routeType, 0L);
-            EnqueuedTripSegment enqueuedTripSegment = new EnqueuedTripSegment(tripPointer, tripAtBoarding, thisTripDoneFromIndex, serviceDay, transferOrigin, parent, accessStation);
+            long routeTypePenalty = parameters.transferPenaltiesByRouteType.getOrDefault(timetable.getRouteType(tripAtBoarding.tripIdx), 0L);
+            EnqueuedTripSegment enqueuedTripSegment = new EnqueuedTripSegment(tripAtBoarding, thisTripDoneFromIndex, serviceDay, transferOrigin, parent, accessStation);
             if (parent != null) {
                 enqueuedTripSegment.nRealTransfers = parent.nRealTransfers + 1;
                 enqueuedTripSegment.routeTypePenalty = parent.routeTypePenalty;
             }
             enqueuedTripSegment.routeTypePenalty += routeTypePenalty;
             queue1.add(enqueuedTripSegment);
-            markAsDone(tripPointer, tripAtBoarding.stop_sequence, round);
+            markAsDone(tripAtBoarding.tripIdx, tripAtBoarding.stop_sequence, round);
         }
     }
 
-    private void markAsDone(GTFSFeed.StopTimesForTripWithTripPatternKey destinationTripPointer, int doneFromIndex, int round) {
-        logger.debug("done: {} [{}", destinationTripPointer.idx, doneFromIndex);
+    private void markAsDone(int destinationTrip, int doneFromIndex, int round) {
+        logger.debug("done: {} [{}", destinationTrip, doneFromIndex);
+        int endTripOfPattern = timetable.getEndTripOfPattern(destinationTrip);
         for (int r = round; r < N_ROUNDS + 1; r++) {
-            for (int i = destinationTripPointer.idx; i < destinationTripPointer.endIdxOfPattern; i++) {
+            for (int i = destinationTrip; i < endTripOfPattern; i++) {
                 // Trips within a pattern are sorted by start time. All that come after me can be marked as done.
                 int previousDoneFromIndex = tripDoneFromIndex[r][i];
                 if (doneFromIndex < previousDoneFromIndex)
@@ -293,21 +293,16 @@ public class TripBasedRouter {
 
         @Override
         public String toString() {
-            StopTime stopTime = getStopTime();
+            int arrivalTime = getDayOffset(enqueuedTripSegment.serviceDay) + timetable.getArrivalTime(tripIdx, stopTime);
             int departureTime = getDepartureTime();
             int departureTimeAtStop = getDepartureTimeAtStop();
             return String.format("%s+%d %s+%d %s %s+%d %s %s+%d",
                     LocalTime.ofSecondOfDay((departureTime) % (60 * 60 * 24)), (departureTime) / (60 * 60 * 24),
                     LocalTime.ofSecondOfDay((departureTimeAtStop) % (60 * 60 * 24)), (departureTimeAtStop) / (60 * 60 * 24),
                     getAccessStop().stopId.stopId,
-                    LocalTime.ofSecondOfDay(stopTime.arrival_time % (60 * 60 * 24)), stopTime.arrival_time / (60 * 60 * 24),
-                    stopTime.stop_id,
-                    LocalTime.ofSecondOfDay((stopTime.arrival_time + destination.timeDelta / 1000) % (60 * 60 * 24)), (stopTime.arrival_time + destination.timeDelta / 1000) / (60 * 60 * 24));
-        }
-
-        private StopTime getStopTime() {
-            List<StopTime> stopTimes = tripTransfers.getTrip(tripIdx).stopTimes;
-            return stopTimes.get(stopTime);
+                    LocalTime.ofSecondOfDay(arrivalTime % (60 * 60 * 24)), arrivalTime / (60 * 60 * 24),
+                    timetable.getStop(timetable.getStopIndex(tripIdx, stopTime)).stopId,
+                    LocalTime.ofSecondOfDay((arrivalTime + destination.timeDelta / 1000) % (60 * 60 * 24)), (arrivalTime + destination.timeDelta / 1000) / (60 * 60 * 24));
         }
 
         int getDepartureTime() {
@@ -315,11 +310,17 @@ public class TripBasedRouter {
             return departureTimeAtStop - (int) (getAccessStop().timeDelta / 1000);
         }
 
+        // Like in the label setting router, departing later than the end of the profile is no better than departing at its end.
+        int getDepartureTimeWithinProfile() {
+            ZonedDateTime profileEnd = profileEndTime.atZone(getAccessStop().zoneId);
+            return Math.min(getDepartureTime(), getDayOffset(profileEnd.toLocalDate()) + profileEnd.toLocalTime().toSecondOfDay());
+        }
+
         private int getDepartureTimeAtStop() {
             EnqueuedTripSegment i = enqueuedTripSegment;
             while (i.parent != null)
                 i = i.parent;
-            return tripTransfers.getTrip(i.tripPointer.idx).stopTimes.get(i.tripAtStopTime.stop_sequence).departure_time;
+            return getDayOffset(i.serviceDay) + timetable.getDepartureTime(i.tripAtStopTime.tripIdx, i.tripAtStopTime.stop_sequence);
         }
 
         public StopWithTimeDelta getAccessStop() {
@@ -330,7 +331,7 @@ public class TripBasedRouter {
         }
 
         int getArrivalTime() {
-            return TripBasedRouter.this.getArrivalTime(enqueuedTripSegment, getStopTime(), (int) ((destination.timeDelta / 1000L) * parameters.getBetaEgressTime() + getRouteTypePenalty()));
+            return TripBasedRouter.this.getArrivalTime(enqueuedTripSegment, timetable.getArrivalTime(tripIdx, stopTime), (int) ((destination.timeDelta / 1000L) * parameters.getBetaEgressTime() + getRouteTypePenalty()));
         }
 
         public int getRound() {
@@ -341,9 +342,9 @@ public class TripBasedRouter {
             int result = 0;
             EnqueuedTripSegment i = enqueuedTripSegment;
             while (i.parent != null) {
-                Trip trip1 = tripTransfers.getTrip(i.tripAtStopTime.tripIdx).trip;
-                Trip trip2 = tripTransfers.getTrip(i.transferOrigin.tripIdx).trip;
-                if (trip1.block_id == null || trip2.block_id == null || !trip1.block_id.equals(trip2.block_id)) {
+                String blockId1 = timetable.getBlockId(i.tripAtStopTime.tripIdx);
+                String blockId2 = timetable.getBlockId(i.transferOrigin.tripIdx);
+                if (blockId1 == null || blockId2 == null || !blockId1.equals(blockId2)) {
                     result = result + 1;
                 }
                 i = i.parent;
@@ -355,7 +356,7 @@ public class TripBasedRouter {
             long result = 0L;
             EnqueuedTripSegment i = enqueuedTripSegment;
             while (i.parent != null) {
-                result += parameters.transferPenaltiesByRouteType.getOrDefault(i.tripPointer.routeType, 0L);
+                result += parameters.transferPenaltiesByRouteType.getOrDefault(timetable.getRouteType(i.tripAtStopTime.tripIdx), 0L);
                 i = i.parent;
             }
             return result;
@@ -367,13 +368,13 @@ public class TripBasedRouter {
         private final List<StopWithTimeDelta> egressStations;
         private final Instant profileStartTime;
         private Duration profileLength;
-        private final Predicate<GTFSFeed.StopTimesForTripWithTripPatternKey> tripFilter;
+        private final IntPredicate tripFilter;
         private final double betaAccessTime;
         private final double betaEgressTime;
         private final double betaTransfers;
         private final Map<Integer, Long> transferPenaltiesByRouteType;
 
-        Parameters(List<StopWithTimeDelta> accessStations, List<StopWithTimeDelta> egressStations, Instant profileStartTime, Duration profileLength, Predicate<GTFSFeed.StopTimesForTripWithTripPatternKey> tripFilter, double betaAccessTime, double betaEgressTime, double betaTransfers, Map<Integer, Long> transferPenaltiesByRouteType) {
+        Parameters(List<StopWithTimeDelta> accessStations, List<StopWithTimeDelta> egressStations, Instant profileStartTime, Duration profileLength, IntPredicate tripFilter, double betaAccessTime, double betaEgressTime, double betaTransfers, Map<Integer, Long> transferPenaltiesByRouteType) {
             this.accessStations = accessStations;
             this.egressStations = egressStations;
             this.profileStartTime = profileStartTime;
@@ -401,7 +402,7 @@ public class TripBasedRouter {
             return profileLength;
         }
 
-        public Predicate<GTFSFeed.StopTimesForTripWithTripPatternKey> getTripFilter() {
+        public IntPredicate getTripFilter() {
             return tripFilter;
         }
 
@@ -420,5 +421,9 @@ public class TripBasedRouter {
         public double getBetaTransfers() {
             return betaTransfers;
         }
+
+        public Map<Integer, Long> getTransferPenaltiesByRouteType() {
+            return transferPenaltiesByRouteType;
+        }
     }
 }
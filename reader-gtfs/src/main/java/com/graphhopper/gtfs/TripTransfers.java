@@ -0,0 +1,433 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.gtfs;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntIntHashMap;
+import com.conveyal.gtfs.model.Transfer;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.util.Helper;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * The transfers between the trips of a {@link Timetable} for all days of service. A transfer goes from the arrival
+ * of a trip at a stop to the first trip of another pattern that can be boarded at the same or a nearby stop. Which
+ * trip that is depends on the day, so every transfer has the set of days it is valid on. The transfers are
+ * computed once for all days in parallel across the patterns and stored in DataAccess objects.
+ * <p>
+ * Like for a single day, transfers are dropped if they do not arrive anywhere earlier than staying in the vehicle or
+ * the transfers that were kept before. The days of a trip are split into groups that share these earliest arrivals,
+ * and a group is split once a transfer is only kept for some of its days.
+ */
+public class TripTransfers {
+    private static final int TRIP = 0, STOP_SEQUENCE = 1, VALIDITY = 2, TRANSFER_INTS = 3;
+
+    // per stop time of the timetable the index of its first transfer
+    private final DataAccess offsetsDA;
+    private final DataAccess transfersDA;
+    // the distinct sets of days with one bit per day
+    private final DataAccess validitiesDA;
+    private int transfers, validities, validityInts;
+
+    public TripTransfers(Directory dir) {
+        offsetsDA = dir.create("pt_trip_transfer_offsets");
+        transfersDA = dir.create("pt_trip_transfers");
+        validitiesDA = dir.create("pt_trip_transfer_validities");
+    }
+
+    /**
+     * @param transferRules       the transfer rules per feed
+     * @param stopsForStationNode the stops per station node, all stops of a station are connected by transfers
+     */
+    public TripTransfers build(Timetable timetable, GtfsStorage gtfsStorage, Map<String, Transfers> transferRules,
+                               ArrayListMultimap<Integer, GtfsStorage.FeedIdWithStopId> stopsForStationNode) {
+        Builder builder = new Builder(timetable, gtfsStorage, transferRules, stopsForStationNode);
+        TripResult[] results = new TripResult[timetable.getTrips()];
+        IntStream.range(0, timetable.getPatterns()).parallel().forEach(pattern -> {
+            int firstTrip = timetable.getFirstTripOfPattern(pattern);
+            int endTrip = timetable.getEndTripOfPattern(firstTrip);
+            for (int trip = firstTrip; trip < endTrip; trip++)
+                results[trip] = builder.findTransfers(trip);
+        });
+
+        offsetsDA.create(1000);
+        transfersDA.create(1000);
+        validitiesDA.create(1000);
+        validityInts = (timetable.getDays() + 31) / 32;
+        Map<BitSet, Integer> validityIndices = new HashMap<>();
+        offsetsDA.ensureCapacity((timetable.getStopTimes() + 1L) * 4);
+        for (int trip = 0; trip < timetable.getTrips(); trip++) {
+            TripResult result = results[trip];
+            for (int stopSequence = 0; stopSequence < timetable.getStopSequences(trip); stopSequence++) {
+                offsetsDA.setInt(timetable.getStopTimeIndex(trip, stopSequence) * 4L, transfers);
+                if (result == null || result.destinations[stopSequence] == null)
+                    continue;
+                IntArrayList destinations = result.destinations[stopSequence];
+                List<BitSet> days = result.validities[stopSequence];
+                transfersDA.ensureCapacity((long) (transfers + days.size()) * TRANSFER_INTS * 4);
+                for (int i = 0; i < days.size(); i++) {
+                    Integer validity = validityIndices.get(days.get(i));
+                    if (validity == null) {
+                        validity = validities++;
+                        validityIndices.put(days.get(i), validity);
+                        addValidity(validity, days.get(i));
+                    }
+                    long pointer = (long) transfers * TRANSFER_INTS * 4;
+                    transfersDA.setInt(pointer + TRIP * 4, destinations.get(2 * i));
+                    transfersDA.setInt(pointer + STOP_SEQUENCE * 4, destinations.get(2 * i + 1));
+                    transfersDA.setInt(pointer + VALIDITY * 4, validity);
+                    transfers++;
+                }
+            }
+        }
+        offsetsDA.setInt(timetable.getStopTimes() * 4L, transfers);
+        transfersDA.setHeader(0, transfers);
+        validitiesDA.setHeader(0, validities);
+        validitiesDA.setHeader(4, validityInts);
+        return this;
+    }
+
+    private void addValidity(int validity, BitSet days) {
+        long pointer = (long) validity * validityInts * 4;
+        validitiesDA.ensureCapacity(pointer + validityInts * 4L);
+        for (int word = 0; word < validityInts; word++) {
+            int bits = 0;
+            for (int bit = 0; bit < 32; bit++)
+                if (days.get(word * 32 + bit))
+                    bits |= 1 << bit;
+            validitiesDA.setInt(pointer + word * 4L, bits);
+        }
+    }
+
+    public boolean loadExisting() {
+        if (!offsetsDA.loadExisting())
+            return false;
+        if (!transfersDA.loadExisting() || !validitiesDA.loadExisting())
+            throw new IllegalStateException("Cannot load the trip transfers");
+        transfers = transfersDA.getHeader(0);
+        validities = validitiesDA.getHeader(0);
+        validityInts = validitiesDA.getHeader(4);
+        return true;
+    }
+
+    /**
+     * The transfers from the arrival of a trip at a stop range from this index to the first transfer of the next
+     * stop time, see {@link Timetable#getStopTimeIndex(int, int)}.
+     */
+    public int getFirstTransfer(int stopTimeIndex) {
+        return offsetsDA.getInt(stopTimeIndex * 4L);
+    }
+
+    public int getTransferTrip(int transfer) {
+        return transfersDA.getInt((long) transfer * TRANSFER_INTS * 4 + TRIP * 4);
+    }
+
+    public int getTransferStopSequence(int transfer) {
+        return transfersDA.getInt((long) transfer * TRANSFER_INTS * 4 + STOP_SEQUENCE * 4);
+    }
+
+    /**
+     * @param day the index of the day, see {@link Timetable#getDay(LocalDate)}
+     */
+    public boolean isValidOn(int transfer, int day) {
+        if (day < 0)
+            return false;
+        long pointer = (long) transfersDA.getInt((long) transfer * TRANSFER_INTS * 4 + VALIDITY * 4) * validityInts * 4 + (day / 32) * 4L;
+        return (validitiesDA.getInt(pointer) & (1 << (day % 32))) != 0;
+    }
+
+    /**
+     * @return the destinations of the transfers from the arrival of the given trip at the given stop sequence that
+     * are valid on the given day
+     */
+    public List<Trips.TripAtStopTime> getTransfers(Timetable timetable, int trip, int stopSequence, LocalDate serviceDay) {
+        List<Trips.TripAtStopTime> result = new ArrayList<>();
+        int stopTimeIndex = timetable.getStopTimeIndex(trip, stopSequence);
+        int day = timetable.getDay(serviceDay);
+        for (int transfer = getFirstTransfer(stopTimeIndex); transfer < getFirstTransfer(stopTimeIndex + 1); transfer++)
+            if (isValidOn(transfer, day))
+                result.add(new Trips.TripAtStopTime(getTransferTrip(transfer), getTransferStopSequence(transfer)));
+        return result;
+    }
+
+    public int getTransfers() {
+        return transfers;
+    }
+
+    public void flush() {
+        offsetsDA.flush();
+        transfersDA.flush();
+        validitiesDA.flush();
+    }
+
+    public void close() {
+        offsetsDA.close();
+        transfersDA.close();
+        validitiesDA.close();
+    }
+
+    public long getCapacity() {
+        return offsetsDA.getCapacity() + transfersDA.getCapacity() + validitiesDA.getCapacity();
+    }
+
+    @Override
+    public String toString() {
+        return "trip transfers: " + Helper.nf(transfers) + ", distinct validities: " + Helper.nf(validities) + ", "
+                + Helper.nf(getCapacity() / Helper.MB) + "MB";
+    }
+
+    private static class TripResult {
+        // per stop sequence the destination trips and stop sequences and the days the transfers are valid on
+        final IntArrayList[] destinations;
+        final List<BitSet>[] validities;
+
+        @SuppressWarnings("unchecked")
+        TripResult(int stopSequences) {
+            destinations = new IntArrayList[stopSequences];
+            validities = new List[stopSequences];
+        }
+
+        void add(int stopSequence, int trip, int destinationStopSequence, BitSet days) {
+            if (destinations[stopSequence] == null) {
+                destinations[stopSequence] = new IntArrayList();
+                validities[stopSequence] = new ArrayList<>();
+            }
+            destinations[stopSequence].add(trip, destinationStopSequence);
+            validities[stopSequence].add(days);
+        }
+    }
+
+    private static class Builder {
+        private final Timetable timetable;
+        private final GtfsStorage gtfsStorage;
+        private final Map<String, Transfers> transfers;
+        private final ArrayListMultimap<Integer, GtfsStorage.FeedIdWithStopId> stopsForStationNode;
+        private final BitSet[] serviceDays;
+
+        Builder(Timetable timetable, GtfsStorage gtfsStorage, Map<String, Transfers> transfers,
+                ArrayListMultimap<Integer, GtfsStorage.FeedIdWithStopId> stopsForStationNode) {
+            this.timetable = timetable;
+            this.gtfsStorage = gtfsStorage;
+            this.transfers = transfers;
+            this.stopsForStationNode = stopsForStationNode;
+            serviceDays = new BitSet[timetable.getServices()];
+            for (int service = 0; service < serviceDays.length; service++)
+                serviceDays[service] = timetable.getServiceDays(service);
+        }
+
+        private BitSet getDays(int trip) {
+            return serviceDays[timetable.getService(trip)];
+        }
+
+        TripResult findTransfers(int trip) {
+            BitSet tripDays = getDays(trip);
+            if (tripDays.isEmpty())
+                return null;
+            int stopSequences = timetable.getStopSequences(trip);
+            String feedId = timetable.getFeedId(trip);
+            String routeId = timetable.getRouteId(trip);
+            Transfers transfersForFeed = transfers.get(feedId);
+            // the earliest arrival at the stops that can be reached by staying in the vehicle, it is the same for all days
+            IntIntHashMap arrivalTimes = new IntIntHashMap();
+            for (int i = stopSequences - 1; i > 0; i--) {
+                int stop = timetable.getStopIndex(trip, i);
+                if (stop < 0)
+                    continue;
+                int arrivalTime = timetable.getArrivalTime(trip, i);
+                putMin(arrivalTimes, stop, arrivalTime);
+                for (GtfsStorage.InterpolatedTransfer it : gtfsStorage.interpolatedTransfers.get(timetable.getStop(stop))) {
+                    int boardingStop = timetable.getStopIndex(it.toPlatformDescriptor);
+                    if (boardingStop >= 0)
+                        putMin(arrivalTimes, boardingStop, arrivalTime + it.streetTime);
+                }
+            }
+
+            List<DayGroup> dayGroups = new ArrayList<>();
+            dayGroups.add(new DayGroup((BitSet) tripDays.clone(), arrivalTimes));
+            TripResult result = new TripResult(stopSequences);
+            for (int i = stopSequences - 1; i > 0; i--) {
+                int stop = timetable.getStopIndex(trip, i);
+                if (stop < 0)
+                    continue;
+                GtfsStorage.FeedIdWithStopId stopId = timetable.getStop(stop);
+                ListMultimap<String, Transfer> multimap = ArrayListMultimap.create();
+                for (Transfer transfer : transfersForFeed.getTransfersFromStop(stopId.stopId, routeId)) {
+                    multimap.put(transfer.to_stop_id, transfer);
+                }
+                if (!multimap.containsKey(stopId.stopId)) {
+                    insertTransfers(trip, i, tripDays, dayGroups, stopId, 0, Collections.emptyList(), result);
+                }
+                for (String toStopId : multimap.keySet()) {
+                    insertTransfers(trip, i, tripDays, dayGroups, new GtfsStorage.FeedIdWithStopId(feedId, toStopId), 0, multimap.get(toStopId), result);
+                }
+                for (GtfsStorage.FeedIdWithStopId otherStop : stopsForStationNode.get(gtfsStorage.getStationNodes().get(stopId))) {
+                    if (!stopId.equals(otherStop)) {
+                        insertTransfers(trip, i, tripDays, dayGroups, otherStop, 0, Collections.emptyList(), result);
+                    }
+                }
+                for (GtfsStorage.InterpolatedTransfer it : gtfsStorage.interpolatedTransfers.get(stopId)) {
+                    insertTransfers(trip, i, tripDays, dayGroups, it.toPlatformDescriptor, it.streetTime, Collections.emptyList(), result);
+                }
+            }
+            return result;
+        }
+
+        private void insertTransfers(int trip, int stopSequence, BitSet tripDays, List<DayGroup> dayGroups,
+                                     GtfsStorage.FeedIdWithStopId boardingStopId, int streetTime, List<Transfer> transferRules, TripResult result) {
+            int boardingStop = timetable.getStopIndex(boardingStopId);
+            if (boardingStop < 0)
+                return;
+            ZoneId sourceZoneId = timetable.getZoneId(trip);
+            int arrivalTime = timetable.getArrivalTime(trip, stopSequence);
+            int earliestDepartureTime = arrivalTime + streetTime;
+            for (int group = timetable.getFirstBoardingGroup(boardingStop); group < timetable.getFirstBoardingGroup(boardingStop + 1); group++) {
+                int endBoarding = timetable.getFirstBoarding(group + 1);
+                ZoneId destinationZoneId = timetable.getZoneId(timetable.getBoardingTrip(timetable.getFirstBoarding(group)));
+                boolean sameZone = sourceZoneId.equals(destinationZoneId);
+                // with another time zone the departures are shifted by less than a day
+                int firstBoarding = timetable.getFirstBoardingAfter(group, sameZone ? earliestDepartureTime : earliestDepartureTime - 24 * 60 * 60);
+                // the days for which the first trip of this pattern has not been found yet
+                BitSet remainingDays = (BitSet) tripDays.clone();
+                for (int boarding = firstBoarding; boarding < endBoarding && !remainingDays.isEmpty(); boarding++) {
+                    int candidate = timetable.getBoardingTrip(boarding);
+                    int candidateStopSequence = timetable.getBoardingStopSequence(boarding);
+                    BitSet days = (BitSet) getDays(candidate).clone();
+                    days.and(remainingDays);
+                    if (days.isEmpty())
+                        continue;
+                    int earliestDepartureTimeForThisDestination = earliestDepartureTime;
+                    if (!transferRules.isEmpty()) {
+                        String candidateRouteId = timetable.getRouteId(candidate);
+                        for (Transfer transfer : transferRules) {
+                            if (candidateRouteId.equals(transfer.to_route_id)) {
+                                earliestDepartureTimeForThisDestination += transfer.min_transfer_time;
+                            }
+                        }
+                    }
+                    int departureTime = timetable.getDepartureTime(candidate, candidateStopSequence);
+                    int timeZoneOffset = 0;
+                    if (sameZone) {
+                        if (departureTime < earliestDepartureTimeForThisDestination)
+                            continue;
+                    } else {
+                        for (int day = days.nextSetBit(0); day >= 0; day = days.nextSetBit(day + 1)) {
+                            int offset = getTimeZoneOffset(day, arrivalTime, sourceZoneId, destinationZoneId);
+                            if (departureTime - offset < earliestDepartureTimeForThisDestination)
+                                days.clear(day);
+                            else
+                                timeZoneOffset = offset;
+                        }
+                        if (days.isEmpty())
+                            continue;
+                    }
+                    remainingDays.andNot(days);
+                    BitSet keptDays = keepImprovingTransfer(dayGroups, candidate, candidateStopSequence, timeZoneOffset, earliestDepartureTime, days);
+                    if (!keptDays.isEmpty())
+                        result.add(stopSequence, candidate, candidateStopSequence, keptDays);
+                }
+            }
+        }
+
+        private int getTimeZoneOffset(int day, int arrivalTime, ZoneId sourceZoneId, ZoneId destinationZoneId) {
+            LocalDateTime scheduleArrivalTime = timetable.getDate(day).atStartOfDay().plusSeconds(arrivalTime);
+            return (int) (scheduleArrivalTime.atZone(sourceZoneId).toEpochSecond() - scheduleArrivalTime.atZone(destinationZoneId).toEpochSecond());
+        }
+
+        /**
+         * @return the days of the given days on which the transfer to the given candidate improves the arrival at some
+         * stop. The earliest arrivals of these days are updated, and the groups of days are split if necessary.
+         */
+        private BitSet keepImprovingTransfer(List<DayGroup> dayGroups, int candidate, int candidateStopSequence,
+                                             int timeZoneOffset, int earliestDepartureTime, BitSet days) {
+            BitSet keptDays = new BitSet();
+            int groups = dayGroups.size();
+            for (int g = 0; g < groups; g++) {
+                DayGroup group = dayGroups.get(g);
+                if (!group.days.intersects(days)
+                        || !improvesArrival(candidate, candidateStopSequence, timeZoneOffset, earliestDepartureTime, group.arrivalTimes, false))
+                    continue;
+                BitSet otherDays = (BitSet) group.days.clone();
+                otherDays.andNot(days);
+                if (!otherDays.isEmpty()) {
+                    // the transfer is not possible on the other days, so their earliest arrivals stay the same
+                    dayGroups.add(new DayGroup(otherDays, new IntIntHashMap(group.arrivalTimes)));
+                    group.days.and(days);
+                }
+                improvesArrival(candidate, candidateStopSequence, timeZoneOffset, earliestDepartureTime, group.arrivalTimes, true);
+                keptDays.or(group.days);
+            }
+            return keptDays;
+        }
+
+        /**
+         * @param update true to also update the earliest arrivals with the arrivals of the candidate, otherwise the
+         *               method returns as soon as an improvement is found
+         */
+        private boolean improvesArrival(int candidate, int candidateStopSequence, int timeZoneOffset, int earliestDepartureTime,
+                                        IntIntHashMap arrivalTimes, boolean update) {
+            boolean improves = false;
+            boolean overnight = false;
+            for (int i = candidateStopSequence; i < timetable.getStopSequences(candidate); i++) {
+                int stop = timetable.getStopIndex(candidate, i);
+                if (stop < 0)
+                    continue;
+                int destinationArrivalTime = timetable.getArrivalTime(candidate, i) - timeZoneOffset;
+                if (i == candidateStopSequence) {
+                    if (destinationArrivalTime < earliestDepartureTime) {
+                        overnight = true;
+                    }
+                } else {
+                    if (overnight) {
+                        destinationArrivalTime += 24 * 60 * 60;
+                    }
+                    if (destinationArrivalTime < arrivalTimes.getOrDefault(stop, Integer.MAX_VALUE)) {
+                        if (!update)
+                            return true;
+                        improves = true;
+                        arrivalTimes.put(stop, destinationArrivalTime);
+                    }
+                }
+            }
+            return improves;
+        }
+
+        private static void putMin(IntIntHashMap map, int key, int value) {
+            map.put(key, Math.min(value, map.getOrDefault(key, Integer.MAX_VALUE)));
+        }
+    }
+
+    private static class DayGroup {
+        final BitSet days;
+        // the earliest arrival per stop index on these days
+        final IntIntHashMap arrivalTimes;
+
+        DayGroup(BitSet days, IntIntHashMap arrivalTimes) {
+            this.days = days;
+            this.arrivalTimes = arrivalTimes;
+        }
+    }
+}
@@ -1,25 +1,15 @@
 package com.graphhopper.gtfs;
 
 import com.carrotsearch.hppc.IntArrayList;
-import com.carrotsearch.hppc.ObjectIntHashMap;
 import com.conveyal.gtfs.GTFSFeed;
 import com.conveyal.gtfs.model.*;
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.ListMultimap;
-import com.google.common.collect.Lists;
 
 import java.io.Serializable;
-import java.time.LocalDate;
-import java.time.LocalDateTime;
-import java.time.ZoneId;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 
 public class Trips {
 
     public final List<GTFSFeed.StopTimesForTripWithTripPatternKey> trips;
-    private Map<GtfsStorage.FeedIdWithStopId, Map<String, List<TripAtStopTime>>> boardingsForStopByPattern = new ConcurrentHashMap<>();
-    private Map<LocalDate, Map<Trips.TripAtStopTime, Collection<Trips.TripAtStopTime>>> tripTransfersPerDay = new ConcurrentHashMap<>();
     public int idx;
 
     public Trips(GtfsStorage gtfsStorage) {
@@ -90,142 +80,10 @@ public class Trips {
                 }
             }
         }
-        for (GTFSFeed.StopTimesForTripWithTripPatternKey tripPointer : trips) {
-            for (int i = 0; i < tripPointer.stopTimes.size() - 1; i++) {
-                StopTime stopTime = tripPointer.stopTimes.get(i);
-                if (stopTime != null) {
-                    Map<String, List<TripAtStopTime>> patternBoardings = boardingsForStopByPattern.computeIfAbsent(new GtfsStorage.FeedIdWithStopId(tripPointer.feedId, stopTime.stop_id), k -> new HashMap<>());
-                    List<TripAtStopTime> boardings = patternBoardings.computeIfAbsent(tripPointer.pattern.pattern_id, k -> new ArrayList<>());
-                    boardings.add(new TripAtStopTime(tripPointer.idx, i));
-                    // FIXME: When a trip does a loop, we don't get a sorted list here, which breaks the search
-                }
-            }
-        }
-    }
-
-    public Map<String, List<TripAtStopTime>> getPatternBoardings(GtfsStorage.FeedIdWithStopId stopId) {
-        return boardingsForStopByPattern.computeIfAbsent(stopId, k -> new HashMap<>());
     }
 
     GtfsStorage gtfsStorage;
 
-    private Map<TripAtStopTime, Collection<TripAtStopTime>> findTripTransfers(GTFSFeed.StopTimesForTripWithTripPatternKey tripPointer, String feedKey, LocalDate trafficDay, Map<String, Transfers> transfers, ArrayListMultimap<Integer, GtfsStorage.FeedIdWithStopId> stopsForStationNode) {
-        Transfers transfersForFeed = transfers.get(feedKey);
-        Map<TripAtStopTime, Collection<TripAtStopTime>> result = new HashMap<>();
-        List<StopTime> stopTimesExceptFirst = tripPointer.stopTimes.subList(1, tripPointer.stopTimes.size());
-        ObjectIntHashMap<GtfsStorage.FeedIdWithStopId> arrivalTimes = new ObjectIntHashMap<>();
-        for (StopTime stopTime : Lists.reverse(stopTimesExceptFirst)) {
-            if (stopTime == null)
-                continue;
-            GtfsStorage.FeedIdWithStopId stopId = new GtfsStorage.FeedIdWithStopId(feedKey, stopTime.stop_id);
-            arrivalTimes.put(stopId, Math.min(stopTime.arrival_time, arrivalTimes.getOrDefault(stopId, Integer.MAX_VALUE)));
-            for (GtfsStorage.InterpolatedTransfer it : gtfsStorage.interpolatedTransfers.get(stopId)) {
-                GtfsStorage.FeedIdWithStopId boardingStop = it.toPlatformDescriptor;
-                int arrivalTimePlusTransferTime = stopTime.arrival_time + it.streetTime;
-                arrivalTimes.put(boardingStop, Math.min(arrivalTimePlusTransferTime, arrivalTimes.getOrDefault(boardingStop, Integer.MAX_VALUE)));
-            }
-        }
-        for (StopTime stopTime : Lists.reverse(stopTimesExceptFirst)) {
-            if (stopTime == null)
-                continue;
-            TripAtStopTime origin = new TripAtStopTime(tripPointer.idx, stopTime.stop_sequence);
-            List<TripAtStopTime> destinations = new ArrayList<>();
-            GtfsStorage.FeedIdWithStopId stopId = new GtfsStorage.FeedIdWithStopId(feedKey, stopTime.stop_id);
-            List<Transfer> transfersFromStop = transfersForFeed.getTransfersFromStop(stopId.stopId, tripPointer.trip.route_id);
-            ListMultimap<String, Transfer> multimap = ArrayListMultimap.create();
-            for (Transfer transfer : transfersFromStop) {
-                multimap.put(transfer.to_stop_id, transfer);
-            }
-            if (!multimap.containsKey(stopTime.stop_id)) {
-                insertTripTransfers(trafficDay, arrivalTimes, feedKey, stopTime, destinations, new GtfsStorage.FeedIdWithStopId(feedKey, stopTime.stop_id), 0, multimap.get(stopTime.stop_id));
-            }
-            for (String toStopId : multimap.keySet()) {
-                insertTripTransfers(trafficDay, arrivalTimes, feedKey, stopTime, destinations, new GtfsStorage.FeedIdWithStopId(feedKey, toStopId), 0, multimap.get(toStopId));
-            }
-            for (GtfsStorage.FeedIdWithStopId otherStop : stopsForStationNode.get(gtfsStorage.getStationNodes().get(stopId))) {
-                if (!stopId.equals(otherStop)) {
-                    insertTripTransfers(trafficDay, arrivalTimes, feedKey, stopTime, destinations, otherStop, 0, Collections.emptyList());
-                }
-            }
-            for (GtfsStorage.InterpolatedTransfer it : gtfsStorage.interpolatedTransfers.get(stopId)) {
-                insertTripTransfers(trafficDay, arrivalTimes, feedKey, stopTime, destinations, it.toPlatformDescriptor, it.streetTime, Collections.emptyList());
-            }
-            result.put(origin, destinations);
-        }
-        return result;
-    }
-
-    private void insertTripTransfers(LocalDate trafficDay, ObjectIntHashMap<GtfsStorage.FeedIdWithStopId> arrivalTimes, String feedKey, StopTime arrivalStopTime, List<TripAtStopTime> destinations, GtfsStorage.FeedIdWithStopId boardingStop, int streetTime, List<Transfer> transfers) {
-        GTFSFeed sourceFeed = gtfsStorage.getGtfsFeeds().get(feedKey);
-        GTFSFeed destinationFeed = gtfsStorage.getGtfsFeeds().get(boardingStop.feedId);
-        ZoneId sourceZoneId = ZoneId.of(sourceFeed.agency.values().stream().findFirst().get().agency_timezone);
-        ZoneId destinationZoneId = ZoneId.of(destinationFeed.agency.values().stream().findFirst().get().agency_timezone);
-        LocalDateTime scheduleArrivalTime = trafficDay.atStartOfDay().plusSeconds(arrivalStopTime.arrival_time);
-        int timeZoneOffset = (int) (scheduleArrivalTime.atZone(sourceZoneId).toEpochSecond() - scheduleArrivalTime.atZone(destinationZoneId).toEpochSecond());
-        int earliestDepartureTime = arrivalStopTime.arrival_time + streetTime;
-        Collection<List<TripAtStopTime>> boardingsForPattern = getPatternBoardings(boardingStop).values();
-        for (List<TripAtStopTime> boardings : boardingsForPattern) {
-            for (TripAtStopTime candidate : boardings) {
-                GTFSFeed.StopTimesForTripWithTripPatternKey trip = getTrip(candidate.tripIdx);
-                int earliestDepatureTimeForThisDestination = earliestDepartureTime;
-                for (Transfer transfer : transfers) {
-                    if (trip.trip.route_id.equals(transfer.to_route_id)) {
-                        earliestDepatureTimeForThisDestination += transfer.min_transfer_time;
-                    }
-                }
-                StopTime departureStopTime = trip.stopTimes.get(candidate.stop_sequence);
-                if (trip.service.activeOn(trafficDay)) {
-                    if (departureStopTime.departure_time - timeZoneOffset >= earliestDepatureTimeForThisDestination) {
-                        boolean keep = false;
-                        boolean overnight = false;
-                        for (int i = candidate.stop_sequence; i < trip.stopTimes.size(); i++) {
-                            StopTime destinationStopTime = trip.stopTimes.get(i);
-                            if (destinationStopTime == null)
-                                continue;
-                            int destinationArrivalTime = destinationStopTime.arrival_time - timeZoneOffset;
-                            if (i == candidate.stop_sequence) {
-                                if (destinationArrivalTime < earliestDepartureTime) {
-                                    overnight = true;
-                                }
-                            } else {
-                                if (overnight) {
-                                    destinationArrivalTime += 24 * 60 * 60;
-                                }
-                                GtfsStorage.FeedIdWithStopId destinationStopId = new GtfsStorage.FeedIdWithStopId(trip.trip.feed_id, destinationStopTime.stop_id);
-                                int oldArrivalTime = arrivalTimes.getOrDefault(destinationStopId, Integer.MAX_VALUE);
-                                keep = keep || destinationArrivalTime < oldArrivalTime;
-                                arrivalTimes.put(destinationStopId, Math.min(oldArrivalTime, destinationArrivalTime));
-                            }
-                        }
-                        if (keep) {
-                            destinations.add(candidate);
-                        }
-                        break; // next pattern
-                    }
-                }
-            }
-        }
-    }
-
-    public void findAllTripTransfersInto(Map<TripAtStopTime, Collection<TripAtStopTime>> result, LocalDate trafficDay, Map<String, Transfers> transfers, ArrayListMultimap<Integer, GtfsStorage.FeedIdWithStopId> stopsForStationNode) {
-        Map<TripAtStopTime, Collection<TripAtStopTime>> r = Collections.synchronizedMap(result);
-        trips.stream()
-            .filter(trip -> trip.service.activeOn(trafficDay))
-            .parallel()
-            .forEach(tripPointer -> {
-                Map<TripAtStopTime, Collection<TripAtStopTime>> reducedTripTransfers = findTripTransfers(tripPointer, tripPointer.feedId, trafficDay, transfers, stopsForStationNode);
-                r.putAll(reducedTripTransfers);
-            });
-    }
-
-    public Map<LocalDate, Map<TripAtStopTime, Collection<TripAtStopTime>>> getTripTransfers() {
-        return tripTransfersPerDay;
-    }
-
-    public Map<Trips.TripAtStopTime, Collection<Trips.TripAtStopTime>> getTripTransfers(LocalDate trafficDay) {
-        return tripTransfersPerDay.computeIfAbsent(trafficDay, k -> new TreeMap<>());
-    }
-
     public GTFSFeed.StopTimesForTripWithTripPatternKey getTrip(int tripIdx) {
         return trips.get(tripIdx);
     }
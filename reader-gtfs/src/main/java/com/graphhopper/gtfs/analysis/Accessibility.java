@@ -0,0 +1,221 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.gtfs.analysis;
+
+import com.graphhopper.config.Profile;
+import com.graphhopper.gtfs.*;
+import com.graphhopper.routing.ev.Subnetwork;
+import com.graphhopper.routing.util.DefaultSnapFilter;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.storage.index.LocationIndex;
+import com.graphhopper.util.GHUtility;
+import com.graphhopper.util.PMap;
+import com.graphhopper.util.StopWatch;
+import com.graphhopper.util.exceptions.PointNotFoundException;
+import com.graphhopper.util.shapes.GHPoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Calculates the travel times by public transit from many origins to all stops for every minute of a departure
+ * window, e.g. for accessibility studies. The origins are calculated in parallel, and the walk from an origin to the
+ * platforms around it is only searched once and then used for all departure minutes.
+ */
+public class Accessibility {
+    private static final Logger logger = LoggerFactory.getLogger(Accessibility.class);
+    private final BaseGraph baseGraph;
+    private final LocationIndex locationIndex;
+    private final GtfsStorage gtfsStorage;
+    private final Weighting accessWeighting;
+    private final EdgeFilter snapFilter;
+    private final List<GtfsStorage.FeedIdWithStopId> stops;
+    private final Map<GtfsStorage.FeedIdWithStopId, Integer> stopIndices = new HashMap<>();
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private Duration maxTravelTime = Duration.ofHours(1);
+    private Duration maxWalkTime = Duration.ofMinutes(15);
+    private double walkSpeedKmH = 5.0;
+    private int blockedRouteTypes = 0;
+    private int percentile = 50;
+
+    /**
+     * @param accessProfile the profile used to walk from the origins to the stops and between stops
+     */
+    public Accessibility(GraphHopperGtfs graphHopper, String accessProfile) {
+        Profile profile = graphHopper.getProfile(accessProfile);
+        if (profile == null)
+            throw new IllegalArgumentException("Unknown profile: " + accessProfile);
+        this.baseGraph = graphHopper.getBaseGraph();
+        this.locationIndex = graphHopper.getLocationIndex();
+        this.gtfsStorage = graphHopper.getGtfsStorage();
+        this.accessWeighting = graphHopper.createWeighting(profile, new PMap(), false);
+        this.snapFilter = new DefaultSnapFilter(accessWeighting, graphHopper.getEncodingManager().getBooleanEncodedValue(Subnetwork.key(accessProfile)));
+        this.stops = new ArrayList<>(gtfsStorage.getStationNodes().keySet());
+        stops.sort(Comparator.comparing((GtfsStorage.FeedIdWithStopId s) -> s.feedId).thenComparing(s -> s.stopId));
+        for (int i = 0; i < stops.size(); i++)
+            stopIndices.put(stops.get(i), i);
+    }
+
+    public Accessibility setThreads(int threads) {
+        this.threads = threads;
+        return this;
+    }
+
+    public Accessibility setMaxTravelTime(Duration maxTravelTime) {
+        if (maxTravelTime.getSeconds() > AccessibilityMatrix.MAX_TRAVEL_TIME)
+            throw new IllegalArgumentException("The maximum travel time must not exceed " + AccessibilityMatrix.MAX_TRAVEL_TIME + "s");
+        this.maxTravelTime = maxTravelTime;
+        return this;
+    }
+
+    /**
+     * @param maxWalkTime the maximum time spent walking on the street network, to the first stop and between stops
+     */
+    public Accessibility setMaxWalkTime(Duration maxWalkTime) {
+        this.maxWalkTime = maxWalkTime;
+        return this;
+    }
+
+    public Accessibility setWalkSpeedKmH(double walkSpeedKmH) {
+        this.walkSpeedKmH = walkSpeedKmH;
+        return this;
+    }
+
+    public Accessibility setBlockedRouteTypes(int blockedRouteTypes) {
+        this.blockedRouteTypes = blockedRouteTypes;
+        return this;
+    }
+
+    /**
+     * @param percentile the percentile of the travel times over the departure minutes that is stored in the matrix,
+     *                   e.g. 50 for the median and 0 for the shortest travel time
+     */
+    public Accessibility setPercentile(int percentile) {
+        if (percentile < 0 || percentile > 100)
+            throw new IllegalArgumentException("The percentile must be between 0 and 100, but was " + percentile);
+        this.percentile = percentile;
+        return this;
+    }
+
+    /**
+     * @return the stops in the order of the columns of the matrix
+     */
+    public List<GtfsStorage.FeedIdWithStopId> getStops() {
+        return Collections.unmodifiableList(stops);
+    }
+
+    /**
+     * Calculates the travel times from all origins and writes them to the given directory.
+     *
+     * @param departureMinutes the number of departure minutes starting at the earliest departure time
+     */
+    public AccessibilityMatrix calcMatrix(List<GHPoint> origins, Instant earliestDepartureTime, int departureMinutes, Directory dir) {
+        if (departureMinutes < 1)
+            throw new IllegalArgumentException("At least one departure minute is needed, but was " + departureMinutes);
+        StopWatch sw = new StopWatch().start();
+        AccessibilityMatrix matrix = new AccessibilityMatrix(dir).create(origins.size(), stops.size());
+        GHUtility.runConcurrently(IntStream.range(0, origins.size()).mapToObj(origin -> (Runnable) () -> {
+            matrix.setOrigin(origin, origins.get(origin));
+            int[] travelTimes = calcTravelTimes(origins.get(origin), earliestDepartureTime, departureMinutes);
+            for (int stop = 0; stop < travelTimes.length; stop++)
+                matrix.setTravelTime(origin, stop, travelTimes[stop]);
+        }), threads);
+        matrix.flush();
+        logger.info("Calculated {} for {} departure minutes, took: {}s", matrix, departureMinutes, sw.stop().getSeconds());
+        return matrix;
+    }
+
+    /**
+     * @return the travel time in seconds to every stop from the given origin, in the order of {@link #getStops()}
+     * and {@link AccessibilityMatrix#UNREACHABLE} for the stops that cannot be reached within the maximum travel time
+     * for the percentile of the departure minutes
+     */
+    public int[] calcTravelTimes(GHPoint origin, Instant earliestDepartureTime, int departureMinutes) {
+        int[] result = new int[stops.size()];
+        Arrays.fill(result, AccessibilityMatrix.UNREACHABLE);
+        PtLocationSnapper.Result snapResult;
+        try {
+            snapResult = new PtLocationSnapper(baseGraph, locationIndex, gtfsStorage)
+                    .snapAll(Collections.singletonList(new GHPointLocation(origin)), Collections.singletonList(snapFilter));
+        } catch (PointNotFoundException e) {
+            logger.warn("Cannot find origin {}", origin);
+            return result;
+        }
+
+        // the walk to the platforms does not depend on the departure time
+        int[] walkTimes = new int[stops.size()];
+        Arrays.fill(walkTimes, Integer.MAX_VALUE);
+        Map<Label.NodeId, Long> accessTimes = new HashMap<>();
+        GraphExplorer accessExplorer = new GraphExplorer(snapResult.queryGraph, gtfsStorage.getPtGraph(), accessWeighting, gtfsStorage, RealtimeFeed.empty(), false, true, false, walkSpeedKmH, false, blockedRouteTypes);
+        MultiCriteriaLabelSetting accessRouter = new MultiCriteriaLabelSetting(accessExplorer, false, false, false, 0, new ArrayList<>());
+        accessRouter.setLimitStreetTime(maxWalkTime.toMillis());
+        accessRouter.setLimitTripTime(maxTravelTime.toMillis());
+        for (Label label : accessRouter.calcLabels(snapResult.nodes.get(0), earliestDepartureTime)) {
+            if (label.edge != null && label.edge.getType() == GtfsStorage.EdgeType.ENTER_PT) {
+                accessTimes.merge(label.node, label.streetTime, Math::min);
+                int stop = getStopIndex(label.edge.getPlatformDescriptor());
+                if (stop >= 0)
+                    walkTimes[stop] = Math.min(walkTimes[stop], (int) (label.streetTime / 1000));
+            }
+        }
+
+        int[][] travelTimesByMinute = new int[departureMinutes][];
+        for (int minute = 0; minute < departureMinutes; minute++) {
+            Instant departureTime = earliestDepartureTime.plusSeconds(minute * 60L);
+            int[] travelTimes = walkTimes.clone();
+            if (!accessTimes.isEmpty()) {
+                GraphExplorer explorer = new GraphExplorer(snapResult.queryGraph, gtfsStorage.getPtGraph(), accessWeighting, gtfsStorage, RealtimeFeed.empty(), false, false, false, walkSpeedKmH, false, blockedRouteTypes);
+                MultiCriteriaLabelSetting router = new MultiCriteriaLabelSetting(explorer, false, false, false, 0, new ArrayList<>());
+                router.setLimitStreetTime(maxWalkTime.toMillis());
+                router.setLimitTripTime(maxTravelTime.toMillis());
+                for (Label label : router.calcLabels(accessTimes, departureTime)) {
+                    if (label.edge != null && label.edge.getType() == GtfsStorage.EdgeType.EXIT_PT) {
+                        int stop = getStopIndex(label.edge.getPlatformDescriptor());
+                        if (stop >= 0)
+                            travelTimes[stop] = Math.min(travelTimes[stop], (int) ((label.currentTime - departureTime.toEpochMilli()) / 1000));
+                    }
+                }
+            }
+            travelTimesByMinute[minute] = travelTimes;
+        }
+
+        int[] travelTimesOfStop = new int[departureMinutes];
+        for (int stop = 0; stop < stops.size(); stop++) {
+            for (int minute = 0; minute < departureMinutes; minute++)
+                travelTimesOfStop[minute] = travelTimesByMinute[minute][stop];
+            Arrays.sort(travelTimesOfStop);
+            int travelTime = travelTimesOfStop[(departureMinutes - 1) * percentile / 100];
+            if (travelTime != Integer.MAX_VALUE)
+                result[stop] = travelTime;
+        }
+        return result;
+    }
+
+    private int getStopIndex(GtfsStorage.PlatformDescriptor platformDescriptor) {
+        Integer stop = stopIndices.get(new GtfsStorage.FeedIdWithStopId(platformDescriptor.feed_id, platformDescriptor.stop_id));
+        return stop == null ? -1 : stop;
+    }
+}
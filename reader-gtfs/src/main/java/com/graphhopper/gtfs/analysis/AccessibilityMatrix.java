@@ -0,0 +1,127 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.gtfs.analysis;
+
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.shapes.GHPoint;
+
+/**
+ * The travel times from a list of origins to all stops, see {@link Accessibility}. Every row holds the travel times
+ * of one origin in seconds with two bytes per stop, in the order of {@link Accessibility#getStops()}.
+ */
+public class AccessibilityMatrix {
+    public static final int UNREACHABLE = -1;
+    // the largest travel time that fits into two bytes, the value above it marks unreachable stops
+    public static final int MAX_TRAVEL_TIME = 0xFFFE;
+    private static final int UNREACHABLE_VALUE = 0xFFFF;
+    private final DataAccess travelTimes;
+    // per origin its latitude and longitude
+    private final DataAccess origins;
+    private int originCount, stopCount;
+
+    public AccessibilityMatrix(Directory dir) {
+        travelTimes = dir.create("pt_accessibility");
+        origins = dir.create("pt_accessibility_origins");
+    }
+
+    public AccessibilityMatrix create(int originCount, int stopCount) {
+        this.originCount = originCount;
+        this.stopCount = stopCount;
+        travelTimes.create(1000);
+        origins.create(1000);
+        travelTimes.ensureCapacity(Math.max(1, (long) originCount * stopCount * 2));
+        origins.ensureCapacity(Math.max(1, (long) originCount * 8));
+        for (int origin = 0; origin < originCount; origin++)
+            for (int stop = 0; stop < stopCount; stop++)
+                setTravelTime(origin, stop, UNREACHABLE);
+        travelTimes.setHeader(0, originCount);
+        travelTimes.setHeader(4, stopCount);
+        return this;
+    }
+
+    public boolean loadExisting() {
+        if (!travelTimes.loadExisting())
+            return false;
+        if (!origins.loadExisting())
+            throw new IllegalStateException("Cannot load the origins of the accessibility matrix");
+        originCount = travelTimes.getHeader(0);
+        stopCount = travelTimes.getHeader(4);
+        return true;
+    }
+
+    public int getOrigins() {
+        return originCount;
+    }
+
+    public int getStops() {
+        return stopCount;
+    }
+
+    void setOrigin(int origin, GHPoint point) {
+        origins.setInt(origin * 8L, Helper.degreeToInt(point.lat));
+        origins.setInt(origin * 8L + 4, Helper.degreeToInt(point.lon));
+    }
+
+    public GHPoint getOrigin(int origin) {
+        return new GHPoint(Helper.intToDegree(origins.getInt(origin * 8L)), Helper.intToDegree(origins.getInt(origin * 8L + 4)));
+    }
+
+    /**
+     * Rows of different origins can be set concurrently, the capacity is allocated by {@link #create(int, int)}.
+     */
+    void setTravelTime(int origin, int stop, int seconds) {
+        if (seconds > MAX_TRAVEL_TIME)
+            throw new IllegalArgumentException("Travel time " + seconds + "s is too large, the maximum is " + MAX_TRAVEL_TIME + "s");
+        travelTimes.setShort(pointer(origin, stop), (short) (seconds == UNREACHABLE ? UNREACHABLE_VALUE : seconds));
+    }
+
+    /**
+     * @return the travel time from the given origin to the given stop in seconds or {@link #UNREACHABLE}
+     */
+    public int getTravelTime(int origin, int stop) {
+        int value = travelTimes.getShort(pointer(origin, stop)) & 0xFFFF;
+        return value == UNREACHABLE_VALUE ? UNREACHABLE : value;
+    }
+
+    private long pointer(int origin, int stop) {
+        return ((long) origin * stopCount + stop) * 2;
+    }
+
+    public void flush() {
+        travelTimes.flush();
+        origins.flush();
+    }
+
+    public void close() {
+        travelTimes.close();
+        origins.close();
+    }
+
+    public long getCapacity() {
+        return travelTimes.getCapacity() + origins.getCapacity();
+    }
+
+    @Override
+    public String toString() {
+        return "accessibility matrix: " + originCount + " origins, " + stopCount + " stops, "
+                + Helper.nf(getCapacity() / Helper.MB) + "MB";
+    }
+}
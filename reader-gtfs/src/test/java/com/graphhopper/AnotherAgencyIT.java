@@ -71,7 +71,6 @@ public interface AnotherAgencyIT<T extends PtRouter> {
             ghConfig.putObject("datareader.file", "files/beatty.osm");
             ghConfig.putObject("gtfs.file", "files/sample-feed,files/another-sample-feed");
             ghConfig.putObject("gtfs.trip_based", true);
-            ghConfig.putObject("gtfs.schedule_day", "2007-01-01,2007-01-02,2007-01-06,2007-01-07");
             ghConfig.putObject("graph.encoded_values", "foot_access, foot_priority, foot_average_speed, car_access, car_average_speed");
             ghConfig.setProfiles(List.of(
                     TestProfiles.accessSpeedAndPriority("foot"),
@@ -100,14 +99,15 @@ public interface AnotherAgencyIT<T extends PtRouter> {
 
         @Test
         public void testMuseum() {
-            Trips tripTransfers = graphHopperGtfs().getGtfsStorage().tripTransfers;
+            Trips tripTransfers = graphHopperGtfs().getGtfsStorage().getTrips();
             int tripIdx = findTrip("MUSEUMAIRPORT1", LocalTime.of(10, 40), 2, ARRIVAL);
-            Collection<Trips.TripAtStopTime> transferDestinations = tripTransfers.getTripTransfers(LocalDate.of(2007, 1, 1)).get(new Trips.TripAtStopTime(tripIdx, 2));
+            GtfsStorage gtfsStorage = graphHopperGtfs().getGtfsStorage();
+            Collection<Trips.TripAtStopTime> transferDestinations = gtfsStorage.getTripTransfers().getTransfers(gtfsStorage.getTimetable(), tripIdx, 2, LocalDate.of(2007, 1, 1));
             assertThat(transferDestinations).extracting(td -> print(td, tripTransfers, DEPARTURE)).contains("8 AB3_NO_BLOCK @ 1 BEATTY_AIRPORT 50400");
         }
 
         private int findTrip(String tripId, LocalTime time, int stopSequence, Trips.TripAtStopTime.ArrivalDeparture arrivalDeparture) {
-            Trips tripTransfers = graphHopperGtfs().getGtfsStorage().tripTransfers;
+            Trips tripTransfers = graphHopperGtfs().getGtfsStorage().getTrips();
             int tripIdx = 0;
             for (GTFSFeed.StopTimesForTripWithTripPatternKey trip : tripTransfers.trips) {
                 if (trip.trip.trip_id.equals(tripId) && LocalTime.ofSecondOfDay(arrivalDeparture == ARRIVAL ? trip.stopTimes.get(stopSequence).arrival_time : trip.stopTimes.get(stopSequence).departure_time).equals(time)) {
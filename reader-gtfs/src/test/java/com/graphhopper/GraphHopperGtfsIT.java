@@ -20,6 +20,7 @@ package com.graphhopper;
 
 import com.conveyal.gtfs.GTFSFeed;
 import com.conveyal.gtfs.model.Stop;
+import com.conveyal.gtfs.model.StopTime;
 import com.graphhopper.gtfs.*;
 import com.graphhopper.gtfs.Trips;
 import com.graphhopper.routing.TestProfiles;
@@ -75,7 +76,6 @@ public interface GraphHopperGtfsIT<T extends PtRouter> {
             ghConfig.putObject("gtfs.file", "files/sample-feed");
             ghConfig.putObject("gtfs.trip_based", true);
             ghConfig.putObject("gtfs.trip_based.max_transfer_time", 24 * 60 * 60);
-            ghConfig.putObject("gtfs.schedule_day", "2007-01-01,2007-01-02,2007-01-06,2007-01-07");
             ghConfig.putObject("graph.encoded_values", "foot_access, foot_priority, foot_average_speed, car_access, car_average_speed");
             ghConfig.setProfiles(List.of(
                     TestProfiles.accessSpeedAndPriority("foot"),
@@ -102,14 +102,38 @@ public interface GraphHopperGtfsIT<T extends PtRouter> {
 
         @Test
         public void testTransferForRoute5IsAvailable() {
-            Trips tripTransfers = graphHopperGtfs().getGtfsStorage().tripTransfers;
+            Trips tripTransfers = graphHopperGtfs().getGtfsStorage().getTrips();
             int tripIdx = findTrip("STBA", LocalTime.of(7, 50), 2, ARRIVAL);
-            Collection<Trips.TripAtStopTime> transferDestinations = tripTransfers.getTripTransfers(LocalDate.of(2007, 1, 1)).get(new Trips.TripAtStopTime(tripIdx, 2));
+            GtfsStorage gtfsStorage = graphHopperGtfs().getGtfsStorage();
+            Collection<Trips.TripAtStopTime> transferDestinations = gtfsStorage.getTripTransfers().getTransfers(gtfsStorage.getTimetable(), tripIdx, 2, LocalDate.of(2007, 1, 1));
             assertThat(transferDestinations).extracting(td -> print(td, tripTransfers, DEPARTURE)).contains("4 AB1 @ 1 BEATTY_AIRPORT 28800");
         }
 
+        @Test
+        public void testTimetableMatchesTrips() {
+            Trips trips = graphHopperGtfs().getGtfsStorage().getTrips();
+            Timetable timetable = graphHopperGtfs().getGtfsStorage().getTimetable();
+            assertEquals(trips.trips.size(), timetable.getTrips());
+            for (GTFSFeed.StopTimesForTripWithTripPatternKey trip : trips.trips) {
+                assertEquals(trip.trip.trip_id, timetable.getTripId(trip.idx));
+                assertEquals(trip.endIdxOfPattern, timetable.getEndTripOfPattern(trip.idx));
+                assertEquals(trip.routeType, timetable.getRouteType(trip.idx));
+                assertEquals(trip.service.activeOn(LocalDate.of(2007, 1, 1)), timetable.isActiveOn(trip.idx, LocalDate.of(2007, 1, 1)));
+                assertEquals(trip.stopTimes.size(), timetable.getStopSequences(trip.idx));
+                for (int i = 0; i < trip.stopTimes.size(); i++) {
+                    StopTime stopTime = trip.stopTimes.get(i);
+                    assertEquals(stopTime != null, timetable.hasStopTime(trip.idx, i));
+                    if (stopTime != null) {
+                        assertEquals(new GtfsStorage.FeedIdWithStopId(trip.feedId, stopTime.stop_id), timetable.getStop(timetable.getStopIndex(trip.idx, i)));
+                        assertEquals(stopTime.arrival_time, timetable.getArrivalTime(trip.idx, i));
+                        assertEquals(stopTime.departure_time, timetable.getDepartureTime(trip.idx, i));
+                    }
+                }
+            }
+        }
+
         private int findTrip(String tripId, LocalTime time, int stopSequence, Trips.TripAtStopTime.ArrivalDeparture arrivalDeparture) {
-            Trips tripTransfers = graphHopperGtfs().getGtfsStorage().tripTransfers;
+            Trips tripTransfers = graphHopperGtfs().getGtfsStorage().getTrips();
             int tripIdx = 0;
             for (GTFSFeed.StopTimesForTripWithTripPatternKey trip : tripTransfers.trips) {
                 if (trip.trip.trip_id.equals(tripId) && LocalTime.ofSecondOfDay(arrivalDeparture == ARRIVAL ? trip.stopTimes.get(stopSequence).arrival_time : trip.stopTimes.get(stopSequence).departure_time).equals(time)) {
@@ -126,6 +150,51 @@ public interface GraphHopperGtfsIT<T extends PtRouter> {
         }
     }
 
+    class RaptorPtRouterTest implements GraphHopperGtfsIT<PtRouterRaptorImpl> {
+
+        private static GraphHopperGtfs graphHopperGtfs;
+        static PtRouterRaptorImpl ptRouter;
+
+        @BeforeAll
+        static void init() {
+            Helper.removeDir(new File(GRAPH_LOC));
+            GraphHopperConfig ghConfig = new GraphHopperConfig();
+            ghConfig.putObject("graph.location", GRAPH_LOC);
+            ghConfig.putObject("import.osm.ignored_highways", "");
+            ghConfig.putObject("gtfs.file", "files/sample-feed");
+            ghConfig.putObject("gtfs.trip_based", true);
+            ghConfig.putObject("gtfs.trip_based.max_transfer_time", 24 * 60 * 60);
+            ghConfig.putObject("gtfs.raptor.threads", 2);
+            ghConfig.putObject("graph.encoded_values", "foot_access, foot_priority, foot_average_speed, car_access, car_average_speed");
+            ghConfig.setProfiles(List.of(
+                    TestProfiles.accessSpeedAndPriority("foot"),
+                    TestProfiles.accessAndSpeed("car")));
+            graphHopperGtfs = new GraphHopperGtfs(ghConfig);
+            graphHopperGtfs.init(ghConfig);
+            graphHopperGtfs.importOrLoad();
+            ptRouter = new PtRouterRaptorImpl(graphHopperGtfs, ghConfig, new TranslationMap().doImport(), graphHopperGtfs.getBaseGraph(), graphHopperGtfs.getEncodingManager(), graphHopperGtfs.getLocationIndex(), graphHopperGtfs.getGtfsStorage(), graphHopperGtfs.getPathDetailsBuilderFactory());
+        }
+
+        public GraphHopperGtfs graphHopperGtfs() {
+            return graphHopperGtfs;
+        }
+
+        public PtRouterRaptorImpl ptRouter() {
+            return ptRouter;
+        }
+
+        @Override
+        public GHResponse route(Request request) {
+            assumeFalse(request.isArriveBy(), "We are excused from queries by arrival time so far");
+            return ptRouter().route(request);
+        }
+
+        @AfterAll
+        public static void close() {
+            graphHopperGtfs.close();
+        }
+    }
+
     class DefaultPtRouterTest implements GraphHopperGtfsIT<PtRouterImpl> {
 
         private static GraphHopperGtfs graphHopperGtfs;
@@ -112,7 +112,6 @@ public interface GraphHopperMultimodalIT<T extends PtRouter> {
             ghConfig.putObject("import.osm.ignored_highways", "");
             ghConfig.putObject("gtfs.file", "files/sample-feed");
             ghConfig.putObject("gtfs.trip_based", true);
-            ghConfig.putObject("gtfs.schedule_day", "2007-01-01");
             ghConfig.putObject("graph.location", GRAPH_LOC);
             ghConfig.putObject("graph.encoded_values", "foot_access, foot_priority, foot_average_speed, car_access, car_average_speed");
             ghConfig.setProfiles(Arrays.asList(
@@ -22,6 +22,8 @@ import com.google.transit.realtime.GtfsRealtime;
 import com.graphhopper.gtfs.GraphHopperGtfs;
 import com.graphhopper.gtfs.PtRouter;
 import com.graphhopper.gtfs.PtRouterImpl;
+import com.graphhopper.gtfs.RealtimeFeed;
+import com.graphhopper.gtfs.RealtimeFeedUpdater;
 import com.graphhopper.gtfs.Request;
 import com.graphhopper.routing.TestProfiles;
 import com.graphhopper.util.Helper;
@@ -34,6 +36,7 @@ import java.io.File;
 import java.math.BigDecimal;
 import java.time.*;
 import java.util.List;
+import java.util.Map;
 
 import static com.google.transit.realtime.GtfsRealtime.TripDescriptor.ScheduleRelationship.ADDED;
 import static com.google.transit.realtime.GtfsRealtime.TripUpdate.StopTimeUpdate.ScheduleRelationship.SCHEDULED;
@@ -186,6 +189,84 @@ public class RealtimeIT {
         assertEquals(time(0, 5), response.getBest().getTime(), 0.1, "I am two minutes late for my bus, but the bus is two minutes late, too, so I catch it!");
     }
 
+    @Test
+    public void testUpdateOnlyChangedTripUpdates() {
+        final double FROM_LAT = 36.914893, FROM_LON = -116.76821; // NADAV stop
+        final double TO_LAT = 36.914944, TO_LON = -116.761472; // NANAA stop
+        Request ghRequest = new Request(
+                FROM_LAT, FROM_LON,
+                TO_LAT, TO_LON
+        );
+        ghRequest.setEarliestDepartureTime(LocalDateTime.of(2007, 1, 1, 6, 46).atZone(zoneId).toInstant());
+
+        final GtfsRealtime.FeedMessage.Builder feedMessageBuilder = GtfsRealtime.FeedMessage.newBuilder();
+        feedMessageBuilder.setHeader(GtfsRealtime.FeedHeader.newBuilder()
+                .setGtfsRealtimeVersion("1")
+                .setTimestamp(ZonedDateTime.of(LocalDate.of(2007, 1, 1), LocalTime.of(0, 0), zoneId).toEpochSecond()));
+        GtfsRealtime.FeedMessage withoutDelay = feedMessageBuilder.build();
+        feedMessageBuilder.addEntityBuilder()
+                .setId("1")
+                .getTripUpdateBuilder()
+                .setTrip(GtfsRealtime.TripDescriptor.newBuilder().setTripId("CITY2").setStartTime("06:00:00"))
+                .addStopTimeUpdateBuilder()
+                .setScheduleRelationship(SCHEDULED)
+                .setStopSequence(3)
+                .setArrival(GtfsRealtime.TripUpdate.StopTimeEvent.newBuilder().setDelay(120).build());
+        GtfsRealtime.FeedMessage withDelay = feedMessageBuilder.build();
+
+        RealtimeFeedUpdater updater = graphHopperFactory.createRealtimeFeedUpdater();
+        RealtimeFeed delayed = updater.update(Map.of("gtfs_0", withDelay));
+        assertSame(delayed, updater.update(Map.of("gtfs_0", withDelay)), "Nothing changed, so the snapshot is kept");
+        assertEquals(time(0, 5), graphHopperFactory.createWith(delayed).route(ghRequest).getBest().getTime(), 0.1);
+
+        RealtimeFeed onTime = updater.update(Map.of("gtfs_0", withoutDelay));
+        assertNotSame(delayed, onTime);
+        assertEquals(time(0, 33), graphHopperFactory.createWith(onTime).route(ghRequest).getBest().getTime(), 0.1, "The delay is gone, so I missed my bus");
+        assertEquals(time(0, 5), graphHopperFactory.createWith(delayed).route(ghRequest).getBest().getTime(), 0.1, "..but the old snapshot is not affected");
+        assertEquals(time(0, 5), graphHopperFactory.createWith(updater.update(Map.of("gtfs_0", withDelay))).route(ghRequest).getBest().getTime(), 0.1);
+    }
+
+    @Test
+    public void testMalformedTripUpdateIsSkipped() {
+        final double FROM_LAT = 36.914893, FROM_LON = -116.76821; // NADAV stop
+        final double TO_LAT = 36.914944, TO_LON = -116.761472; // NANAA stop
+        Request ghRequest = new Request(
+                FROM_LAT, FROM_LON,
+                TO_LAT, TO_LON
+        );
+        ghRequest.setEarliestDepartureTime(LocalDateTime.of(2007, 1, 1, 6, 46).atZone(zoneId).toInstant());
+
+        final GtfsRealtime.FeedMessage.Builder feedMessageBuilder = GtfsRealtime.FeedMessage.newBuilder();
+        feedMessageBuilder.setHeader(GtfsRealtime.FeedHeader.newBuilder()
+                .setGtfsRealtimeVersion("1")
+                .setTimestamp(ZonedDateTime.of(LocalDate.of(2007, 1, 1), LocalTime.of(0, 0), zoneId).toEpochSecond()));
+        GtfsRealtime.FeedMessage withoutDelay = feedMessageBuilder.build();
+        // this trip does not have this stop
+        feedMessageBuilder.addEntityBuilder()
+                .setId("1")
+                .getTripUpdateBuilder()
+                .setTrip(GtfsRealtime.TripDescriptor.newBuilder().setTripId("CITY1").setStartTime("06:00:00"))
+                .addStopTimeUpdateBuilder()
+                .setStopSequence(99)
+                .setScheduleRelationship(SKIPPED);
+        feedMessageBuilder.addEntityBuilder()
+                .setId("2")
+                .getTripUpdateBuilder()
+                .setTrip(GtfsRealtime.TripDescriptor.newBuilder().setTripId("CITY2").setStartTime("06:00:00"))
+                .addStopTimeUpdateBuilder()
+                .setScheduleRelationship(SCHEDULED)
+                .setStopSequence(3)
+                .setArrival(GtfsRealtime.TripUpdate.StopTimeEvent.newBuilder().setDelay(120).build());
+        GtfsRealtime.FeedMessage malformed = feedMessageBuilder.build();
+
+        RealtimeFeedUpdater updater = graphHopperFactory.createRealtimeFeedUpdater();
+        RealtimeFeed delayed = updater.update(Map.of("gtfs_0", malformed));
+        assertEquals(time(0, 5), graphHopperFactory.createWith(delayed).route(ghRequest).getBest().getTime(), 0.1, "The valid trip update is still applied");
+
+        RealtimeFeed onTime = updater.update(Map.of("gtfs_0", withoutDelay));
+        assertEquals(time(0, 33), graphHopperFactory.createWith(onTime).route(ghRequest).getBest().getTime(), 0.1, "The delay is gone, so I missed my bus");
+    }
+
     @Test
     public void testSkipArrivalStop() {
         final double FROM_LAT = 36.914893, FROM_LON = -116.76821; // NADAV stop
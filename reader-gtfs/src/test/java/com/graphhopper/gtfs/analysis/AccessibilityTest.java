@@ -0,0 +1,120 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.gtfs.analysis;
+
+import com.graphhopper.GraphHopperConfig;
+import com.graphhopper.gtfs.GraphHopperGtfs;
+import com.graphhopper.gtfs.GtfsStorage;
+import com.graphhopper.routing.TestProfiles;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.shapes.GHPoint;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AccessibilityTest {
+
+    private static final String GRAPH_LOC = "target/AccessibilityTest";
+    private static final String MATRIX_LOC = "target/AccessibilityTest-matrix";
+    private static final ZoneId zoneId = ZoneId.of("America/Los_Angeles");
+    private static final GHPoint NADAV = new GHPoint(36.914893, -116.76821);
+    private static final GHPoint NANAA = new GHPoint(36.914944, -116.761472);
+    private static GraphHopperGtfs graphHopperGtfs;
+
+    @BeforeAll
+    public static void init() {
+        GraphHopperConfig ghConfig = new GraphHopperConfig();
+        ghConfig.putObject("graph.location", GRAPH_LOC);
+        ghConfig.putObject("datareader.file", "files/beatty.osm");
+        ghConfig.putObject("gtfs.file", "files/sample-feed");
+        ghConfig.putObject("import.osm.ignored_highways", "");
+        ghConfig.putObject("graph.encoded_values", "foot_access, foot_priority, foot_average_speed, car_access, car_average_speed");
+        ghConfig.setProfiles(List.of(
+                TestProfiles.accessSpeedAndPriority("foot"),
+                TestProfiles.accessAndSpeed("car")));
+        Helper.removeDir(new File(GRAPH_LOC));
+        Helper.removeDir(new File(MATRIX_LOC));
+        graphHopperGtfs = new GraphHopperGtfs(ghConfig);
+        graphHopperGtfs.init(ghConfig);
+        graphHopperGtfs.importOrLoad();
+    }
+
+    @AfterAll
+    public static void close() {
+        graphHopperGtfs.close();
+        Helper.removeDir(new File(MATRIX_LOC));
+    }
+
+    @Test
+    public void testTravelTimes() {
+        Accessibility accessibility = new Accessibility(graphHopperGtfs, "foot");
+        List<GtfsStorage.FeedIdWithStopId> stops = accessibility.getStops();
+        int nadav = stops.indexOf(new GtfsStorage.FeedIdWithStopId("gtfs_0", "NADAV"));
+        int nanaa = stops.indexOf(new GtfsStorage.FeedIdWithStopId("gtfs_0", "NANAA"));
+        Instant departure = LocalDateTime.of(2007, 1, 1, 6, 43).atZone(zoneId).toInstant();
+
+        // the bus leaves NADAV at 6:44 and arrives at NANAA at 6:49
+        int[] travelTimes = accessibility.calcTravelTimes(NADAV, departure, 1);
+        assertTrue(travelTimes[nadav] >= 0 && travelTimes[nadav] < 60);
+        assertTrue(travelTimes[nanaa] >= 300 && travelTimes[nanaa] < 420, "travel time to NANAA: " + travelTimes[nanaa]);
+
+        // within the next half hour the bus is missed most of the time
+        int[] median = accessibility.setPercentile(50).calcTravelTimes(NADAV, departure, 30);
+        int[] shortest = accessibility.setPercentile(0).calcTravelTimes(NADAV, departure, 30);
+        assertTrue(shortest[nanaa] <= travelTimes[nanaa]);
+        assertTrue(median[nanaa] > shortest[nanaa] || median[nanaa] == AccessibilityMatrix.UNREACHABLE);
+    }
+
+    @Test
+    public void testMatrix() {
+        Accessibility accessibility = new Accessibility(graphHopperGtfs, "foot").setThreads(2);
+        Instant departure = LocalDateTime.of(2007, 1, 1, 6, 43).atZone(zoneId).toInstant();
+        List<GHPoint> origins = List.of(NADAV, NANAA, new GHPoint(36.9, -116.7));
+        AccessibilityMatrix matrix = accessibility.calcMatrix(origins, departure, 10, new RAMDirectory(MATRIX_LOC, true).create());
+        assertEquals(3, matrix.getOrigins());
+        assertEquals(accessibility.getStops().size(), matrix.getStops());
+        for (int origin = 0; origin < origins.size(); origin++) {
+            int[] travelTimes = accessibility.calcTravelTimes(origins.get(origin), departure, 10);
+            for (int stop = 0; stop < matrix.getStops(); stop++)
+                assertEquals(travelTimes[stop], matrix.getTravelTime(origin, stop));
+        }
+        matrix.close();
+
+        Directory dir = new RAMDirectory(MATRIX_LOC, true);
+        AccessibilityMatrix loaded = new AccessibilityMatrix(dir);
+        assertTrue(loaded.loadExisting());
+        assertEquals(3, loaded.getOrigins());
+        assertEquals(NANAA.lat, loaded.getOrigin(1).lat, 1.e-6);
+        assertEquals(NANAA.lon, loaded.getOrigin(1).lon, 1.e-6);
+        int nadav = accessibility.getStops().indexOf(new GtfsStorage.FeedIdWithStopId("gtfs_0", "NADAV"));
+        assertTrue(loaded.getTravelTime(0, nadav) >= 0 && loaded.getTravelTime(0, nadav) < 60);
+        loaded.close();
+    }
+
+}
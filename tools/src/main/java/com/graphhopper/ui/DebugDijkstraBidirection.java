@@ -22,7 +22,7 @@ import com.graphhopper.routing.util.TraversalMode;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.Graph;
 import com.graphhopper.storage.NodeAccess;
-import com.graphhopper.routing.SPTEntry;
+import com.graphhopper.routing.SearchState;
 
 import java.awt.*;
 
@@ -46,11 +46,14 @@ public class DebugDijkstraBidirection extends DijkstraBidirectionRef implements
     }
 
     @Override
-    public void updateBestPath(double edgeWeight, SPTEntry entry, int origEdgeId, int traversalId, boolean reverse) {
+    public void updateBestPath(double edgeWeight, int slot, int traversalId, boolean reverse) {
         if (g2 != null) {
-            mg.plotEdge(g2, na.getLat(entry.parent.adjNode), na.getLon(entry.parent.adjNode), na.getLat(entry.adjNode), na.getLon(entry.adjNode), .8f);
+            SearchState state = reverse ? toState : fromState;
+            int node = state.getAdjNode(slot);
+            int parentNode = state.getAdjNode(state.getParent(slot));
+            mg.plotEdge(g2, na.getLat(parentNode), na.getLon(parentNode), na.getLat(node), na.getLon(node), .8f);
         }
         // System.out.println("new node:" + currLoc);
-        super.updateBestPath(edgeWeight, entry, origEdgeId, traversalId, reverse);
+        super.updateBestPath(edgeWeight, slot, traversalId, reverse);
     }
 }
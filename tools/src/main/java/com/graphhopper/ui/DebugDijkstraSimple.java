@@ -21,7 +21,6 @@ import com.graphhopper.routing.Dijkstra;
 import com.graphhopper.routing.util.TraversalMode;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.Graph;
-import com.graphhopper.routing.SPTEntry;
 import com.graphhopper.util.EdgeIteratorState;
 
 import java.awt.*;
@@ -44,10 +43,10 @@ public class DebugDijkstraSimple extends Dijkstra implements DebugAlgo {
     }
 
     @Override
-    public void updateBestPath(EdgeIteratorState es, SPTEntry bestEE, int currLoc) {
+    public void updateBestPath(EdgeIteratorState es, int slot, int currLoc) {
         if (g2 != null) {
             mg.plotNode(g2, currLoc, Color.YELLOW);
         }
-        super.updateBestPath(es, bestEE, currLoc);
+        super.updateBestPath(es, slot, currLoc);
     }
 }
@@ -129,6 +129,11 @@ public class Parameters {
          */
         public static final double DEFAULT_HEADING_PENALTY = 300;
         public static final String HEADING_PENALTY = "heading_penalty";
+        /**
+         * the departure time as ISO-8601 date time, e.g. 2024-05-21T08:00:00Z. Only for time-dependent routing with
+         * speed profiles.
+         */
+        public static final String DEPARTURE_TIME = "departure_time";
     }
 
     /**
@@ -18,6 +18,7 @@
 
 package com.graphhopper.http;
 
+import com.codahale.metrics.Gauge;
 import com.fasterxml.jackson.databind.MapperFeature;
 import com.fasterxml.jackson.databind.util.StdDateFormat;
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
@@ -33,6 +34,7 @@ import com.graphhopper.resources.*;
 import com.graphhopper.routing.util.EncodingManager;
 import com.graphhopper.storage.BaseGraph;
 import com.graphhopper.storage.index.LocationIndex;
+import com.graphhopper.util.Helper;
 import com.graphhopper.util.TranslationMap;
 import com.graphhopper.util.details.PathDetailsBuilderFactory;
 import io.dropwizard.client.HttpClientBuilder;
@@ -44,9 +46,33 @@ import jakarta.inject.Singleton;
 import org.apache.hc.client5.http.classic.HttpClient;
 import org.glassfish.hk2.api.Factory;
 import org.glassfish.hk2.utilities.binding.AbstractBinder;
+import org.glassfish.jersey.process.internal.RequestScoped;
 
 public class GraphHopperBundle implements ConfiguredBundle<GraphHopperBundleConfiguration> {
 
+    /**
+     * Provides the GraphHopper instance that is currently used by {@link GraphHopperManaged}. The instance is the
+     * same for the whole request and it is not closed by a reload of the graph before the request is finished.
+     */
+    static class GraphHopperFactory implements Factory<GraphHopper> {
+
+        private final GraphHopperManaged graphHopperManaged;
+
+        GraphHopperFactory(GraphHopperManaged graphHopperManaged) {
+            this.graphHopperManaged = graphHopperManaged;
+        }
+
+        @Override
+        public GraphHopper provide() {
+            return graphHopperManaged.acquire();
+        }
+
+        @Override
+        public void dispose(GraphHopper instance) {
+            graphHopperManaged.release(instance);
+        }
+    }
+
     static class TranslationMapFactory implements Factory<TranslationMap> {
 
         @Inject
@@ -275,13 +301,24 @@ public class GraphHopperBundle implements ConfiguredBundle<GraphHopperBundleConf
         final GraphHopperManaged graphHopperManaged = new GraphHopperManaged(configuration.getGraphHopperConfiguration());
         environment.lifecycle().manage(graphHopperManaged);
         final GraphHopper graphHopper = graphHopperManaged.getGraphHopper();
+        final ShortestPathTreeCache shortestPathTreeCache = new ShortestPathTreeCache(
+                configuration.getGraphHopperConfiguration().getLong("isochrone.cache_size_mb", 0) * Helper.MB);
+        environment.metrics().register("spt_cache.hits", (Gauge<Long>) shortestPathTreeCache::getHits);
+        environment.metrics().register("spt_cache.misses", (Gauge<Long>) shortestPathTreeCache::getMisses);
+        environment.metrics().register("spt_cache.bytes", (Gauge<Long>) shortestPathTreeCache::getBytes);
+        final MVTTileCache mvtTileCache = MVTTileCache.fromConfig(configuration.getGraphHopperConfiguration());
         environment.jersey().register(new AbstractBinder() {
             @Override
             protected void configure() {
                 bind(configuration.getGraphHopperConfiguration()).to(GraphHopperConfig.class);
-                bind(graphHopper).to(GraphHopper.class);
+                if (graphHopperManaged.isReloadable())
+                    bindFactory(new GraphHopperFactory(graphHopperManaged)).to(GraphHopper.class).in(RequestScoped.class);
+                else
+                    bind(graphHopper).to(GraphHopper.class);
 
                 bind(new JTSTriangulator(graphHopper.getRouterConfig())).to(Triangulator.class);
+                bind(shortestPathTreeCache).to(ShortestPathTreeCache.class);
+                bind(mvtTileCache).to(MVTTileCache.class);
                 bindFactory(MapMatchingRouterFactoryFactory.class).to(MapMatchingResource.MapMatchingRouterFactory.class);
                 bindFactory(PathDetailsBuilderFactoryFactory.class).to(PathDetailsBuilderFactory.class);
                 bindFactory(ProfileResolverFactory.class).to(ProfileResolver.class);
@@ -298,6 +335,7 @@ public class GraphHopperBundle implements ConfiguredBundle<GraphHopperBundleConf
         environment.jersey().register(MVTResource.class);
         environment.jersey().register(NearestResource.class);
         environment.jersey().register(RouteResource.class);
+        environment.jersey().register(MatrixResource.class);
         environment.jersey().register(IsochroneResource.class);
         environment.jersey().register(MapMatchingResource.class);
 
@@ -318,6 +356,7 @@ public class GraphHopperBundle implements ConfiguredBundle<GraphHopperBundleConf
                     bind(PtRouterImpl.class).to(PtRouter.class).named("classic");
                     bind(PtRouterFreeWalkImpl.class).to(PtRouter.class).named("free_walk");
                     bind(PtRouterTripBasedImpl.class).to(PtRouter.class).named("trip_based");
+                    bind(PtRouterRaptorImpl.class).to(PtRouter.class).named("raptor");
                 }
             });
             environment.jersey().register(PtRouteResource.class);
@@ -328,7 +367,9 @@ public class GraphHopperBundle implements ConfiguredBundle<GraphHopperBundleConf
         environment.jersey().register(SPTResource.class);
         environment.jersey().register(I18NResource.class);
         environment.jersey().register(InfoResource.class);
-        environment.healthChecks().register("graphhopper", new GraphHopperHealthCheck(graphHopper));
+        environment.healthChecks().register("graphhopper", new GraphHopperHealthCheck(graphHopperManaged::getGraphHopper));
+        if (graphHopperManaged.isReloadable())
+            environment.admin().addTask(new ReloadGraphTask(graphHopperManaged));
         environment.jersey().register(environment.healthChecks());
         environment.jersey().register(HealthCheckResource.class);
 
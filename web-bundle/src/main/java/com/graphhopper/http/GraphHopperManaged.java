@@ -21,42 +21,162 @@ package com.graphhopper.http;
 import com.graphhopper.GraphHopper;
 import com.graphhopper.GraphHopperConfig;
 import com.graphhopper.gtfs.GraphHopperGtfs;
+import com.graphhopper.util.Helper;
 import io.dropwizard.lifecycle.Managed;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Manages the lifecycle of the GraphHopper instance used by the resources. Without GTFS the graph can be replaced at
+ * runtime using {@link #reload}: the new graph is imported or loaded while the requests are still served using the
+ * old one, and the old one is closed once all requests that use it are finished.
+ */
 public class GraphHopperManaged implements Managed {
 
     private final static Logger logger = LoggerFactory.getLogger(GraphHopperManaged.class);
-    private final GraphHopper graphHopper;
+    private final GraphHopperConfig configuration;
+    private final AtomicReference<Instance> current = new AtomicReference<>();
+    // the instances that might still be used by requests, so release can find their counters, see acquire and release
+    private final Map<GraphHopper, Instance> instances = new ConcurrentHashMap<>();
 
     public GraphHopperManaged(GraphHopperConfig configuration) {
+        this.configuration = configuration;
+        Instance instance = new Instance(createGraphHopper(configuration));
+        instances.put(instance.graphHopper, instance);
+        current.set(instance);
+    }
+
+    private static GraphHopper createGraphHopper(GraphHopperConfig configuration) {
+        GraphHopper graphHopper;
         if (configuration.has("gtfs.file")) {
             graphHopper = new GraphHopperGtfs(configuration);
         } else {
             graphHopper = new GraphHopper();
         }
         graphHopper.init(configuration);
+        return graphHopper;
     }
 
     @Override
     public void start() {
+        GraphHopper graphHopper = getGraphHopper();
         graphHopper.importOrLoad();
-        logger.info("loaded graph at:{}, data_reader_file:{}, encoded values:{}, {} bytes for edge flags, {}",
+        logGraph("loaded", graphHopper);
+    }
+
+    private static void logGraph(String msg, GraphHopper graphHopper) {
+        logger.info(msg + " graph at:{}, data_reader_file:{}, encoded values:{}, {} bytes for edge flags, {}",
                 graphHopper.getGraphHopperLocation(), graphHopper.getOSMFile(),
                 graphHopper.getEncodingManager().toEncodedValuesAsString(),
                 graphHopper.getEncodingManager().getBytesForFlags(),
                 graphHopper.getBaseGraph().toDetailsString());
     }
 
+    /**
+     * @return the GraphHopper instance that is currently used to serve requests. Use {@link #acquire()} instead if the
+     * instance must not be closed while you are using it.
+     */
     public GraphHopper getGraphHopper() {
-        return graphHopper;
+        return current.get().graphHopper;
+    }
+
+    /**
+     * @return the GraphHopper instance that is currently used to serve requests. It won't be closed by {@link #reload}
+     * before {@link #release} is called for it.
+     */
+    public GraphHopper acquire() {
+        while (true) {
+            Instance instance = current.get();
+            instance.inFlightRequests.incrementAndGet();
+            // if the instance was retired in the meantime it might already be closed, so we try again
+            if (!instance.retired)
+                return instance.graphHopper;
+            instance.inFlightRequests.decrementAndGet();
+        }
+    }
+
+    public void release(GraphHopper graphHopper) {
+        Instance instance = instances.get(graphHopper);
+        if (instance != null)
+            instance.inFlightRequests.decrementAndGet();
+    }
+
+    /**
+     * @return true if the graph can be replaced using {@link #reload}, which is not supported for GTFS
+     */
+    public boolean isReloadable() {
+        return !configuration.has("gtfs.file");
+    }
+
+    /**
+     * Imports or loads the graph at the given location and then replaces the current graph with it. The current graph
+     * is used to serve requests until the new one is ready, and it is closed once the requests that use it are
+     * finished. The configuration stays the same except for the graph location and optionally the OSM file.
+     *
+     * @param osmFile the OSM file to import if there is no graph at the given location yet, or null to use the
+     *                configured one
+     */
+    public synchronized void reload(String graphLocation, String osmFile) {
+        if (!isReloadable())
+            throw new IllegalStateException("Reloading the graph is not supported for GTFS");
+        if (Helper.isEmpty(graphLocation))
+            throw new IllegalArgumentException("The graph location must not be empty");
+        Instance old = current.get();
+        if (new File(graphLocation).getAbsoluteFile().equals(new File(old.graphHopper.getGraphHopperLocation()).getAbsoluteFile()))
+            throw new IllegalArgumentException("The new graph location must be different from the current one: " + graphLocation);
+
+        GraphHopperConfig newConfiguration = new GraphHopperConfig(configuration).putObject("graph.location", graphLocation);
+        if (!Helper.isEmpty(osmFile))
+            newConfiguration.putObject("datareader.file", osmFile);
+        GraphHopper newGraphHopper = createGraphHopper(newConfiguration);
+        try {
+            newGraphHopper.importOrLoad();
+        } catch (RuntimeException e) {
+            newGraphHopper.close();
+            throw e;
+        }
+        logGraph("reloaded", newGraphHopper);
+
+        Instance newInstance = new Instance(newGraphHopper);
+        instances.put(newGraphHopper, newInstance);
+        current.set(newInstance);
+        // new requests get the new instance from now on, so we only need to wait for the running ones. acquire checks
+        // this flag after incrementing the counter, so no request can start using the old instance after the wait.
+        old.retired = true;
+        while (old.inFlightRequests.get() > 0) {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for the requests of the old graph to finish, it was not closed", e);
+            }
+        }
+        instances.remove(old.graphHopper);
+        old.graphHopper.close();
+        logger.info("closed old graph at:{}", old.graphHopper.getGraphHopperLocation());
     }
 
     @Override
     public void stop() {
-        graphHopper.close();
+        getGraphHopper().close();
     }
 
+    private static class Instance {
+        private final GraphHopper graphHopper;
+        // the number of requests that are currently using the GraphHopper instance
+        private final AtomicInteger inFlightRequests = new AtomicInteger();
+        // set once the instance was replaced, it must not be handed out anymore
+        private volatile boolean retired;
+
+        Instance(GraphHopper graphHopper) {
+            this.graphHopper = graphHopper;
+        }
+    }
 
 }
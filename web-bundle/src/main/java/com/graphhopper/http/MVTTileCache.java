@@ -0,0 +1,173 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.http;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.GraphHopperConfig;
+import com.graphhopper.util.Helper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.function.Supplier;
+
+/**
+ * Caches the encoded vector tiles of the /mvt endpoint in memory and, for tiles up to a maximum zoom level, on disk.
+ * The tiles on disk can also be rendered in advance, see the mvt-prerender command. All tiles belong to the graph
+ * version given by its import date, so they are invalidated when the graph is imported again. The tiles on disk are
+ * stored in a sub directory per version and the directories of other versions are removed.
+ */
+public class MVTTileCache {
+    private static final Logger logger = LoggerFactory.getLogger(MVTTileCache.class);
+    private final Cache<String, byte[]> memoryCache;
+    private final File directory;
+    private final int maxDiskZoom;
+    private volatile String version;
+
+    /**
+     * @param maxBytes    the maximum size of the tiles in memory, 0 disables the memory cache
+     * @param location    the directory of the tiles on disk, an empty location disables the disk cache
+     * @param maxDiskZoom the tiles up to this zoom level are stored on disk
+     */
+    public MVTTileCache(long maxBytes, String location, int maxDiskZoom) {
+        if (maxBytes < 0)
+            throw new IllegalArgumentException("The maximum size of the cache must not be negative: " + maxBytes);
+        this.memoryCache = maxBytes == 0 ? null : CacheBuilder.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String key, byte[] tile) -> tile.length)
+                .build();
+        this.directory = Helper.isEmpty(location) ? null : new File(location);
+        this.maxDiskZoom = maxDiskZoom;
+    }
+
+    /**
+     * Creates the cache configured by mvt.cache_size_mb, mvt.cache_location and mvt.cache_max_zoom
+     */
+    public static MVTTileCache fromConfig(GraphHopperConfig config) {
+        return new MVTTileCache(config.getLong("mvt.cache_size_mb", 0) * Helper.MB,
+                config.getString("mvt.cache_location", ""), config.getInt("mvt.cache_max_zoom", 12));
+    }
+
+    public int getMaxDiskZoom() {
+        return maxDiskZoom;
+    }
+
+    public boolean isEnabled() {
+        return memoryCache != null || directory != null;
+    }
+
+    /**
+     * @param render creates the tile in case it is not cached yet
+     */
+    public byte[] get(GraphHopper graphHopper, int z, int x, int y, boolean renderAll, Supplier<byte[]> render) {
+        if (!isEnabled())
+            return render.get();
+        String version = checkVersion(graphHopper);
+        String key = z + "/" + x + "/" + y + (renderAll ? "_all" : "");
+        if (memoryCache != null) {
+            byte[] tile = memoryCache.getIfPresent(version + "/" + key);
+            if (tile != null)
+                return tile;
+        }
+        File file = getFile(version, z, key);
+        byte[] tile = null;
+        if (file != null && file.exists()) {
+            try {
+                tile = Files.readAllBytes(file.toPath());
+            } catch (IOException ex) {
+                logger.warn("Cannot read tile " + file + ", render it again", ex);
+            }
+        }
+        if (tile == null) {
+            tile = render.get();
+            if (file != null)
+                write(file, tile);
+        }
+        if (memoryCache != null)
+            memoryCache.put(version + "/" + key, tile);
+        return tile;
+    }
+
+    /**
+     * Stores the given tile on disk. This is used to render the tiles in advance.
+     */
+    public void put(GraphHopper graphHopper, int z, int x, int y, byte[] tile) {
+        if (directory == null)
+            throw new IllegalStateException("The location of the tile cache is not configured");
+        if (z > maxDiskZoom)
+            throw new IllegalArgumentException("Tiles of zoom level " + z + " are not read from disk, the maximum is " + maxDiskZoom);
+        String version = checkVersion(graphHopper);
+        write(new File(directory, version + "/" + z + "/" + x + "/" + y + ".mvt"), tile);
+    }
+
+    private File getFile(String version, int z, String key) {
+        if (directory == null || z > maxDiskZoom)
+            return null;
+        return new File(directory, version + "/" + key + ".mvt");
+    }
+
+    private static void write(File file, byte[] tile) {
+        try {
+            Files.createDirectories(file.getParentFile().toPath());
+            // concurrent requests for the same tile must not read a partially written file
+            File tmp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+            Files.write(tmp.toPath(), tile);
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot write tile " + file, ex);
+        }
+    }
+
+    /**
+     * @return the version of the graph of the given GraphHopper instance. If it differs from the version of the
+     * cached tiles they are removed.
+     */
+    private String checkVersion(GraphHopper graphHopper) {
+        String importDate = graphHopper.getProperties().get("datareader.import.date");
+        String newVersion = Helper.isEmpty(importDate) ? "unknown" : importDate.replaceAll("[^0-9A-Za-z]", "");
+        // the version only changes when the graph is replaced, so we do not need the lock for most requests
+        if (newVersion.equals(version))
+            return newVersion;
+        synchronized (this) {
+            return updateVersion(newVersion);
+        }
+    }
+
+    private String updateVersion(String newVersion) {
+        if (newVersion.equals(version))
+            return version;
+        if (version != null)
+            logger.info("graph changed from version " + version + " to " + newVersion + ", invalidating the tile cache");
+        version = newVersion;
+        if (memoryCache != null)
+            memoryCache.invalidateAll();
+        File[] versionDirectories = directory == null ? null : directory.listFiles(File::isDirectory);
+        if (versionDirectories != null)
+            for (File versionDirectory : versionDirectories)
+                if (!versionDirectory.getName().equals(version))
+                    Helper.removeDir(versionDirectory);
+        return version;
+    }
+}
@@ -52,7 +52,7 @@ public class RealtimeFeedLoadingCache implements Factory<RealtimeFeed>, Managed
     private final GraphHopperBundleConfiguration bundleConfiguration;
     private ExecutorService executor;
     private LoadingCache<String, RealtimeFeed> cache;
-    private Map<String, Transfers> transfers;
+    private RealtimeFeedUpdater realtimeFeedUpdater;
 
     @Inject
     RealtimeFeedLoadingCache(GraphHopperGtfs graphHopper, HttpClient httpClient, GraphHopperBundleConfiguration bundleConfiguration) {
@@ -63,10 +63,12 @@ public class RealtimeFeedLoadingCache implements Factory<RealtimeFeed>, Managed
 
     @Override
     public void start() {
-        this.transfers = new HashMap<>();
+        Map<String, Transfers> transfers = new HashMap<>();
         for (Map.Entry<String, GTFSFeed> entry : this.graphHopper.getGtfsStorage().getGtfsFeeds().entrySet()) {
-            this.transfers.put(entry.getKey(), new Transfers(entry.getValue()));
+            transfers.put(entry.getKey(), new Transfers(entry.getValue()));
         }
+        // keeps the trip updates of the last refresh, so that a refresh only applies those that changed
+        this.realtimeFeedUpdater = new RealtimeFeedUpdater(this.graphHopper.getGtfsStorage(), transfers);
         this.executor = Executors.newSingleThreadExecutor();
         this.cache = CacheBuilder.newBuilder()
                 .maximumSize(1)
@@ -125,7 +127,7 @@ public class RealtimeFeedLoadingCache implements Factory<RealtimeFeed>, Managed
                 throw new RuntimeException(e);
             }
         }
-        return RealtimeFeed.fromProtobuf(graphHopper.getGtfsStorage(), this.transfers, feedMessageMap);
+        return realtimeFeedUpdater.update(feedMessageMap);
     }
 
     private void validate(RealtimeFeed realtimeFeed) {
@@ -0,0 +1,58 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.http;
+
+import io.dropwizard.servlets.tasks.Task;
+
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replaces the graph without restarting the server, e.g. after a new OSM import:
+ * <pre>
+ * curl -X POST 'http://localhost:8990/tasks/reload-graph?graph.location=graph-cache-new'
+ * </pre>
+ * If there is no graph at the given location yet, it is imported from the configured OSM file, or from the one given
+ * by the datareader.file parameter. The task returns after the new graph is used for all requests.
+ *
+ * @see GraphHopperManaged#reload
+ */
+public class ReloadGraphTask extends Task {
+    private final GraphHopperManaged graphHopperManaged;
+
+    public ReloadGraphTask(GraphHopperManaged graphHopperManaged) {
+        super("reload-graph");
+        this.graphHopperManaged = graphHopperManaged;
+    }
+
+    @Override
+    public void execute(Map<String, List<String>> parameters, PrintWriter output) {
+        String graphLocation = getParameter(parameters, "graph.location");
+        if (graphLocation == null)
+            throw new IllegalArgumentException("The graph.location parameter is required");
+        graphHopperManaged.reload(graphLocation, getParameter(parameters, "datareader.file"));
+        output.println("reloaded graph at " + graphHopperManaged.getGraphHopper().getGraphHopperLocation());
+    }
+
+    private static String getParameter(Map<String, List<String>> parameters, String name) {
+        List<String> values = parameters.get(name);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.http;
+
+import com.graphhopper.isochrone.algorithm.ShortestPathTree.IsoLabel;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.index.Snap;
+import com.graphhopper.util.PMap;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToDoubleFunction;
+import java.util.function.Supplier;
+
+/**
+ * Caches the labels of shortest path trees, so that repeated isochrone and spt requests for the same origin do not
+ * need a new search. A tree that was searched up to a certain limit is also used for all smaller limits by ignoring
+ * the labels beyond the limit, e.g. the 5, 10 and 15 minute isochrones are all calculated from the tree of the
+ * 20 minute isochrone. The trees are evicted in least recently used order once their estimated size exceeds the
+ * maximum size.
+ */
+public class ShortestPathTreeCache {
+    // a rough estimate of the size of an IsoLabel and the reference to it
+    static final int BYTES_PER_LABEL = 64;
+    private final long maxBytes;
+    private final LinkedHashMap<Key, Tree> trees = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    // the graph of the cached trees, they are removed when the graph is replaced
+    private BaseGraph graph;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param maxBytes the maximum estimated size of all cached trees, 0 disables the cache
+     */
+    public ShortestPathTreeCache(long maxBytes) {
+        if (maxBytes < 0)
+            throw new IllegalArgumentException("The maximum size of the cache must not be negative: " + maxBytes);
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @param exploreValue the value of a label the limit refers to, e.g. its time
+     * @param search       searches the tree for the given key up to the given limit, in case it is not cached yet
+     * @return the labels of the tree for the given key whose explore value is not larger than the given limit, in the
+     * order they were found
+     */
+    public List<IsoLabel> getLabels(BaseGraph graph, Key key, double limit, ToDoubleFunction<IsoLabel> exploreValue,
+                                    Supplier<List<IsoLabel>> search) {
+        if (maxBytes == 0)
+            return search.get();
+        Tree tree;
+        synchronized (this) {
+            if (this.graph != graph) {
+                clear();
+                this.graph = graph;
+            }
+            tree = trees.get(key);
+        }
+        if (tree == null || tree.limit < limit) {
+            misses.incrementAndGet();
+            List<IsoLabel> labels = search.get();
+            put(graph, key, new Tree(limit, labels));
+            return labels;
+        }
+        hits.incrementAndGet();
+        if (tree.limit == limit)
+            return tree.labels;
+        List<IsoLabel> labels = new ArrayList<>();
+        for (IsoLabel label : tree.labels)
+            if (exploreValue.applyAsDouble(label) <= limit)
+                labels.add(label);
+        return labels;
+    }
+
+    private synchronized void put(BaseGraph graph, Key key, Tree tree) {
+        long treeBytes = (long) tree.labels.size() * BYTES_PER_LABEL;
+        // the graph might have been replaced while we were searching the tree
+        if (graph != this.graph || treeBytes > maxBytes)
+            return;
+        Tree old = trees.put(key, tree);
+        if (old != null)
+            bytes -= (long) old.labels.size() * BYTES_PER_LABEL;
+        bytes += treeBytes;
+        Iterator<Tree> iter = trees.values().iterator();
+        while (bytes > maxBytes) {
+            bytes -= (long) iter.next().labels.size() * BYTES_PER_LABEL;
+            iter.remove();
+        }
+    }
+
+    public synchronized void clear() {
+        trees.clear();
+        bytes = 0;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return the estimated size of all cached trees in bytes
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    private static class Tree {
+        final double limit;
+        final List<IsoLabel> labels;
+
+        Tree(double limit, List<IsoLabel> labels) {
+            this.limit = limit;
+            this.labels = labels;
+        }
+    }
+
+    /**
+     * Identifies a shortest path tree by everything a search depends on, except the limit.
+     */
+    public static class Key {
+        // the request parameters of the isochrone and spt endpoints that do not change the tree
+        private static final Set<String> IGNORED_HINTS = Set.of("point", "profile", "reverse_flow", "time_limit",
+                "distance_limit", "weight_limit", "buckets", "type", "tolerance", "full_geometry", "columns");
+        private final String profile;
+        private final Map<String, Object> hints;
+        private final boolean reverseFlow;
+        private final String exploreType;
+        private final Snap.Position snappedPosition;
+        private final int closestNode;
+        private final int closestEdgeKey;
+        private final int wayIndex;
+        private final double snappedLat;
+        private final double snappedLon;
+
+        /**
+         * @param hints       the hints that were used to create the weighting. The request parameters that do not
+         *                    change the tree, like the point or the limits, are ignored.
+         * @param exploreType the type of the limit, like time or distance
+         * @param snap        the snapped origin. A query graph that is created for an equal snap has the same
+         *                    virtual nodes and edges.
+         */
+        public Key(String profile, PMap hints, boolean reverseFlow, String exploreType, Snap snap) {
+            this.profile = profile;
+            this.hints = new HashMap<>(hints.toMap());
+            this.hints.keySet().removeAll(IGNORED_HINTS);
+            this.reverseFlow = reverseFlow;
+            this.exploreType = exploreType;
+            this.snappedPosition = snap.getSnappedPosition();
+            this.closestNode = snap.getClosestNode();
+            if (snappedPosition == Snap.Position.TOWER) {
+                // there are no virtual nodes, so the tree only depends on the node
+                this.closestEdgeKey = -1;
+                this.wayIndex = -1;
+                this.snappedLat = Double.NaN;
+                this.snappedLon = Double.NaN;
+            } else {
+                this.closestEdgeKey = snap.getClosestEdge().getEdgeKey();
+                this.wayIndex = snap.getWayIndex();
+                this.snappedLat = snap.getSnappedPoint().lat;
+                this.snappedLon = snap.getSnappedPoint().lon;
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return reverseFlow == key.reverseFlow && closestNode == key.closestNode
+                    && closestEdgeKey == key.closestEdgeKey && wayIndex == key.wayIndex
+                    && Double.compare(snappedLat, key.snappedLat) == 0 && Double.compare(snappedLon, key.snappedLon) == 0
+                    && profile.equals(key.profile) && hints.equals(key.hints) && exploreType.equals(key.exploreType)
+                    && snappedPosition == key.snappedPosition;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(profile, hints, reverseFlow, exploreType, snappedPosition, closestNode, closestEdgeKey,
+                    wayIndex, snappedLat, snappedLon);
+        }
+    }
+}
@@ -21,22 +21,35 @@ package com.graphhopper.http.health;
 import com.codahale.metrics.health.HealthCheck;
 import com.graphhopper.GraphHopper;
 
+import java.util.function.Supplier;
+
 public class GraphHopperHealthCheck extends HealthCheck {
 
-    private final GraphHopper graphHopper;
+    private final Supplier<GraphHopper> graphHopperSupplier;
 
     public GraphHopperHealthCheck(GraphHopper graphHopper) {
-        this.graphHopper = graphHopper;
+        this(() -> graphHopper);
+    }
+
+    /**
+     * @param graphHopperSupplier returns the GraphHopper instance to check, which might change when the graph is reloaded
+     */
+    public GraphHopperHealthCheck(Supplier<GraphHopper> graphHopperSupplier) {
+        this.graphHopperSupplier = graphHopperSupplier;
     }
 
     @Override
     protected Result check() {
+        GraphHopper graphHopper = graphHopperSupplier.get();
         if (!graphHopper.getBaseGraph().getBounds().isValid()) {
             return Result.unhealthy("BaseGraph has invalid bounds.");
         }
         if (!graphHopper.getFullyLoaded()) {
             return Result.unhealthy("GraphHopper is not fully loaded.");
         }
+        if (!graphHopper.isWarmedUp()) {
+            return Result.unhealthy("GraphHopper is still preloading the graph into memory.");
+        }
         return Result.healthy();
     }
 }
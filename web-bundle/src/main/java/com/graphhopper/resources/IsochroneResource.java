@@ -7,6 +7,7 @@ import com.graphhopper.GraphHopperConfig;
 import com.graphhopper.config.Profile;
 import com.graphhopper.http.GHPointParam;
 import com.graphhopper.http.ProfileResolver;
+import com.graphhopper.http.ShortestPathTreeCache;
 import com.graphhopper.isochrone.algorithm.ContourBuilder;
 import com.graphhopper.isochrone.algorithm.ShortestPathTree;
 import com.graphhopper.isochrone.algorithm.Triangulator;
@@ -34,6 +35,7 @@ import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.UriInfo;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.OptionalInt;
 import java.util.OptionalLong;
 import java.util.function.ToDoubleFunction;
@@ -52,14 +54,16 @@ public class IsochroneResource {
     private final GraphHopper graphHopper;
     private final Triangulator triangulator;
     private final ProfileResolver profileResolver;
+    private final ShortestPathTreeCache shortestPathTreeCache;
     private final String osmDate;
 
     @Inject
-    public IsochroneResource(GraphHopperConfig config, GraphHopper graphHopper, Triangulator triangulator, ProfileResolver profileResolver) {
+    public IsochroneResource(GraphHopperConfig config, GraphHopper graphHopper, Triangulator triangulator, ProfileResolver profileResolver, ShortestPathTreeCache shortestPathTreeCache) {
         this.config = config;
         this.graphHopper = graphHopper;
         this.triangulator = triangulator;
         this.profileResolver = profileResolver;
+        this.shortestPathTreeCache = shortestPathTreeCache;
         this.osmDate = graphHopper.getProperties().get("datareader.data.date");
     }
 
@@ -105,18 +109,26 @@ public class IsochroneResource {
         ShortestPathTree shortestPathTree = new ShortestPathTree(queryGraph, queryGraph.wrapWeighting(weighting), reverseFlow, traversalMode);
 
         double limit;
+        double treeLimit;
+        String exploreType;
         ToDoubleFunction<ShortestPathTree.IsoLabel> fz;
         if (weightLimit.orElseThrow(() -> new IllegalArgumentException("query param weight_limit is not a number.")) > 0) {
             limit = weightLimit.getAsLong();
-            shortestPathTree.setWeightLimit(limit + Math.max(limit * 0.14, 200));
+            treeLimit = limit + Math.max(limit * 0.14, 200);
+            shortestPathTree.setWeightLimit(treeLimit);
+            exploreType = "weight";
             fz = l -> l.weight;
         } else if (distanceLimitInMeter.orElseThrow(() -> new IllegalArgumentException("query param distance_limit is not a number.")) > 0) {
             limit = distanceLimitInMeter.getAsLong();
-            shortestPathTree.setDistanceLimit(limit + Math.max(limit * 0.14, 2_000));
+            treeLimit = limit + Math.max(limit * 0.14, 2_000);
+            shortestPathTree.setDistanceLimit(treeLimit);
+            exploreType = "distance";
             fz = l -> l.distance;
         } else {
             limit = timeLimitInSeconds.orElseThrow(() -> new IllegalArgumentException("query param time_limit is not a number.")) * 1000d;
-            shortestPathTree.setTimeLimit(limit + Math.max(limit * 0.14, 200_000));
+            treeLimit = limit + Math.max(limit * 0.14, 200_000);
+            shortestPathTree.setTimeLimit(treeLimit);
+            exploreType = "time";
             fz = l -> l.time;
         }
         ArrayList<Double> zs = new ArrayList<>();
@@ -125,7 +137,13 @@ public class IsochroneResource {
             zs.add((i + 1) * delta);
         }
 
-        Triangulator.Result result = triangulator.triangulate(snap, queryGraph, shortestPathTree, fz, degreesFromMeters(toleranceInMeter));
+        ShortestPathTreeCache.Key key = new ShortestPathTreeCache.Key(profileName, hintsMap, reverseFlow, exploreType, snap);
+        List<ShortestPathTree.IsoLabel> labels = shortestPathTreeCache.getLabels(graph, key, treeLimit, fz, () -> {
+            List<ShortestPathTree.IsoLabel> list = new ArrayList<>();
+            shortestPathTree.search(snap.getClosestNode(), list::add);
+            return list;
+        });
+        Triangulator.Result result = triangulator.triangulate(queryGraph, labels, fz, degreesFromMeters(toleranceInMeter));
 
         ContourBuilder contourBuilder = new ContourBuilder(result.triangulation);
         ArrayList<Geometry> isochrones = new ArrayList<>();
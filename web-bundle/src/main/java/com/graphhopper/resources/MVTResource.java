@@ -1,6 +1,7 @@
 package com.graphhopper.resources;
 
 import com.graphhopper.GraphHopper;
+import com.graphhopper.http.MVTTileCache;
 import com.graphhopper.routing.ev.*;
 import com.graphhopper.routing.util.EncodingManager;
 import com.graphhopper.search.KVStorage;
@@ -27,9 +28,10 @@ import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.UriInfo;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicInteger;
 
 @Path("mvt")
 public class MVTResource {
@@ -38,11 +40,13 @@ public class MVTResource {
     private static final MediaType PBF = new MediaType("application", "x-protobuf");
     private final GraphHopper graphHopper;
     private final EncodingManager encodingManager;
+    private final MVTTileCache tileCache;
 
     @Inject
-    public MVTResource(GraphHopper graphHopper, EncodingManager encodingManager) {
+    public MVTResource(GraphHopper graphHopper, EncodingManager encodingManager, MVTTileCache tileCache) {
         this.graphHopper = graphHopper;
         this.encodingManager = encodingManager;
+        this.tileCache = tileCache;
     }
 
     @GET
@@ -56,14 +60,24 @@ public class MVTResource {
             @PathParam("y") int yInfo,
             @QueryParam("render_all") @DefaultValue("false") Boolean renderAll) {
 
-        if (zInfo <= 9) {
-            byte[] bytes = new VectorTileEncoder().encode();
-            return Response.fromResponse(Response.ok(bytes, PBF).build())
-                    .header("X-GH-Took", "0")
-                    .build();
-        }
-
         StopWatch totalSW = new StopWatch().start();
+        // the tiles up to zoom 9 are empty, there is no need to cache them
+        byte[] bytes = zInfo <= 9 ? createTile(graphHopper, encodingManager, zInfo, xInfo, yInfo, renderAll)
+                : tileCache.get(graphHopper, zInfo, xInfo, yInfo, renderAll,
+                () -> createTile(graphHopper, encodingManager, zInfo, xInfo, yInfo, renderAll));
+        totalSW.stop();
+        return Response.ok(bytes, PBF).header("X-GH-Took", "" + totalSW.getSeconds() * 1000)
+                .build();
+    }
+
+    /**
+     * Renders the edges within the given tile. This is expensive for low zoom levels, because the tiles cover many
+     * edges, so the result should be cached.
+     */
+    public static byte[] createTile(GraphHopper graphHopper, EncodingManager encodingManager, int zInfo, int xInfo, int yInfo, boolean renderAll) {
+        if (zInfo <= 9)
+            return new VectorTileEncoder().encode();
+
         Coordinate nw = num2deg(xInfo, yInfo, zInfo);
         Coordinate se = num2deg(xInfo + 1, yInfo + 1, zInfo);
         LocationIndexTree locationIndex = (LocationIndexTree) graphHopper.getLocationIndex();
@@ -77,7 +91,6 @@ public class MVTResource {
             throw new IllegalStateException("You need to configure GraphHopper to store road_class, e.g. graph.encoded_values: road_class,max_speed,... ");
 
         final EnumEncodedValue<RoadClass> roadClassEnc = encodingManager.getEnumEncodedValue(RoadClass.KEY, RoadClass.class);
-        final AtomicInteger edgeCounter = new AtomicInteger(0);
 
         // 256x256 pixels per MVT. here we transform from the global coordinate system to the local one of the tile.
         AffineTransformation affineTransformation = new AffineTransformation();
@@ -88,9 +101,9 @@ public class MVTResource {
         );
         affineTransformation.translate(0, 256);
 
-        // if performance of the vector tile encoding becomes an issue it might be worth to get rid of the simplification
-        // and clipping in the no.ecc code? https://github.com/graphhopper/graphhopper/commit/0f96c2deddb24efa97109e35e0c05f1c91221f59#r90830001
-        VectorTileEncoder vectorTileEncoder = new VectorTileEncoder();
+        // collect the edges first, so that their encoded values can be read in a single pass
+        List<EdgeIteratorState> edges = new ArrayList<>();
+        List<LineString> lineStrings = new ArrayList<>();
         locationIndex.query(bbox, edgeId -> {
             EdgeIteratorState edge = graphHopper.getBaseGraph().getEdgeIteratorStateForKey(edgeId * 2);
             LineString lineString;
@@ -116,8 +129,21 @@ public class MVTResource {
                     return;
                 }
             }
+            edges.add(edge);
+            lineStrings.add(lineString);
+        });
+
+        List<EncodedValue> encodedValues = encodingManager.getEncodedValues();
+        int[] edgeKeys = new int[edges.size()];
+        for (int row = 0; row < edges.size(); row++)
+            edgeKeys[row] = edges.get(row).getEdgeKey();
+        EncodedValueColumns columns = graphHopper.getBaseGraph().readColumns(encodedValues, edgeKeys, true);
 
-            edgeCounter.incrementAndGet();
+        // if performance of the vector tile encoding becomes an issue it might be worth to get rid of the simplification
+        // and clipping in the no.ecc code? https://github.com/graphhopper/graphhopper/commit/0f96c2deddb24efa97109e35e0c05f1c91221f59#r90830001
+        VectorTileEncoder vectorTileEncoder = new VectorTileEncoder();
+        for (int row = 0; row < edges.size(); row++) {
+            EdgeIteratorState edge = edges.get(row);
             Map<String, Object> map = new LinkedHashMap<>();
             for (Map.Entry<String, KVStorage.KValue> e : edge.getKeyValues().entrySet()) {
                 map.put(e.getKey(), e.getValue().toString());
@@ -127,33 +153,22 @@ public class MVTResource {
             map.put("base_node", edge.getBaseNode());
             map.put("adj_node", edge.getAdjNode());
             map.put("distance", edge.getDistance());
-            encodingManager.getEncodedValues().forEach(ev -> {
-                if (ev instanceof EnumEncodedValue)
-                    map.put(ev.getName(), edge.get((EnumEncodedValue) ev).toString() + (ev.isStoreTwoDirections() ? " | " + edge.getReverse((EnumEncodedValue) ev).toString() : ""));
-                else if (ev instanceof DecimalEncodedValue)
-                    map.put(ev.getName(), edge.get((DecimalEncodedValue) ev) + (ev.isStoreTwoDirections() ? " | " + edge.getReverse((DecimalEncodedValue) ev) : ""));
-                else if (ev instanceof BooleanEncodedValue)
-                    map.put(ev.getName(), edge.get((BooleanEncodedValue) ev) + (ev.isStoreTwoDirections() ? " | " + edge.getReverse((BooleanEncodedValue) ev) : ""));
-                else if (ev instanceof StringEncodedValue)
-                    map.put(ev.getName(), edge.get((StringEncodedValue) ev) + (ev.isStoreTwoDirections() ? " | " + edge.getReverse((StringEncodedValue) ev) : ""));
-                else if (ev instanceof IntEncodedValue)
-                    map.put(ev.getName(), edge.get((IntEncodedValue) ev) + (ev.isStoreTwoDirections() ? " | " + edge.getReverse((IntEncodedValue) ev) : ""));
-            });
+            for (int col = 0; col < encodedValues.size(); col++)
+                map.put(encodedValues.get(col).getName(), columns.getValue(col, row, false)
+                        + (columns.hasReverse(col) ? " | " + columns.getValue(col, row, true) : ""));
+            LineString lineString = lineStrings.get(row);
             lineString.setUserData(map);
 
             Geometry g = affineTransformation.transform(lineString);
             vectorTileEncoder.addFeature("roads", map, g, edge.getEdge());
-        });
-
+        }
 
         byte[] bytes = vectorTileEncoder.encode();
-        totalSW.stop();
-        logger.debug("took: " + totalSW.getMillis() + "ms, edges:" + edgeCounter.get());
-        return Response.ok(bytes, PBF).header("X-GH-Took", "" + totalSW.getSeconds() * 1000)
-                .build();
+        logger.debug("tile " + zInfo + "/" + xInfo + "/" + yInfo + ", edges:" + edges.size());
+        return bytes;
     }
 
-    Coordinate num2deg(int xInfo, int yInfo, int zoom) {
+    static Coordinate num2deg(int xInfo, int yInfo, int zoom) {
         // inverse web mercator projection
         double n = Math.pow(2, zoom);
         double lonDeg = xInfo / n * 360.0 - 180.0;
@@ -17,6 +17,7 @@
  */
 package com.graphhopper.resources;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
@@ -34,6 +35,7 @@ import com.graphhopper.jackson.ResponsePathSerializer;
 import com.graphhopper.matching.*;
 import com.graphhopper.storage.index.LocationIndexTree;
 import com.graphhopper.util.*;
+import com.graphhopper.util.shapes.GHPoint;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -43,7 +45,10 @@ import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
 import jakarta.ws.rs.core.UriInfo;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 import static com.graphhopper.resources.RouteResource.removeLegacyParameters;
@@ -63,6 +68,7 @@ public class MapMatchingResource {
     }
 
     private static final Logger logger = LoggerFactory.getLogger(MapMatchingResource.class);
+    private static final String NDJSON = "application/x-ndjson";
 
     private final GraphHopperConfig config;
     private final GraphHopper graphHopper;
@@ -114,20 +120,9 @@ public class MapMatchingResource {
 
         StopWatch sw = new StopWatch().start();
 
-        PMap hints = new PMap();
-        RouteResource.initHints(hints, uriInfo.getQueryParameters());
-
-        // resolve profile and remove legacy vehicle/weighting parameters
-        // we need to explicitly disable CH here because map matching does not use it
-        PMap profileResolverHints = new PMap(hints);
-        profileResolverHints.putObject("profile", profile);
-        profileResolverHints.putObject(Parameters.CH.DISABLE, true);
-        profile = profileResolver.resolveProfile(profileResolverHints);
-        hints.putObject("profile", profile);
-        removeLegacyParameters(hints);
-
-        MapMatching matching = new MapMatching(graphHopper.getBaseGraph(), (LocationIndexTree) graphHopper.getLocationIndex(), mapMatchingRouterFactory.createMapMatchingRouter(hints));
-        matching.setMeasurementErrorSigma(gpsAccuracy);
+        PMap hints = createHints(uriInfo, profile);
+        profile = hints.getString("profile", "");
+        MapMatching matching = createMapMatching(hints, gpsAccuracy);
 
         List<Observation> measurements = GpxConversions.getEntries(gpx.trk.get(0));
         MatchResult matchResult = matching.match(measurements);
@@ -193,6 +188,95 @@ public class MapMatchingResource {
         }
     }
 
+    /**
+     * Matches the observations while they are still uploaded and writes the matched edges as soon as they are final.
+     * The request body contains one observation per line, e.g. {"lat":51.34,"lon":12.36}, and the response contains
+     * one edge per line in the same format as the links of the extended_json output. Observations are matched in
+     * windows of window_size observations and the results for the last window_overlap observations of each window are
+     * only written after the next window was matched, see {@link OnlineMapMatching}.
+     */
+    @POST
+    @jakarta.ws.rs.Path("stream")
+    @Consumes(NDJSON)
+    @Produces(NDJSON)
+    public Response matchStream(
+            InputStream observations,
+            @Context UriInfo uriInfo,
+            @QueryParam("elevation") @DefaultValue("false") boolean enableElevation,
+            @QueryParam("points_encoded") @DefaultValue("true") boolean pointsEncoded,
+            @QueryParam("points_encoded_multiplier") @DefaultValue("1e5") double pointsEncodedMultiplier,
+            @QueryParam("profile") String profile,
+            @QueryParam("gps_accuracy") @DefaultValue("10") double gpsAccuracy,
+            @QueryParam("window_size") @DefaultValue("100") int windowSize,
+            @QueryParam("window_overlap") @DefaultValue("20") int windowOverlap) {
+        PMap hints = createHints(uriInfo, profile);
+        OnlineMapMatching matching = new OnlineMapMatching(createMapMatching(hints, gpsAccuracy), windowSize, windowOverlap);
+        StreamingOutput output = out -> {
+            StopWatch sw = new StopWatch().start();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(observations, StandardCharsets.UTF_8));
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            int observationCount = 0;
+            int edgeCount = 0;
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isBlank())
+                        continue;
+                    JsonNode point = objectMapper.readTree(line);
+                    if (!point.has("lat") || !point.has("lon"))
+                        throw new IllegalArgumentException("Each line must contain an observation with lat and lon, but was: " + line);
+                    observationCount++;
+                    List<EdgeMatch> edgeMatches = matching.add(new Observation(new GHPoint(point.get("lat").asDouble(), point.get("lon").asDouble())));
+                    edgeCount = writeLinks(edgeMatches, edgeCount, writer, enableElevation, pointsEncoded, pointsEncodedMultiplier);
+                }
+                writeLinks(matching.finish(), edgeCount, writer, enableElevation, pointsEncoded, pointsEncodedMultiplier);
+            } catch (IllegalArgumentException | JsonProcessingException e) {
+                // the status code was already sent, so all we can do is to report the error in the response body
+                writer.write(objectMapper.createObjectNode().put("message", e.getMessage()).toString());
+                writer.write('\n');
+            }
+            writer.flush();
+            logger.info(objectMapper.createObjectNode()
+                    .put("duration", sw.stop().getNanos())
+                    .put("profile", hints.getString("profile", ""))
+                    .put("observations", observationCount)
+                    .put("stream", true).toString());
+        };
+        return Response.ok(output, NDJSON).build();
+    }
+
+    private int writeLinks(List<EdgeMatch> edgeMatches, int edgeCount, Writer writer, boolean elevation, boolean pointsEncoded, double pointsEncodedMultiplier) throws IOException {
+        for (EdgeMatch edgeMatch : edgeMatches) {
+            ObjectNode link = convertToLink(edgeMatch, edgeCount == 0, elevation, pointsEncoded, pointsEncodedMultiplier);
+            writer.write(objectMapper.writeValueAsString(link));
+            writer.write('\n');
+            edgeCount++;
+        }
+        // send the edges right away instead of waiting until the buffer is full
+        writer.flush();
+        return edgeCount;
+    }
+
+    private PMap createHints(UriInfo uriInfo, String profile) {
+        PMap hints = new PMap();
+        RouteResource.initHints(hints, uriInfo.getQueryParameters());
+
+        // resolve profile and remove legacy vehicle/weighting parameters
+        // we need to explicitly disable CH here because map matching does not use it
+        PMap profileResolverHints = new PMap(hints);
+        profileResolverHints.putObject("profile", profile);
+        profileResolverHints.putObject(Parameters.CH.DISABLE, true);
+        hints.putObject("profile", profileResolver.resolveProfile(profileResolverHints));
+        removeLegacyParameters(hints);
+        return hints;
+    }
+
+    private MapMatching createMapMatching(PMap hints, double gpsAccuracy) {
+        MapMatching matching = new MapMatching(graphHopper.getBaseGraph(), (LocationIndexTree) graphHopper.getLocationIndex(), mapMatchingRouterFactory.createMapMatchingRouter(hints));
+        matching.setMeasurementErrorSigma(gpsAccuracy);
+        return matching;
+    }
+
     public static JsonNode convertToTree(MatchResult result, boolean elevation, boolean pointsEncoded, double pointsEncodedMultiplier) {
         ObjectNode root = JsonNodeFactory.instance.objectNode();
         ObjectNode diary = root.putObject("diary");
@@ -200,26 +284,30 @@ public class MapMatchingResource {
         ObjectNode route = entries.addObject();
         ArrayNode links = route.putArray("links");
         for (int emIndex = 0; emIndex < result.getEdgeMatches().size(); emIndex++) {
-            ObjectNode link = links.addObject();
-            EdgeMatch edgeMatch = result.getEdgeMatches().get(emIndex);
-            PointList pointList = edgeMatch.getEdgeState().fetchWayGeometry(emIndex == 0 ? FetchMode.ALL : FetchMode.PILLAR_AND_ADJ);
-            final ObjectNode geometry = link.putObject("geometry");
-            if (pointList.size() < 2) {
-                geometry.putPOJO("coordinates", pointsEncoded ? ResponsePathSerializer.encodePolyline(pointList, elevation, pointsEncodedMultiplier) : pointList.toLineString(elevation));
-                geometry.put("type", "Point");
-            } else {
-                geometry.putPOJO("coordinates", pointsEncoded ? ResponsePathSerializer.encodePolyline(pointList, elevation, pointsEncodedMultiplier) : pointList.toLineString(elevation));
-                geometry.put("type", "LineString");
-            }
-            link.put("id", edgeMatch.getEdgeState().getEdge());
-            ArrayNode wpts = link.putArray("wpts");
-            for (State extension : edgeMatch.getStates()) {
-                ObjectNode wpt = wpts.addObject();
-                wpt.put("x", extension.getSnap().getSnappedPoint().lon);
-                wpt.put("y", extension.getSnap().getSnappedPoint().lat);
-            }
+            links.add(convertToLink(result.getEdgeMatches().get(emIndex), emIndex == 0, elevation, pointsEncoded, pointsEncodedMultiplier));
         }
         return root;
     }
 
+    private static ObjectNode convertToLink(EdgeMatch edgeMatch, boolean first, boolean elevation, boolean pointsEncoded, double pointsEncodedMultiplier) {
+        ObjectNode link = JsonNodeFactory.instance.objectNode();
+        PointList pointList = edgeMatch.getEdgeState().fetchWayGeometry(first ? FetchMode.ALL : FetchMode.PILLAR_AND_ADJ);
+        final ObjectNode geometry = link.putObject("geometry");
+        if (pointList.size() < 2) {
+            geometry.putPOJO("coordinates", pointsEncoded ? ResponsePathSerializer.encodePolyline(pointList, elevation, pointsEncodedMultiplier) : pointList.toLineString(elevation));
+            geometry.put("type", "Point");
+        } else {
+            geometry.putPOJO("coordinates", pointsEncoded ? ResponsePathSerializer.encodePolyline(pointList, elevation, pointsEncodedMultiplier) : pointList.toLineString(elevation));
+            geometry.put("type", "LineString");
+        }
+        link.put("id", edgeMatch.getEdgeState().getEdge());
+        ArrayNode wpts = link.putArray("wpts");
+        for (State extension : edgeMatch.getStates()) {
+            ObjectNode wpt = wpts.addObject();
+            wpt.put("x", extension.getSnap().getSnappedPoint().lon);
+            wpt.put("y", extension.getSnap().getSnappedPoint().lat);
+        }
+        return link;
+    }
+
 }
@@ -0,0 +1,321 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.resources;
+
+import com.fasterxml.jackson.annotation.JsonAnySetter;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.carrotsearch.hppc.IntArrayList;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.GraphHopperConfig;
+import com.graphhopper.http.ProfileResolver;
+import com.graphhopper.jackson.MultiException;
+import com.graphhopper.routing.ch.ManyToManyCH;
+import com.graphhopper.routing.ev.RoadClass;
+import com.graphhopper.routing.ev.RoadEnvironment;
+import com.graphhopper.routing.ev.Subnetwork;
+import com.graphhopper.routing.querygraph.QueryGraph;
+import com.graphhopper.routing.querygraph.QueryRoutingCHGraph;
+import com.graphhopper.routing.util.DefaultSnapFilter;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.NameSimilarityEdgeFilter;
+import com.graphhopper.routing.util.SnapPreventionEdgeFilter;
+import com.graphhopper.storage.RoutingCHGraph;
+import com.graphhopper.storage.index.LocationIndex;
+import com.graphhopper.storage.index.Snap;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.PMap;
+import com.graphhopper.util.StopWatch;
+import com.graphhopper.util.exceptions.ConnectionNotFoundException;
+import com.graphhopper.util.exceptions.PointNotFoundException;
+import com.graphhopper.util.shapes.GHPoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.inject.Inject;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.constraints.NotNull;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import java.util.*;
+
+import static com.graphhopper.resources.RouteResource.removeLegacyParameters;
+
+/**
+ * Calculates the weights, times and distances between many points. The request and response format is the one used
+ * by the GHMRequest and MatrixResponse classes of the client-hc module. The calculation requires a CH preparation for
+ * the requested profile and uses {@link ManyToManyCH}, i.e. one backward search per target and one forward search per
+ * source instead of one route calculation per pair of points.
+ */
+@Path("matrix")
+public class MatrixResource {
+
+    private static final Logger logger = LoggerFactory.getLogger(MatrixResource.class);
+
+    private final GraphHopperConfig config;
+    private final GraphHopper graphHopper;
+    private final ProfileResolver profileResolver;
+    private final int maxLocations;
+    private final String osmDate;
+    private final List<String> snapPreventionsDefault;
+
+    @Inject
+    public MatrixResource(GraphHopperConfig config, GraphHopper graphHopper, ProfileResolver profileResolver) {
+        this.config = config;
+        this.graphHopper = graphHopper;
+        this.profileResolver = profileResolver;
+        this.maxLocations = config.getInt("routing.matrix.max_locations", 1_000);
+        this.osmDate = graphHopper.getProperties().getAll().get("datareader.data.date");
+        this.snapPreventionsDefault = Arrays.stream(config.getString("routing.snap_preventions_default", "")
+                .split(",")).map(String::trim).filter(s -> !s.isEmpty()).toList();
+    }
+
+    public static class Request {
+        @JsonProperty("profile")
+        public String profile;
+        @JsonProperty("points")
+        public List<GHPoint> points;
+        @JsonProperty("from_points")
+        public List<GHPoint> fromPoints;
+        @JsonProperty("to_points")
+        public List<GHPoint> toPoints;
+        @JsonProperty("point_hints")
+        public List<String> pointHints;
+        @JsonProperty("from_point_hints")
+        public List<String> fromPointHints;
+        @JsonProperty("to_point_hints")
+        public List<String> toPointHints;
+        @JsonProperty("curbsides")
+        public List<String> curbsides;
+        @JsonProperty("from_curbsides")
+        public List<String> fromCurbsides;
+        @JsonProperty("to_curbsides")
+        public List<String> toCurbsides;
+        @JsonProperty("snap_preventions")
+        public List<String> snapPreventions;
+        @JsonProperty("out_arrays")
+        public List<String> outArrays;
+        @JsonProperty("fail_fast")
+        public boolean failFast = true;
+        private final PMap hints = new PMap();
+
+        @JsonAnySetter
+        public void putHint(String fieldName, Object value) {
+            hints.putObject(fieldName, value);
+        }
+
+        public PMap getHints() {
+            return hints;
+        }
+    }
+
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response doPost(@NotNull Request request, @Context HttpServletRequest httpReq) {
+        StopWatch sw = new StopWatch().start();
+        List<GHPoint> fromPoints;
+        List<GHPoint> toPoints;
+        List<String> fromPointHints;
+        List<String> toPointHints;
+        if (request.points != null) {
+            if (request.fromPoints != null || request.toPoints != null)
+                throw new IllegalArgumentException("If 'points' are specified you must not use 'from_points' or 'to_points'");
+            fromPoints = toPoints = request.points;
+            fromPointHints = toPointHints = request.pointHints;
+        } else {
+            if (request.fromPoints == null || request.toPoints == null)
+                throw new IllegalArgumentException("You have to specify either 'points' or 'from_points' and 'to_points'");
+            fromPoints = request.fromPoints;
+            toPoints = request.toPoints;
+            fromPointHints = request.fromPointHints;
+            toPointHints = request.toPointHints;
+        }
+        if (fromPoints.isEmpty() || toPoints.isEmpty())
+            throw new IllegalArgumentException("You have to specify at least one 'from' and one 'to' point");
+        if (fromPoints.size() > maxLocations || toPoints.size() > maxLocations)
+            throw new IllegalArgumentException("Too many points. The maximum number of 'from' and 'to' points is " + maxLocations
+                    + ", but was: " + fromPoints.size() + " x " + toPoints.size());
+        if (!isEmpty(request.curbsides) || !isEmpty(request.fromCurbsides) || !isEmpty(request.toCurbsides))
+            throw new IllegalArgumentException("The 'curbsides' parameters are not supported for the matrix calculation");
+        checkHints("from_point_hints", fromPointHints, fromPoints);
+        checkHints("to_point_hints", toPointHints, toPoints);
+
+        PMap profileResolverHints = new PMap(request.getHints());
+        profileResolverHints.putObject("profile", request.profile);
+        String profileName = profileResolver.resolveProfile(profileResolverHints);
+        removeLegacyParameters(request.getHints());
+        RoutingCHGraph chGraph = graphHopper.getCHGraphs().get(profileName);
+        if (chGraph == null)
+            throw new IllegalArgumentException("Cannot find CH preparation for the requested profile: '" + profileName + "'" +
+                    "\navailable CH profiles: " + graphHopper.getCHGraphs().keySet());
+
+        EncodingManager encodingManager = graphHopper.getEncodingManager();
+        EdgeFilter snapFilter = new DefaultSnapFilter(chGraph.getWeighting(), encodingManager.getBooleanEncodedValue(Subnetwork.key(profileName)));
+        List<String> snapPreventions = request.snapPreventions == null ? snapPreventionsDefault : request.snapPreventions;
+        EdgeFilter strictSnapFilter = snapPreventions.isEmpty() ? snapFilter : new SnapPreventionEdgeFilter(snapFilter,
+                encodingManager.getEnumEncodedValue(RoadClass.KEY, RoadClass.class),
+                encodingManager.getEnumEncodedValue(RoadEnvironment.KEY, RoadEnvironment.class), snapPreventions);
+        List<Snap> fromSnaps = lookup(fromPoints, fromPointHints, snapFilter, strictSnapFilter);
+        List<Snap> toSnaps = request.points != null ? fromSnaps : lookup(toPoints, toPointHints, snapFilter, strictSnapFilter);
+        List<Integer> invalidFromPoints = findInvalid(fromSnaps);
+        List<Integer> invalidToPoints = findInvalid(toSnaps);
+        if (request.failFast && (!invalidFromPoints.isEmpty() || !invalidToPoints.isEmpty())) {
+            List<Throwable> errors = new ArrayList<>();
+            for (int i : invalidFromPoints)
+                errors.add(new PointNotFoundException("Cannot find from_point " + i + ": " + fromPoints.get(i), i));
+            for (int i : invalidToPoints)
+                errors.add(new PointNotFoundException("Cannot find to_point " + i + ": " + toPoints.get(i), i));
+            throw new MultiException(errors);
+        }
+
+        List<Snap> validSnaps = new ArrayList<>();
+        for (Snap snap : fromSnaps)
+            if (snap.isValid())
+                validSnaps.add(snap);
+        if (request.points == null)
+            for (Snap snap : toSnaps)
+                if (snap.isValid())
+                    validSnaps.add(snap);
+        // the query graph changes the closest nodes of the snaps, so we need to read them only after creating it
+        QueryGraph queryGraph = QueryGraph.create(graphHopper.getBaseGraph(), validSnaps);
+        ManyToManyCH manyToMany = new ManyToManyCH(new QueryRoutingCHGraph(chGraph, queryGraph));
+        int[] sources = fromSnaps.stream().filter(Snap::isValid).mapToInt(Snap::getClosestNode).toArray();
+        int[] targets = toSnaps.stream().filter(Snap::isValid).mapToInt(Snap::getClosestNode).toArray();
+        ManyToManyCH.Result result = manyToMany.calcMatrix(sources, targets);
+
+        List<String> outArrays = isEmpty(request.outArrays) ? List.of("times") : request.outArrays;
+        ObjectNode json = JsonNodeFactory.instance.objectNode();
+        ArrayNode weightsJson = outArrays.contains("weights") ? json.putArray("weights") : null;
+        ArrayNode timesJson = outArrays.contains("times") ? json.putArray("times") : null;
+        ArrayNode distancesJson = outArrays.contains("distances") ? json.putArray("distances") : null;
+        ArrayNode disconnectedPairs = JsonNodeFactory.instance.arrayNode();
+        for (int from = 0, source = 0; from < fromSnaps.size(); from++) {
+            boolean validFrom = fromSnaps.get(from).isValid();
+            ArrayNode weightsRow = weightsJson == null ? null : weightsJson.addArray();
+            ArrayNode timesRow = timesJson == null ? null : timesJson.addArray();
+            ArrayNode distancesRow = distancesJson == null ? null : distancesJson.addArray();
+            for (int to = 0, target = 0; to < toSnaps.size(); to++) {
+                boolean validTo = toSnaps.get(to).isValid();
+                boolean connected = validFrom && validTo && result.isConnected(source, target);
+                if (!connected && validFrom && validTo) {
+                    if (request.failFast)
+                        throw new MultiException(List.of(new ConnectionNotFoundException("Connection between locations not found",
+                                Map.of("from_point", from, "to_point", to))));
+                    disconnectedPairs.addArray().add(from).add(to);
+                }
+                if (weightsRow != null) {
+                    if (connected) weightsRow.add(Helper.round(result.getWeight(source, target), 3));
+                    else weightsRow.addNull();
+                }
+                if (timesRow != null) {
+                    if (connected) timesRow.add(Math.round(result.getTime(source, target) / 1000d));
+                    else timesRow.addNull();
+                }
+                if (distancesRow != null) {
+                    if (connected) distancesRow.add(Math.round(result.getDistance(source, target)));
+                    else distancesRow.addNull();
+                }
+                if (validTo) target++;
+            }
+            if (validFrom) source++;
+        }
+        if (!request.failFast && (!disconnectedPairs.isEmpty() || !invalidFromPoints.isEmpty() || !invalidToPoints.isEmpty())) {
+            ArrayNode hints = json.putArray("hints");
+            if (!disconnectedPairs.isEmpty()) {
+                ObjectNode hint = hints.addObject();
+                hint.put("message", "Connection between locations not found");
+                hint.set("point_pairs", disconnectedPairs);
+            }
+            if (!invalidFromPoints.isEmpty() || !invalidToPoints.isEmpty()) {
+                ObjectNode hint = hints.addObject();
+                hint.put("message", "Cannot find point");
+                ArrayNode invalidFrom = hint.putArray("invalid_from_points");
+                for (int i : invalidFromPoints)
+                    invalidFrom.add(i);
+                ArrayNode invalidTo = hint.putArray("invalid_to_points");
+                for (int i : invalidToPoints)
+                    invalidTo.add(i);
+            }
+        }
+
+        sw.stop();
+        ObjectNode info = json.putObject("info");
+        info.putPOJO("copyrights", config.getCopyrights());
+        info.put("took", Math.round(sw.getMillisDouble()));
+        if (!Helper.isEmpty(osmDate)) info.put("road_data_timestamp", osmDate);
+        logger.info(httpReq.getRemoteAddr() + " " + httpReq.getLocale() + " " + httpReq.getHeader("User-Agent")
+                + " " + fromPoints.size() + "x" + toPoints.size() + ", took: " + String.format("%.1f", sw.getMillisDouble())
+                + " ms, profile: " + profileName + ", visited nodes: " + manyToMany.getVisitedNodes());
+        return Response.ok(json).header("X-GH-Took", "" + Math.round(sw.getMillisDouble())).type(MediaType.APPLICATION_JSON).build();
+    }
+
+    private List<Snap> lookup(List<GHPoint> points, List<String> pointHints, EdgeFilter snapFilter, EdgeFilter strictSnapFilter) {
+        LocationIndex locationIndex = graphHopper.getLocationIndex();
+        Snap[] snaps = new Snap[points.size()];
+        // the points without a hint are snapped at once, which is a lot faster for bigger matrices
+        IntArrayList batchPoints = new IntArrayList();
+        for (int i = 0; i < points.size(); i++) {
+            GHPoint point = points.get(i);
+            if (point == null)
+                throw new IllegalArgumentException("Point " + i + " is null");
+            if (!isEmpty(pointHints) && !Helper.isEmpty(pointHints.get(i)))
+                snaps[i] = locationIndex.findClosest(point.lat, point.lon, new NameSimilarityEdgeFilter(strictSnapFilter, pointHints.get(i), point, 170));
+            else
+                batchPoints.add(i);
+        }
+        double[] lats = new double[batchPoints.size()];
+        double[] lons = new double[batchPoints.size()];
+        for (int i = 0; i < batchPoints.size(); i++) {
+            lats[i] = points.get(batchPoints.get(i)).lat;
+            lons[i] = points.get(batchPoints.get(i)).lon;
+        }
+        Snap[] batchSnaps = locationIndex.findClosestBatch(lats, lons, strictSnapFilter);
+        for (int i = 0; i < batchPoints.size(); i++)
+            snaps[batchPoints.get(i)] = batchSnaps[i];
+
+        for (int i = 0; i < snaps.length; i++) {
+            // points with a hint and points that were snapped with the snap preventions fall back to the plain filter
+            if (!snaps[i].isValid() && (strictSnapFilter != snapFilter || !isEmpty(pointHints) && !Helper.isEmpty(pointHints.get(i))))
+                snaps[i] = locationIndex.findClosest(points.get(i).lat, points.get(i).lon, snapFilter);
+        }
+        return Arrays.asList(snaps);
+    }
+
+    private static List<Integer> findInvalid(List<Snap> snaps) {
+        List<Integer> invalid = new ArrayList<>();
+        for (int i = 0; i < snaps.size(); i++)
+            if (!snaps.get(i).isValid())
+                invalid.add(i);
+        return invalid;
+    }
+
+    private static void checkHints(String name, List<String> hints, List<GHPoint> points) {
+        if (!isEmpty(hints) && hints.size() != points.size())
+            throw new IllegalArgumentException("If you pass " + name + ", you need to pass exactly one hint for every point, empty hints will be ignored");
+    }
+
+    private static boolean isEmpty(List<?> list) {
+        return list == null || list.isEmpty();
+    }
+}
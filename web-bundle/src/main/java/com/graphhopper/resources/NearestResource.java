@@ -31,8 +31,10 @@ import com.graphhopper.util.shapes.GHPoint3D;
 
 import jakarta.inject.Inject;
 import jakarta.inject.Named;
+import jakarta.validation.constraints.NotNull;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -65,6 +67,13 @@ public class NearestResource {
         }
     }
 
+    public static class Request {
+        @JsonProperty
+        public List<GHPoint> points = new ArrayList<>();
+        @JsonProperty
+        public boolean elevation;
+    }
+
     @GET
     public Response doGet(@QueryParam("point") GHPoint point, @QueryParam("elevation") @DefaultValue("false") boolean elevation) {
         Snap snap = index.findClosest(point.lat, point.lon, EdgeFilter.ALL_EDGES);
@@ -77,4 +86,39 @@ public class NearestResource {
         }
     }
 
+    /**
+     * Snaps all points of the request at once, which is considerably faster than one request per point. The points
+     * are given in [lon, lat] order like in the other POST endpoints.
+     */
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    public List<Response> doPost(@NotNull Request request) {
+        if (request.points.isEmpty())
+            throw new IllegalArgumentException("At least one point has to be specified");
+        double[] lats = new double[request.points.size()];
+        double[] lons = new double[request.points.size()];
+        for (int i = 0; i < request.points.size(); i++) {
+            GHPoint point = request.points.get(i);
+            if (point == null)
+                throw new IllegalArgumentException("Point " + i + " is null");
+            lats[i] = point.lat;
+            lons[i] = point.lon;
+        }
+        Snap[] snaps = index.findClosestBatch(lats, lons, EdgeFilter.ALL_EDGES);
+        List<Response> responses = new ArrayList<>(snaps.length);
+        List<Throwable> errors = new ArrayList<>();
+        for (int i = 0; i < snaps.length; i++) {
+            if (!snaps[i].isValid()) {
+                errors.add(new PointNotFoundException("Point " + request.points.get(i) + " is either out of bounds or cannot be found", i));
+                continue;
+            }
+            GHPoint3D snappedPoint = snaps[i].getSnappedPoint();
+            double[] coordinates = hasElevation && request.elevation ? new double[]{snappedPoint.lon, snappedPoint.lat, snappedPoint.ele} : new double[]{snappedPoint.lon, snappedPoint.lat};
+            responses.add(new Response(coordinates, calc.calcDist(lats[i], lons[i], snappedPoint.lat, snappedPoint.lon)));
+        }
+        if (!errors.isEmpty())
+            throw new MultiException(errors);
+        return responses;
+    }
+
 }
@@ -4,6 +4,7 @@ import com.graphhopper.GraphHopper;
 import com.graphhopper.config.Profile;
 import com.graphhopper.http.GHPointParam;
 import com.graphhopper.http.ProfileResolver;
+import com.graphhopper.http.ShortestPathTreeCache;
 import com.graphhopper.isochrone.algorithm.ShortestPathTree;
 import com.graphhopper.routing.ev.*;
 import com.graphhopper.routing.querygraph.QueryGraph;
@@ -32,6 +33,7 @@ import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.util.*;
+import java.util.function.ToDoubleFunction;
 
 import static com.graphhopper.resources.RouteResource.removeLegacyParameters;
 import static com.graphhopper.routing.util.TraversalMode.EDGE_BASED;
@@ -57,12 +59,14 @@ public class SPTResource {
     private final GraphHopper graphHopper;
     private final ProfileResolver profileResolver;
     private final EncodingManager encodingManager;
+    private final ShortestPathTreeCache shortestPathTreeCache;
 
     @Inject
-    public SPTResource(GraphHopper graphHopper, ProfileResolver profileResolver, EncodingManager encodingManager) {
+    public SPTResource(GraphHopper graphHopper, ProfileResolver profileResolver, EncodingManager encodingManager, ShortestPathTreeCache shortestPathTreeCache) {
         this.graphHopper = graphHopper;
         this.profileResolver = profileResolver;
         this.encodingManager = encodingManager;
+        this.shortestPathTreeCache = shortestPathTreeCache;
     }
 
     // Annotating this as application/json because errors come out as json, and
@@ -103,11 +107,19 @@ public class SPTResource {
         TraversalMode traversalMode = profile.hasTurnCosts() ? EDGE_BASED : NODE_BASED;
         ShortestPathTree shortestPathTree = new ShortestPathTree(queryGraph, queryGraph.wrapWeighting(weighting), reverseFlow, traversalMode);
 
+        double limit;
+        ShortestPathTreeCache.Key key;
+        ToDoubleFunction<ShortestPathTree.IsoLabel> exploreValue;
         if (distanceInMeter.orElseThrow(() -> new IllegalArgumentException("query param distance_limit is not a number.")) > 0) {
-            shortestPathTree.setDistanceLimit(distanceInMeter.getAsLong());
+            limit = distanceInMeter.getAsLong();
+            shortestPathTree.setDistanceLimit(limit);
+            key = new ShortestPathTreeCache.Key(profileName, hintsMap, reverseFlow, "distance", snap);
+            exploreValue = l -> l.distance;
         } else {
-            double limit = timeLimitInSeconds.orElseThrow(() -> new IllegalArgumentException("query param time_limit is not a number.")) * 1000d;
+            limit = timeLimitInSeconds.orElseThrow(() -> new IllegalArgumentException("query param time_limit is not a number.")) * 1000d;
             shortestPathTree.setTimeLimit(limit);
+            key = new ShortestPathTreeCache.Key(profileName, hintsMap, reverseFlow, "time", snap);
+            exploreValue = l -> l.time;
         }
 
         final String COL_SEP = ",", LINE_SEP = "\n";
@@ -136,7 +148,12 @@ public class SPTResource {
                 }
                 sb.append(LINE_SEP);
                 writer.write(sb.toString());
-                shortestPathTree.search(snap.getClosestNode(), l -> {
+                List<ShortestPathTree.IsoLabel> labels = shortestPathTreeCache.getLabels(graph, key, limit, exploreValue, () -> {
+                    List<ShortestPathTree.IsoLabel> list = new ArrayList<>();
+                    shortestPathTree.search(snap.getClosestNode(), list::add);
+                    return list;
+                });
+                for (ShortestPathTree.IsoLabel l : labels) {
                     IsoLabelWithCoordinates label = isoLabelWithCoordinates(nodeAccess, l);
                     sb.setLength(0);
                     for (int colIndex = 0; colIndex < columns.size(); colIndex++) {
@@ -213,12 +230,8 @@ public class SPTResource {
                         }
                     }
                     sb.append(LINE_SEP);
-                    try {
-                        writer.write(sb.toString());
-                    } catch (IOException ex) {
-                        throw new RuntimeException(ex);
-                    }
-                });
+                    writer.write(sb.toString());
+                }
 
                 logger.info("took: " + sw.stop().getSeconds() + ", visited nodes:" + shortestPathTree.getVisitedNodes() + ", " + uriInfo.getQueryParameters());
             } catch (IOException e) {
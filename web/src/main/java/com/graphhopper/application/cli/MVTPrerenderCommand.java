@@ -0,0 +1,113 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.application.cli;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.application.GraphHopperServerConfiguration;
+import com.graphhopper.http.GraphHopperManaged;
+import com.graphhopper.http.MVTTileCache;
+import com.graphhopper.resources.MVTResource;
+import com.graphhopper.util.StopWatch;
+import com.graphhopper.util.shapes.BBox;
+import io.dropwizard.core.cli.ConfiguredCommand;
+import io.dropwizard.core.setup.Bootstrap;
+import net.sourceforge.argparse4j.inf.Namespace;
+import net.sourceforge.argparse4j.inf.Subparser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Renders the vector tiles of the /mvt endpoint for all zoom levels up to mvt.cache_max_zoom in advance and stores
+ * them in the tile cache at mvt.cache_location. The low zoom levels are the most expensive to render on demand.
+ */
+public class MVTPrerenderCommand extends ConfiguredCommand<GraphHopperServerConfiguration> {
+
+    public MVTPrerenderCommand() {
+        super("mvt-prerender", "renders the vector tiles of the low zoom levels into the tile cache");
+    }
+
+    @Override
+    public void configure(Subparser subparser) {
+        super.configure(subparser);
+        subparser.addArgument("--min_zoom")
+                .type(Integer.class)
+                .required(false)
+                .setDefault(10);
+        subparser.addArgument("--max_zoom")
+                .type(Integer.class)
+                .required(false)
+                .help("defaults to mvt.cache_max_zoom, which is also the maximum");
+        subparser.addArgument("--threads")
+                .type(Integer.class)
+                .required(false)
+                .setDefault(Runtime.getRuntime().availableProcessors());
+    }
+
+    @Override
+    protected void run(Bootstrap<GraphHopperServerConfiguration> bootstrap, Namespace args, GraphHopperServerConfiguration configuration) throws Exception {
+        MVTTileCache tileCache = MVTTileCache.fromConfig(configuration.getGraphHopperConfiguration());
+        int minZoom = args.getInt("min_zoom");
+        int maxZoom = args.get("max_zoom") == null ? tileCache.getMaxDiskZoom() : args.getInt("max_zoom");
+        if (maxZoom > tileCache.getMaxDiskZoom())
+            // the tiles of the higher zoom levels would never be read from disk
+            throw new IllegalArgumentException("--max_zoom must not be larger than mvt.cache_max_zoom: " + tileCache.getMaxDiskZoom());
+        GraphHopperManaged graphHopperManaged = new GraphHopperManaged(configuration.getGraphHopperConfiguration());
+        graphHopperManaged.start();
+        GraphHopper hopper = graphHopperManaged.getGraphHopper();
+        ExecutorService executor = Executors.newFixedThreadPool(args.getInt("threads"));
+        try {
+            BBox bounds = hopper.getBaseGraph().getBounds();
+            for (int z = minZoom; z <= maxZoom; z++) {
+                StopWatch sw = StopWatch.started();
+                int minX = lon2x(bounds.minLon, z), maxX = lon2x(bounds.maxLon, z);
+                int minY = lat2y(bounds.maxLat, z), maxY = lat2y(bounds.minLat, z);
+                List<Future<?>> futures = new ArrayList<>();
+                for (int x = minX; x <= maxX; x++) {
+                    for (int y = minY; y <= maxY; y++) {
+                        final int fz = z, fx = x, fy = y;
+                        futures.add(executor.submit(() -> tileCache.put(hopper, fz, fx, fy,
+                                MVTResource.createTile(hopper, hopper.getEncodingManager(), fz, fx, fy, false))));
+                    }
+                }
+                for (Future<?> future : futures)
+                    future.get();
+                System.out.println("zoom " + z + ": " + futures.size() + " tiles, took: " + sw.stop().getSeconds() + "s");
+            }
+        } finally {
+            executor.shutdownNow();
+            graphHopperManaged.stop();
+        }
+    }
+
+    // web mercator tile numbers, see MVTResource.num2deg for the inverse
+    static int lon2x(double lon, int zoom) {
+        int n = 1 << zoom;
+        return Math.max(0, Math.min(n - 1, (int) Math.floor((lon + 180) / 360 * n)));
+    }
+
+    static int lat2y(double lat, int zoom) {
+        int n = 1 << zoom;
+        double latRad = Math.toRadians(lat);
+        return Math.max(0, Math.min(n - 1, (int) Math.floor((1 - Math.log(Math.tan(latRad) + 1 / Math.cos(latRad)) / Math.PI) / 2 * n)));
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.application.cli;
+
+import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.application.GraphHopperServerConfiguration;
+import com.graphhopper.gpx.GpxConversions;
+import com.graphhopper.jackson.Gpx;
+import com.graphhopper.matching.BatchMapMatching;
+import com.graphhopper.matching.MapMatching;
+import com.graphhopper.matching.Observation;
+import com.graphhopper.util.PMap;
+import io.dropwizard.core.cli.ConfiguredCommand;
+import io.dropwizard.core.setup.Bootstrap;
+import net.sourceforge.argparse4j.inf.Argument;
+import net.sourceforge.argparse4j.inf.Namespace;
+import net.sourceforge.argparse4j.inf.Subparser;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Matches all GPX and CSV files of one or more directories concurrently and writes the results into a single
+ * newline-delimited JSON file, see {@link BatchMapMatching}.
+ */
+public class MatchBatchCommand extends ConfiguredCommand<GraphHopperServerConfiguration> {
+
+    public MatchBatchCommand() {
+        super("match-batch", "map-match all gpx and csv files of one or more directories concurrently");
+    }
+
+    @Override
+    public void configure(Subparser subparser) {
+        subparser.addArgument("traces")
+                .type(File.class)
+                .required(true)
+                .nargs("+")
+                .help("GPX or CSV files, or directories containing them");
+        subparser.addArgument("--file")
+                .required(true)
+                .help("application configuration file");
+        subparser.addArgument("--profile")
+                .type(String.class)
+                .required(true)
+                .help("profile to use for map-matching (must be configured in configuration file)");
+        subparser.addArgument("--output")
+                .type(File.class)
+                .required(true)
+                .help("the file the results are written to, one line per trace");
+        subparser.addArgument("--threads")
+                .type(Integer.class)
+                .required(false)
+                .setDefault(Runtime.getRuntime().availableProcessors());
+        subparser.addArgument("--gps_accuracy")
+                .type(Integer.class)
+                .required(false)
+                .setDefault(40);
+        subparser.addArgument("--transition_probability_beta")
+                .type(Double.class)
+                .required(false)
+                .setDefault(2.0);
+    }
+
+    @Override
+    protected Argument addFileArgument(Subparser subparser) {
+        // Never called, see MatchCommand: the configuration file is a named argument here, because the positional
+        // arguments are the traces.
+        throw new RuntimeException();
+    }
+
+    @Override
+    protected void run(Bootstrap<GraphHopperServerConfiguration> bootstrap, Namespace args, GraphHopperServerConfiguration configuration) throws Exception {
+        GraphHopper hopper = new GraphHopper().init(configuration.getGraphHopperConfiguration());
+        hopper.importOrLoad();
+        try {
+            PMap hints = new PMap();
+            hints.putObject("profile", args.get("profile"));
+            double beta = args.getDouble("transition_probability_beta");
+            int gpsAccuracy = args.getInt("gps_accuracy");
+            // all MapMatching instances share the graph and the location index of the same GraphHopper instance
+            BatchMapMatching batchMapMatching = new BatchMapMatching(() -> {
+                MapMatching mapMatching = MapMatching.fromGraphHopper(hopper, hints);
+                mapMatching.setTransitionProbabilityBeta(beta);
+                mapMatching.setMeasurementErrorSigma(gpsAccuracy);
+                return mapMatching;
+            }, args.getInt("threads"));
+
+            List<File> traces = findTraces(args.getList("traces"));
+            XmlMapper xmlMapper = new XmlMapper();
+            BatchMapMatching.Statistics statistics;
+            try (OutputStream output = new FileOutputStream(args.<File>get("output"))) {
+                statistics = batchMapMatching.match(traces, file -> file.getName().toLowerCase().endsWith(".csv")
+                        ? BatchMapMatching.readCSV(file) : readGPX(xmlMapper, file), output);
+            }
+            System.out.println("traces: " + traces.size() + ", " + statistics);
+        } finally {
+            hopper.close();
+        }
+    }
+
+    private static List<File> findTraces(List<File> files) {
+        List<File> traces = new ArrayList<>();
+        for (File file : files) {
+            if (file.isDirectory()) {
+                File[] children = file.listFiles((dir, name) -> name.toLowerCase().endsWith(".gpx") || name.toLowerCase().endsWith(".csv"));
+                if (children != null) {
+                    Arrays.sort(children);
+                    traces.addAll(Arrays.asList(children));
+                }
+            } else {
+                traces.add(file);
+            }
+        }
+        return traces;
+    }
+
+    private static List<Observation> readGPX(XmlMapper xmlMapper, File file) throws IOException {
+        Gpx gpx = xmlMapper.readValue(file, Gpx.class);
+        if (gpx.trk == null)
+            throw new IllegalArgumentException("No tracks found in GPX document. Are you using waypoints or routes instead?");
+        if (gpx.trk.size() > 1)
+            throw new IllegalArgumentException("GPX documents with multiple tracks not supported yet.");
+        return GpxConversions.getEntries(gpx.trk.get(0));
+    }
+}
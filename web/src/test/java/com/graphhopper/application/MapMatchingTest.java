@@ -17,6 +17,8 @@
  */
 package com.graphhopper.application;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.dataformat.xml.XmlMapper;
 import com.graphhopper.GHRequest;
 import com.graphhopper.GraphHopper;
@@ -24,26 +26,35 @@ import com.graphhopper.ResponsePath;
 import com.graphhopper.config.LMProfile;
 import com.graphhopper.gpx.GpxConversions;
 import com.graphhopper.jackson.Gpx;
+import com.graphhopper.matching.BatchMapMatching;
+import com.graphhopper.matching.EdgeBasedDijkstraOneToMany;
 import com.graphhopper.matching.EdgeMatch;
 import com.graphhopper.matching.MapMatching;
 import com.graphhopper.matching.MatchResult;
 import com.graphhopper.matching.Observation;
+import com.graphhopper.routing.DijkstraBidirectionRef;
+import com.graphhopper.routing.Path;
 import com.graphhopper.routing.TestProfiles;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.BaseGraph;
 import com.graphhopper.util.*;
 import com.graphhopper.util.shapes.GHPoint;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtensionContext;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.ArgumentsProvider;
 import org.junit.jupiter.params.provider.ArgumentsSource;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -299,6 +310,33 @@ public class MapMatchingTest {
         assertEquals(Arrays.asList("Gustav-Adolf-Straße", "Funkenburgstraße"), fetchStreets(mr.getEdgeMatches()));
     }
 
+    @Test
+    public void testOneToManyFindsSamePathsAsBidirectionalSearch() {
+        BaseGraph graph = graphHopper.getBaseGraph();
+        Weighting weighting = graphHopper.createWeighting(graphHopper.getProfile("my_profile"), new PMap());
+        Random rnd = new Random(42);
+        for (int run = 0; run < 20; run++) {
+            int from = rnd.nextInt(graph.getNodes());
+            int[] toNodes = rnd.ints(5, 0, graph.getNodes()).toArray();
+            int[] toInEdges = new int[toNodes.length];
+            Arrays.fill(toInEdges, EdgeIterator.ANY_EDGE);
+            EdgeIterator iter = graph.createEdgeExplorer().setBaseNode(from);
+            int fromOutEdge = iter.next() ? iter.getEdge() : EdgeIterator.ANY_EDGE;
+            List<Path> paths = new EdgeBasedDijkstraOneToMany(graph, weighting).calcPaths(from, fromOutEdge, toNodes, toInEdges);
+            for (int i = 0; i < toNodes.length; i++) {
+                Path expected = new DijkstraBidirectionRef(graph, weighting, TraversalMode.EDGE_BASED).calcPath(from, toNodes[i], fromOutEdge, toInEdges[i]);
+                assertEquals(expected.isFound(), paths.get(i).isFound(), "from: " + from + ", to: " + toNodes[i]);
+                assertEquals(expected.getWeight(), paths.get(i).getWeight(), 1.e-3, "from: " + from + ", to: " + toNodes[i]);
+                assertEquals(expected.getDistance(), paths.get(i).getDistance(), 1.e-3, "from: " + from + ", to: " + toNodes[i]);
+            }
+
+            // paths that are longer than the maximum distance are not found
+            List<Path> bounded = new EdgeBasedDijkstraOneToMany(graph, weighting).setMaxDistance(2_000).calcPaths(from, fromOutEdge, toNodes, toInEdges);
+            for (Path path : bounded)
+                assertTrue(!path.isFound() || path.getDistance() <= 2_000, path.toString());
+        }
+    }
+
     static List<String> fetchStreets(List<EdgeMatch> emList) {
         List<String> list = new ArrayList<>();
         int prevNode = -1;
@@ -322,6 +360,52 @@ public class MapMatchingTest {
         return list;
     }
 
+    @Test
+    public void testBatch() throws IOException {
+        PMap hints = new PMap().putObject("profile", "my_profile");
+        List<File> traces = new ArrayList<>();
+        for (String name : Arrays.asList("tour-with-loop.gpx", "tour2-with-loop.gpx", "tour3-with-long-edge.gpx", "tour4-with-uturn.gpx", "no_trk.gpx"))
+            traces.add(new File("src/test/resources/" + name));
+        // the same track once more, but as CSV
+        List<Observation> tour3 = readGPX(traces.get(2));
+        File csv = new File(GH_LOCATION, "tour3.csv");
+        StringBuilder sb = new StringBuilder("lat,lon\n");
+        for (Observation o : tour3)
+            sb.append(o.getPoint().lat).append(',').append(o.getPoint().lon).append('\n');
+        Files.writeString(csv.toPath(), sb);
+        traces.add(csv);
+
+        BatchMapMatching batchMapMatching = new BatchMapMatching(() -> MapMatching.fromGraphHopper(graphHopper, hints), 3);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        BatchMapMatching.Statistics statistics = batchMapMatching.match(traces,
+                file -> file.getName().endsWith(".csv") ? BatchMapMatching.readCSV(file) : readGPX(file), output);
+        assertEquals(5, statistics.getMatched());
+        assertEquals(1, statistics.getFailed());
+
+        Map<String, JsonNode> results = new HashMap<>();
+        for (String line : output.toString(StandardCharsets.UTF_8).split("\n")) {
+            JsonNode json = new ObjectMapper().readTree(line);
+            results.put(json.get("trace").asText(), json);
+        }
+        assertEquals(6, results.size());
+        assertTrue(results.get("no_trk.gpx").has("message"));
+        // the results are the same as without the batch matching
+        for (int i = 0; i < 4; i++) {
+            MatchResult mr = MapMatching.fromGraphHopper(graphHopper, hints).match(readGPX(traces.get(i)));
+            List<Integer> edgeIds = new ArrayList<>();
+            results.get(traces.get(i).getName()).get("edge_ids").forEach(e -> edgeIds.add(e.asInt()));
+            assertEquals(mr.getEdgeMatches().stream().map(em -> em.getEdgeState().getEdge()).collect(Collectors.toList()), edgeIds);
+        }
+        assertEquals(results.get("tour3-with-long-edge.gpx").get("edge_ids"), results.get("tour3.csv").get("edge_ids"));
+    }
+
+    private List<Observation> readGPX(File file) throws IOException {
+        Gpx gpx = xmlMapper.readValue(file, Gpx.class);
+        if (gpx.trk == null)
+            throw new IllegalArgumentException("No tracks found in GPX document.");
+        return GpxConversions.getEntries(gpx.trk.get(0));
+    }
+
     /**
      * This method does not in fact create random observations. It creates observations at nodes on a route.
      * This method _should_ be replaced by one that creates random observations along a route,
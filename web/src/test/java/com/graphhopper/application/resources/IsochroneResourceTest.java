@@ -41,7 +41,9 @@ import org.locationtech.jts.geom.Polygon;
 
 import jakarta.ws.rs.client.WebTarget;
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import static com.graphhopper.application.resources.Util.getWithStatus;
 import static com.graphhopper.application.util.TestUtils.clientTarget;
@@ -59,6 +61,7 @@ public class IsochroneResourceTest {
                 putObject("import.osm.ignored_highways", "").
                 putObject("graph.location", DIR).
                 putObject("graph.encoded_values", "car_access, car_average_speed").
+                putObject("isochrone.cache_size_mb", 50).
                 setProfiles(Arrays.asList(
                         TestProfiles.accessAndSpeed("fast_car", "car").setTurnCostsConfig(TurnCostsConfig.car()),
                         TestProfiles.constantSpeed("short_car", 35).setTurnCostsConfig(TurnCostsConfig.car()),
@@ -96,6 +99,40 @@ public class IsochroneResourceTest {
         assertFalse(polygon1.contains(geometryFactory.createPoint(new Coordinate(1.635246, 42.53841))));
     }
 
+    @Test
+    public void requestWithCachedTree() {
+        long hits = getGauge("spt_cache.hits");
+        // the first 5 minute isochrone is searched from scratch, and the second one uses the tree of the 10 minute
+        // isochrone, so both must be equal
+        List<Geometry> polygons = new ArrayList<>();
+        for (int minutes : new int[]{5, 10, 5}) {
+            JsonFeatureCollection featureCollection = clientTarget(app, "/isochrone")
+                    .queryParam("profile", "fast_car")
+                    .queryParam("point", "42.541073,1.563792")
+                    .queryParam("time_limit", minutes * 60)
+                    .queryParam("type", "geojson")
+                    .request().get(JsonFeatureCollection.class);
+            assertEquals(1, featureCollection.getFeatures().size());
+            polygons.add(featureCollection.getFeatures().get(0).getGeometry());
+        }
+        assertEquals(hits + 1, getGauge("spt_cache.hits"));
+        assertTrue(polygons.get(0).equalsExact(polygons.get(2)));
+        assertTrue(polygons.get(1).getArea() > polygons.get(2).getArea());
+        assertTrue(getGauge("spt_cache.bytes") > 0);
+
+        // a different profile needs a new tree
+        clientTarget(app, "/isochrone")
+                .queryParam("profile", "short_car")
+                .queryParam("point", "42.541073,1.563792")
+                .queryParam("time_limit", 5 * 60)
+                .request().get(JsonNode.class);
+        assertEquals(hits + 1, getGauge("spt_cache.hits"));
+    }
+
+    private static long getGauge(String name) {
+        return (Long) app.getEnvironment().metrics().getGauges().get(name).getValue();
+    }
+
     @Test
     public void requestByTimeLimitNoTurnRestrictions() {
         JsonFeatureCollection featureCollection = clientTarget(app, "/isochrone")
@@ -35,14 +35,18 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 import static com.graphhopper.application.util.TestUtils.clientTarget;
 import static com.graphhopper.util.Parameters.Details.STREET_NAME;
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.*;
 
 /**
  * @author Peter Karich
@@ -50,6 +54,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 @ExtendWith(DropwizardExtensionsSupport.class)
 public class MVTResourceTest {
     private static final String DIR = "./target/andorra-gh/";
+    private static final String CACHE_DIR = "./target/mvt-cache/";
     private static final DropwizardAppExtension<GraphHopperServerConfiguration> app = new DropwizardAppExtension<>(GraphHopperApplication.class, createConfig());
 
     private static GraphHopperServerConfiguration createConfig() {
@@ -60,6 +65,8 @@ public class MVTResourceTest {
                 putObject("datareader.file", "../core/files/andorra.osm.pbf").
                 putObject("import.osm.ignored_highways", "").
                 putObject("graph.location", DIR).
+                putObject("mvt.cache_size_mb", 10).
+                putObject("mvt.cache_location", CACHE_DIR).
                 setProfiles(List.of(TestProfiles.constantSpeed("car")));
         return config;
     }
@@ -68,6 +75,7 @@ public class MVTResourceTest {
     @AfterAll
     public static void cleanUp() {
         Helper.removeDir(new File(DIR));
+        Helper.removeDir(new File(CACHE_DIR));
     }
 
     @Test
@@ -96,6 +104,17 @@ public class MVTResourceTest {
         assertEquals("primary", feature.getAttributes().get("road_class"));
     }
 
+    @Test
+    public void testCachedTile() throws IOException {
+        byte[] tile = readInputStream(clientTarget(app, "/mvt/11/1032/756.mvt").request().get(InputStream.class));
+        assertFalse(new VectorTileDecoder().decode(tile).asList().isEmpty());
+        // the tile is stored on disk, because its zoom level is below mvt.cache_max_zoom
+        try (Stream<Path> files = Files.walk(Paths.get(CACHE_DIR))) {
+            assertTrue(files.anyMatch(p -> p.endsWith(Paths.get("11", "1032", "756.mvt"))));
+        }
+        assertArrayEquals(tile, readInputStream(clientTarget(app, "/mvt/11/1032/756.mvt").request().get(InputStream.class)));
+    }
+
     private static byte[] readInputStream(InputStream is) throws IOException {
         ByteArrayOutputStream buffer = new ByteArrayOutputStream();
         int nRead;
@@ -18,9 +18,14 @@
 package com.graphhopper.application.resources;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.xml.XmlMapper;
 import com.graphhopper.application.GraphHopperApplication;
 import com.graphhopper.application.GraphHopperServerConfiguration;
+import com.graphhopper.gpx.GpxConversions;
+import com.graphhopper.jackson.Gpx;
 import com.graphhopper.jackson.ResponsePathDeserializerHelper;
+import com.graphhopper.matching.Observation;
 import com.graphhopper.routing.TestProfiles;
 import com.graphhopper.util.Helper;
 import io.dropwizard.testing.junit5.DropwizardAppExtension;
@@ -36,7 +41,10 @@ import org.locationtech.jts.io.WKTReader;
 import jakarta.ws.rs.client.Entity;
 import jakarta.ws.rs.core.Response;
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import static com.graphhopper.application.util.TestUtils.clientTarget;
 import static org.junit.jupiter.api.Assertions.*;
@@ -49,6 +57,7 @@ public class MapMatchingResourceTest {
 
     private static final String DIR = "../target/mapmatchingtest";
     public static final DropwizardAppExtension<GraphHopperServerConfiguration> app = new DropwizardAppExtension<>(GraphHopperApplication.class, createConfig());
+    private final ObjectMapper objectMapper = new ObjectMapper();
 
     private static GraphHopperServerConfiguration createConfig() {
         GraphHopperServerConfiguration config = new GraphHopperServerConfiguration();
@@ -122,6 +131,40 @@ public class MapMatchingResourceTest {
         }
     }
 
+    @Test
+    public void testStream() throws IOException {
+        Gpx gpx = new XmlMapper().readValue(getClass().getResourceAsStream("/tour2-with-loop.gpx"), Gpx.class);
+        StringBuilder observations = new StringBuilder();
+        for (Observation observation : GpxConversions.getEntries(gpx.trk.get(0)))
+            observations.append("{\"lat\":").append(observation.getPoint().lat).append(",\"lon\":").append(observation.getPoint().lon).append("}\n");
+
+        String response = clientTarget(app, "/match/stream?profile=fast_car&window_size=6&window_overlap=2")
+                .request()
+                .post(Entity.entity(observations.toString(), "application/x-ndjson"), String.class);
+        List<Integer> streamedEdges = new ArrayList<>();
+        for (String line : response.split("\n")) {
+            JsonNode link = objectMapper.readTree(line);
+            assertFalse(link.has("message"), line);
+            streamedEdges.add(link.get("id").asInt());
+        }
+
+        JsonNode json = clientTarget(app, "/match?profile=fast_car&type=extended_json")
+                .request()
+                .post(Entity.xml(getClass().getResourceAsStream("/tour2-with-loop.gpx")), JsonNode.class);
+        List<Integer> expectedEdges = new ArrayList<>();
+        for (JsonNode link : json.get("diary").get("entries").get(0).get("links"))
+            expectedEdges.add(link.get("id").asInt());
+        assertEquals(expectedEdges, streamedEdges);
+    }
+
+    @Test
+    public void testStreamInvalidObservation() {
+        String response = clientTarget(app, "/match/stream?profile=fast_car")
+                .request()
+                .post(Entity.entity("{\"lat\":51.34365,\"lon\":12.3607}\n{\"x\":1}\n", "application/x-ndjson"), String.class);
+        assertTrue(response.contains("Each line must contain an observation with lat and lon"), response);
+    }
+
     private LineString readWktLineString(String wkt) {
         WKTReader wktReader = new WKTReader();
         LineString expectedGeometry = null;
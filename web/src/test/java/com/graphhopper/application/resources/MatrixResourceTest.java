@@ -0,0 +1,140 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.application.resources;
+
+import com.graphhopper.GHRequest;
+import com.graphhopper.GHResponse;
+import com.graphhopper.api.GHMRequest;
+import com.graphhopper.api.GraphHopperMatrixWeb;
+import com.graphhopper.api.GraphHopperWeb;
+import com.graphhopper.api.MatrixResponse;
+import com.graphhopper.application.GraphHopperApplication;
+import com.graphhopper.application.GraphHopperServerConfiguration;
+import com.graphhopper.application.util.GraphHopperServerTestConfiguration;
+import com.graphhopper.application.util.TestUtils;
+import com.graphhopper.config.CHProfile;
+import com.graphhopper.routing.TestProfiles;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.shapes.GHPoint;
+import io.dropwizard.testing.junit5.DropwizardAppExtension;
+import io.dropwizard.testing.junit5.DropwizardExtensionsSupport;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(DropwizardExtensionsSupport.class)
+public class MatrixResourceTest {
+    private static final String DIR = "./target/andorra-matrix-gh/";
+    private static final DropwizardAppExtension<GraphHopperServerConfiguration> app = new DropwizardAppExtension<>(GraphHopperApplication.class, createConfig());
+
+    private static GraphHopperServerConfiguration createConfig() {
+        GraphHopperServerConfiguration config = new GraphHopperServerTestConfiguration();
+        config.getGraphHopperConfiguration().
+                putObject("prepare.min_network_size", 0).
+                putObject("datareader.file", "../core/files/andorra.osm.pbf").
+                putObject("import.osm.ignored_highways", "").
+                putObject("graph.location", DIR).
+                putObject("graph.encoded_values", "car_access, car_average_speed").
+                setProfiles(List.of(TestProfiles.accessAndSpeed("car"))).
+                setCHProfiles(List.of(new CHProfile("car")));
+        return config;
+    }
+
+    @BeforeAll
+    @AfterAll
+    public static void cleanUp() {
+        Helper.removeDir(new File(DIR));
+    }
+
+    private static final List<GHPoint> POINTS = Arrays.asList(
+            new GHPoint(42.5093, 1.5274),
+            new GHPoint(42.5126, 1.5410),
+            new GHPoint(42.5385, 1.5688)
+    );
+
+    @Test
+    public void testMatrixIsConsistentWithRoutes() {
+        GraphHopperMatrixWeb matrixWeb = new GraphHopperMatrixWeb(TestUtils.clientUrl(app, "/matrix"));
+        GHMRequest req = new GHMRequest().setProfile("car").setPoints(POINTS).setOutArrays(List.of("times", "distances", "weights"));
+        MatrixResponse rsp = matrixWeb.route(req);
+        assertFalse(rsp.hasErrors(), "errors: " + rsp.getErrors());
+
+        GraphHopperWeb routeWeb = new GraphHopperWeb(TestUtils.clientUrl(app, "/route"));
+        for (int from = 0; from < POINTS.size(); from++) {
+            for (int to = 0; to < POINTS.size(); to++) {
+                if (from == to) {
+                    assertEquals(0, rsp.getDistance(from, to), 1);
+                    continue;
+                }
+                GHResponse routeRsp = routeWeb.route(new GHRequest(POINTS.get(from), POINTS.get(to)).setProfile("car").
+                        putHint("instructions", false).putHint("calc_points", false));
+                assertFalse(routeRsp.hasErrors(), "errors: " + routeRsp.getErrors());
+                assertEquals(routeRsp.getBest().getDistance(), rsp.getDistance(from, to), 1);
+                assertEquals(routeRsp.getBest().getTime(), rsp.getTime(from, to), 1000);
+                assertEquals(routeRsp.getBest().getRouteWeight(), rsp.getWeight(from, to), 1.e-2);
+            }
+        }
+    }
+
+    @Test
+    public void testFromAndToPoints() {
+        GraphHopperMatrixWeb matrixWeb = new GraphHopperMatrixWeb(TestUtils.clientUrl(app, "/matrix"));
+        GHMRequest req = new GHMRequest().setProfile("car").
+                setFromPoints(POINTS.subList(0, 1)).
+                setToPoints(POINTS).
+                setOutArrays(List.of("distances"));
+        MatrixResponse rsp = matrixWeb.route(req);
+        assertFalse(rsp.hasErrors(), "errors: " + rsp.getErrors());
+        assertEquals(0, rsp.getDistance(0, 0), 1);
+        assertTrue(rsp.getDistance(0, 1) > 1000);
+        assertTrue(rsp.getDistance(0, 2) > rsp.getDistance(0, 1));
+    }
+
+    @Test
+    public void testPointNotFound() {
+        GraphHopperMatrixWeb matrixWeb = new GraphHopperMatrixWeb(TestUtils.clientUrl(app, "/matrix"));
+        GHMRequest req = new GHMRequest().setProfile("car").
+                setPoints(Arrays.asList(POINTS.get(0), new GHPoint(0, 0))).
+                setOutArrays(List.of("weights", "times"));
+        MatrixResponse rsp = matrixWeb.route(req);
+        assertTrue(rsp.hasErrors());
+
+        req.setFailFast(false);
+        rsp = matrixWeb.route(req);
+        assertFalse(rsp.hasErrors(), "errors: " + rsp.getErrors());
+        assertEquals(List.of(1), rsp.getInvalidFromPoints());
+        assertEquals(List.of(1), rsp.getInvalidToPoints());
+        assertFalse(rsp.isConnected(0, 1));
+        assertTrue(rsp.isConnected(0, 0));
+    }
+
+    @Test
+    public void testMissingCHProfile() {
+        GraphHopperMatrixWeb matrixWeb = new GraphHopperMatrixWeb(TestUtils.clientUrl(app, "/matrix"));
+        MatrixResponse rsp = matrixWeb.route(new GHMRequest().setProfile("bike").setPoints(POINTS).setOutArrays(List.of("times")));
+        assertTrue(rsp.hasErrors());
+        assertTrue(rsp.getErrors().toString().contains("does not exist"), rsp.getErrors().toString());
+    }
+}
@@ -17,6 +17,7 @@
  */
 package com.graphhopper.application.resources;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.graphhopper.application.GraphHopperApplication;
 import com.graphhopper.application.GraphHopperServerConfiguration;
 import com.graphhopper.application.util.GraphHopperServerTestConfiguration;
@@ -30,11 +31,15 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 
+import jakarta.ws.rs.client.Entity;
+import jakarta.ws.rs.core.Response;
+
 import java.io.File;
 import java.util.List;
 
 import static com.graphhopper.application.util.TestUtils.clientTarget;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 
 /**
  * @author svantulden
@@ -65,4 +70,28 @@ public class NearestResourceTest {
         NearestResource.Response json = clientTarget(app, "/nearest?point=42.554851,1.536198").request().get(NearestResource.Response.class);
         assertArrayEquals(new double[]{1.5363743623376815, 42.554839049600155}, json.coordinates, "nearest point");
     }
+
+    @Test
+    public void testBatchNearestQuery() {
+        String body = "{\"points\": [[1.536198, 42.554851], [1.548345, 42.510071]]}";
+        JsonNode json = clientTarget(app, "/nearest").request().post(Entity.json(body), JsonNode.class);
+        assertEquals(2, json.size());
+        NearestResource.Response single = clientTarget(app, "/nearest?point=42.554851,1.536198").request().get(NearestResource.Response.class);
+        assertEquals(single.coordinates[0], json.get(0).get("coordinates").get(0).asDouble(), 1e-9);
+        assertEquals(single.coordinates[1], json.get(0).get("coordinates").get(1).asDouble(), 1e-9);
+        assertEquals(single.distance, json.get(0).get("distance").asDouble(), 1e-6);
+        single = clientTarget(app, "/nearest?point=42.510071,1.548345").request().get(NearestResource.Response.class);
+        assertEquals(single.coordinates[0], json.get(1).get("coordinates").get(0).asDouble(), 1e-9);
+        assertEquals(single.coordinates[1], json.get(1).get("coordinates").get(1).asDouble(), 1e-9);
+    }
+
+    @Test
+    public void testBatchNearestQueryPointNotFound() {
+        String body = "{\"points\": [[1.536198, 42.554851], [-10, 5]]}";
+        try (Response response = clientTarget(app, "/nearest").request().post(Entity.json(body))) {
+            assertEquals(400, response.getStatus());
+            JsonNode json = response.readEntity(JsonNode.class);
+            assertEquals(1, json.get("hints").get(0).get("point_index").asInt(), json.toString());
+        }
+    }
 }
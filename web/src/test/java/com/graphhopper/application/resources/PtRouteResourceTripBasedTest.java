@@ -57,7 +57,6 @@ public class PtRouteResourceTripBasedTest {
                 putObject("graph.location", DIR).
                 putObject("import.osm.ignored_highways", "").
                 putObject("gtfs.trip_based", true).
-                putObject("gtfs.schedule_day", "2007-01-01").
                 setProfiles(Collections.singletonList(TestProfiles.accessSpeedAndPriority("foot")))
                 .putObject("graph.encoded_values", "foot_access, foot_priority, foot_average_speed, car_access, car_average_speed");
         return config;